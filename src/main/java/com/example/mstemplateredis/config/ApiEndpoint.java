@@ -0,0 +1,105 @@
+package com.example.mstemplateredis.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The account API operations, resolved from the request method and path so that filters can apply
+ * per-endpoint policies before the request reaches the controller.
+ */
+public enum ApiEndpoint {
+    GET_ACCOUNTS("get-accounts"),
+    CREATE_ACCOUNT("create-account"),
+    UPDATE_ACCOUNT("update-account"),
+    ADJUST_BALANCE("adjust-balance"),
+    DELETE_ACCOUNT("delete-account"),
+    GET_ACCOUNT_BY_IBAN("get-account-by-iban"),
+    GET_ACCOUNTS_BY_IBAN("get-accounts-by-iban"),
+    GET_ACCOUNT_SUMMARY("get-account-summary"),
+    // Runs for as long as its upload; the request deadline is sized for the account API
+    IMPORT_ACCOUNTS("import-accounts", false),
+    OTHER("other");
+
+    public static final String ACCOUNTS_PATH = "/brd-api/ms-template-redis/v1/accounts/";
+    public static final String IMPORTS_PATH = "/brd-api/ms-template-redis/v1/imports/accounts/";
+    // Literal first segment of the IBAN lookups; it is not a customer ID
+    static final String BY_IBAN = "by-iban";
+
+    private final String key;
+    private final boolean deadline;
+
+    ApiEndpoint(String key) {
+        this(key, true);
+    }
+
+    ApiEndpoint(String key, boolean deadline) {
+        this.key = key;
+        this.deadline = deadline;
+    }
+
+    /** Name used for this endpoint in configuration and metric tags. */
+    public String key() {
+        return key;
+    }
+
+    /** Whether requests to this endpoint run under a request deadline. */
+    public boolean hasDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @param customerId customer in the path, {@code null} for endpoints not scoped to a customer
+     */
+    public record Resolved(ApiEndpoint endpoint, String customerId) {}
+
+    public static Resolved resolve(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return resolve(request.getMethod(), path);
+    }
+
+    public static Resolved resolve(String method, String path) {
+        if (path.startsWith(IMPORTS_PATH)) {
+            String importId = path.substring(IMPORTS_PATH.length());
+            boolean upload = "POST".equals(method) && !importId.isEmpty() && importId.indexOf('/') < 0;
+            return new Resolved(upload ? IMPORT_ACCOUNTS : OTHER, null);
+        }
+        if (!path.startsWith(ACCOUNTS_PATH)) {
+            return new Resolved(OTHER, null);
+        }
+        String[] segments = path.substring(ACCOUNTS_PATH.length()).split("/");
+        String customerId = segments[0].isEmpty() ? null : segments[0];
+        if (customerId == null) {
+            return new Resolved(OTHER, null);
+        }
+        if (BY_IBAN.equals(customerId)) {
+            return new Resolved(resolveByIban(method, segments), null);
+        }
+
+        ApiEndpoint endpoint = switch (segments.length) {
+            case 1 -> switch (method) {
+                case "GET" -> GET_ACCOUNTS;
+                case "POST" -> CREATE_ACCOUNT;
+                default -> OTHER;
+            };
+            case 2 -> switch (method) {
+                case "GET" -> "summary".equals(segments[1]) ? GET_ACCOUNT_SUMMARY : OTHER;
+                case "PUT" -> "update".equals(segments[1]) ? UPDATE_ACCOUNT : OTHER;
+                case "POST" -> "adjust".equals(segments[1]) ? ADJUST_BALANCE : OTHER;
+                default -> OTHER;
+            };
+            case 3 -> "DELETE".equals(method) && "delete".equals(segments[1]) ? DELETE_ACCOUNT : OTHER;
+            default -> OTHER;
+        };
+        return new Resolved(endpoint, endpoint == OTHER ? null : customerId);
+    }
+
+    private static ApiEndpoint resolveByIban(String method, String[] segments) {
+        if (!"GET".equals(method)) {
+            return OTHER;
+        }
+        return switch (segments.length) {
+            case 1 -> GET_ACCOUNTS_BY_IBAN;
+            case 2 -> GET_ACCOUNT_BY_IBAN;
+            default -> OTHER;
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mstemplateredis.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}) converters, for internal callers
+ * that would rather not parse JSON. Requests and responses of every endpoint are negotiated through Content-Type and
+ * Accept; JSON stays the default, also for callers that send no Accept or only a wildcard one. Both converters are
+ * built from the application's Jackson builder, so the binary formats carry the same properties as the JSON ones.
+ * <p>
+ * Spring's binary converters declare no media type for {@code ProblemDetail}, which makes errors fall back to
+ * {@code application/problem+json}; the ones here declare their own, so errors come back in the requested format.
+ */
+@Configuration
+public class BinaryFormatConfig implements WebMvcConfigurer {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    // The builder is a prototype bean, so each converter gets its own
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new CborConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new SmileConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    // Without an Accept, or with */*, prefer JSON over the binary formats where a handler offers both, and still
+    // match handlers that produce neither
+    @Override
+    public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
+        configurer.defaultContentType(MediaType.APPLICATION_JSON, MediaType.ALL);
+    }
+
+    static class CborConverter extends MappingJackson2CborHttpMessageConverter {
+
+        CborConverter(ObjectMapper objectMapper) {
+            super(objectMapper);
+        }
+
+        @Override
+        protected List<MediaType> getMediaTypesForProblemDetail() {
+            return getSupportedMediaTypes();
+        }
+    }
+
+    static class SmileConverter extends MappingJackson2SmileHttpMessageConverter {
+
+        SmileConverter(ObjectMapper objectMapper) {
+            super(objectMapper);
+        }
+
+        @Override
+        protected List<MediaType> getMediaTypesForProblemDetail() {
+            return getSupportedMediaTypes();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JdbcTemplate (and so JdbcClient) that applies the remaining request deadline as the statement query timeout.
+ * JDBC query timeouts are whole seconds, so the remaining time is rounded up; statements whose deadline has
+ * already passed are not sent at all.
+ */
+public class DeadlineAwareJdbcTemplate extends JdbcTemplate {
+
+    public DeadlineAwareJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+
+        long remainingMillis = RequestDeadlineHolder.remainingMillis();
+        if (remainingMillis == RequestDeadlineHolder.NO_DEADLINE) {
+            return;
+        }
+        if (remainingMillis <= 0) {
+            throw new QueryTimeoutException("Request deadline passed before the statement was executed");
+        }
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (remainingMillis + 999) / 1000);
+        if (stmt.getQueryTimeout() == 0 || seconds < stmt.getQueryTimeout()) {
+            stmt.setQueryTimeout(seconds);
+        }
+    }
+}
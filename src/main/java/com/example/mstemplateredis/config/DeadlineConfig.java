@@ -0,0 +1,33 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(DeadlineProperties.class)
+@ConditionalOnProperty(name = "app.deadline.enabled", havingValue = "true")
+public class DeadlineConfig {
+
+    @Bean
+    public FilterRegistrationBean<RequestDeadlineFilter> requestDeadlineFilter(DeadlineProperties properties) {
+        FilterRegistrationBean<RequestDeadlineFilter> registration =
+                new FilterRegistrationBean<>(new RequestDeadlineFilter(properties));
+        registration.addUrlPatterns(ApiEndpoint.ACCOUNTS_PATH + "*", ApiEndpoint.IMPORTS_PATH + "*");
+        // Before the rate limiter, so the deadline covers the whole request
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 50);
+        return registration;
+    }
+
+    // Replaces the auto-configured JdbcTemplate; the auto-configured JdbcClient is built on top of it
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new DeadlineAwareJdbcTemplate(dataSource);
+    }
+}
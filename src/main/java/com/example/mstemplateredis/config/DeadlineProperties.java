@@ -0,0 +1,26 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Request deadlines: taken from the {@code header} (milliseconds) when the client sends one, otherwise from the
+ * endpoint entry in {@code endpoints} (keyed by {@link ApiEndpoint#key()}) or {@code default-timeout}.
+ * Client values are capped at {@code max-timeout}; values that are not positive are ignored.
+ */
+@ConfigurationProperties("app.deadline")
+public record DeadlineProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("X-Request-Timeout-Ms") String header,
+        @DefaultValue("2s") Duration defaultTimeout,
+        @DefaultValue("10s") Duration maxTimeout,
+        Map<String, Duration> endpoints
+) {
+    public Duration timeoutFor(ApiEndpoint endpoint) {
+        Duration timeout = endpoints != null ? endpoints.get(endpoint.key()) : null;
+        return timeout != null ? timeout : defaultTimeout;
+    }
+}
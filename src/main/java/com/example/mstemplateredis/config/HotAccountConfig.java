@@ -0,0 +1,9 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(HotAccountProperties.class)
+public class HotAccountConfig {
+}
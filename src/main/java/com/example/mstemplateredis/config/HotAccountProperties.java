@@ -0,0 +1,36 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Accounts whose balance adjustments are coalesced in Redis and flushed to MySQL in merged updates,
+ * instead of locking the account row on every adjustment.
+ */
+@ConfigurationProperties("app.hot-accounts")
+public record HotAccountProperties(
+        @DefaultValue("false") boolean enabled,
+        List<HotAccount> accounts
+) {
+
+    public record HotAccount(String customerId, String iban) {}
+
+    public HotAccountProperties {
+        accounts = accounts != null ? List.copyOf(accounts) : List.of();
+    }
+
+    /** IBAN -> owning customer ID, for the accounts that are coalesced. Empty when disabled. */
+    public Map<String, String> customerByIban() {
+        return enabled ? accounts.stream().collect(Collectors.toUnmodifiableMap(HotAccount::iban, HotAccount::customerId)) : Map.of();
+    }
+
+    /** Customers owning at least one coalesced account. Empty when disabled. */
+    public Set<String> customerIds() {
+        return enabled ? accounts.stream().map(HotAccount::customerId).collect(Collectors.toUnmodifiableSet()) : Set.of();
+    }
+}
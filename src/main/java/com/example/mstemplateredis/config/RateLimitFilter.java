@@ -0,0 +1,84 @@
+package com.example.mstemplateredis.config;
+
+import com.example.mstemplateredis.exception.RateLimitExceededException;
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Admits or rejects each account API request against the customer and client token buckets of its endpoint.
+ * Rejections are handed to the MVC exception resolvers, so they get the same ProblemDetail body as other errors.
+ * <p>
+ * The client bucket is keyed on the authenticated principal, or else on the remote address, never on anything the
+ * caller can choose freely: a client rotating its client header would otherwise get a fresh bucket per request, and
+ * could drain another client's bucket by sending its ID. The header is only logged.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties,
+                           HandlerExceptionResolver handlerExceptionResolver) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ApiEndpoint.Resolved resolved = ApiEndpoint.resolve(request);
+        if (resolved.endpoint() == ApiEndpoint.OTHER) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RateLimitProperties.EndpointLimits limits = properties.limitsFor(resolved.endpoint());
+        String prefix = Constants.rateLimitKey + resolved.endpoint().key();
+        List<RateLimiter.Bucket> buckets = new ArrayList<>(2);
+        // The IBAN lookups learn the customer only from the lookup itself, so they are limited per client only
+        if (limits.customer() != null && resolved.customerId() != null) {
+            buckets.add(new RateLimiter.Bucket(prefix + "::customer::" + resolved.customerId(),
+                    limits.customer().capacity(), limits.customer().refillPerSecond()));
+        }
+        if (limits.client() != null) {
+            buckets.add(new RateLimiter.Bucket(prefix + "::client::" + clientKey(request),
+                    limits.client().capacity(), limits.client().refillPerSecond()));
+        }
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(buckets);
+        if (decision.allowed()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        log.warn("Rate limit exceeded on {} for customer ID: {}, client: {} ({})", resolved.endpoint().key(),
+                resolved.customerId(), clientKey(request), request.getHeader(properties.clientHeader()));
+        try {
+            CustomerContextHolder.setCustomerId(resolved.customerId());
+            handlerExceptionResolver.resolveException(request, response, null,
+                    new RateLimitExceededException("Rate limit exceeded", decision.retryAfterSeconds()));
+        } finally {
+            CustomerContextHolder.clear();
+        }
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user::" + principal.getName() : "addr::" + request.getRemoteAddr();
+    }
+}
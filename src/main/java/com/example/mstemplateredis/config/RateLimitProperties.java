@@ -0,0 +1,42 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Token bucket limits per endpoint, keyed by {@link ApiEndpoint#key()}. Each endpoint may limit the customer in the
+ * path and the calling client separately; limits missing for an endpoint are taken from {@code default}. The client
+ * is identified by its principal or remote address; {@code clientHeader} only labels rejections in the log.
+ */
+@ConfigurationProperties("app.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("X-Client-Id") String clientHeader,
+        Map<String, EndpointLimits> endpoints
+) {
+    public static final String DEFAULT_ENDPOINT = "default";
+
+    public record EndpointLimits(Limit customer, Limit client) {}
+
+    /**
+     * @param capacity        burst size, in requests
+     * @param refillPerSecond sustained rate, in requests per second
+     */
+    public record Limit(int capacity, double refillPerSecond) {}
+
+    public EndpointLimits limitsFor(ApiEndpoint endpoint) {
+        EndpointLimits defaults = endpoints != null ? endpoints.get(DEFAULT_ENDPOINT) : null;
+        EndpointLimits specific = endpoints != null ? endpoints.get(endpoint.key()) : null;
+        if (specific == null) {
+            return defaults != null ? defaults : new EndpointLimits(null, null);
+        }
+        if (defaults == null) {
+            return specific;
+        }
+        return new EndpointLimits(
+                specific.customer() != null ? specific.customer() : defaults.customer(),
+                specific.client() != null ? specific.client() : defaults.client());
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import java.time.Duration;
@@ -72,6 +73,16 @@ public class RedisConfig {
         return redisTemplate;
     }
 
+    // Writes values that RedisService has already serialized, so their size can be measured before storing them
+    @Bean
+    public RedisTemplate<String, byte[]> rawRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> rawRedisTemplate = new RedisTemplate<>();
+        rawRedisTemplate.setConnectionFactory(connectionFactory);
+        rawRedisTemplate.setKeySerializer(new StringRedisSerializer());
+        rawRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        return rawRedisTemplate;
+    }
+
     // Helper method to parse TTL string value (e.g., "5m" -> Duration.ofMinutes(5))
     private Duration parseTtl(String ttl) {
         if (ttl != null && ttl.endsWith("m")) {
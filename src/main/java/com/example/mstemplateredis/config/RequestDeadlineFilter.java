@@ -0,0 +1,59 @@
+package com.example.mstemplateredis.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Establishes the request deadline in {@link RequestDeadlineHolder} for the whole request, including exception handling.
+ * Endpoints without a deadline, see {@link ApiEndpoint#hasDeadline()}, run without one.
+ */
+@Slf4j
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private final DeadlineProperties properties;
+
+    public RequestDeadlineFilter(DeadlineProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !ApiEndpoint.resolve(request).endpoint().hasDeadline();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            RequestDeadlineHolder.setTimeout(timeout(request));
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadlineHolder.clear();
+        }
+    }
+
+    private Duration timeout(HttpServletRequest request) {
+        String header = request.getHeader(properties.header());
+        if (header != null) {
+            try {
+                long requestedMillis = Long.parseLong(header.trim());
+                // A budget that is already spent would only turn the request into a 504 before any work is done
+                if (requestedMillis > 0) {
+                    Duration requested = Duration.ofMillis(requestedMillis);
+                    return requested.compareTo(properties.maxTimeout()) < 0 ? requested : properties.maxTimeout();
+                }
+                log.debug("Ignoring non-positive {} header: {}", properties.header(), header);
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring invalid {} header: {}", properties.header(), header);
+            }
+        }
+        return properties.timeoutFor(ApiEndpoint.resolve(request).endpoint());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mstemplateredis.config;
+
+import com.example.mstemplateredis.exception.DeadlineExceededException;
+
+import java.time.Duration;
+
+/**
+ * Deadline of the request being served on the current thread, set by {@link RequestDeadlineFilter}.
+ * Threads without a request (schedulers, the outbox relay) have no deadline.
+ */
+public class RequestDeadlineHolder {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final ThreadLocal<Long> deadlineHolder = new ThreadLocal<>();
+
+    public static void setTimeout(Duration timeout) {
+        deadlineHolder.set(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static boolean hasDeadline() {
+        return deadlineHolder.get() != null;
+    }
+
+    /**
+     * Milliseconds left until the deadline, zero or negative once it has passed, {@link #NO_DEADLINE} if there is none.
+     */
+    public static long remainingMillis() {
+        Long deadline = deadlineHolder.get();
+        return deadline == null ? NO_DEADLINE : Math.floorDiv(deadline - System.nanoTime(), 1_000_000L);
+    }
+
+    /**
+     * Throws {@link DeadlineExceededException} if the deadline has passed, so work nobody will read is skipped.
+     */
+    public static void checkNotExpired(String operation) {
+        if (remainingMillis() <= 0) {
+            throw new DeadlineExceededException("Request deadline passed before " + operation);
+        }
+    }
+
+    public static void clear() {
+        deadlineHolder.remove();
+    }
+}
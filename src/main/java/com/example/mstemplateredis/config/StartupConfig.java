@@ -0,0 +1,43 @@
+package com.example.mstemplateredis.config;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Defers beans the service does not need to answer its first request. Used by the {@code fast-startup} profile.
+ * <p>
+ * The springdoc beans scan every controller to build the OpenAPI model; marked lazy, that cost moves from startup
+ * to the first {@code /v3/api-docs} or Swagger UI request.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.startup.lazy-docs", havingValue = "true")
+public class StartupConfig {
+
+    private static final String SPRINGDOC_PACKAGE = "org.springdoc.";
+
+    // Static, so it runs before any other bean of this configuration is created
+    @Bean
+    public static BeanFactoryPostProcessor lazyApiDocs() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                String source = sourceClassName(definition);
+                if (source != null && source.startsWith(SPRINGDOC_PACKAGE)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    // @Bean methods have no bean class name; they belong to the configuration that declares them
+    private static String sourceClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+            return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+}
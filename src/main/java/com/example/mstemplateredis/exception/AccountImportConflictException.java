@@ -0,0 +1,7 @@
+package com.example.mstemplateredis.exception;
+
+public class AccountImportConflictException extends RuntimeException {
+    public AccountImportConflictException(String message) {
+        super(message);
+    }
+}
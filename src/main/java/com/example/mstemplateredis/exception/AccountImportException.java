@@ -0,0 +1,7 @@
+package com.example.mstemplateredis.exception;
+
+public class AccountImportException extends RuntimeException {
+    public AccountImportException(String message) {
+        super(message);
+    }
+}
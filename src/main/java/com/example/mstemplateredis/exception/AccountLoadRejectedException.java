@@ -0,0 +1,14 @@
+package com.example.mstemplateredis.exception;
+
+public class AccountLoadRejectedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public AccountLoadRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
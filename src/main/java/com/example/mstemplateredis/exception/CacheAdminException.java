@@ -0,0 +1,7 @@
+package com.example.mstemplateredis.exception;
+
+public class CacheAdminException extends RuntimeException {
+    public CacheAdminException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.mstemplateredis.exception;
+
+public class CacheOutboxException extends RuntimeException {
+    public CacheOutboxException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
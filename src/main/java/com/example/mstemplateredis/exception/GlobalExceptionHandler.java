@@ -4,8 +4,12 @@ import com.example.mstemplateredis.config.CustomerContextHolder;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingPathVariableException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -79,6 +83,55 @@ public class GlobalExceptionHandler {
     }
 
 
+    @ExceptionHandler(InsufficientBalanceException.class)
+    public ProblemDetail handleInsufficientBalanceException(InsufficientBalanceException ex) {
+        // A rejected debit is an expected business outcome, not a server error
+        log.warn("Insufficient balance for customer [{}]: {}", CustomerContextHolder.getCustomerId(), ex.getMessage());
+
+        return newProblemDetail(
+                "INSUFFICIENT_BALANCE",
+                "Balance too low for this debit",
+                HttpStatus.CONFLICT,
+                Map.of("operation", "adjustBalance")
+        );
+    }
+
+    @ExceptionHandler(CacheAdminException.class)
+    public ProblemDetail handleCacheAdminException(CacheAdminException ex) {
+        log.warn("Rejected cache admin request: {}", ex.getMessage());
+
+        return newProblemDetail(
+                "INVALID_CACHE_REQUEST",
+                ex.getMessage(),
+                HttpStatus.BAD_REQUEST,
+                Map.of("operation", "cacheAdmin")
+        );
+    }
+
+    @ExceptionHandler(AccountImportException.class)
+    public ProblemDetail handleAccountImportException(AccountImportException ex) {
+        log.warn("Rejected account import: {}", ex.getMessage());
+
+        return newProblemDetail(
+                "INVALID_IMPORT",
+                ex.getMessage(),
+                HttpStatus.BAD_REQUEST,
+                Map.of("operation", "importAccounts")
+        );
+    }
+
+    @ExceptionHandler(AccountImportConflictException.class)
+    public ProblemDetail handleAccountImportConflictException(AccountImportConflictException ex) {
+        log.warn("Conflicting account import: {}", ex.getMessage());
+
+        return newProblemDetail(
+                "IMPORT_CONFLICT",
+                ex.getMessage(),
+                HttpStatus.CONFLICT,
+                Map.of("operation", "importAccounts")
+        );
+    }
+
     @ExceptionHandler(MissingServletRequestParameterException.class)
     public ProblemDetail handleMissingParams(MissingServletRequestParameterException ex) {
         String paramName = ex.getParameterName();
@@ -99,6 +152,32 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ProblemDetail handleMessageNotReadable(HttpMessageNotReadableException ex) {
+        // Malformed bodies, including invalid timestamps rejected by Account, are the client's error
+        log.warn("Unreadable request body: {}", ex.getMostSpecificCause().getMessage());
+
+        return newProblemDetail(
+                "INVALID_REQUEST_BODY",
+                "Request body could not be read",
+                HttpStatus.BAD_REQUEST,
+                Map.of("operation", "inputValidation")
+        );
+    }
+
+    @ExceptionHandler(HttpMediaTypeNotAcceptableException.class)
+    public ProblemDetail handleMediaTypeNotAcceptable(HttpMediaTypeNotAcceptableException ex) {
+        // The caller asked only for formats this endpoint does not produce
+        log.warn("Not acceptable: {}, supported: {}", ex.getMessage(), ex.getSupportedMediaTypes());
+
+        return newProblemDetail(
+                "NOT_ACCEPTABLE",
+                "None of the accepted media types can be produced",
+                HttpStatus.NOT_ACCEPTABLE,
+                Map.of("operation", "contentNegotiation")
+        );
+    }
+
     @ExceptionHandler(HandlerMethodValidationException.class)
     public ProblemDetail handleHandlerMethodValidationException(HandlerMethodValidationException ex) {
         List<String> violations = ex.getAllErrors()
@@ -193,6 +272,51 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ProblemDetail> handleRateLimitExceeded(RateLimitExceededException ex) {
+        // Expected under load from throttled clients: no stack trace, and not at error level
+        log.warn("Rate limit exceeded for customer [{}], retry after {}s", CustomerContextHolder.getCustomerId(), ex.getRetryAfterSeconds());
+
+        ProblemDetail problem = newProblemDetail(
+                "RATE_LIMIT_EXCEEDED",
+                "Too many requests",
+                HttpStatus.TOO_MANY_REQUESTS,
+                Map.of("operation", "rateLimit", "retryAfterSeconds", ex.getRetryAfterSeconds())
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(problem);
+    }
+
+    @ExceptionHandler(AccountLoadRejectedException.class)
+    public ResponseEntity<ProblemDetail> handleAccountLoadRejected(AccountLoadRejectedException ex) {
+        // Load shedding by the cache-miss bulkhead; logged like rate limiting, without a stack trace
+        log.warn("Account load rejected for customer [{}]: {}", CustomerContextHolder.getCustomerId(), ex.getMessage());
+
+        ProblemDetail problem = newProblemDetail(
+                "SERVICE_BUSY",
+                "Accounts cannot be loaded right now",
+                HttpStatus.SERVICE_UNAVAILABLE,
+                Map.of("operation", "getAccountsByCustomerId", "retryAfterSeconds", ex.getRetryAfterSeconds())
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(problem);
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ProblemDetail handleDeadlineExceeded(DeadlineExceededException ex) {
+        // The caller has given up on this response; record it without a stack trace
+        log.warn("Deadline exceeded for customer [{}]: {}", CustomerContextHolder.getCustomerId(), ex.getMessage());
+
+        return newProblemDetail(
+                "DEADLINE_EXCEEDED",
+                "Request deadline exceeded",
+                HttpStatus.GATEWAY_TIMEOUT,
+                Map.of("operation", "deadline")
+        );
+    }
+
     @ExceptionHandler(Exception.class)
     public ProblemDetail handleGenericException(Exception ex) {
         return buildProblemDetail(
@@ -210,6 +334,13 @@ public class GlobalExceptionHandler {
 
         log.error("Error [{}] for customer [{}]: {} | Exception: {}", code, resolvedCustomerId, message, ex.toString(), ex);
 
+        return newProblemDetail(code, message, status, additionalProps);
+    }
+
+    private ProblemDetail newProblemDetail(String code, String message, HttpStatus status, Map<String, Object> additionalProps) {
+        String customerId = CustomerContextHolder.getCustomerId();
+        String resolvedCustomerId = (customerId != null) ? customerId : "unknown";
+
         ProblemDetail problem = ProblemDetail.forStatusAndDetail(status, message + " for customer ID: " + resolvedCustomerId);
         problem.setTitle(code);
         problem.setProperty("timestamp", Instant.now());
@@ -0,0 +1,7 @@
+package com.example.mstemplateredis.exception;
+
+public class InsufficientBalanceException extends RuntimeException {
+    public InsufficientBalanceException(String message) {
+        super(message);
+    }
+}
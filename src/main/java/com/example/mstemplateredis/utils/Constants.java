@@ -7,9 +7,24 @@ public class Constants {
     public static final String iban = "iban";
 
     public static final String balance = "balance";
+
+    public static final String delta = "delta";
     public static final String cacheAcccountKey = "accounts::";
+    // Kept outside the accounts:: namespace so key scans over cached lists do not pick it up
+    public static final String cacheAccountEtagKey = "accounts-etag::";
+    // Last known list, kept past the fresh TTL for stale-while-revalidate and stale-if-error
+    public static final String cacheAccountStaleKey = "accounts-stale::";
+    // Generation counters; a customer's cache keys carry the global and segment generation current when written
+    public static final String cacheGenerationKey = "accounts-gen::";
+    // Reverse index from IBAN to the single account, for lookups without the customer's full list
+    public static final String cacheAccountIbanKey = "account-iban::";
+    // Account count and total balance per customer, maintained incrementally alongside the cached list
+    public static final String cacheAccountAggregateKey = "accounts-agg::";
+    public static final String rateLimitKey = "ratelimit::";
+    public static final String hotAccountKey = "hot-account::";
 
         public static class SqlConstants{
+            // Column order is read by position in AccountRowMapper
             public static final String retriveAccountsSql = """
              SELECT iban, customerId, balance,\s
                     created_at AS createdAt,\s
@@ -17,13 +32,106 @@ public class Constants {
              FROM account_db\s
              WHERE customerId = :customerId
             \s""";
+            // Primary-key lookup; same column order as retriveAccountsSql
+            public static final String retrieveAccountsByIbanSql = """
+             SELECT iban, customerId, balance,\s
+                    created_at AS createdAt,\s
+                    updated_at AS updatedAt\s
+             FROM account_db\s
+             WHERE iban IN (:iban)
+            \s""";
+            // Same column order as retriveAccountsSql
+            public static final String retrieveAccountsOfCustomersSql = """
+             SELECT iban, customerId, balance,\s
+                    created_at AS createdAt,\s
+                    updated_at AS updatedAt\s
+             FROM account_db\s
+             WHERE customerId IN (:customerId)
+            \s""";
             public static final String insertSql = "INSERT INTO account_db (iban, customerId, balance)\n" +
                     "        VALUES (:iban, :customerId, :balance)";
 
 
             public static final String updateSql = "UPDATE account_db SET balance = :balance WHERE iban = :iban AND customerId = :customerId";
 
+            // The guard keeps the balance non-negative without reading it first; no row updated means the IBAN is
+            // unknown or the debit is too large
+            public static final String adjustBalanceSql = "UPDATE account_db SET balance = balance + :delta\n" +
+                    "        WHERE iban = :iban AND customerId = :customerId AND balance + :delta >= 0";
+
+            public static final String selectBalanceSql = "SELECT balance FROM account_db WHERE iban = :iban AND customerId = :customerId";
+
+            // Last flush sequence applied per hot account, so a flush retried after a crash is applied once
+            public static final String insertHotFlushSql = "INSERT IGNORE INTO account_hot_flush (iban, last_seq) VALUES (:iban, 0)";
+
+            public static final String advanceHotFlushSql = "UPDATE account_hot_flush SET last_seq = :seq WHERE iban = :iban AND last_seq < :seq";
+
+            public static final String applyHotFlushSql = "UPDATE account_db SET balance = balance + :delta WHERE iban = :iban";
+
+            public static final String selectHotAccountStateSql = "SELECT a.balance, COALESCE(f.last_seq, 0) FROM account_db a\n" +
+                    "        LEFT JOIN account_hot_flush f ON f.iban = a.iban WHERE a.iban = :iban";
+
+            // account_balance_summary is kept up to date by triggers on account_db (schema.sql)
+            public static final String selectSummarySql = "SELECT account_count, total_balance FROM account_balance_summary WHERE customerId = :customerId";
+
+            public static final String computeAggregateSql = "SELECT COUNT(*), COALESCE(SUM(balance), 0) FROM account_db WHERE customerId = :customerId";
+
+            public static final String selectCustomersPageSql = "SELECT DISTINCT customerId FROM account_db WHERE customerId > :after\n" +
+                    "        ORDER BY customerId LIMIT :limit";
+
+            public static final String computeAggregatesSql = "SELECT customerId, COUNT(*), SUM(balance) FROM account_db\n" +
+                    "        WHERE customerId IN (:customerId) GROUP BY customerId";
+
+            public static final String selectSummariesSql = "SELECT customerId, account_count, total_balance FROM account_balance_summary\n" +
+                    "        WHERE customerId IN (:customerId)";
+
+            // Under REPEATABLE READ, INSERT ... SELECT reads the account rows with shared locks, so a concurrent change
+            // commits either before the rebuild, and is counted, or after it, and is applied by its trigger on top
+            public static final String rebuildSummariesSql = "INSERT INTO account_balance_summary (customerId, account_count, total_balance)\n" +
+                    "        SELECT * FROM (SELECT customerId, COUNT(*) AS c, SUM(balance) AS t FROM account_db\n" +
+                    "            WHERE customerId IN (:customerId) GROUP BY customerId) AS a\n" +
+                    "        ON DUPLICATE KEY UPDATE account_count = a.c, total_balance = a.t";
+
+            public static final String clearOrphanSummariesSql = "UPDATE account_balance_summary s SET account_count = 0, total_balance = 0\n" +
+                    "        WHERE (s.account_count <> 0 OR s.total_balance <> 0)\n" +
+                    "        AND NOT EXISTS (SELECT 1 FROM account_db a WHERE a.customerId = s.customerId)";
+
+            // Same column order as retriveAccountsSql, for AccountRowMapper; the updated_at bounds are appended when given
+            public static final String exportAccountsSql = "SELECT iban, customerId, balance, created_at, updated_at FROM account_db";
+
+            public static final String exportUpdatedFromSql = "updated_at >= ?";
+
+            public static final String exportUpdatedBeforeSql = "updated_at < ?";
+
+            // :rows expands to one (iban, customerId, balance) tuple per account, for a multi-row insert
+            public static final String insertAccountsSql = "INSERT INTO account_db (iban, customerId, balance) VALUES :rows";
+
+            public static final String startImportSql = "INSERT IGNORE INTO account_import (import_id) VALUES (:importId)";
+
+            public static final String selectImportSql = "SELECT import_id, lines_committed, imported, rejected FROM account_import\n" +
+                    "        WHERE import_id = :importId";
+
+            // Guarded by the expected start line, so two uploads of the same import cannot both commit a chunk
+            public static final String advanceImportSql = "UPDATE account_import SET lines_committed = :toLine,\n" +
+                    "        imported = imported + :imported, rejected = rejected + :rejected\n" +
+                    "        WHERE import_id = :importId AND lines_committed = :fromLine";
+
+            public static final String insertImportErrorSql = "INSERT IGNORE INTO account_import_error (import_id, line_number, message)\n" +
+                    "        VALUES (:importId, :line, :message)";
+
+            public static final String selectImportErrorsSql = "SELECT line_number, message FROM account_import_error\n" +
+                    "        WHERE import_id = :importId ORDER BY line_number LIMIT :limit";
+
             public static final String deleteSql = "DELETE FROM account_db WHERE iban = :iban AND customerId = :customerId";
+
+            public static final String insertOutboxSql = "INSERT INTO account_cache_outbox (customerId, iban, operation, created_at)\n" +
+                    "        VALUES (:customerId, :iban, :operation, :createdAt)";
+
+            // SKIP LOCKED lets several instances relay concurrently without handing out the same rows
+            public static final String selectOutboxBatchSql = "SELECT id, customerId, iban, operation, created_at FROM account_cache_outbox\n" +
+                    "        ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+            public static final String deleteOutboxSql = "DELETE FROM account_cache_outbox WHERE id IN (:ids)";
         }
 
 
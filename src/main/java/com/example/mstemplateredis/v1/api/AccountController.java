@@ -1,18 +1,28 @@
 package com.example.mstemplateredis.v1.api;
 
+import com.example.mstemplateredis.config.BinaryFormatConfig;
 import com.example.mstemplateredis.config.CustomerContextHolder;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.service.AccountAggregateService;
 import com.example.mstemplateredis.v1.service.AccountService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -26,31 +36,177 @@ import java.util.List;
 @RequestMapping("/brd-api/ms-template-redis/v1/accounts")
 @Slf4j
 public class AccountController {
+    // Set on responses served from the stale copy of the account list
+    static final String CACHE_STALE_HEADER = "X-Cache-Stale";
+    static final int MAX_IBANS_PER_LOOKUP = 100;
+
     private final AccountService accountService;
+    private final AccountAggregateService accountAggregateService;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, AccountAggregateService accountAggregateService) {
         this.accountService = accountService;
+        this.accountAggregateService = accountAggregateService;
     }
 
     @Operation(
             summary = "Get accounts by customer ID",
-            description = "Fetches all accounts associated with a specific customer ID. May return a 500 error if an unexpected internal error occurs.",
+            description = "Fetches all accounts associated with a specific customer ID. The response carries a strong ETag; "
+                    + "sending it back in If-None-Match returns 304 while the list is unchanged. "
+                    + "Responses served from the stale copy, while the list is reloaded or the database is unavailable, "
+                    + "carry the X-Cache-Stale header. "
+                    + "May return a 500 error if an unexpected internal error occurs.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Successfully retrieved the accounts",
-                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Account.class))),
+                            content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Account.class)))),
+                    @ApiResponse(responseCode = "304", description = "The accounts have not changed since the given ETag"),
                     @ApiResponse(responseCode = "404", description = "Customer not found",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
                     @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
             }
     )
-    @GetMapping("/{customerId}")
-    public ResponseEntity<List<Account>> getAccountsByCustomerId(
-            @PathVariable("customerId") @NotBlank String customerId) {
+    // Callers without a specific Accept, or with */*, match this mapping and keep getting JSON rather than a binary
+    // format; any other type they cannot accept is answered with 406
+    @GetMapping(value = "/{customerId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getAccountsByCustomerId(
+            @PathVariable("customerId") @NotBlank String customerId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("Received request to fetch accounts for customer ID: {}", customerId);
         CustomerContextHolder.setCustomerId(customerId);
-        List<Account> accounts = accountService.getAccountsByCustomerId(customerId);
-        return ResponseEntity.ok(accounts);
+
+        // Polling clients: answer from the ETag key alone, without reading the list or the database
+        ResponseEntity<byte[]> notModified = notModified(customerId, ifNoneMatch, false);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        // The body is already the serialized account list; it is written to the response as is
+        CachedAccounts accounts = accountService.getAccountsJson(customerId);
+        return ok(accounts, false)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(accounts.json());
+    }
+
+    @Operation(
+            summary = "Get accounts by customer ID in a binary format",
+            description = "Same as the JSON variant, for callers accepting application/cbor or application/x-jackson-smile. "
+                    + "The ETag is weak, since it is derived from the JSON representation.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Successfully retrieved the accounts",
+                            content = @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, array = @ArraySchema(schema = @Schema(implementation = Account.class)))),
+                    @ApiResponse(responseCode = "304", description = "The accounts have not changed since the given ETag")
+            }
+    )
+    @GetMapping(value = "/{customerId}", produces = {MediaType.APPLICATION_CBOR_VALUE, BinaryFormatConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<Account>> getAccountsByCustomerIdBinary(
+            @PathVariable("customerId") @NotBlank String customerId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.debug("Received request to fetch accounts in a binary format for customer ID: {}", customerId);
+        CustomerContextHolder.setCustomerId(customerId);
+
+        ResponseEntity<List<Account>> notModified = notModified(customerId, ifNoneMatch, true);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        CachedAccounts accounts = accountService.getAccountsJson(customerId);
+        return ok(accounts, true).body(accountService.decodeAccounts(accounts));
+    }
+
+    private <T> ResponseEntity<T> notModified(String customerId, String ifNoneMatch, boolean weak) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        String currentEtag = accountService.getAccountsEtag(customerId);
+        if (currentEtag == null || !etagMatches(ifNoneMatch, currentEtag)) {
+            return null;
+        }
+        log.debug("Accounts for customer ID: {} not modified", customerId);
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(weak ? weakEtag(currentEtag) : currentEtag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .build();
+    }
+
+    // The representation depends on Accept, so shared caches must key on it
+    private static ResponseEntity.BodyBuilder ok(CachedAccounts accounts, boolean weak) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT);
+        if (accounts.etag() != null) {
+            response.eTag(weak ? weakEtag(accounts.etag()) : accounts.etag());
+        }
+        if (accounts.stale()) {
+            response.header(CACHE_STALE_HEADER, "true");
+        }
+        return response;
+    }
+
+    // The ETag hashes the JSON bytes; other formats of the same list are equivalent, not byte-identical
+    private static String weakEtag(String etag) {
+        return "W/\"" + etag + "\"";
+    }
+
+    @Operation(
+            summary = "Get the account summary of a customer",
+            description = "Returns the number of accounts of the customer and the sum of their balances, maintained "
+                    + "incrementally, without loading the accounts. A customer without accounts has a count of 0. "
+                    + "May return a 500 error if an unexpected internal error occurs.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Successfully retrieved the summary",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = AccountAggregate.class))),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/{customerId}/summary")
+    public AccountAggregate getAccountSummary(@PathVariable("customerId") @NotBlank String customerId) {
+        log.debug("Received request to fetch account summary for customer ID: {}", customerId);
+        CustomerContextHolder.setCustomerId(customerId);
+        return accountAggregateService.getAggregate(customerId);
+    }
+
+    @Operation(
+            summary = "Get an account by IBAN",
+            description = "Fetches a single account by its IBAN from the IBAN index, without the customer's full list. "
+                    + "May return a 500 error if an unexpected internal error occurs.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Successfully retrieved the account",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Account.class))),
+                    @ApiResponse(responseCode = "404", description = "Account not found",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/by-iban/{iban}")
+    public Account getAccountByIban(@PathVariable("iban") @NotBlank String iban) {
+        log.debug("Received request to fetch account for IBAN: {}", iban);
+        Account account = accountService.getAccountByIban(iban);
+        CustomerContextHolder.setCustomerId(account.getCustomerId());
+        return account;
+    }
+
+    @Operation(
+            summary = "Get accounts by IBAN in bulk",
+            description = "Fetches up to " + MAX_IBANS_PER_LOOKUP + " accounts by IBAN with one index lookup. Accounts are "
+                    + "returned in request order; IBANs without an account are left out. "
+                    + "May return a 500 error if an unexpected internal error occurs.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "The accounts found",
+                            content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Account.class)))),
+                    @ApiResponse(responseCode = "400", description = "No IBAN or too many IBANs",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/by-iban")
+    public List<Account> getAccountsByIban(
+            @RequestParam("iban") @Size(min = 1, max = MAX_IBANS_PER_LOOKUP) List<@NotBlank String> ibans) {
+        log.debug("Received request to fetch {} accounts by IBAN", ibans.size());
+        return accountService.getAccountsByIban(ibans);
     }
 
     @Operation(
@@ -105,6 +261,40 @@ public class AccountController {
         return ResponseEntity.ok("Account updated successfully.");
     }
 
+    @Operation(
+            summary = "Credit or debit an account",
+            description = "Adds the delta to the balance of the account with the given IBAN: positive to credit, negative to debit. "
+                    + "The change is applied atomically, so concurrent adjustments do not need to read the balance first. "
+                    + "Debits that would make the balance negative are rejected with 409.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Balance adjusted; the body carries the new balance",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Account.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "404", description = "Account not found",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "409", description = "Balance too low for the debit",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @PostMapping("/{customerId}/adjust")
+    @Validated
+    public Account adjustBalance(
+            @PathVariable("customerId") @NotBlank String customerId,
+            @RequestParam(value = "iban", required = true) @NotBlank String iban,
+            @RequestParam(value = "delta", required = true) @NotNull
+            @Digits(integer = 17, fraction = 2, message = "Delta must have at most 2 decimals")
+            BigDecimal delta) {
+        log.debug("Received request to adjust balance for customer ID: {}, IBAN: {}", customerId, iban);
+        CustomerContextHolder.setCustomerId(customerId);
+        BigDecimal balance = accountService.adjustBalance(iban, delta, customerId);
+
+        log.info("Account with IBAN: {} adjusted by {} for customer ID: {}", iban, delta, customerId);
+        return Account.builder().iban(iban).customerId(customerId).balance(balance).build();
+    }
+
     @Operation(
             summary = "Delete an account",
             description = "Deletes an account for the given IBAN and customer ID. May return a 500 error if an unexpected internal error occurs.",
@@ -127,4 +317,24 @@ public class AccountController {
         log.info("Account with IBAN: {} deleted successfully for customer ID: {}", iban, customerId);
         return ResponseEntity.ok("Account deleted successfully.");
     }
-}
\ No newline at end of file
+
+    // If-None-Match uses the weak comparison (RFC 9110, 13.1.2), so W/ prefixes are ignored
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.v1.service.AccountExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.util.concurrent.Callable;
+
+@RestController
+@RequestMapping("/brd-api/ms-template-redis/v1/exports")
+@Slf4j
+public class AccountExportController {
+
+    private final AccountExportService accountExportService;
+
+    public AccountExportController(AccountExportService accountExportService) {
+        this.accountExportService = accountExportService;
+    }
+
+    @Operation(
+            summary = "Export all accounts as NDJSON",
+            description = "Streams every account straight from the database, one JSON object per line, optionally only "
+                    + "those with updatedAt in [updatedFrom, updatedBefore). Bypasses the cache. A response that ends "
+                    + "without completing normally is incomplete and must be retried.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "The accounts, one per line",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)),
+                    @ApiResponse(responseCode = "503", description = "Too many exports running; retry after Retry-After seconds",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/accounts")
+    public ResponseEntity<StreamingResponseBody> exportAccounts(
+            @RequestParam(value = "updatedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedFrom,
+            @RequestParam(value = "updatedBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedBefore,
+            HttpServletRequest request) {
+        log.debug("Received request to export accounts updated from {} before {}", updatedFrom, updatedBefore);
+        AccountExportService.Export export = accountExportService.start(updatedFrom, updatedBefore);
+        // Written on an async thread, outside the request deadline, which does not fit an export of every account
+        StreamingResponseBody body = export::writeTo;
+        // Also frees the export slot when the async request ends without the body being written, e.g. on a timeout
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(export, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                export.release();
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.exception.AccountImportException;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import com.example.mstemplateredis.v1.service.AccountImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.validation.constraints.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/brd-api/ms-template-redis/v1/imports")
+@Slf4j
+public class AccountImportController {
+
+    static final String TEXT_CSV = "text/csv";
+    private static final String IMPORT_ID_PATTERN = "[A-Za-z0-9._-]{1,64}";
+
+    private final AccountImportService accountImportService;
+
+    public AccountImportController(AccountImportService accountImportService) {
+        this.accountImportService = accountImportService;
+    }
+
+    @Operation(
+            summary = "Bulk import accounts",
+            description = "Imports the accounts in the request body, sent as text/csv with the header iban,customerId,balance "
+                    + "or as application/x-ndjson with one account per line. Lines are committed in chunks; invalid lines "
+                    + "are rejected and reported without stopping the import. If the upload is interrupted, sending the "
+                    + "same file again under the same import ID resumes after the last committed line.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Progress of the import once the upload is processed",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = AccountImport.class))),
+                    @ApiResponse(responseCode = "400", description = "Unsupported format, invalid CSV header or interrupted upload",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "409", description = "The same import is being uploaded concurrently",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @PostMapping("/accounts/{importId}")
+    @Validated
+    public AccountImport importAccounts(@PathVariable("importId") @Pattern(regexp = IMPORT_ID_PATTERN) String importId,
+                                        @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                        InputStream body) {
+        log.debug("Received account import {} as {}", importId, contentType);
+        return accountImportService.importAccounts(importId, formatOf(contentType), body);
+    }
+
+    @Operation(
+            summary = "Get the progress of a bulk import",
+            description = "Returns the lines committed so far, the accounts imported and rejected, and the first rejected lines.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Progress of the import",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = AccountImport.class))),
+                    @ApiResponse(responseCode = "404", description = "No import with this ID",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/accounts/{importId}")
+    @Validated
+    public AccountImport getImport(@PathVariable("importId") @Pattern(regexp = IMPORT_ID_PATTERN) String importId) {
+        return accountImportService.getImport(importId);
+    }
+
+    private static AccountImportService.Format formatOf(MediaType contentType) {
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+            return AccountImportService.Format.NDJSON;
+        }
+        if (MediaType.parseMediaType(TEXT_CSV).isCompatibleWith(contentType)) {
+            return AccountImportService.Format.CSV;
+        }
+        throw new AccountImportException("Unsupported import format: " + contentType);
+    }
+}
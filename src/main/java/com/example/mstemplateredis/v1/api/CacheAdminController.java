@@ -0,0 +1,111 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.v1.model.CacheEviction;
+import com.example.mstemplateredis.v1.model.CacheGeneration;
+import com.example.mstemplateredis.v1.model.CacheKeyPage;
+import com.example.mstemplateredis.v1.service.CacheAdminService;
+import com.example.mstemplateredis.v1.service.CacheGenerations;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/brd-api/ms-template-redis/v1/admin/cache")
+@Slf4j
+public class CacheAdminController {
+
+    private final CacheGenerations cacheGenerations;
+    private final CacheAdminService cacheAdminService;
+
+    public CacheAdminController(CacheGenerations cacheGenerations, CacheAdminService cacheAdminService) {
+        this.cacheGenerations = cacheGenerations;
+        this.cacheAdminService = cacheAdminService;
+    }
+
+    @Operation(
+            summary = "List cached account lists",
+            description = "Returns one SCAN page of accounts:: keys with their TTL and memory usage. The match is a glob "
+                    + "applied after the namespace, e.g. *::cust1 for one customer in every generation. Pass the returned "
+                    + "cursor to get the next page; the listing is complete when it is 0. Pages may be empty before that.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "One page of keys",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CacheKeyPage.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid cursor or count",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @GetMapping("/keys")
+    @Validated
+    public CacheKeyPage listKeys(
+            @RequestParam(value = "match", defaultValue = "*") @NotBlank String match,
+            @RequestParam(value = "cursor", defaultValue = "0") @NotBlank String cursor,
+            @RequestParam(value = "count", defaultValue = "100") @Min(1) @Max(1000) int count) {
+        log.debug("Received request to list cache keys matching: {}, cursor: {}", match, cursor);
+        return cacheAdminService.listKeys(match, cursor, count);
+    }
+
+    @Operation(
+            summary = "Evict the cached account list of a customer",
+            description = "Removes the cached list, its ETag and its stale copy; the next read reloads them from the database.",
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Evicted, or nothing was cached"),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @DeleteMapping("/customers/{customerId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evictCustomer(@PathVariable("customerId") @NotBlank String customerId) {
+        log.info("Received request to evict cached accounts of customer ID: {}", customerId);
+        cacheAdminService.evictCustomer(customerId);
+    }
+
+    @Operation(
+            summary = "Evict cached account lists by pattern",
+            description = "Unlinks the accounts:: keys matching the glob, with their ETag and stale copies, in throttled "
+                    + "batches. A call stops after a bounded number of keys; call again with the returned cursor until it is 0.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch evicted; the body carries the cursor to continue with",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CacheEviction.class))),
+                    @ApiResponse(responseCode = "400", description = "Missing pattern",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @DeleteMapping("/keys")
+    @Validated
+    public CacheEviction evictMatching(
+            @RequestParam(value = "match") @NotBlank String match,
+            @RequestParam(value = "cursor", defaultValue = "0") @NotBlank String cursor) {
+        log.info("Received request to evict cache keys matching: {}, cursor: {}", match, cursor);
+        return cacheAdminService.evictMatching(match, cursor);
+    }
+
+    @Operation(
+            summary = "Invalidate cached account lists",
+            description = "Bumps the cache generation, which makes every cached account list unreachable at once; with "
+                    + "a segment, only the lists of the customers in that hash segment. Other instances follow within the "
+                    + "generation refresh interval. Old entries expire with their TTL and are removed in the background.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Generation bumped; the body carries the new generation",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CacheGeneration.class))),
+                    @ApiResponse(responseCode = "400", description = "Unknown segment",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))),
+                    @ApiResponse(responseCode = "500", description = "An unexpected error occurred",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class)))
+            }
+    )
+    @PostMapping("/generation")
+    public CacheGeneration bumpGeneration(@RequestParam(value = "segment", required = false) Integer segment) {
+        log.info("Received request to bump cache generation, segment: {}", segment != null ? segment : "all");
+        return segment != null ? cacheGenerations.bumpSegment(segment) : cacheGenerations.bump();
+    }
+}
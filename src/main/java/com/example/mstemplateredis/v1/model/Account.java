@@ -1,30 +1,247 @@
 package com.example.mstemplateredis.v1.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.validation.constraints.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.chrono.IsoChronology;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 
-@Data
-@ToString
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
+/**
+ * Account as exposed by the API and stored in the cache.
+ * <p>
+ * The JSON contract is unchanged ({@code balance} as a number, {@code createdAt}/{@code updatedAt} as ISO-8601
+ * strings), but internally the balance is kept as an unscaled long plus scale and the timestamps as epoch
+ * millis. Strings and BigDecimals are only materialized when a getter is called, so building an Account from
+ * a JDBC row or a cached JSON document no longer formats two throw-away timestamps per instance.
+ * Timestamps that are not valid instants are rejected with {@link IllegalArgumentException} rather than dropped.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@EqualsAndHashCode
+@JsonPropertyOrder({"iban", "customerId", "balance", "createdAt", "updatedAt"})
 public class Account {
+
+    /** Marker for an absent timestamp in the epoch-millis representation. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int NO_BALANCE = Integer.MIN_VALUE;
+    // Timestamp.toString() form; unlike Timestamp.valueOf, strict resolution rejects dates such as February 31
+    private static final DateTimeFormatter JDBC_TIMESTAMP = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .appendLiteral(' ')
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .toFormatter()
+            .withChronology(IsoChronology.INSTANCE)
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private String iban;       // IBAN of the account
+
+    private String customerId; // ID of the customer
+
+    private long balanceUnscaled;              // Account balance = balanceUnscaled * 10^-balanceScale
+    private int balanceScale = NO_BALANCE;
+    private BigDecimal balanceOverflow;        // Only set when the unscaled value does not fit in a long
+
+    private long createdAtMillis;  // Timestamp for record creation
+    private long updatedAtMillis;
+
+    public Account() {
+        long now = System.currentTimeMillis();
+        this.createdAtMillis = now;
+        this.updatedAtMillis = now;
+    }
+
+    @Builder
+    public Account(String iban, String customerId, BigDecimal balance, String createdAt, String updatedAt) {
+        this.iban = iban;
+        this.customerId = customerId;
+        setBalance(balance);
+        this.createdAtMillis = parseTimestamp(createdAt);
+        this.updatedAtMillis = parseTimestamp(updatedAt);
+    }
+
+    /**
+     * Factory for the row mapper: keeps the database balance exactly and takes timestamps as epoch millis.
+     */
+    public static Account of(String iban, String customerId, BigDecimal balance,
+                             long createdAtMillis, long updatedAtMillis) {
+        Account account = new Account(iban, customerId, balance, null, null);
+        account.createdAtMillis = createdAtMillis;
+        account.updatedAtMillis = updatedAtMillis;
+        return account;
+    }
+
+    @ToString.Include(name = "iban")
     @NotBlank(message = "IBAN is required")
     @Pattern(regexp = "[A-Z]{2}[0-9]{2}[A-Z0-9]{1,30}", message = "Invalid IBAN format")
-    private String iban;       // IBAN of the account
+    public String getIban() {
+        return iban;
+    }
+
+    public void setIban(String iban) {
+        this.iban = iban;
+    }
 
+    @ToString.Include(name = "customerId")
     @NotNull(message = "Customer ID is required")
     @NotBlank(message = "Customer must not be blank")
-    private String customerId; // ID of the customer
+    @Size(max = 64, message = "Customer ID must be at most 64 characters")
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
 
+    @ToString.Include(name = "balance")
     @NotNull(message = "Balance is required")
     @DecimalMin(value = "0.0", message = "Balance cannot be negative")
-    private BigDecimal balance;     // Account balance
+    @Digits(integer = 17, fraction = 2, message = "Balance must have at most 2 decimals")
+    public BigDecimal getBalance() {
+        if (balanceOverflow != null) {
+            return balanceOverflow;
+        }
+        return balanceScale == NO_BALANCE ? null : BigDecimal.valueOf(balanceUnscaled, balanceScale);
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balanceOverflow = null;
+        if (balance == null) {
+            this.balanceUnscaled = 0;
+            this.balanceScale = NO_BALANCE;
+            return;
+        }
+        if (balance.precision() < 19) {
+            // Shifting the decimal point keeps the compact representation, unlike unscaledValue()
+            this.balanceUnscaled = balance.scaleByPowerOfTen(balance.scale()).longValueExact();
+            this.balanceScale = balance.scale();
+        } else {
+            this.balanceUnscaled = 0;
+            this.balanceScale = NO_BALANCE;
+            this.balanceOverflow = balance;
+        }
+    }
+
+    @ToString.Include(name = "createdAt")
+    public String getCreatedAt() {
+        return formatTimestamp(createdAtMillis);
+    }
+
+    public void setCreatedAt(String createdAt) {
+        this.createdAtMillis = parseTimestamp(createdAt);
+    }
+
+    @ToString.Include(name = "updatedAt")
+    public String getUpdatedAt() {
+        return formatTimestamp(updatedAtMillis);
+    }
+
+    public void setUpdatedAt(String updatedAt) {
+        this.updatedAtMillis = parseTimestamp(updatedAt);
+    }
+
+    // Accessors for the internal representation; not bean properties, so they stay out of the JSON contract.
+
+    public long createdAtEpochMillis() {
+        return createdAtMillis;
+    }
+
+    public long updatedAtEpochMillis() {
+        return updatedAtMillis;
+    }
+
+    private static String formatTimestamp(long millis) {
+        return millis == NO_TIMESTAMP ? null : Instant.ofEpochMilli(millis).toString();
+    }
+
+    // Accepts ISO-8601 instants (API and cache) as well as JDBC timestamp strings (database rows)
+    private static long parseTimestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return NO_TIMESTAMP;
+        }
+        long millis = parseUtcInstant(value);
+        if (millis != NO_TIMESTAMP) {
+            return millis;
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return Timestamp.valueOf(LocalDateTime.parse(value, JDBC_TIMESTAMP)).getTime();
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("Invalid timestamp: " + value);
+            }
+        }
+    }
+
+    /**
+     * Allocation-free parser for the canonical form written by {@link Instant#toString()}
+     * ({@code yyyy-MM-ddTHH:mm:ss[.fraction]Z}). Returns {@link #NO_TIMESTAMP} for anything else, including
+     * impossible dates such as February 31, so that the caller's strict parsers decide.
+     */
+    private static long parseUtcInstant(String s) {
+        int length = s.length();
+        if (length < 20 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':' || s.charAt(length - 1) != 'Z') {
+            return NO_TIMESTAMP;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NO_TIMESTAMP;
+        }
+        int millis = 0;
+        if (length > 20) {
+            if (s.charAt(19) != '.' || length > 30) {
+                return NO_TIMESTAMP;
+            }
+            int fraction = 0;
+            for (int i = 20, weight = 100; i < length - 1; i++, weight /= 10) {
+                int digit = s.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return NO_TIMESTAMP;
+                }
+                fraction += digit * weight;
+            }
+            millis = fraction;
+        }
+        long epochDay = epochDay(year, month, day);
+        return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1_000L + millis;
+    }
 
-    private String createdAt = Instant.now().toString();   // Timestamp for record creation
+    private static int digits(String s, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
 
-    private String updatedAt = Instant.now().toString();
+    // Days since 1970-01-01 in the proleptic Gregorian calendar (H. Hinnant's days_from_civil)
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
 }
@@ -0,0 +1,13 @@
+package com.example.mstemplateredis.v1.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Number of accounts of a customer and the sum of their balances.
+ */
+public record AccountAggregate(
+        String customerId,
+        long accountCount,
+        BigDecimal totalBalance
+) {
+}
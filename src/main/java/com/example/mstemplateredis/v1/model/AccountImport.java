@@ -0,0 +1,23 @@
+package com.example.mstemplateredis.v1.model;
+
+import java.util.List;
+
+/**
+ * Progress of a bulk import. An upload interrupted midway is resumed by sending the same file again under the
+ * same ID: the first {@code linesCommitted} data lines are skipped.
+ *
+ * @param linesCommitted data lines processed and committed so far, imported or rejected
+ * @param errors         the first rejected lines, in line order
+ */
+public record AccountImport(
+        String importId,
+        long linesCommitted,
+        long imported,
+        long rejected,
+        List<LineError> errors
+) {
+    /**
+     * @param line data line number, starting at 1 after the CSV header
+     */
+    public record LineError(long line, String message) {}
+}
@@ -0,0 +1,13 @@
+package com.example.mstemplateredis.v1.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Absolute balance change for one account, as applied by a batched update.
+ */
+public record BalanceUpdate(
+        String iban,
+        BigDecimal balance,
+        String customerId
+) {
+}
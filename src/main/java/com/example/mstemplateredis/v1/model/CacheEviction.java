@@ -0,0 +1,10 @@
+package com.example.mstemplateredis.v1.model;
+
+/**
+ * Progress of a pattern eviction. {@code cursor} continues it; {@code "0"} means every matching key was visited.
+ */
+public record CacheEviction(
+        String cursor,
+        long unlinked
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.mstemplateredis.v1.model;
+
+/**
+ * Generation of the account cache after a bump; {@code segment} is {@code null} for the global generation.
+ */
+public record CacheGeneration(
+        Integer segment,
+        long generation
+) {
+}
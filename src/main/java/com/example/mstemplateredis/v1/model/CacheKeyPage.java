@@ -0,0 +1,17 @@
+package com.example.mstemplateredis.v1.model;
+
+import java.util.List;
+
+/**
+ * One SCAN page of cached keys. {@code cursor} continues the listing; {@code "0"} means it is complete.
+ */
+public record CacheKeyPage(
+        String cursor,
+        List<KeyInfo> keys
+) {
+    /**
+     * @param ttlMillis   remaining TTL, {@code -1} for keys without expiry
+     * @param memoryBytes memory used by the key and its value, as reported by MEMORY USAGE
+     */
+    public record KeyInfo(String key, long ttlMillis, Long memoryBytes) {}
+}
@@ -0,0 +1,14 @@
+package com.example.mstemplateredis.v1.model;
+
+/**
+ * Pending cache change for a customer's account list, recorded in the same transaction as the account mutation.
+ */
+public record CacheOutboxEntry(
+        long id,
+        String customerId,
+        String iban,
+        Operation operation,
+        long createdAtMillis
+) {
+    public enum Operation { CREATE, UPDATE, DELETE }
+}
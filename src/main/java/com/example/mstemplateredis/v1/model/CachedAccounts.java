@@ -0,0 +1,17 @@
+package com.example.mstemplateredis.v1.model;
+
+/**
+ * A customer's account list as the serialized JSON response body, together with the strong ETag of its cached copy.
+ * The ETag is {@code null} when the body is not in the cache (for example when it was too large to cache).
+ * {@code stale} marks a body served from the stale copy after the fresh entry expired.
+ */
+public record CachedAccounts(
+        byte[] json,
+        String etag,
+        boolean stale
+) {
+
+    public CachedAccounts(byte[] json, String etag) {
+        this(json, etag, false);
+    }
+}
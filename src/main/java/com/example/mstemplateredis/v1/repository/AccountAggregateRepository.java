@@ -0,0 +1,142 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
+
+/**
+ * Per-customer account count and total balance, read from {@code account_balance_summary}, which triggers on
+ * {@code account_db} keep up to date, and checked against {@code account_db} itself.
+ */
+@Repository
+@Slf4j
+public class AccountAggregateRepository {
+
+    private final JdbcClient jdbcClient;
+
+    public AccountAggregateRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Returns the aggregate of the customer from its summary row, a primary key read. A customer without one,
+     * e.g. with accounts created before the summary table, is aggregated from {@code account_db} instead.
+     */
+    public AccountAggregate findAggregate(String customerId) {
+        try {
+            return jdbcClient.sql(selectSummarySql)
+                    .param(Constants.customerId, customerId)
+                    .query((rs, rowNum) -> new AccountAggregate(customerId, rs.getLong(1), rs.getBigDecimal(2)))
+                    .optional()
+                    .orElseGet(() -> jdbcClient.sql(computeAggregateSql)
+                            .param(Constants.customerId, customerId)
+                            .query((rs, rowNum) -> new AccountAggregate(customerId, rs.getLong(1), rs.getBigDecimal(2)))
+                            .single());
+        } catch (DataAccessException ex) {
+            log.error("Aggregate read error for customer: {}", customerId, ex);
+            throw new AccountRetrievalException("Failed to read account aggregate for customer: " + customerId, ex);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} customers with accounts, in order, after {@code after} ({@code ""} for the first page).
+     */
+    public List<String> customersAfter(String after, int limit) {
+        try {
+            return jdbcClient.sql(selectCustomersPageSql)
+                    .param("after", after)
+                    .param("limit", limit)
+                    .query(String.class)
+                    .list();
+        } catch (DataAccessException ex) {
+            log.error("Customer page read error after: {}", after, ex);
+            throw new AccountRetrievalException("Failed to read customers after: " + after, ex);
+        }
+    }
+
+    /**
+     * Returns the customers whose summary row is missing or differs from their accounts.
+     */
+    public List<String> findDrifted(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return List.of();
+        }
+        try {
+            Map<String, AccountAggregate> summaries = new HashMap<>();
+            jdbcClient.sql(selectSummariesSql)
+                    .param(Constants.customerId, customerIds)
+                    .query(AccountAggregateRepository::mapAggregate)
+                    .list()
+                    .forEach(summary -> summaries.put(summary.customerId(), summary));
+
+            List<String> drifted = new ArrayList<>();
+            for (AccountAggregate actual : jdbcClient.sql(computeAggregatesSql)
+                    .param(Constants.customerId, customerIds)
+                    .query(AccountAggregateRepository::mapAggregate)
+                    .list()) {
+                AccountAggregate summary = summaries.get(actual.customerId());
+                // compareTo, as the summary and the sum may differ in scale
+                if (summary == null || summary.accountCount() != actual.accountCount()
+                        || summary.totalBalance().compareTo(actual.totalBalance()) != 0) {
+                    drifted.add(actual.customerId());
+                }
+            }
+            return drifted;
+        } catch (DataAccessException ex) {
+            log.error("Aggregate drift check error for {} customers", customerIds.size(), ex);
+            throw new AccountRetrievalException("Failed to check account aggregates", ex);
+        }
+    }
+
+    /**
+     * Recomputes the summary rows of the customers from their accounts.
+     */
+    public void rebuildSummaries(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcClient.sql(rebuildSummariesSql)
+                    .param(Constants.customerId, customerIds)
+                    .update();
+        } catch (DataAccessException ex) {
+            log.error("Aggregate rebuild error for {} customers", customerIds.size(), ex);
+            throw new AccountUpdateException("Failed to rebuild account aggregates", ex);
+        }
+    }
+
+    /**
+     * Zeroes the summary rows of customers that no longer have any account.
+     *
+     * @return the number of rows corrected
+     */
+    public int clearOrphanSummaries() {
+        try {
+            return jdbcClient.sql(clearOrphanSummariesSql).update();
+        } catch (DataAccessException ex) {
+            log.error("Orphan aggregate cleanup error", ex);
+            throw new AccountUpdateException("Failed to clear orphan account aggregates", ex);
+        }
+    }
+
+    private static AccountAggregate mapAggregate(ResultSet rs, int rowNum) throws SQLException {
+        BigDecimal total = rs.getBigDecimal(3);
+        return new AccountAggregate(rs.getString(1), rs.getLong(2), total != null ? total : BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
+
+/**
+ * Reads {@code account_db} in full for exports, one row at a time.
+ * <p>
+ * The query runs on a forward-only, read-only cursor with a fetch size of {@code fetch-size} rows. With
+ * {@code useCursorFetch=true} on the connection, MySQL Connector/J then fetches the result in batches of that size
+ * instead of buffering it entirely in the heap, so memory stays constant however many accounts there are.
+ */
+@Repository
+@Slf4j
+public class AccountExportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.export.fetch-size:1000}")
+    int fetchSize = 1000;
+
+    public AccountExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Passes every account updated in {@code [updatedFrom, updatedBefore)} to the consumer, in no particular order.
+     * Either bound may be {@code null}. The consumer runs while the cursor is open, so a slow consumer holds the
+     * connection rather than letting rows pile up in memory.
+     *
+     * @return the number of accounts read
+     */
+    public long streamAccounts(Instant updatedFrom, Instant updatedBefore, Consumer<Account> consumer) {
+        List<String> conditions = new ArrayList<>(2);
+        List<Timestamp> bounds = new ArrayList<>(2);
+        if (updatedFrom != null) {
+            conditions.add(exportUpdatedFromSql);
+            bounds.add(Timestamp.from(updatedFrom));
+        }
+        if (updatedBefore != null) {
+            conditions.add(exportUpdatedBeforeSql);
+            bounds.add(Timestamp.from(updatedBefore));
+        }
+        String sql = conditions.isEmpty() ? exportAccountsSql
+                : exportAccountsSql + " WHERE " + String.join(" AND ", conditions);
+
+        long[] rows = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < bounds.size(); i++) {
+                    statement.setTimestamp(i + 1, bounds.get(i));
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> consumer.accept(AccountRowMapper.INSTANCE.mapRow(rs, (int) rows[0]++)));
+            return rows[0];
+        } catch (DataAccessException ex) {
+            log.error("Account export failed after {} rows", rows[0], ex);
+            throw new AccountRetrievalException("Account export failed after " + rows[0] + " rows", ex);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountCreationException;
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
+
+/**
+ * Bulk inserts of accounts and the progress of the imports that make them.
+ */
+@Repository
+@Slf4j
+public class AccountImportRepository {
+
+    private static final String IMPORT_ID = "importId";
+
+    private final JdbcClient jdbcClient;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Rows per INSERT statement; a chunk of lines is inserted with as few statements as this allows
+    @Value("${app.import.rows-per-insert:500}")
+    int rowsPerInsert = 500;
+
+    public AccountImportRepository(JdbcClient jdbcClient, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcClient = jdbcClient;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Creates the import on its first upload and returns its progress, without errors.
+     */
+    public AccountImport start(String importId) {
+        try {
+            jdbcClient.sql(startImportSql).param(IMPORT_ID, importId).update();
+            return find(importId);
+        } catch (DataAccessException ex) {
+            log.error("Import start error for import: {}", importId, ex);
+            throw new AccountRetrievalException("Failed to start import: " + importId, ex);
+        }
+    }
+
+    /**
+     * Returns the progress of the import with its first {@code maxErrors} rejected lines, or {@code null} if there is
+     * no such import.
+     */
+    public AccountImport findWithErrors(String importId, int maxErrors) {
+        try {
+            AccountImport progress = find(importId);
+            if (progress == null) {
+                return null;
+            }
+            List<AccountImport.LineError> errors = jdbcClient.sql(selectImportErrorsSql)
+                    .param(IMPORT_ID, importId)
+                    .param("limit", maxErrors)
+                    .query((rs, rowNum) -> new AccountImport.LineError(rs.getLong(1), rs.getString(2)))
+                    .list();
+            return new AccountImport(importId, progress.linesCommitted(), progress.imported(), progress.rejected(), errors);
+        } catch (DataAccessException ex) {
+            log.error("Import read error for import: {}", importId, ex);
+            throw new AccountRetrievalException("Failed to read import: " + importId, ex);
+        }
+    }
+
+    private AccountImport find(String importId) {
+        return jdbcClient.sql(selectImportSql)
+                .param(IMPORT_ID, importId)
+                .query((rs, rowNum) -> new AccountImport(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), List.of()))
+                .optional()
+                .orElse(null);
+    }
+
+    /**
+     * Inserts the accounts with multi-row INSERTs of up to {@code rows-per-insert} rows. Rows go in (customerId, iban)
+     * order, the same lock order as the update batches, for the customer summary rows the account_db triggers lock.
+     * <p>
+     * A statement that hits an existing IBAN inserts none of its rows, and the accounts after it are not attempted;
+     * the count returned is then below the number of accounts. Any other error, such as a value the column rejects,
+     * fails the whole call.
+     *
+     * @return the number of accounts inserted
+     */
+    public int insertAccounts(List<Account> accounts) {
+        accounts = accounts.stream()
+                .sorted(Comparator.comparing(Account::getCustomerId).thenComparing(Account::getIban))
+                .toList();
+        int inserted = 0;
+        try {
+            for (int from = 0; from < accounts.size(); from += rowsPerInsert) {
+                List<Object[]> rows = new ArrayList<>(Math.min(rowsPerInsert, accounts.size() - from));
+                for (Account account : accounts.subList(from, Math.min(from + rowsPerInsert, accounts.size()))) {
+                    rows.add(new Object[]{account.getIban(), account.getCustomerId(), account.getBalance()});
+                }
+                inserted += jdbcClient.sql(insertAccountsSql).param("rows", rows).update();
+            }
+            return inserted;
+        } catch (DuplicateKeyException ex) {
+            log.debug("Bulk insert stopped at an existing IBAN after {} of {} accounts", inserted, accounts.size());
+            return inserted;
+        } catch (DataAccessException ex) {
+            log.error("Bulk insert error for {} accounts", accounts.size(), ex);
+            throw new AccountCreationException("Database bulk insert failed for " + accounts.size() + " accounts", ex);
+        }
+    }
+
+    public void recordErrors(String importId, List<AccountImport.LineError> errors) {
+        if (errors.isEmpty()) {
+            return;
+        }
+        try {
+            MapSqlParameterSource[] batch = errors.stream()
+                    .map(error -> new MapSqlParameterSource()
+                            .addValue(IMPORT_ID, importId)
+                            .addValue("line", error.line())
+                            .addValue("message", error.message()))
+                    .toArray(MapSqlParameterSource[]::new);
+            namedParameterJdbcTemplate.batchUpdate(insertImportErrorSql, batch);
+        } catch (DataAccessException ex) {
+            log.error("Import error recording failed for import: {}", importId, ex);
+            throw new AccountCreationException("Failed to record errors of import: " + importId, ex);
+        }
+    }
+
+    /**
+     * Moves the import from {@code fromLine} to {@code toLine} committed lines.
+     *
+     * @return {@code false} if the import is no longer at {@code fromLine}, i.e. another upload advanced it
+     */
+    public boolean advance(String importId, long fromLine, long toLine, long imported, long rejected) {
+        try {
+            return jdbcClient.sql(advanceImportSql)
+                    .param(IMPORT_ID, importId)
+                    .param("fromLine", fromLine)
+                    .param("toLine", toLine)
+                    .param("imported", imported)
+                    .param("rejected", rejected)
+                    .update() == 1;
+        } catch (DataAccessException ex) {
+            log.error("Import progress error for import: {}", importId, ex);
+            throw new AccountCreationException("Failed to record progress of import: " + importId, ex);
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.example.mstemplateredis.v1.repository;
 
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
 import com.example.mstemplateredis.exception.*;
 import com.example.mstemplateredis.utils.Constants;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.BalanceUpdate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
@@ -18,28 +25,70 @@ import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
 public class AccountRepository {
 
     private final JdbcClient jdbcClient;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-    public AccountRepository(JdbcClient jdbcClient) {
+    public AccountRepository(JdbcClient jdbcClient, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
         this.jdbcClient = jdbcClient;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
     }
 
     public List<Account> getAccounts(String customerId) {
         log.debug("************* AccountRepository.getAccounts for customer ID: {}", customerId);
+        RequestDeadlineHolder.checkNotExpired("getAccounts");
         try {
             List<Account> accounts = jdbcClient.sql(retriveAccountsSql)
                     .param(Constants.customerId, customerId)
-                    .query(Account.class)
+                    .query(AccountRowMapper.INSTANCE)
                     .list();
             log.info("Successfully retrieved {} accounts for customer ID: {}", accounts.size(), customerId);
             return accounts;
         } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
             log.error("Database error retrieving accounts for customer ID {}", customerId, ex);
             throw new AccountRetrievalException("Failed to retrieve accounts", ex);
         }
     }
 
+    /**
+     * Loads the accounts with the given IBANs by primary key. IBANs without an account are left out.
+     */
+    public List<Account> getAccountsByIban(Collection<String> ibans) {
+        log.debug("************* AccountRepository.getAccountsByIban for {} IBANs", ibans.size());
+        RequestDeadlineHolder.checkNotExpired("getAccountsByIban");
+        try {
+            List<Account> accounts = jdbcClient.sql(retrieveAccountsByIbanSql)
+                    .param(Constants.iban, ibans)
+                    .query(AccountRowMapper.INSTANCE)
+                    .list();
+            log.info("Successfully retrieved {} of {} accounts by IBAN", accounts.size(), ibans.size());
+            return accounts;
+        } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
+            log.error("Database error retrieving {} accounts by IBAN", ibans.size(), ex);
+            throw new AccountRetrievalException("Failed to retrieve accounts by IBAN", ex);
+        }
+    }
+
+    /**
+     * Returns the accounts of all the given customers with one query, in no particular order.
+     */
+    public List<Account> getAccountsOfCustomers(Collection<String> customerIds) {
+        log.debug("************* AccountRepository.getAccountsOfCustomers for {} customers", customerIds.size());
+        try {
+            return jdbcClient.sql(retrieveAccountsOfCustomersSql)
+                    .param(Constants.customerId, customerIds)
+                    .query(AccountRowMapper.INSTANCE)
+                    .list();
+        } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
+            log.error("Database error retrieving accounts of {} customers", customerIds.size(), ex);
+            throw new AccountRetrievalException("Failed to retrieve accounts of " + customerIds.size() + " customers", ex);
+        }
+    }
+
     public void insertAccount(Account account, String customerId) {
         log.debug("************* AccountRepository.insertAccount for customer ID: {}", customerId);
+        RequestDeadlineHolder.checkNotExpired("insertAccount");
         try {
             int rows = jdbcClient.sql(insertSql)
                     .param(Constants.iban, account.getIban())
@@ -51,6 +100,7 @@ public class AccountRepository {
 
             log.info("Account inserted successfully for IBAN: {}", account.getIban());
         } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
             log.error("Insert error for IBAN: {}", account.getIban(), ex);
             throw new AccountCreationException("Database insert failed for IBAN: " + account.getIban(), ex);
         }
@@ -58,6 +108,7 @@ public class AccountRepository {
 
     public void updateAccount(String iban, BigDecimal balance, String customerId) {
         log.debug("************* AccountRepository.updateAccount for customer ID: {}, IBAN: {}", customerId, iban);
+        RequestDeadlineHolder.checkNotExpired("updateAccount");
 
         try {
             int rows = jdbcClient.sql(updateSql)
@@ -70,13 +121,79 @@ public class AccountRepository {
 
             log.info("Account updated successfully for IBAN: {}", iban);
         } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
             log.error("Update error for IBAN: {}", iban, ex);
             throw new AccountUpdateException("Database update failed for IBAN: " + iban, ex);
         }
     }
 
+    /**
+     * Sends all updates as one JDBC batch. Must run inside a transaction, so the batch commits once.
+     *
+     * @return the rows affected by each update, in order; {@code 0} means the account was not found, and
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} that the driver did not report a count
+     */
+    public int[] updateAccounts(List<BalanceUpdate> updates) {
+        log.debug("************* AccountRepository.updateAccounts for {} accounts", updates.size());
+        SqlParameterSource[] batch = updates.stream()
+                .map(update -> new MapSqlParameterSource()
+                        .addValue(Constants.iban, update.iban())
+                        .addValue(Constants.customerId, update.customerId())
+                        .addValue(Constants.balance, update.balance()))
+                .toArray(SqlParameterSource[]::new);
+
+        try {
+            int[] rows = namedParameterJdbcTemplate.batchUpdate(updateSql, batch);
+            log.info("Batch of {} account updates executed", updates.size());
+            return rows;
+        } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
+            log.error("Batch update error for {} accounts", updates.size(), ex);
+            throw new AccountUpdateException("Database batch update failed for " + updates.size() + " accounts", ex);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the balance in one guarded UPDATE and returns the new balance. The balance is read back
+     * under the row lock the update took, so within the caller's transaction it is exactly the value written.
+     *
+     * @throws AccountNotFoundException     if the customer has no account with this IBAN
+     * @throws InsufficientBalanceException if the debit would make the balance negative
+     */
+    public BigDecimal adjustBalance(String iban, BigDecimal delta, String customerId) {
+        log.debug("************* AccountRepository.adjustBalance for customer ID: {}, IBAN: {}", customerId, iban);
+        RequestDeadlineHolder.checkNotExpired("adjustBalance");
+
+        try {
+            int rows = jdbcClient.sql(adjustBalanceSql)
+                    .param(Constants.iban, iban)
+                    .param(Constants.customerId, customerId)
+                    .param(Constants.delta, delta)
+                    .update();
+
+            List<BigDecimal> balance = jdbcClient.sql(selectBalanceSql)
+                    .param(Constants.iban, iban)
+                    .param(Constants.customerId, customerId)
+                    .query(BigDecimal.class)
+                    .list();
+
+            validateRowsAffected(balance.size(), "adjust", iban);
+            if (rows < 1) {
+                throw new InsufficientBalanceException("Balance of IBAN " + iban + " cannot cover a debit of " + delta.negate());
+            }
+
+            log.info("Account balance adjusted by {} for IBAN: {}", delta, iban);
+            return balance.get(0);
+        } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
+            log.error("Adjust error for IBAN: {}", iban, ex);
+            throw new AccountUpdateException("Database balance adjustment failed for IBAN: " + iban, ex);
+        }
+    }
+
     public void deleteAccount(String iban, String customerId) {
         log.debug("************* AccountRepository.deleteAccount for customer ID: {}, IBAN: {}", customerId, iban);
+        RequestDeadlineHolder.checkNotExpired("deleteAccount");
 
         try {
             int rows = jdbcClient.sql(deleteSql)
@@ -88,12 +205,20 @@ public class AccountRepository {
 
             log.info("Account deleted successfully for IBAN: {}", iban);
         } catch (DataAccessException ex) {
+            rethrowIfDeadlineExceeded(ex);
             log.error("Delete error for IBAN: {}", iban, ex);
             throw new AccountDeletionException("Database deletion failed for IBAN: " + iban, ex);
         }
     }
 
 
+    // A query timeout under a request deadline means the deadline ran out, not that the data is missing
+    private void rethrowIfDeadlineExceeded(DataAccessException ex) {
+        if (ex instanceof QueryTimeoutException && RequestDeadlineHolder.hasDeadline()) {
+            throw new DeadlineExceededException("Request deadline passed during database call", ex);
+        }
+    }
+
     private void validateRowsAffected(int rows, String operation, String iban) {
         if (rows < 1) {
             String message = String.format("Failed to %s account for IBAN: %s", operation, iban);
@@ -0,0 +1,42 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.v1.model.Account;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Maps rows of {@link com.example.mstemplateredis.utils.Constants.SqlConstants#retriveAccountsSql} to {@link Account}
+ * by column position. Unlike {@code query(Account.class)} there is no result-set metadata inspection, no
+ * per-row property lookup and no reflective setter invocation. The column order must match the SELECT list.
+ */
+public final class AccountRowMapper implements RowMapper<Account> {
+
+    public static final AccountRowMapper INSTANCE = new AccountRowMapper();
+
+    static final int IBAN = 1;
+    static final int CUSTOMER_ID = 2;
+    static final int BALANCE = 3;
+    static final int CREATED_AT = 4;
+    static final int UPDATED_AT = 5;
+
+    private AccountRowMapper() {
+    }
+
+    @Override
+    public Account mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return Account.of(
+                rs.getString(IBAN),
+                rs.getString(CUSTOMER_ID),
+                rs.getBigDecimal(BALANCE),
+                epochMillis(rs.getTimestamp(CREATED_AT)),
+                epochMillis(rs.getTimestamp(UPDATED_AT))
+        );
+    }
+
+    private static long epochMillis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : Account.NO_TIMESTAMP;
+    }
+}
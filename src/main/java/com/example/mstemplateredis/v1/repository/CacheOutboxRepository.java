@@ -0,0 +1,87 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.CacheOutboxException;
+import com.example.mstemplateredis.exception.DeadlineExceededException;
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
+
+@Repository
+@Slf4j
+public class CacheOutboxRepository {
+
+    private final JdbcClient jdbcClient;
+
+    public CacheOutboxRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Records a cache change. Must run inside the transaction of the account mutation it describes,
+     * so that both commit or roll back together.
+     */
+    public void append(String customerId, String iban, CacheOutboxEntry.Operation operation) {
+        log.debug("************* CacheOutboxRepository.append {} for customer ID: {}, IBAN: {}", operation, customerId, iban);
+        try {
+            jdbcClient.sql(insertOutboxSql)
+                    .param(Constants.customerId, customerId)
+                    .param(Constants.iban, iban)
+                    .param("operation", operation.name())
+                    .param("createdAt", new Timestamp(System.currentTimeMillis()))
+                    .update();
+        } catch (DataAccessException ex) {
+            // Runs in the request's transaction, so a query timeout under a request deadline means the deadline ran out
+            if (ex instanceof QueryTimeoutException && RequestDeadlineHolder.hasDeadline()) {
+                throw new DeadlineExceededException("Request deadline passed while recording cache change", ex);
+            }
+            log.error("Outbox insert error for customer ID: {}, IBAN: {}", customerId, iban, ex);
+            throw new CacheOutboxException("Failed to record cache change for IBAN: " + iban, ex);
+        }
+    }
+
+    /**
+     * Locks and returns the oldest pending entries. Rows locked by another relay are skipped.
+     */
+    public List<CacheOutboxEntry> lockBatch(int limit) {
+        try {
+            return jdbcClient.sql(selectOutboxBatchSql)
+                    .param("limit", limit)
+                    .query((rs, rowNum) -> new CacheOutboxEntry(
+                            rs.getLong(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            CacheOutboxEntry.Operation.valueOf(rs.getString(4)),
+                            rs.getTimestamp(5).getTime()))
+                    .list();
+        } catch (DataAccessException ex) {
+            log.error("Outbox read error", ex);
+            throw new CacheOutboxException("Failed to read cache outbox", ex);
+        }
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            int rows = jdbcClient.sql(deleteOutboxSql)
+                    .param("ids", ids)
+                    .update();
+            log.debug("Deleted {} relayed outbox entries", rows);
+        } catch (DataAccessException ex) {
+            log.error("Outbox delete error", ex);
+            throw new CacheOutboxException("Failed to delete relayed outbox entries", ex);
+        }
+    }
+}
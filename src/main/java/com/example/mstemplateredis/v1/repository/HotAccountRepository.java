@@ -0,0 +1,81 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
+import com.example.mstemplateredis.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.*;
+
+@Repository
+@Slf4j
+public class HotAccountRepository {
+
+    private final JdbcClient jdbcClient;
+
+    /**
+     * @param balance    the balance in the database
+     * @param appliedSeq the sequence number of the last flush applied to it, 0 if none
+     */
+    public record State(BigDecimal balance, long appliedSeq) {}
+
+    public HotAccountRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Returns the balance and last applied flush of an account, or {@code null} if the IBAN does not exist.
+     */
+    public State loadState(String iban) {
+        try {
+            return jdbcClient.sql(selectHotAccountStateSql)
+                    .param(Constants.iban, iban)
+                    .query((rs, rowNum) -> new State(rs.getBigDecimal(1), rs.getLong(2)))
+                    .optional()
+                    .orElse(null);
+        } catch (DataAccessException ex) {
+            log.error("Hot account state read error for IBAN: {}", iban, ex);
+            throw new AccountRetrievalException("Failed to read hot account state for IBAN: " + iban, ex);
+        }
+    }
+
+    /**
+     * Adds a flushed delta to the balance unless the flush with this sequence number was already applied.
+     * Must run in a transaction: the sequence check and the balance update commit together.
+     *
+     * @return {@code false} if the flush had already been applied and nothing was changed
+     */
+    public boolean applyFlush(String iban, BigDecimal delta, long seq) {
+        try {
+            jdbcClient.sql(insertHotFlushSql)
+                    .param(Constants.iban, iban)
+                    .update();
+            int advanced = jdbcClient.sql(advanceHotFlushSql)
+                    .param(Constants.iban, iban)
+                    .param("seq", seq)
+                    .update();
+            if (advanced == 0) {
+                log.info("Flush {} for IBAN {} was already applied", seq, iban);
+                return false;
+            }
+
+            int rows = jdbcClient.sql(applyHotFlushSql)
+                    .param(Constants.iban, iban)
+                    .param(Constants.delta, delta)
+                    .update();
+            if (rows < 1) {
+                throw new AccountNotFoundException("Failed to flush balance for IBAN: " + iban);
+            }
+            return true;
+        } catch (DataAccessException ex) {
+            log.error("Hot account flush error for IBAN: {}", iban, ex);
+            throw new AccountUpdateException("Database flush failed for IBAN: " + iban, ex);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.repository.AccountAggregateRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.constraints.NotBlank;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Account count and total balance per customer, read in O(1) instead of summing the customer's accounts.
+ * <p>
+ * The aggregate is read from Redis, where account changes adjust it in place (see {@link RedisService}), and
+ * otherwise from the summary row that triggers maintain in the database. Both are updated incrementally, so they
+ * can drift if a change is lost on the way, e.g. a cache write during a Redis outage; cached aggregates expire with
+ * the account lists, and the summary rows are reconciled with {@code account_db} every {@code interval-ms}.
+ * <p>
+ * Like the balances in the database, aggregates do not include hot account adjustments that are not flushed yet.
+ */
+@Service
+@Slf4j
+public class AccountAggregateService {
+
+    private final AccountAggregateRepository accountAggregateRepository;
+    private final RedisService redisService;
+    private final CacheMissBulkhead cacheMissBulkhead;
+
+    private final Counter drifted;
+
+    @Value("${app.aggregates.reconcile.enabled:true}")
+    boolean reconcileEnabled = true;
+
+    @Value("${app.aggregates.reconcile.page-size:500}")
+    int pageSize = 500;
+
+    public AccountAggregateService(AccountAggregateRepository accountAggregateRepository, RedisService redisService,
+                                   CacheMissBulkhead cacheMissBulkhead, MeterRegistry meterRegistry) {
+        this.accountAggregateRepository = accountAggregateRepository;
+        this.redisService = redisService;
+        this.cacheMissBulkhead = cacheMissBulkhead;
+        this.drifted = meterRegistry.counter("accounts.aggregates.drifted");
+    }
+
+    public AccountAggregate getAggregate(@NotBlank String customerId) {
+        AccountAggregate cached = redisService.getAggregate(customerId);
+        if (cached != null) {
+            return cached;
+        }
+        AccountAggregate aggregate = cacheMissBulkhead.execute(() -> accountAggregateRepository.findAggregate(customerId));
+        redisService.setAggregate(aggregate);
+        return aggregate;
+    }
+
+    /**
+     * Walks every customer in pages of {@code page-size}, rebuilds the summary rows that differ from the accounts
+     * and evicts their cached aggregates. Rebuilding is idempotent, so instances reconciling at the same time do
+     * no harm beyond the extra queries.
+     */
+    @Scheduled(fixedDelayString = "${app.aggregates.reconcile.interval-ms:3600000}")
+    public void reconcile() {
+        if (!reconcileEnabled) {
+            return;
+        }
+        long corrected = 0;
+        try {
+            String after = "";
+            List<String> page;
+            do {
+                page = accountAggregateRepository.customersAfter(after, pageSize);
+                List<String> driftedIds = accountAggregateRepository.findDrifted(page);
+                if (!driftedIds.isEmpty()) {
+                    accountAggregateRepository.rebuildSummaries(driftedIds);
+                    redisService.evictAggregates(driftedIds);
+                    corrected += driftedIds.size();
+                }
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1);
+                }
+            } while (page.size() == pageSize);
+            corrected += accountAggregateRepository.clearOrphanSummaries();
+        } catch (Exception e) {
+            log.error("Account aggregate reconciliation failed after {} corrections: {}", corrected, e.getMessage());
+            return;
+        } finally {
+            drifted.increment(corrected);
+        }
+        if (corrected > 0) {
+            log.warn("Reconciled {} drifted account aggregates", corrected);
+        } else {
+            log.info("Account aggregates match the accounts");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountExportRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes every account as NDJSON, one JSON object per line, for reconciliation jobs.
+ * <p>
+ * Rows go straight from the database cursor to the output stream, through Jackson's small output buffer. Writes
+ * block while the client is not reading, which in turn stops the cursor, so a slow client slows the export down
+ * instead of making it buffer. The export never touches Redis, so it neither evicts nor fills cache entries.
+ * <p>
+ * Each export holds a database connection for its whole duration; at most {@code max-concurrent} run at a time,
+ * further ones are rejected with {@link AccountLoadRejectedException}.
+ */
+@Service
+@Slf4j
+public class AccountExportService {
+
+    private static final int NEWLINE = '\n';
+
+    private final AccountExportRepository accountExportRepository;
+    private final ObjectMapper objectMapper;
+    // No flush per account; the generator flushes when its buffer is full
+    private final ObjectWriter writer;
+    private final Semaphore permits;
+
+    @Value("${app.export.retry-after-seconds:60}")
+    long retryAfterSeconds = 60;
+
+    private final Counter exported;
+
+    public AccountExportService(AccountExportRepository accountExportRepository, ObjectMapper objectMapper,
+                                @Value("${app.export.max-concurrent:2}") int maxConcurrent,
+                                MeterRegistry meterRegistry) {
+        this.accountExportRepository = accountExportRepository;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(Account.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.permits = new Semaphore(maxConcurrent);
+        this.exported = meterRegistry.counter("accounts.export.rows");
+        meterRegistry.gauge("accounts.export.active", permits, p -> maxConcurrent - p.availablePermits());
+    }
+
+    /**
+     * Reserves one of the {@code max-concurrent} export slots, before any of the response is written, so a
+     * rejection is still reported with a status. The returned export releases the slot when it has been written;
+     * callers must also {@link Export#release() release} it if the export may never be written, e.g. when the async
+     * request times out before the writer starts.
+     */
+    public Export start(Instant updatedFrom, Instant updatedBefore) {
+        if (!permits.tryAcquire()) {
+            throw new AccountLoadRejectedException("Too many account exports running", retryAfterSeconds);
+        }
+        return new Export(updatedFrom, updatedBefore);
+    }
+
+    /**
+     * The accounts updated in {@code [updatedFrom, updatedBefore)}; either bound may be {@code null}.
+     */
+    public final class Export {
+
+        private final Instant updatedFrom;
+        private final Instant updatedBefore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Export(Instant updatedFrom, Instant updatedBefore) {
+            this.updatedFrom = updatedFrom;
+            this.updatedBefore = updatedBefore;
+        }
+
+        /**
+         * Writes the accounts to {@code out}. If the export fails midway the output simply ends, so consumers must
+         * treat a response that was not completed normally as incomplete.
+         */
+        public void writeTo(OutputStream out) {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // Lines are separated by the newline written after each account, not by Jackson's root separator
+                generator.setRootValueSeparator(null);
+                long rows = accountExportRepository.streamAccounts(updatedFrom, updatedBefore, account -> {
+                    try {
+                        writer.writeValue(generator, account);
+                        generator.writeRaw((char) NEWLINE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    exported.increment();
+                });
+                log.info("Exported {} accounts updated from {} before {}", rows, updatedFrom, updatedBefore);
+            } catch (IOException | UncheckedIOException e) {
+                // The client went away; there is nobody left to report the error to
+                log.warn("Account export aborted by the client: {}", e.getMessage());
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Returns the export slot. Only the first call releases it, so this is safe to call once the export has been
+         * written as well.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountImportConflictException;
+import com.example.mstemplateredis.exception.AccountImportException;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.AccountImportRepository;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk import of accounts from an uploaded CSV or NDJSON stream, for migrating whole portfolios.
+ * <p>
+ * The upload is read line by line in chunks of {@code chunk-size} lines, so memory does not grow with the file.
+ * The lines of a chunk are parsed and validated in parallel; the valid accounts are then inserted with multi-row
+ * INSERTs in one transaction, together with the rejected lines and the advance of the import's progress. A chunk is
+ * therefore committed entirely or not at all, and an interrupted upload is resumed by sending the same file again
+ * under the same import ID: the lines already committed are skipped.
+ * <p>
+ * With the cache outbox enabled, each chunk records a cache outbox entry per inserted account in its transaction,
+ * and {@link CacheOutboxRelay} evicts the cached lists. Otherwise they are evicted after the chunk commits, and a
+ * failed eviction is journaled like any other cache mutation during a Redis outage. Either way, with
+ * {@code prime-cache} the lists are then reloaded with one query and written back in one Redis pipeline.
+ */
+@Service
+@Slf4j
+public class AccountImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    static final List<String> CSV_COLUMNS = List.of("iban", "customerId", "balance");
+    private static final int MAX_MESSAGE_LENGTH = 512;
+
+    private final AccountImportRepository accountImportRepository;
+    private final AccountRepository accountRepository;
+    private final CacheOutboxRepository cacheOutboxRepository;
+    private final RedisService redisService;
+    private final CacheMutationJournal cacheMutationJournal;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean outboxEnabled;
+    private final Validator validator;
+    private final ObjectReader accountReader;
+
+    @Value("${app.import.chunk-size:1000}")
+    int chunkSize = 1000;
+
+    @Value("${app.import.prime-cache:false}")
+    boolean primeCache;
+
+    @Value("${app.import.max-errors-reported:100}")
+    int maxErrorsReported = 100;
+
+    private final Counter importedLines;
+    private final Counter rejectedLines;
+
+    // One line of the upload; blank lines have neither an account nor an error
+    record ParsedLine(long line, Account account, String error) {}
+
+    public AccountImportService(AccountImportRepository accountImportRepository, AccountRepository accountRepository,
+                                CacheOutboxRepository cacheOutboxRepository, RedisService redisService,
+                                CacheMutationJournal cacheMutationJournal, TransactionTemplate transactionTemplate,
+                                @Value("${app.cache.outbox.enabled:false}") boolean outboxEnabled,
+                                Validator validator, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.accountImportRepository = accountImportRepository;
+        this.accountRepository = accountRepository;
+        this.cacheOutboxRepository = cacheOutboxRepository;
+        this.redisService = redisService;
+        this.cacheMutationJournal = cacheMutationJournal;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxEnabled = outboxEnabled;
+        this.validator = validator;
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.importedLines = meterRegistry.counter("accounts.import.lines", "result", "imported");
+        this.rejectedLines = meterRegistry.counter("accounts.import.lines", "result", "rejected");
+    }
+
+    /**
+     * Imports the upload, or the part of it after the lines already committed under this import ID, and returns the
+     * progress of the import. CSV uploads start with the header {@code iban,customerId,balance}; values are not
+     * quoted.
+     */
+    public AccountImport importAccounts(String importId, Format format, InputStream upload) {
+        AccountImport progress = accountImportRepository.start(importId);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(upload, StandardCharsets.UTF_8))) {
+            if (format == Format.CSV) {
+                checkHeader(reader.readLine());
+            }
+            long line = 0;
+            while (line < progress.linesCommitted() && reader.readLine() != null) {
+                line++;
+            }
+            if (line > 0) {
+                log.info("Resuming import {} after line {}", importId, line);
+            }
+
+            List<String> chunk = new ArrayList<>(chunkSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                chunk.add(text);
+                if (chunk.size() == chunkSize) {
+                    commitChunk(importId, format, line, chunk);
+                    line += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commitChunk(importId, format, line, chunk);
+            }
+        } catch (IOException e) {
+            log.warn("Upload of import {} interrupted: {}", importId, e.getMessage());
+            throw new AccountImportException("Upload of import " + importId + " was interrupted; send it again to resume");
+        }
+        return getImport(importId);
+    }
+
+    public AccountImport getImport(String importId) {
+        AccountImport progress = accountImportRepository.findWithErrors(importId, maxErrorsReported);
+        if (progress == null) {
+            throw new AccountNotFoundException("No import found with ID: " + importId);
+        }
+        return progress;
+    }
+
+    private void checkHeader(String header) {
+        List<String> columns = header == null ? List.of()
+                : List.of(header.trim().split("\\s*,\\s*"));
+        if (!CSV_COLUMNS.equals(columns)) {
+            throw new AccountImportException("CSV header must be " + String.join(",", CSV_COLUMNS));
+        }
+    }
+
+    /**
+     * Commits one chunk of lines, the first of which is line {@code skipped + 1}.
+     */
+    private void commitChunk(String importId, Format format, long skipped, List<String> lines) {
+        List<ParsedLine> parsed = IntStream.range(0, lines.size())
+                .parallel()
+                .mapToObj(i -> parse(lines.get(i), skipped + i + 1, format))
+                .toList();
+
+        List<ParsedLine> valid = new ArrayList<>(parsed.size());
+        List<AccountImport.LineError> errors = new ArrayList<>();
+        Set<String> ibans = new HashSet<>();
+        for (ParsedLine line : parsed) {
+            if (line.error() != null) {
+                errors.add(new AccountImport.LineError(line.line(), line.error()));
+            } else if (line.account() != null && !ibans.add(line.account().getIban())) {
+                errors.add(new AccountImport.LineError(line.line(), "Duplicate IBAN in upload: " + line.account().getIban()));
+            } else if (line.account() != null) {
+                valid.add(line);
+            }
+        }
+
+        List<Account> inserted = transactionTemplate.execute(status -> {
+            Set<String> existing = ibans.isEmpty() ? Set.of() : accountRepository.getAccountsByIban(ibans).stream()
+                    .map(Account::getIban)
+                    .collect(Collectors.toSet());
+            List<ParsedLine> toInsert = new ArrayList<>(valid.size());
+            for (ParsedLine line : valid) {
+                if (existing.contains(line.account().getIban())) {
+                    errors.add(alreadyExists(line));
+                } else {
+                    toInsert.add(line);
+                }
+            }
+            List<Account> accounts = toInsert.stream().map(ParsedLine::account).toList();
+            Object savepoint = status.createSavepoint();
+            int rows = accountImportRepository.insertAccounts(accounts);
+            if (rows < accounts.size()) {
+                // Some were created concurrently since the check above and the INSERT stopped at one; it does not
+                // tell which, so insert the chunk again one account at a time
+                log.warn("Import {} found {} accounts created concurrently, inserting one by one", importId,
+                        accounts.size() - rows);
+                status.rollbackToSavepoint(savepoint);
+                accounts = insertOneByOne(toInsert, errors);
+            }
+            if (outboxEnabled) {
+                accounts.forEach(account -> cacheOutboxRepository.append(account.getCustomerId(), account.getIban(),
+                        Operation.CREATE));
+            }
+            accountImportRepository.recordErrors(importId, errors);
+            if (!accountImportRepository.advance(importId, skipped, skipped + lines.size(), accounts.size(), errors.size())) {
+                throw new AccountImportConflictException("Import " + importId + " is being uploaded concurrently");
+            }
+            return accounts;
+        });
+
+        importedLines.increment(inserted.size());
+        rejectedLines.increment(errors.size());
+        log.info("Import {} committed lines {} to {}: {} accounts, {} rejected", importId, skipped + 1,
+                skipped + lines.size(), inserted.size(), errors.size());
+        refreshCache(inserted);
+    }
+
+    /**
+     * Inserts the lines one at a time, reporting those whose IBAN exists by now as errors.
+     *
+     * @return the accounts inserted
+     */
+    private List<Account> insertOneByOne(List<ParsedLine> lines, List<AccountImport.LineError> errors) {
+        List<Account> inserted = new ArrayList<>(lines.size());
+        for (ParsedLine line : lines) {
+            if (accountImportRepository.insertAccounts(List.of(line.account())) == 1) {
+                inserted.add(line.account());
+            } else {
+                errors.add(alreadyExists(line));
+            }
+        }
+        return inserted;
+    }
+
+    private static AccountImport.LineError alreadyExists(ParsedLine line) {
+        return new AccountImport.LineError(line.line(), "IBAN already exists: " + line.account().getIban());
+    }
+
+    private ParsedLine parse(String text, long line, Format format) {
+        if (text.isBlank()) {
+            return new ParsedLine(line, null, null);
+        }
+        Account account;
+        try {
+            account = format == Format.CSV ? parseCsv(text) : accountReader.readValue(text);
+        } catch (JsonProcessingException e) {
+            return new ParsedLine(line, null, truncate("Invalid JSON: " + e.getOriginalMessage()));
+        } catch (IllegalArgumentException e) {
+            return new ParsedLine(line, null, truncate(e.getMessage()));
+        }
+        Set<ConstraintViolation<Account>> violations = validator.validate(account);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            return new ParsedLine(line, null, truncate(message));
+        }
+        return new ParsedLine(line, account, null);
+    }
+
+    private static Account parseCsv(String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != CSV_COLUMNS.size()) {
+            throw new IllegalArgumentException("Expected " + CSV_COLUMNS.size() + " columns, found " + fields.length);
+        }
+        BigDecimal balance;
+        try {
+            balance = new BigDecimal(fields[2].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid balance: " + fields[2].trim());
+        }
+        return Account.builder()
+                .iban(fields[0].trim())
+                .customerId(fields[1].trim())
+                .balance(balance)
+                .build();
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+
+    private void refreshCache(List<Account> inserted) {
+        if (inserted.isEmpty()) {
+            return;
+        }
+        Set<String> customerIds = inserted.stream()
+                .map(Account::getCustomerId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        // With the outbox, the relay evicts the lists from the entries committed with the chunk
+        if (!outboxEnabled) {
+            try {
+                redisService.evictAccountsFromCache(customerIds);
+            } catch (Exception e) {
+                log.warn("Could not evict cached accounts of {} imported customers, journaling them: {}", customerIds.size(), e.getMessage());
+                inserted.forEach(account -> cacheMutationJournal.record(account.getCustomerId(), account.getIban()));
+                return;
+            }
+        }
+        if (!primeCache) {
+            return;
+        }
+        try {
+            Map<String, List<Account>> lists = accountRepository.getAccountsOfCustomers(customerIds).stream()
+                    .collect(Collectors.groupingBy(Account::getCustomerId));
+            redisService.primeAccounts(lists);
+        } catch (Exception e) {
+            // The lists are evicted, so the next reads load them; priming only saves those misses
+            log.warn("Could not prime cached accounts of {} imported customers: {}", customerIds.size(), e.getMessage());
+        }
+    }
+}
@@ -1,49 +1,168 @@
 package com.example.mstemplateredis.v1.service;
 
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.AccountDeletionException;
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
 import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
 import jakarta.validation.constraints.NotBlank;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @Slf4j
 public class AccountService {
     private final AccountRepository accountRepository;
     private final RedisService redisService;
+    private final CacheOutboxRepository cacheOutboxRepository;
+    private final CacheMissBulkhead cacheMissBulkhead;
+    private final AccountsRevalidator accountsRevalidator;
+    private final HotAccountLedger hotAccountLedger;
+    private final AccountUpdateBatcher accountUpdateBatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalAccountsCache localAccountsCache;
 
-    public AccountService(AccountRepository accountRepository, RedisService redisService) {
+    // When enabled, mutations record a cache outbox entry in their transaction instead of calling Redis;
+    // CacheOutboxRelay applies the evictions asynchronously.
+    @Value("${app.cache.outbox.enabled:false}")
+    boolean outboxEnabled;
+
+    public AccountService(AccountRepository accountRepository, RedisService redisService,
+                          CacheOutboxRepository cacheOutboxRepository, CacheMissBulkhead cacheMissBulkhead,
+                          AccountsRevalidator accountsRevalidator, HotAccountLedger hotAccountLedger,
+                          AccountUpdateBatcher accountUpdateBatcher, TransactionTemplate transactionTemplate,
+                          LocalAccountsCache localAccountsCache) {
         this.accountRepository = accountRepository;
         this.redisService = redisService;
+        this.cacheOutboxRepository = cacheOutboxRepository;
+        this.cacheMissBulkhead = cacheMissBulkhead;
+        this.accountsRevalidator = accountsRevalidator;
+        this.hotAccountLedger = hotAccountLedger;
+        this.accountUpdateBatcher = accountUpdateBatcher;
+        this.transactionTemplate = transactionTemplate;
+        this.localAccountsCache = localAccountsCache;
     }
 
     /**
-     * Fetches all accounts for the specified customerId from cache or database.
-     * Caches the result under the customerId.
+     * Fetches all accounts of the customer from the cache or, on a miss, from the database, caching them under the
+     * customerId. Returns the serialized response body and its ETag: a cache hit passes the cached bytes through
+     * untouched; a miss serializes the list once, for both the cache and the response.
+     * <p>
+     * A list that expired only recently is served from its stale copy while it is reloaded in the background.
+     * If the database load fails or is rejected, an older stale copy is served instead of the error.
+     * Hot accounts get their balance including the adjustments not yet flushed. With the local tier enabled, a list
+     * unchanged in Redis is served from the local copy.
      */
-    public List<Account> getAccountsByCustomerId(@NotBlank String customerId) {
-        log.debug("****************** Fetching accounts for customer: {}", customerId);
-        // Try getting accounts from the cache
-        List<Account> cachedAccounts = redisService.getAccountsFromCache(customerId);
-
-        if (cachedAccounts != null) {
-            log.info("****************** Retrieved {} accounts from cache for customer: {}", cachedAccounts.size(), customerId);
-            return cachedAccounts;
-        } else {
-            log.info("****************** Cache miss for customer: {}", customerId);
+    public CachedAccounts getAccountsJson(@NotBlank String customerId) {
+        CachedAccounts accounts = loadAccountsJson(customerId);
+        if (!hotAccountLedger.isHotCustomer(customerId)) {
+            return accounts;
+        }
+        Map<String, BigDecimal> balances = hotAccountLedger.balances(customerId);
+        return balances.isEmpty() ? accounts : redisService.withBalances(accounts, balances);
+    }
+
+    /**
+     * Returns the accounts of a response body from {@link #getAccountsJson(String)} as objects, for responses in
+     * the binary formats. The cache holds JSON only, so these lists are decoded on every request.
+     */
+    public List<Account> decodeAccounts(CachedAccounts accounts) {
+        return redisService.decodeAccounts(accounts);
+    }
+
+    private CachedAccounts loadAccountsJson(String customerId) {
+        RequestDeadlineHolder.checkNotExpired("getAccounts");
+        CachedAccounts cached = localAccountsCache.isEnabled()
+                ? localAccountsCache.getCachedAccounts(customerId)
+                : redisService.getCachedAccounts(customerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        CachedAccounts revalidatable = redisService.getRevalidatableAccounts(customerId);
+        if (revalidatable != null) {
+            accountsRevalidator.revalidate(customerId);
+            return revalidatable;
+        }
 
-            // Fallback to DB
-            List<Account> accounts = accountRepository.getAccounts(customerId);
+        try {
+            List<Account> accounts = cacheMissBulkhead.execute(() -> accountRepository.getAccounts(customerId));
             log.info("****************** Retrieved {} accounts from DB for customer: {}", accounts.size(), customerId);
+            CachedAccounts written = redisService.setAccountsToCache(customerId, accounts);
+            localAccountsCache.put(customerId, written);
+            return written;
+        } catch (AccountRetrievalException | AccountLoadRejectedException ex) {
+            CachedAccounts stale = redisService.getStaleAccounts(customerId);
+            if (stale == null) {
+                throw ex;
+            }
+            log.warn("****************** Serving stale accounts for customer: {} after load failure: {}", customerId, ex.getMessage());
+            return stale;
+        }
+    }
 
-            redisService.setAccountsToCache(customerId, accounts);
+    /**
+     * Returns the ETag of the cached account list, or {@code null} if the list is not cached.
+     * Reads a single short key: neither the list nor the database is touched. Customers with hot accounts get
+     * {@code null}, since the cached list does not include their pending adjustments.
+     */
+    public String getAccountsEtag(@NotBlank String customerId) {
+        if (hotAccountLedger.isHotCustomer(customerId)) {
+            return null;
+        }
+        return redisService.getAccountsEtag(customerId);
+    }
 
-            return accounts;
+    /**
+     * Returns one account by IBAN from the IBAN index, without reading the customer's list.
+     *
+     * @throws AccountNotFoundException if there is no account with this IBAN
+     */
+    public Account getAccountByIban(@NotBlank String iban) {
+        List<Account> accounts = getAccountsByIban(List.of(iban));
+        if (accounts.isEmpty()) {
+            throw new AccountNotFoundException("No account found for IBAN: " + iban);
         }
+        return accounts.get(0);
+    }
+
+    /**
+     * Resolves the IBANs with one pipelined lookup in the IBAN index; the misses are loaded together by primary key,
+     * through the cache-miss bulkhead, and added to the index. Accounts are returned in request order, without
+     * duplicates, and IBANs without an account are left out.
+     */
+    public List<Account> getAccountsByIban(List<String> ibans) {
+        RequestDeadlineHolder.checkNotExpired("getAccountsByIban");
+        List<String> distinct = ibans.stream().distinct().toList();
+        Map<String, Account> found = new HashMap<>(redisService.getAccountsByIban(distinct));
+
+        List<String> missing = distinct.stream().filter(iban -> !found.containsKey(iban)).toList();
+        if (!missing.isEmpty()) {
+            List<Account> loaded = cacheMissBulkhead.execute(() -> accountRepository.getAccountsByIban(missing));
+            log.info("****************** Retrieved {} of {} accounts by IBAN from DB", loaded.size(), missing.size());
+            redisService.setAccountsByIban(loaded);
+            loaded.forEach(account -> found.put(account.getIban(), account));
+        }
+        return distinct.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .map(this::withHotBalance)
+                .toList();
     }
 
     /**
@@ -55,7 +174,11 @@ public class AccountService {
         log.debug("****************** Insert account for customer: {}", customerId);
         accountRepository.insertAccount(account, customerId);
 
-        redisService.createAccountToCache(customerId, account);
+        if (outboxEnabled) {
+            cacheOutboxRepository.append(customerId, account.getIban(), Operation.CREATE);
+        } else {
+            redisService.createAccountToCache(customerId, account);
+        }
 
         log.info("Created new account with IBAN: {}", account.getIban());
         return account;
@@ -64,17 +187,64 @@ public class AccountService {
     /**
      * Updates an existing account balance, stores the change in the database, and evicts the cache.
      * After this, the next fetch will go to the database and repopulate the cache.
+     * <p>
+     * With update batching enabled the update is committed together with concurrent ones by
+     * {@link AccountUpdateBatcher}; the transaction is opened here only otherwise, so waiting callers hold no connection.
      */
-    @Transactional
     public void updateAccount(String iban, BigDecimal balance, String customerId) {
         log.debug("****************** Updating account for IBAN: {}", iban);
-        accountRepository.updateAccount(iban, balance, customerId);
+        if (hotAccountLedger.isHot(iban)) {
+            // An absolute balance would overwrite the adjustments still pending in the ledger
+            throw new AccountUpdateException("Balance of hot account IBAN " + iban + " can only be adjusted", null);
+        }
+        if (accountUpdateBatcher.isEnabled()) {
+            accountUpdateBatcher.update(iban, balance, customerId);
+            log.info("Updated account with IBAN: {} successfully", iban);
+            return;
+        }
 
-        redisService.updateAccountsInCache(iban, balance, customerId);
+        transactionTemplate.executeWithoutResult(status -> {
+            accountRepository.updateAccount(iban, balance, customerId);
+
+            if (outboxEnabled) {
+                cacheOutboxRepository.append(customerId, iban, Operation.UPDATE);
+            } else {
+                redisService.updateAccountsInCache(iban, balance, customerId);
+            }
+        });
 
         log.info("Updated account with IBAN: {} successfully", iban);
     }
 
+    /**
+     * Credits (positive delta) or debits (negative delta) an account with a single guarded UPDATE, so concurrent
+     * adjustments neither lose updates nor read the balance first. The cached list gets the resulting balance.
+     * <p>
+     * Hot accounts are adjusted in {@link HotAccountLedger} alone; the transaction is opened here only otherwise,
+     * so coalesced adjustments take no database connection.
+     *
+     * @return the balance after the adjustment
+     */
+    public BigDecimal adjustBalance(String iban, BigDecimal delta, String customerId) {
+        log.debug("****************** Adjusting balance for IBAN: {}", iban);
+        if (hotAccountLedger.isHot(iban)) {
+            return hotAccountLedger.adjust(customerId, iban, delta);
+        }
+        BigDecimal balance = transactionTemplate.execute(status -> {
+            BigDecimal adjusted = accountRepository.adjustBalance(iban, delta, customerId);
+
+            if (outboxEnabled) {
+                cacheOutboxRepository.append(customerId, iban, Operation.UPDATE);
+            } else {
+                redisService.updateAccountsInCache(iban, adjusted, customerId);
+            }
+            return adjusted;
+        });
+
+        log.info("Adjusted balance of IBAN: {} by {}", iban, delta);
+        return balance;
+    }
+
     /**
      * Deletes an account, removes it from the database, and evicts the cache for the customerId.
      * After this, the next fetch will go to the database and repopulate the cache.
@@ -82,12 +252,28 @@ public class AccountService {
     @Transactional
     public void deleteAccount(String iban, String customerId) {
         log.debug("****************** Deleting account for IBAN: {}", iban);
+        if (hotAccountLedger.isHot(iban)) {
+            throw new AccountDeletionException("Hot account IBAN " + iban + " cannot be deleted while it is coalesced", null);
+        }
         accountRepository.deleteAccount(iban, customerId);
 
-        redisService.deleteAccountFromCache(customerId, iban);
+        if (outboxEnabled) {
+            cacheOutboxRepository.append(customerId, iban, Operation.DELETE);
+        } else {
+            redisService.deleteAccountFromCache(customerId, iban);
+        }
 
         log.info("Deleted account with IBAN: {} successfully", iban);
     }
 
+    private Account withHotBalance(Account account) {
+        if (hotAccountLedger.isHot(account.getIban())) {
+            BigDecimal balance = hotAccountLedger.balances(account.getCustomerId()).get(account.getIban());
+            if (balance != null) {
+                account.setBalance(balance);
+            }
+        }
+        return account;
+    }
 
 }
\ No newline at end of file
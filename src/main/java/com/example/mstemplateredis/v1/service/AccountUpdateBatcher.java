@@ -0,0 +1,270 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
+import com.example.mstemplateredis.exception.DeadlineExceededException;
+import com.example.mstemplateredis.v1.model.BalanceUpdate;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for account balance updates.
+ * <p>
+ * Request threads queue their update and wait. A single writer thread collects the updates arriving within
+ * {@code window} of the first one, or until {@code max-size} are collected, and sends them as one JDBC batch in one
+ * transaction, so a burst costs one commit instead of one per request. Each caller gets its own outcome: an account
+ * that was not found fails only its own update. If the batch as a whole fails, its updates are retried one
+ * transaction each, so a single bad row cannot fail the others.
+ * <p>
+ * Waiting callers hold no database connection. When the queue is full, the caller applies its update itself.
+ * Without the cache outbox, each caller refreshes the cached list on its own thread once its update has committed,
+ * so the writer is free for the next batch right after the commit.
+ */
+@Service
+@Slf4j
+public class AccountUpdateBatcher {
+
+    private final AccountRepository accountRepository;
+    private final CacheOutboxRepository cacheOutboxRepository;
+    private final RedisService redisService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final boolean outboxEnabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final BlockingQueue<PendingUpdate> queue;
+    private final Thread writer;
+
+    private final DistributionSummary batchSizes;
+    private final Counter fallbacks;
+    private final Counter overflows;
+
+    record PendingUpdate(BalanceUpdate update, long deadlineMillis, CompletableFuture<Void> result) {}
+
+    private static final Comparator<PendingUpdate> LOCK_ORDER = Comparator
+            .comparing((PendingUpdate pending) -> pending.update().customerId())
+            .thenComparing(pending -> pending.update().iban());
+
+    public AccountUpdateBatcher(AccountRepository accountRepository, CacheOutboxRepository cacheOutboxRepository,
+                                RedisService redisService, TransactionTemplate transactionTemplate,
+                                @Value("${app.update-batch.enabled:false}") boolean enabled,
+                                @Value("${app.update-batch.window:2ms}") Duration window,
+                                @Value("${app.update-batch.max-size:100}") int maxSize,
+                                @Value("${app.update-batch.max-queue:1000}") int maxQueue,
+                                @Value("${app.cache.outbox.enabled:false}") boolean outboxEnabled,
+                                MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.cacheOutboxRepository = cacheOutboxRepository;
+        this.redisService = redisService;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.outboxEnabled = outboxEnabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        this.queue = new LinkedBlockingQueue<>(maxQueue);
+        this.batchSizes = DistributionSummary.builder("accounts.update.batch.size")
+                .description("Account updates committed per transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fallbacks = meterRegistry.counter("accounts.update.batch.fallbacks");
+        this.overflows = meterRegistry.counter("accounts.update.batch.overflows");
+        meterRegistry.gaugeCollectionSize("accounts.update.batch.queue.depth", List.of(), queue);
+
+        this.writer = new Thread(this::run, "account-update-batcher");
+        this.writer.setDaemon(true);
+    }
+
+    // Started once the bean is fully initialized, so the writer sees all of its state
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the update and waits until the batch containing it has committed, at most until the request deadline.
+     *
+     * @throws AccountNotFoundException   if the customer has no account with this IBAN
+     * @throws DeadlineExceededException  if the deadline passed before the update was committed
+     */
+    public void update(String iban, BigDecimal balance, String customerId) {
+        RequestDeadlineHolder.checkNotExpired("updateAccount");
+        long remainingMillis = RequestDeadlineHolder.remainingMillis();
+        long deadlineMillis = remainingMillis == RequestDeadlineHolder.NO_DEADLINE
+                ? Long.MAX_VALUE : System.currentTimeMillis() + remainingMillis;
+        PendingUpdate pending = new PendingUpdate(new BalanceUpdate(iban, balance, customerId), deadlineMillis,
+                new CompletableFuture<>());
+
+        if (!queue.offer(pending)) {
+            overflows.increment();
+            log.warn("Update batch queue full, applying update for IBAN: {} on the request thread", iban);
+            flush(List.of(pending));
+        }
+        await(pending, remainingMillis);
+        if (!outboxEnabled) {
+            updateCache(pending.update());
+        }
+    }
+
+    private void await(PendingUpdate pending, long remainingMillis) {
+        CompletableFuture<Void> result = pending.result();
+        try {
+            if (remainingMillis == RequestDeadlineHolder.NO_DEADLINE) {
+                result.get();
+            } else {
+                result.get(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            // The batch may still commit; the caller only learns that it did not in time. The cache is then
+            // refreshed by the thread completing the batch, which for a late commit is the writer.
+            if (!outboxEnabled) {
+                result.thenRun(() -> updateCache(pending.update()));
+            }
+            throw new DeadlineExceededException("Request deadline passed waiting for the update batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new AccountUpdateException("Batched update failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountUpdateException("Interrupted while waiting for the update batch", e);
+        }
+    }
+
+    private void run() {
+        List<PendingUpdate> batch = new ArrayList<>(maxSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long windowEnd = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize) {
+                    PendingUpdate next = queue.poll(windowEnd - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutting down mid-window: the updates already taken from the queue are out of shutdown()'s reach
+                Thread.currentThread().interrupt();
+                batch.forEach(AccountUpdateBatcher::failOnShutdown);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits the updates in one transaction and completes each caller's future with its own outcome.
+     */
+    void flush(List<PendingUpdate> batch) {
+        long now = System.currentTimeMillis();
+        List<PendingUpdate> live = new ArrayList<>(batch.size());
+        for (PendingUpdate pending : batch) {
+            if (pending.deadlineMillis() <= now) {
+                pending.result().completeExceptionally(
+                        new DeadlineExceededException("Request deadline passed before updateAccount"));
+            } else {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+
+        batchSizes.record(live.size());
+        // The same lock order in every batch, including the customer summary rows locked by the account_db triggers
+        live.sort(LOCK_ORDER);
+        List<BalanceUpdate> updates = live.stream().map(PendingUpdate::update).toList();
+        int[] rows;
+        try {
+            rows = transactionTemplate.execute(status -> {
+                int[] affected = accountRepository.updateAccounts(updates);
+                if (outboxEnabled) {
+                    for (int i = 0; i < updates.size(); i++) {
+                        if (matched(affected[i])) {
+                            cacheOutboxRepository.append(updates.get(i).customerId(), updates.get(i).iban(), Operation.UPDATE);
+                        }
+                    }
+                }
+                return affected;
+            });
+        } catch (RuntimeException e) {
+            if (live.size() == 1) {
+                live.get(0).result().completeExceptionally(e);
+                return;
+            }
+            fallbacks.increment();
+            log.warn("Batch of {} account updates failed, retrying them one by one: {}", live.size(), e.getMessage());
+            live.forEach(pending -> flush(List.of(pending)));
+            return;
+        }
+
+        for (int i = 0; i < live.size(); i++) {
+            PendingUpdate pending = live.get(i);
+            if (matched(rows[i])) {
+                pending.result().complete(null);
+            } else {
+                pending.result().completeExceptionally(
+                        new AccountNotFoundException("Failed to update account for IBAN: " + pending.update().iban()));
+            }
+        }
+    }
+
+    private void updateCache(BalanceUpdate update) {
+        try {
+            redisService.updateAccountsInCache(update.iban(), update.balance(), update.customerId());
+        } catch (RuntimeException e) {
+            log.warn("Cache update failed after batched update of IBAN: {}: {}", update.iban(), e.getMessage());
+        }
+    }
+
+    private static boolean matched(int rows) {
+        return rows > 0 || rows == Statement.SUCCESS_NO_INFO;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.interrupt();
+        List<PendingUpdate> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(AccountUpdateBatcher::failOnShutdown);
+    }
+
+    private static void failOnShutdown(PendingUpdate pending) {
+        pending.result().completeExceptionally(
+                new AccountUpdateException("Shutting down before the update was applied", null));
+    }
+}
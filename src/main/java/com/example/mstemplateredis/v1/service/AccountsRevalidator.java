@@ -0,0 +1,97 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reloads account lists in the background after a stale copy was served for them.
+ * <p>
+ * At most one reload per customer is in flight; requests arriving meanwhile keep getting the stale copy.
+ * Reloads go through the cache-miss bulkhead like any other load, and when the queue is full the reload is
+ * dropped - the next request for the customer asks again.
+ */
+@Service
+@Slf4j
+public class AccountsRevalidator {
+
+    private final AccountRepository accountRepository;
+    private final RedisService redisService;
+    private final CacheMissBulkhead cacheMissBulkhead;
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Counter refreshed;
+    private final Counter failed;
+    private final Counter dropped;
+
+    public AccountsRevalidator(AccountRepository accountRepository, RedisService redisService,
+                               CacheMissBulkhead cacheMissBulkhead,
+                               @Value("${app.cache.stale.revalidate-threads:2}") int threads,
+                               @Value("${app.cache.stale.revalidate-queue:100}") int queueSize,
+                               MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.redisService = redisService;
+        this.cacheMissBulkhead = cacheMissBulkhead;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "accounts-revalidate-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.refreshed = meterRegistry.counter("accounts.cache.revalidations", "result", "refreshed");
+        this.failed = meterRegistry.counter("accounts.cache.revalidations", "result", "failed");
+        this.dropped = meterRegistry.counter("accounts.cache.revalidations", "result", "dropped");
+    }
+
+    /**
+     * Schedules a reload of the customer's list unless one is already pending.
+     */
+    public void revalidate(String customerId) {
+        if (!inFlight.add(customerId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> reload(customerId));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(customerId);
+            dropped.increment();
+            log.warn("Revalidation queue full, not reloading accounts for customer: {}", customerId);
+        }
+    }
+
+    private void reload(String customerId) {
+        try {
+            List<Account> accounts = cacheMissBulkhead.execute(() -> accountRepository.getAccounts(customerId));
+            redisService.setAccountsToCache(customerId, accounts);
+            refreshed.increment();
+            log.info("Revalidated {} accounts for customer: {}", accounts.size(), customerId);
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Revalidation failed for customer {}, stale copy stays in place: {}", customerId, e.getMessage());
+        } finally {
+            inFlight.remove(customerId);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.CacheEviction;
+import com.example.mstemplateredis.v1.model.CacheKeyPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inspection and eviction of the cached account lists for operators, without blocking Redis.
+ * <p>
+ * Keys are only ever enumerated with SCAN, one page per Redis call, and the SCAN cursor is handed back to the
+ * caller so a listing or an eviction resumes where the previous call stopped. Evictions UNLINK each page, which
+ * frees memory on a background thread, and pause between pages; a single call stops after {@code max-keys-per-call}
+ * keys so it never holds a request thread or a Redis connection for long.
+ */
+@Service
+@Slf4j
+public class CacheAdminService {
+
+    static final String START = "0";
+
+    // Returns {next cursor, keys} for one SCAN page starting at the given cursor
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> SCAN_PAGE = new DefaultRedisScript<>(
+            "return redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3])", List.class);
+
+    // Returns {pttl, memory usage in bytes} for each key, in order; MEMORY USAGE is false for keys gone since the SCAN
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> KEY_STATS = new DefaultRedisScript<>("""
+            local stats = {}
+            for i, key in ipairs(KEYS) do
+                stats[2 * i - 1] = redis.call('PTTL', key)
+                stats[2 * i] = redis.call('MEMORY', 'USAGE', key) or -1
+            end
+            return stats
+            """, List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisService redisService;
+    private final CacheGenerations cacheGenerations;
+    private final CacheSizeBudget cacheSizeBudget;
+
+    @Value("${app.cache.admin.evict-scan-count:200}")
+    int evictScanCount = 200;
+
+    @Value("${app.cache.admin.max-keys-per-call:10000}")
+    int maxKeysPerCall = 10_000;
+
+    @Value("${app.cache.admin.batch-pause:5ms}")
+    Duration batchPause = Duration.ofMillis(5);
+
+    private final Counter evicted;
+
+    public CacheAdminService(StringRedisTemplate stringRedisTemplate, RedisService redisService,
+                             CacheGenerations cacheGenerations, CacheSizeBudget cacheSizeBudget,
+                             MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisService = redisService;
+        this.cacheGenerations = cacheGenerations;
+        this.cacheSizeBudget = cacheSizeBudget;
+        this.evicted = meterRegistry.counter("accounts.cache.admin.evicted");
+    }
+
+    /**
+     * Returns one SCAN page of {@code accounts::} keys matching {@code match} (a glob under the namespace, e.g.
+     * {@code *::cust1} for a customer across generations) with their TTL and memory usage. A page can be empty
+     * while the cursor is not yet {@code 0}.
+     */
+    public CacheKeyPage listKeys(String match, String cursor, int count) {
+        ScanPage page = scan(Constants.cacheAcccountKey + match, cursor, count);
+        List<String> keys = page.keys();
+        List<CacheKeyPage.KeyInfo> infos = new ArrayList<>(keys.size());
+        if (!keys.isEmpty()) {
+            List<?> stats = stringRedisTemplate.execute(KEY_STATS, keys);
+            for (int i = 0; i < keys.size(); i++) {
+                long ttlMillis = ((Number) stats.get(2 * i)).longValue();
+                long memoryBytes = ((Number) stats.get(2 * i + 1)).longValue();
+                // PTTL is -2 for a key removed since the SCAN
+                if (ttlMillis != -2) {
+                    infos.add(new CacheKeyPage.KeyInfo(keys.get(i), ttlMillis, memoryBytes < 0 ? null : memoryBytes));
+                }
+            }
+        }
+        return new CacheKeyPage(page.cursor(), infos);
+    }
+
+    /**
+     * Evicts the cached list of one customer, with its ETag, stale copy and aggregate.
+     */
+    public void evictCustomer(String customerId) {
+        redisService.evictAccountsFromCache(List.of(customerId));
+        evicted.increment();
+        log.info("Evicted cached accounts of customer {} on operator request", customerId);
+    }
+
+    /**
+     * Evicts the {@code accounts::} keys matching {@code match}, with the ETag and stale copy of each, starting at
+     * {@code cursor}. Stops when the scan completes or after {@code max-keys-per-call} keys; the returned cursor is
+     * {@code 0} once every key has been visited. Stale copies whose fresh entry had already expired are not found
+     * this way and keep their TTL; a generation bump covers those.
+     */
+    public CacheEviction evictMatching(String match, String cursor) {
+        String next = cursor;
+        long unlinked = 0;
+        do {
+            ScanPage page = scan(Constants.cacheAcccountKey + match, next, evictScanCount);
+            next = page.cursor();
+            if (!page.keys().isEmpty()) {
+                unlinked += unlinkWithSiblings(page.keys());
+                if (!pause()) {
+                    break;
+                }
+            }
+        } while (!START.equals(next) && unlinked < maxKeysPerCall);
+
+        evicted.increment(unlinked);
+        log.info("Evicted {} cached account keys matching {}, next cursor {}", unlinked, match, next);
+        return new CacheEviction(next, unlinked);
+    }
+
+    // Spreads the eviction out, so the UNLINKs do not crowd out live traffic
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long unlinkWithSiblings(List<String> keys) {
+        List<String> all = new ArrayList<>(keys.size() * 4);
+        for (String key : keys) {
+            String scoped = key.substring(Constants.cacheAcccountKey.length());
+            all.add(key);
+            all.add(Constants.cacheAccountEtagKey + scoped);
+            all.add(Constants.cacheAccountStaleKey + scoped);
+            all.add(Constants.cacheAccountAggregateKey + scoped);
+            releaseIfCurrent(scoped);
+        }
+        Long removed = stringRedisTemplate.unlink(all);
+        return removed != null ? removed : 0;
+    }
+
+    // The size budget tracks the entries of the current generation only
+    private void releaseIfCurrent(String scoped) {
+        int separator = scoped.indexOf("::");
+        if (separator < 0) {
+            return;
+        }
+        String customerId = scoped.substring(separator + 2);
+        if (scoped.equals(cacheGenerations.scoped(customerId))) {
+            cacheSizeBudget.release(customerId);
+        }
+    }
+
+    // A script rather than RedisTemplate.scan, whose cursor always starts over at 0 and so cannot resume a listing;
+    // like any other script it runs the same on every Redis client
+    @SuppressWarnings("unchecked")
+    private ScanPage scan(String pattern, String cursor, int count) {
+        List<Object> reply = stringRedisTemplate.execute(SCAN_PAGE, List.of(), cursor, pattern, Integer.toString(count));
+        return new ScanPage((String) reply.get(0), (List<String>) reply.get(1));
+    }
+
+    private record ScanPage(String cursor, List<String> keys) {}
+}
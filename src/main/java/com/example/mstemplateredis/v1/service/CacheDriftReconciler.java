@@ -0,0 +1,212 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finds cached account lists that drifted from {@code account_db} and corrects them.
+ * <p>
+ * Cache writes that fail are only logged, and concurrent mutations can race each other, so a cached list can keep
+ * an outdated view until it expires. Every {@code interval-ms} the reconciler walks the {@code accounts::} keys of
+ * the current cache generations with SCAN, {@code batch-size} keys at a time. For each batch it reads the cached
+ * lists with one MGET and the accounts of the same customers with one IN query, and compares the lists on a
+ * fork-join pool of {@code parallelism} threads. Lists are compared by IBAN, customer and balance; order and
+ * timestamps are ignored.
+ * <p>
+ * A drifted list is evicted, or with {@code repair} rewritten from the database if it is still the version that
+ * was compared; a list that changed in the meantime is removed instead. Repairs are off by default because on the
+ * direct write path an account created while its list is repaired can be appended twice. Corrections are paced to
+ * {@code corrections-per-second}, so a large drift does not turn into a burst of Redis writes.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.cache.drift.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheDriftReconciler {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisService redisService;
+    private final AccountRepository accountRepository;
+    private final CacheGenerations cacheGenerations;
+    private final ObjectReader accountsReader;
+    private final ForkJoinPool pool;
+
+    @Value("${app.cache.drift.batch-size:200}")
+    int batchSize = 200;
+
+    @Value("${app.cache.drift.repair:false}")
+    boolean repair;
+
+    @Value("${app.cache.drift.corrections-per-second:50}")
+    double correctionsPerSecond = 50;
+
+    // When the next correction may run, on the System.nanoTime() clock
+    private long nextCorrectionNanos = System.nanoTime();
+
+    private final Counter checked;
+    private final Counter repaired;
+    private final Counter evicted;
+
+    public CacheDriftReconciler(StringRedisTemplate stringRedisTemplate, RedisService redisService,
+                                AccountRepository accountRepository, CacheGenerations cacheGenerations,
+                                ObjectMapper objectMapper,
+                                @Value("${app.cache.drift.parallelism:2}") int parallelism,
+                                MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisService = redisService;
+        this.accountRepository = accountRepository;
+        this.cacheGenerations = cacheGenerations;
+        this.accountsReader = objectMapper.readerFor(
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Account.class));
+        this.pool = new ForkJoinPool(parallelism);
+        this.checked = meterRegistry.counter("accounts.cache.drift.checked");
+        this.repaired = meterRegistry.counter("accounts.cache.drift.corrected", "action", "repaired");
+        this.evicted = meterRegistry.counter("accounts.cache.drift.corrected", "action", "evicted");
+    }
+
+    /**
+     * Compares every cached list of the current generations with the database once. Instances reconciling at the
+     * same time do no harm beyond the extra reads; corrections are idempotent.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.drift.interval-ms:3600000}")
+    public void reconcile() {
+        long compared = 0;
+        long corrected = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        ScanOptions options = ScanOptions.scanOptions().match(Constants.cacheAcccountKey + "v*").count(batchSize).build();
+        try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String customerId = currentCustomerOf(keys.next());
+                if (customerId != null) {
+                    batch.add(customerId);
+                }
+                if (batch.size() >= batchSize) {
+                    compared += batch.size();
+                    corrected += reconcile(List.copyOf(batch));
+                    batch.clear();
+                }
+            }
+            compared += batch.size();
+            corrected += reconcile(List.copyOf(batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Cache drift reconciliation interrupted after {} lists and {} corrections", compared, corrected);
+            return;
+        } catch (Exception e) {
+            log.error("Cache drift reconciliation failed after {} lists and {} corrections: {}", compared, corrected,
+                    e.getMessage());
+            return;
+        }
+        if (corrected > 0) {
+            log.warn("Corrected {} of {} cached account lists that drifted from the database", corrected, compared);
+        } else {
+            log.info("All {} cached account lists match the database", compared);
+        }
+    }
+
+    private long reconcile(List<String> customerIds) throws InterruptedException {
+        if (customerIds.isEmpty()) {
+            return 0;
+        }
+        Map<String, CachedAccounts> cached = redisService.getCachedAccountLists(customerIds);
+        if (cached.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<Account>> loaded = accountRepository.getAccountsOfCustomers(cached.keySet()).stream()
+                .collect(Collectors.groupingBy(Account::getCustomerId));
+
+        List<String> drifted = pool.submit(() -> cached.entrySet().parallelStream()
+                        .filter(entry -> !matches(entry.getValue(), loaded.getOrDefault(entry.getKey(), List.of())))
+                        .map(Map.Entry::getKey)
+                        .toList())
+                .join();
+        checked.increment(cached.size());
+
+        for (String customerId : drifted) {
+            pace();
+            if (repair && redisService.replaceAccountsInCache(customerId,
+                    loaded.getOrDefault(customerId, List.of()), cached.get(customerId).etag())) {
+                repaired.increment();
+                log.info("Repaired cached accounts of customer {} that drifted from the database", customerId);
+            } else {
+                if (!repair) {
+                    redisService.evictAccountsFromCache(List.of(customerId));
+                }
+                evicted.increment();
+                log.info("Evicted cached accounts of customer {} that drifted from the database", customerId);
+            }
+        }
+        return drifted.size();
+    }
+
+    boolean matches(CachedAccounts cached, List<Account> loaded) {
+        List<Account> accounts;
+        try {
+            accounts = accountsReader.readValue(cached.json());
+        } catch (IOException e) {
+            return false;
+        }
+        return accounts.size() == loaded.size() && byIban(accounts).equals(byIban(loaded));
+    }
+
+    // The compared part of an account; balances are normalized, so 10.5 and 10.50 compare equal
+    private record Compared(String customerId, BigDecimal balance) {}
+
+    private static Map<String, Compared> byIban(List<Account> accounts) {
+        Map<String, Compared> byIban = new HashMap<>();
+        for (Account account : accounts) {
+            BigDecimal balance = account.getBalance();
+            byIban.put(account.getIban(), new Compared(account.getCustomerId(),
+                    balance != null ? balance.stripTrailingZeros() : null));
+        }
+        return byIban;
+    }
+
+    // The customer ID of a key of the current generations, or null for keys of outdated ones
+    private String currentCustomerOf(String key) {
+        int separator = key.indexOf("::", Constants.cacheAcccountKey.length());
+        if (separator < 0) {
+            return null;
+        }
+        String customerId = key.substring(separator + 2);
+        return key.equals(Constants.cacheAcccountKey + cacheGenerations.scoped(customerId)) ? customerId : null;
+    }
+
+    private void pace() throws InterruptedException {
+        long now = System.nanoTime();
+        long wait = nextCorrectionNanos - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextCorrectionNanos = Math.max(now, nextCorrectionNanos) + (long) (TimeUnit.SECONDS.toNanos(1) / correctionsPerSecond);
+    }
+
+    @PreDestroy
+    void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.CacheAdminException;
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.CacheGeneration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generation numbers that scope the cached account lists, for invalidating them in bulk without scanning Redis.
+ * <p>
+ * Every customer belongs to one of {@code segments} hash segments. Its cache keys carry the global generation and
+ * the generation of its segment, e.g. {@code accounts::v3.7.1::cust1}; bumping either counter makes every key
+ * written under the old value unreachable at once. The counters live in Redis and are cached here, refreshed every
+ * {@code refresh-interval-ms}, so other instances follow a bump within that interval. Evictions do not wait for
+ * that: they read the counters from Redis and remove the keys of both the cached and the current generations.
+ * <p>
+ * Unreachable keys age out with their TTL. The instance that performed a bump also removes them in the background
+ * with SCAN and UNLINK, in small batches, so keys without expiry do not accumulate either.
+ */
+@Service
+@Slf4j
+public class CacheGenerations {
+
+    private static final String GLOBAL = Constants.cacheGenerationKey + "global";
+    private static final List<String> SCOPED_PREFIXES = List.of(
+            Constants.cacheAcccountKey, Constants.cacheAccountEtagKey, Constants.cacheAccountStaleKey,
+            Constants.cacheAccountAggregateKey);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int segments;
+    // Global generation key first, then one key per segment
+    private final List<String> generationKeys;
+
+    // Same layout as generationKeys; replaced as a whole, so a reader never mixes two refreshes
+    private volatile long[] current;
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+
+    @Value("${app.cache.generation.sweep-batch:500}")
+    int sweepBatch = 500;
+
+    private final Counter swept;
+
+    public CacheGenerations(StringRedisTemplate stringRedisTemplate,
+                            @Value("${app.cache.generation.segments:16}") int segments,
+                            MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.segments = segments;
+        List<String> keys = new ArrayList<>(segments + 1);
+        keys.add(GLOBAL);
+        for (int segment = 0; segment < segments; segment++) {
+            keys.add(Constants.cacheGenerationKey + "segment::" + segment);
+        }
+        this.generationKeys = List.copyOf(keys);
+        this.current = new long[segments + 1];
+        this.swept = meterRegistry.counter("accounts.cache.generation.swept");
+        meterRegistry.gauge("accounts.cache.generation", this, generations -> generations.current[0]);
+    }
+
+    /**
+     * Returns the customer ID prefixed with its current generations, the part of a cache key after the namespace.
+     */
+    public String scoped(String customerId) {
+        return scoped(customerId, current);
+    }
+
+    /**
+     * Returns the customer IDs scoped as by {@link #scoped(String)}, both to the generations cached here and to the
+     * ones now in Redis, for evictions. Right after a bump elsewhere the two differ: the bumping instance already
+     * writes lists under the new generation, while this one and others still read under the old, so both must go.
+     * The generations read are adopted. Unlike {@link #refresh()}, a Redis failure is propagated, as evictions are.
+     */
+    public List<String> scopedForEviction(Collection<String> customerIds) {
+        long[] cached = current;
+        long[] latest = load();
+        if (latest != null && !Arrays.equals(latest, cached)) {
+            log.info("Cache generations changed, global generation is now {}", latest[0]);
+            current = latest;
+        }
+        Set<String> scoped = new LinkedHashSet<>();
+        for (String customerId : customerIds) {
+            scoped.add(scoped(customerId, cached));
+            if (latest != null) {
+                scoped.add(scoped(customerId, latest));
+            }
+        }
+        return List.copyOf(scoped);
+    }
+
+    private String scoped(String customerId, long[] generations) {
+        int segment = segmentOf(customerId);
+        return "v" + generations[0] + "." + segment + "." + generations[segment + 1] + "::" + customerId;
+    }
+
+    /**
+     * Returns the ID prefixed with the global generation only, for keys not tied to a customer, such as the IBAN
+     * index. Segment bumps do not reach these keys.
+     */
+    public String scopedGlobal(String id) {
+        return "v" + current[0] + "::" + id;
+    }
+
+    public int segmentOf(String customerId) {
+        return Math.floorMod(customerId.hashCode(), segments);
+    }
+
+    /**
+     * Invalidates every cached account list.
+     */
+    public CacheGeneration bump() {
+        return increment(GLOBAL, null);
+    }
+
+    /**
+     * Invalidates the cached account lists of the customers in one segment.
+     */
+    public CacheGeneration bumpSegment(int segment) {
+        if (segment < 0 || segment >= segments) {
+            throw new CacheAdminException("Segment must be between 0 and " + (segments - 1));
+        }
+        return increment(generationKeys.get(segment + 1), segment);
+    }
+
+    private CacheGeneration increment(String key, Integer segment) {
+        Long generation = stringRedisTemplate.opsForValue().increment(key);
+        refresh();
+        sweepPending.set(true);
+        log.info("Bumped cache generation {} to {}", key, generation);
+        return new CacheGeneration(segment, generation != null ? generation : 0);
+    }
+
+    /**
+     * Reloads the generations from Redis. On failure the last known ones stay in use.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.cache.generation.refresh-interval-ms:1000}")
+    public void refresh() {
+        try {
+            long[] loaded = load();
+            if (loaded != null && !Arrays.equals(loaded, current)) {
+                log.info("Cache generations changed, global generation is now {}", loaded[0]);
+                current = loaded;
+            }
+        } catch (Exception e) {
+            log.warn("Could not refresh cache generations, keeping global generation {}: {}", current[0], e.getMessage());
+        }
+    }
+
+    private long[] load() {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(generationKeys);
+        if (values == null) {
+            return null;
+        }
+        long[] loaded = new long[generationKeys.size()];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = values.get(i) != null ? Long.parseLong(values.get(i)) : 0;
+        }
+        return loaded;
+    }
+
+    /**
+     * Unlinks the keys of outdated generations after this instance bumped one.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.generation.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (!sweepPending.getAndSet(false)) {
+            return;
+        }
+        long[] generations = current;
+        long removed = 0;
+        try {
+            for (String prefix : SCOPED_PREFIXES) {
+                removed += sweep(prefix, generations);
+            }
+        } catch (Exception e) {
+            sweepPending.set(true);
+            log.warn("Cache generation sweep failed after {} keys, retrying later: {}", removed, e.getMessage());
+            return;
+        } finally {
+            swept.increment(removed);
+        }
+        log.info("Swept {} keys of outdated cache generations", removed);
+    }
+
+    private long sweep(String prefix, long[] generations) {
+        long removed = 0;
+        List<String> batch = new ArrayList<>(sweepBatch);
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "v*").count(sweepBatch).build();
+        try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (isOutdated(key, prefix, generations)) {
+                    batch.add(key);
+                }
+                if (batch.size() >= sweepBatch) {
+                    removed += unlink(batch);
+                }
+            }
+        }
+        return removed + unlink(batch);
+    }
+
+    private long unlink(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long removed = stringRedisTemplate.unlink(List.copyOf(keys));
+        keys.clear();
+        return removed != null ? removed : 0;
+    }
+
+    // Key layout: <prefix>v<global>.<segment>.<segment generation>::<customerId>
+    static boolean isOutdated(String key, String prefix, long[] generations) {
+        int end = key.indexOf("::", prefix.length());
+        if (end < 0) {
+            return false;
+        }
+        String[] parts = key.substring(prefix.length() + 1, end).split("\\.");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            long global = Long.parseLong(parts[0]);
+            int segment = Integer.parseInt(parts[1]);
+            long segmentGeneration = Long.parseLong(parts[2]);
+            // Keys of a different segment count belong to no segment now and are left to their TTL
+            return global < generations[0]
+                    || segment >= 0 && segment < generations.length - 1 && segmentGeneration < generations[segment + 1];
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.service.CacheMutationJournal.Mutation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Replays the cache mutations journaled during a Redis outage once Redis answers again.
+ * <p>
+ * Each journaled account has the cached list of its customer evicted and its IBAN index entry invalidated,
+ * {@code batch-size} accounts at a time, and is acknowledged in the journal after its batch succeeded; the next read
+ * reloads both from the database. Evictions are idempotent, so a batch that is replayed twice after a failure or a
+ * crash does no harm. An account that changed again during the replay stays journaled. If the journal overflowed,
+ * the global cache generation is bumped instead, which invalidates every list and the IBAN index at once.
+ */
+@Service
+@Slf4j
+public class CacheJournalReplayer {
+
+    private final CacheMutationJournal cacheMutationJournal;
+    private final RedisService redisService;
+    private final CacheGenerations cacheGenerations;
+
+    private final Counter replayed;
+
+    @Value("${app.cache.journal.batch-size:500}")
+    int batchSize = 500;
+
+    public CacheJournalReplayer(CacheMutationJournal cacheMutationJournal, RedisService redisService,
+                                CacheGenerations cacheGenerations, MeterRegistry meterRegistry) {
+        this.cacheMutationJournal = cacheMutationJournal;
+        this.redisService = redisService;
+        this.cacheGenerations = cacheGenerations;
+        this.replayed = meterRegistry.counter("accounts.cache.journal.replayed");
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.journal.replay-interval-ms:1000}")
+    public void replay() {
+        CacheMutationJournal.Pending pending = cacheMutationJournal.pending();
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (pending.overflowed()) {
+                cacheGenerations.bump();
+                cacheMutationJournal.acknowledge(pending.mutations(), true, pending.sequence());
+                replayed.increment(pending.mutations().size());
+                log.info("Replayed overflowed cache mutation journal by bumping the global cache generation");
+                return;
+            }
+            List<Mutation> mutations = pending.mutations();
+            for (int from = 0; from < mutations.size(); from += batchSize) {
+                List<Mutation> batch = mutations.subList(from, Math.min(from + batchSize, mutations.size()));
+                redisService.evictAccountsFromCache(batch.stream().map(Mutation::customerId).distinct().toList(),
+                        batch.stream().map(Mutation::iban).toList());
+                cacheMutationJournal.acknowledge(batch, false, pending.sequence());
+                replayed.increment(batch.size());
+            }
+            log.info("Replayed {} journaled cache mutations", mutations.size());
+        } catch (Exception e) {
+            log.debug("Redis still unavailable, keeping journaled cache mutations: {}", e.getMessage());
+        }
+    }
+}
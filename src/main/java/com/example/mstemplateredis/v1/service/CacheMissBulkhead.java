@@ -0,0 +1,105 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many cache-miss loads run against MySQL at once.
+ * <p>
+ * Without it a burst of Redis misses takes every Hikari connection, and writes and all other queries queue behind
+ * the reloads. Loads beyond {@code max-concurrent} wait in a bounded FIFO queue; a waiter that does not get a permit
+ * within {@code max-wait}, or finds the queue full, is rejected with {@link AccountLoadRejectedException} so the
+ * caller fails fast instead of holding a request thread.
+ */
+@Service
+@Slf4j
+public class CacheMissBulkhead {
+
+    private final Semaphore permits;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Timer waitTime;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public CacheMissBulkhead(@Value("${app.cache.miss-bulkhead.max-concurrent:8}") int maxConcurrent,
+                             @Value("${app.cache.miss-bulkhead.max-queue:32}") int maxQueue,
+                             @Value("${app.cache.miss-bulkhead.max-wait:200ms}") Duration maxWait,
+                             MeterRegistry meterRegistry) {
+        // Fair, so waiters are served in arrival order and the oldest ones do not starve past their deadline
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.waitTime = Timer.builder("accounts.cache.miss.bulkhead.wait")
+                .description("Time cache-miss loads waited for a database permit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejectedQueueFull = meterRegistry.counter("accounts.cache.miss.bulkhead.rejected", "reason", "queue_full");
+        this.rejectedTimeout = meterRegistry.counter("accounts.cache.miss.bulkhead.rejected", "reason", "timeout");
+        meterRegistry.gauge("accounts.cache.miss.bulkhead.queue.depth", waiting);
+        meterRegistry.gauge("accounts.cache.miss.bulkhead.active", permits, p -> maxConcurrent - p.availablePermits());
+    }
+
+    /**
+     * Runs the load once a permit is available, waiting at most the configured {@code max-wait}
+     * or until the request deadline, whichever comes first.
+     */
+    public <T> T execute(Supplier<T> load) {
+        long remainingMillis = RequestDeadlineHolder.remainingMillis();
+        return execute(remainingMillis == RequestDeadlineHolder.NO_DEADLINE ? maxWait : Duration.ofMillis(remainingMillis), load);
+    }
+
+    /**
+     * Runs the load once a permit is available, waiting at most {@code wait} (capped at {@code max-wait}).
+     */
+    public <T> T execute(Duration wait, Supplier<T> load) {
+        acquire(wait.compareTo(maxWait) < 0 ? wait : maxWait);
+        try {
+            return load.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire(Duration wait) {
+        long start = System.nanoTime();
+        try {
+            // tryAcquire with a timeout respects fairness, unlike the untimed variant
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (waiting.incrementAndGet() > maxQueue) {
+                waiting.decrementAndGet();
+                rejectedQueueFull.increment();
+                throw new AccountLoadRejectedException("Too many concurrent account loads", 1);
+            }
+            try {
+                if (wait.isNegative() || !permits.tryAcquire(wait.toNanos(), TimeUnit.NANOSECONDS)) {
+                    rejectedTimeout.increment();
+                    throw new AccountLoadRejectedException("Timed out waiting to load accounts", 1);
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountLoadRejectedException("Interrupted while waiting to load accounts", 1);
+        } finally {
+            waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
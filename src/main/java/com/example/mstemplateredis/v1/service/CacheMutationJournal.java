@@ -0,0 +1,228 @@
+package com.example.mstemplateredis.v1.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped journal of the accounts whose cached list and IBAN index entry could not be updated because Redis
+ * was unavailable.
+ * <p>
+ * Each account is journaled once with its customer, however often it changes during the outage, so the file holds
+ * one record per affected account and its size is bounded by {@code max-bytes}. When it is full, the journal only remembers that
+ * it overflowed, and the replay invalidates the whole cache instead. Writes go to the mapped page cache, so the
+ * journal survives a process crash and is picked up again on restart; it is not forced to disk per record.
+ * <p>
+ * Every mutation gets a sequence number, kept in memory only. A replay acknowledges the snapshot it started from,
+ * so an account that changed again while it was replayed stays journaled for the next replay.
+ * <p>
+ * Layout: magic (int), end offset of the records (int), overflow flag (byte), then records of
+ * (length as short, UTF-8 customer ID, length as short, UTF-8 IBAN) from {@link #RECORDS_START}. A journal of the
+ * previous layout, which held customer IDs only, is recovered as overflowed if it has records, since the IBANs
+ * to invalidate are unknown.
+ */
+@Service
+@Slf4j
+public class CacheMutationJournal {
+
+    private static final int MAGIC = 0x41434A32; // "ACJ2"
+    private static final int CUSTOMERS_ONLY_MAGIC = 0x41434A31; // "ACJ1"
+    private static final int END_OFFSET = 4;
+    private static final int OVERFLOW_OFFSET = 8;
+    static final int RECORDS_START = 16;
+
+    private final boolean enabled;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Accounts journaled so far, in order, with the sequence of their latest mutation; mirrors the records in the file
+    private final Map<Mutation, Long> mutations = new LinkedHashMap<>();
+    private long sequence;
+    private boolean overflowed;
+    // Sequence of the latest mutation that was not journaled because the journal was full
+    private long overflowedAt;
+
+    private final Counter overflows;
+
+    /**
+     * An account whose cached state may be out of date: its entry in the IBAN index and its customer's list.
+     */
+    public record Mutation(String customerId, String iban) {}
+
+    /**
+     * The journaled mutations up to {@code sequence}, to be replayed and then acknowledged.
+     */
+    public record Pending(List<Mutation> mutations, boolean overflowed, long sequence) {
+        public boolean isEmpty() {
+            return mutations.isEmpty() && !overflowed;
+        }
+    }
+
+    public CacheMutationJournal(@Value("${app.cache.journal.enabled:true}") boolean enabled,
+                                @Value("${app.cache.journal.path:${java.io.tmpdir}/accounts-cache.journal}") Path path,
+                                @Value("${app.cache.journal.max-bytes:4194304}") int maxBytes,
+                                MeterRegistry meterRegistry) throws IOException {
+        this.enabled = enabled;
+        this.overflows = meterRegistry.counter("accounts.cache.journal.overflows");
+        meterRegistry.gaugeMapSize("accounts.cache.journal.pending", Tags.empty(), mutations);
+        if (!enabled) {
+            this.channel = null;
+            this.buffer = null;
+            return;
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+        recover(path);
+    }
+
+    /**
+     * Remembers that the IBAN index entry of the account and the cached list of its customer may be out of date.
+     */
+    public synchronized void record(String customerId, String iban) {
+        if (!enabled) {
+            return;
+        }
+        long current = ++sequence;
+        if (overflowed) {
+            overflowedAt = current;
+            return;
+        }
+        Mutation mutation = new Mutation(customerId, iban);
+        if (mutations.replace(mutation, current) != null) {
+            return;
+        }
+        if (!append(mutation)) {
+            overflowed = true;
+            overflowedAt = current;
+            buffer.put(OVERFLOW_OFFSET, (byte) 1);
+            overflows.increment();
+            log.warn("Cache mutation journal is full after {} accounts; the whole cache will be invalidated on replay",
+                    mutations.size());
+            return;
+        }
+        mutations.put(mutation, current);
+        log.info("Journaled cache mutation for customer {}, IBAN {} while Redis is unavailable", customerId, iban);
+    }
+
+    public synchronized Pending pending() {
+        return new Pending(List.copyOf(mutations.keySet()), overflowed, sequence);
+    }
+
+    /**
+     * Drops replayed mutations, and the overflow once the cache was invalidated, then compacts the file to the
+     * accounts journaled since the replay started. Accounts and overflows recorded after {@code replayedSequence},
+     * the sequence of the replayed {@link Pending}, are kept.
+     */
+    public synchronized void acknowledge(Collection<Mutation> replayed, boolean overflowCleared, long replayedSequence) {
+        if (!enabled) {
+            return;
+        }
+        for (Mutation mutation : replayed) {
+            Long recordedAt = mutations.get(mutation);
+            if (recordedAt != null && recordedAt <= replayedSequence) {
+                mutations.remove(mutation);
+            }
+        }
+        if (overflowCleared && overflowedAt <= replayedSequence) {
+            overflowed = false;
+        }
+        buffer.put(OVERFLOW_OFFSET, (byte) (overflowed ? 1 : 0));
+        buffer.putInt(END_OFFSET, RECORDS_START);
+        mutations.keySet().forEach(this::append);
+    }
+
+    private boolean append(Mutation mutation) {
+        byte[] customerId = mutation.customerId().getBytes(StandardCharsets.UTF_8);
+        byte[] iban = mutation.iban().getBytes(StandardCharsets.UTF_8);
+        int end = buffer.getInt(END_OFFSET);
+        int length = 2 + customerId.length + 2 + iban.length;
+        if (customerId.length > Short.MAX_VALUE || iban.length > Short.MAX_VALUE || end + length > buffer.capacity()) {
+            return false;
+        }
+        buffer.putShort(end, (short) customerId.length);
+        buffer.put(end + 2, customerId);
+        buffer.putShort(end + 2 + customerId.length, (short) iban.length);
+        buffer.put(end + 4 + customerId.length, iban);
+        // The end offset moves only after the record is complete, so a crash never exposes a partial record
+        buffer.putInt(END_OFFSET, end + length);
+        return true;
+    }
+
+    private void recover(Path path) {
+        int magic = buffer.getInt(0);
+        if (magic != MAGIC) {
+            // Customers journaled without their IBANs can only be replayed by invalidating the whole cache
+            boolean customersOnly = magic == CUSTOMERS_ONLY_MAGIC && buffer.getInt(END_OFFSET) > RECORDS_START;
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(END_OFFSET, RECORDS_START);
+            buffer.put(OVERFLOW_OFFSET, (byte) (customersOnly ? 1 : 0));
+            overflowed = customersOnly;
+            if (customersOnly) {
+                log.warn("Recovered a cache mutation journal without IBANs from {}; replaying it as overflowed", path);
+            }
+            return;
+        }
+        // A journal written with a larger max-bytes is read as far as it is mapped now
+        int end = Math.min(buffer.getInt(END_OFFSET), buffer.capacity());
+        int position = RECORDS_START;
+        while (true) {
+            String customerId = readString(position, end);
+            if (customerId == null) {
+                break;
+            }
+            int ibanPosition = position + 2 + buffer.getShort(position);
+            String iban = readString(ibanPosition, end);
+            if (iban == null) {
+                break;
+            }
+            mutations.put(new Mutation(customerId, iban), 0L);
+            position = ibanPosition + 2 + buffer.getShort(ibanPosition);
+        }
+        overflowed = buffer.get(OVERFLOW_OFFSET) == 1 || position < buffer.getInt(END_OFFSET);
+        buffer.putInt(END_OFFSET, position);
+        buffer.put(OVERFLOW_OFFSET, (byte) (overflowed ? 1 : 0));
+        if (!mutations.isEmpty() || overflowed) {
+            log.warn("Recovered {} journaled cache mutations from {}{}", mutations.size(), path,
+                    overflowed ? " (overflowed)" : "");
+        }
+    }
+
+    // The length-prefixed string at the position, or null if it does not end before the end offset
+    private String readString(int position, int end) {
+        if (position + 2 > end || position + 2 + buffer.getShort(position) > end) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.getShort(position)];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    void close() {
+        if (!enabled) {
+            return;
+        }
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies the cache changes recorded in the outbox to Redis.
+ * <p>
+ * Each batch is locked, the affected {@code accounts::} keys are evicted in one pipeline, the IBAN index entries of
+ * the changed accounts are invalidated, and the rows are deleted in the same transaction. If Redis fails the
+ * transaction rolls back and the batch is retried on the next poll; if the process dies after the eviction the rows
+ * are relayed again. Evictions are idempotent, so at-least-once delivery is safe.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.cache.outbox.enabled", havingValue = "true")
+public class CacheOutboxRelay {
+
+    private final CacheOutboxRepository cacheOutboxRepository;
+    private final RedisService redisService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter relayed;
+    private final Counter failures;
+    private final Timer deliveryLag;
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+
+    @Value("${app.cache.outbox.batch-size:500}")
+    int batchSize = 500;
+
+    public CacheOutboxRelay(CacheOutboxRepository cacheOutboxRepository, RedisService redisService,
+                            TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.cacheOutboxRepository = cacheOutboxRepository;
+        this.redisService = redisService;
+        this.transactionTemplate = transactionTemplate;
+        this.relayed = meterRegistry.counter("accounts.cache.outbox.relayed");
+        this.failures = meterRegistry.counter("accounts.cache.outbox.failures");
+        this.deliveryLag = Timer.builder("accounts.cache.outbox.delivery.lag")
+                .description("Time from the account mutation commit to the cache eviction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("accounts.cache.outbox.lag.seconds", oldestPendingMillis,
+                oldest -> oldest.get() == 0 ? 0 : (System.currentTimeMillis() - oldest.get()) / 1000.0);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.outbox.poll-interval-ms:200}")
+    public void poll() {
+        try {
+            // Keep draining while batches come back full, so a burst does not wait one poll interval per batch
+            while (relayBatch() == batchSize) {
+                log.debug("Outbox batch full, relaying next batch immediately");
+            }
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Cache outbox relay failed, batch will be retried: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Relays one batch and returns the number of entries applied. Runs in its own transaction,
+     * which holds the row locks until the entries are deleted.
+     */
+    int relayBatch() {
+        Integer relayedCount = transactionTemplate.execute(status -> relayLockedBatch());
+        return relayedCount != null ? relayedCount : 0;
+    }
+
+    private int relayLockedBatch() {
+        List<CacheOutboxEntry> batch = cacheOutboxRepository.lockBatch(batchSize);
+        if (batch.isEmpty()) {
+            oldestPendingMillis.set(0);
+            return 0;
+        }
+        oldestPendingMillis.set(batch.get(0).createdAtMillis());
+
+        Set<String> customerIds = new LinkedHashSet<>();
+        Set<String> ibans = new LinkedHashSet<>();
+        for (CacheOutboxEntry entry : batch) {
+            customerIds.add(entry.customerId());
+            ibans.add(entry.iban());
+        }
+        redisService.evictAccountsFromCache(customerIds, ibans);
+        cacheOutboxRepository.delete(batch.stream().map(CacheOutboxEntry::id).toList());
+
+        long now = System.currentTimeMillis();
+        for (CacheOutboxEntry entry : batch) {
+            deliveryLag.record(now - entry.createdAtMillis(), TimeUnit.MILLISECONDS);
+        }
+        relayed.increment(batch.size());
+        log.info("Relayed {} outbox entries covering {} customers", batch.size(), customerIds.size());
+        return batch.size();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mstemplateredis.v1.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory accounting for the {@code accounts::} entries written by this instance.
+ * <p>
+ * Every write reports its serialized size. Entries above the hard per-entry limit are not cached at all,
+ * entries above the soft limit - or any entry while the tracked total is over budget - get the short TTL,
+ * so a few very large customers cannot push the small hot entries out of Redis under {@code allkeys-lru}.
+ * The total is tracked per instance from the writes it performed, which is an upper bound on what the
+ * instance contributes to Redis memory.
+ */
+@Service
+@Slf4j
+public class CacheSizeBudget {
+
+    @Value("${app.cache.budget.max-entry-bytes:524288}")
+    long maxEntryBytes = 524_288;
+
+    @Value("${app.cache.budget.soft-entry-bytes:65536}")
+    long softEntryBytes = 65_536;
+
+    @Value("${app.cache.budget.total-bytes:134217728}")
+    long totalBytes = 134_217_728;
+
+    @Value("${app.cache.budget.short-ttl:30s}")
+    Duration shortTtl = Duration.ofSeconds(30);
+
+    private final ConcurrentHashMap<String, TrackedEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong trackedBytes = new AtomicLong();
+
+    private final DistributionSummary entrySizes;
+    private final Counter rejected;
+    private final Counter shortened;
+
+    private record TrackedEntry(int sizeBytes, long expiresAtMillis) {}
+
+    public CacheSizeBudget(MeterRegistry meterRegistry) {
+        this.entrySizes = DistributionSummary.builder("accounts.cache.entry.size")
+                .description("Serialized size of cached account lists")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("accounts.cache.entry.budget", "decision", "rejected");
+        this.shortened = meterRegistry.counter("accounts.cache.entry.budget", "decision", "shortened");
+        meterRegistry.gauge("accounts.cache.tracked.bytes", trackedBytes);
+        meterRegistry.gaugeMapSize("accounts.cache.tracked.entries", Tags.empty(), entries);
+    }
+
+    /**
+     * Decides the TTL for an entry about to be written and accounts for its size.
+     *
+     * @return the TTL to use, or {@code null} if the entry must not be cached
+     */
+    public Duration admit(String customerId, int sizeBytes, Duration baseTtl) {
+        entrySizes.record(sizeBytes);
+
+        if (sizeBytes > maxEntryBytes) {
+            rejected.increment();
+            release(customerId);
+            log.warn("Cache entry for customer {} is {} bytes, above the {} byte limit; not caching", customerId, sizeBytes, maxEntryBytes);
+            return null;
+        }
+
+        Duration ttl = baseTtl;
+        long projectedTotal = trackedBytes.get() + sizeBytes - currentSize(customerId);
+        if (sizeBytes > softEntryBytes || projectedTotal > totalBytes) {
+            shortened.increment();
+            ttl = shorter(baseTtl, shortTtl);
+            log.debug("Cache entry for customer {} ({} bytes, tracked total {}) stored with short TTL {}", customerId, sizeBytes, projectedTotal, ttl);
+        }
+
+        track(customerId, sizeBytes, ttl);
+        return ttl;
+    }
+
+    /**
+     * Forgets the size of an entry that was removed from the cache.
+     */
+    public void release(String customerId) {
+        TrackedEntry removed = entries.remove(customerId);
+        if (removed != null) {
+            trackedBytes.addAndGet(-removed.sizeBytes());
+        }
+    }
+
+    public long trackedBytes() {
+        return trackedBytes.get();
+    }
+
+    /**
+     * Drops entries whose TTL has passed, since Redis has expired them as well.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.budget.sweep-interval-ms:30000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        entries.forEach((customerId, entry) -> {
+            if (entry.expiresAtMillis() <= now && entries.remove(customerId, entry)) {
+                trackedBytes.addAndGet(-entry.sizeBytes());
+            }
+        });
+    }
+
+    private void track(String customerId, int sizeBytes, Duration ttl) {
+        long expiresAt = ttl.isZero() ? Long.MAX_VALUE : System.currentTimeMillis() + ttl.toMillis();
+        TrackedEntry previous = entries.put(customerId, new TrackedEntry(sizeBytes, expiresAt));
+        trackedBytes.addAndGet(sizeBytes - (previous != null ? previous.sizeBytes() : 0));
+    }
+
+    private int currentSize(String customerId) {
+        TrackedEntry entry = entries.get(customerId);
+        return entry != null ? entry.sizeBytes() : 0;
+    }
+
+    private static Duration shorter(Duration baseTtl, Duration shortTtl) {
+        // A zero base TTL means "no expiry", which is never shorter
+        return baseTtl.isZero() || shortTtl.compareTo(baseTtl) < 0 ? shortTtl : baseTtl;
+    }
+}
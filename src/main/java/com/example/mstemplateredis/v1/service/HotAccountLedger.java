@@ -0,0 +1,242 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.HotAccountProperties;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.InsufficientBalanceException;
+import com.example.mstemplateredis.utils.Constants;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import com.example.mstemplateredis.v1.repository.HotAccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coalesces balance adjustments of designated hot accounts in Redis and flushes them to MySQL in merged updates,
+ * so the busiest account rows are locked once per flush instead of once per adjustment.
+ * <p>
+ * Each hot account has a Redis hash holding, in cents: {@code base}, the balance as of the last completed flush;
+ * {@code pending}, the adjustments accepted since; and {@code inflight}, the adjustments taken by a flush that has
+ * not been confirmed yet. The current balance is always their sum, and adjustments are checked against it.
+ * <p>
+ * A flush moves {@code pending} to {@code inflight} under a new sequence number, applies it to MySQL together with
+ * that number, and only then folds it into {@code base}. If an instance dies in between, the next flush - on any
+ * instance - finds the unconfirmed {@code inflight} and retries it; the sequence number stored with the balance
+ * makes the retry a no-op if the first attempt had committed. The hashes must not be evicted, so Redis has to run
+ * with persistence and must not drop these keys under memory pressure.
+ */
+@Service
+@Slf4j
+public class HotAccountLedger {
+
+    // Returns {1, balance} when applied, {0, balance} when the debit is too large, {-1, 0} if the hash is missing.
+    // Lua numbers are doubles, so the guard is exact up to 2^53 cents; HINCRBY keeps the stored sum exact.
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ADJUST = new DefaultRedisScript<>("""
+            local h = redis.call('HMGET', KEYS[1], 'base', 'pending', 'inflight')
+            if not h[1] then
+                return {-1, 0}
+            end
+            local balance = tonumber(h[1]) + (tonumber(h[2]) or 0) + (tonumber(h[3]) or 0)
+            local delta = tonumber(ARGV[1])
+            if balance + delta < 0 then
+                return {0, balance}
+            end
+            redis.call('HINCRBY', KEYS[1], 'pending', ARGV[1])
+            return {1, balance + delta}
+            """, List.class);
+
+    static final RedisScript<Long> INIT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], 'base') == 0 then
+                redis.call('HSET', KEYS[1], 'base', ARGV[1], 'seq', ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    // Returns {cents, seq} of the flush to apply: an unconfirmed one if there is one, otherwise the pending
+    // adjustments under a new sequence number. Returns an empty list when there is nothing to flush.
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> FLUSH_BEGIN = new DefaultRedisScript<>("""
+            local h = redis.call('HMGET', KEYS[1], 'pending', 'inflight', 'inflight_seq')
+            if h[2] then
+                return {h[2], h[3]}
+            end
+            if not h[1] or tonumber(h[1]) == 0 then
+                return {}
+            end
+            local seq = redis.call('HINCRBY', KEYS[1], 'seq', 1)
+            redis.call('HSET', KEYS[1], 'inflight', h[1], 'inflight_seq', seq, 'pending', 0)
+            return {h[1], tostring(seq)}
+            """, List.class);
+
+    // Folds a committed flush into the base; a no-op if another instance confirmed it already
+    static final RedisScript<Long> FLUSH_END = new DefaultRedisScript<>("""
+            local h = redis.call('HMGET', KEYS[1], 'inflight', 'inflight_seq')
+            if h[2] ~= ARGV[1] then
+                return 0
+            end
+            redis.call('HINCRBY', KEYS[1], 'base', h[1])
+            redis.call('HDEL', KEYS[1], 'inflight', 'inflight_seq')
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final HotAccountRepository hotAccountRepository;
+    private final CacheOutboxRepository cacheOutboxRepository;
+    private final RedisService redisService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, String> customerByIban;
+    private final Set<String> hotCustomers;
+
+    private final Counter adjustments;
+    private final Counter flushed;
+    private final Counter flushFailures;
+
+    @Value("${app.cache.outbox.enabled:false}")
+    boolean outboxEnabled;
+
+    public HotAccountLedger(StringRedisTemplate stringRedisTemplate, HotAccountRepository hotAccountRepository,
+                            CacheOutboxRepository cacheOutboxRepository, RedisService redisService,
+                            TransactionTemplate transactionTemplate, HotAccountProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.hotAccountRepository = hotAccountRepository;
+        this.cacheOutboxRepository = cacheOutboxRepository;
+        this.redisService = redisService;
+        this.transactionTemplate = transactionTemplate;
+        this.customerByIban = properties.customerByIban();
+        this.hotCustomers = properties.customerIds();
+        this.adjustments = meterRegistry.counter("accounts.hot.adjustments");
+        this.flushed = meterRegistry.counter("accounts.hot.flushes", "result", "flushed");
+        this.flushFailures = meterRegistry.counter("accounts.hot.flushes", "result", "failed");
+    }
+
+    public boolean isHot(String iban) {
+        return customerByIban.containsKey(iban);
+    }
+
+    public boolean isHotCustomer(String customerId) {
+        return hotCustomers.contains(customerId);
+    }
+
+    /**
+     * Accepts an adjustment of a hot account and returns the resulting balance. The adjustment reaches MySQL with
+     * the next flush.
+     *
+     * @throws AccountNotFoundException     if the account does not belong to the customer or does not exist
+     * @throws InsufficientBalanceException if the debit would make the balance negative
+     */
+    public BigDecimal adjust(String customerId, String iban, BigDecimal delta) {
+        if (!customerId.equals(customerByIban.get(iban))) {
+            throw new AccountNotFoundException("Failed to adjust account for IBAN: " + iban);
+        }
+        String key = Constants.hotAccountKey + iban;
+        String cents = Long.toString(toCents(delta));
+
+        List<?> result = stringRedisTemplate.execute(ADJUST, List.of(key), cents);
+        if (toLong(result.get(0)) == -1) {
+            initialise(iban, key);
+            result = stringRedisTemplate.execute(ADJUST, List.of(key), cents);
+        }
+        if (toLong(result.get(0)) == 0) {
+            throw new InsufficientBalanceException("Balance of IBAN " + iban + " cannot cover a debit of " + delta.negate());
+        }
+        adjustments.increment();
+        return BigDecimal.valueOf(toLong(result.get(1)), 2);
+    }
+
+    /**
+     * Returns the current balances - flushed plus pending - of the customer's hot accounts that have adjustments
+     * tracked in Redis. Accounts without a ledger entry have no pending adjustments, so their stored balance holds.
+     */
+    public Map<String, BigDecimal> balances(String customerId) {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        customerByIban.forEach((iban, owner) -> {
+            if (!owner.equals(customerId)) {
+                return;
+            }
+            List<Object> h = stringRedisTemplate.opsForHash().multiGet(Constants.hotAccountKey + iban,
+                    List.of("base", "pending", "inflight"));
+            if (h.get(0) != null) {
+                long cents = toLong(h.get(0)) + toLongOrZero(h.get(1)) + toLongOrZero(h.get(2));
+                balances.put(iban, BigDecimal.valueOf(cents, 2));
+            }
+        });
+        return balances;
+    }
+
+    @Scheduled(fixedDelayString = "${app.hot-accounts.flush-interval-ms:200}")
+    public void flush() {
+        customerByIban.forEach((iban, customerId) -> {
+            try {
+                flushAccount(customerId, iban);
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("Hot account flush failed for IBAN {}, will be retried: {}", iban, e.getMessage());
+            }
+        });
+    }
+
+    void flushAccount(String customerId, String iban) {
+        String key = Constants.hotAccountKey + iban;
+        List<?> taken = stringRedisTemplate.execute(FLUSH_BEGIN, List.of(key));
+        if (taken == null || taken.isEmpty()) {
+            return;
+        }
+        long cents = toLong(taken.get(0));
+        long seq = toLong(taken.get(1));
+
+        Boolean applied = transactionTemplate.execute(status -> {
+            boolean changed = hotAccountRepository.applyFlush(iban, BigDecimal.valueOf(cents, 2), seq);
+            if (changed && outboxEnabled) {
+                cacheOutboxRepository.append(customerId, iban, Operation.UPDATE);
+            }
+            return changed;
+        });
+        stringRedisTemplate.execute(FLUSH_END, List.of(key), Long.toString(seq));
+
+        if (Boolean.TRUE.equals(applied) && !outboxEnabled) {
+            redisService.evictAccountsFromCache(List.of(customerId));
+        }
+        flushed.increment();
+        log.debug("Flushed {} cents for IBAN {} as flush {}", cents, iban, seq);
+    }
+
+    private void initialise(String iban, String key) {
+        HotAccountRepository.State state = hotAccountRepository.loadState(iban);
+        if (state == null) {
+            throw new AccountNotFoundException("Failed to adjust account for IBAN: " + iban);
+        }
+        stringRedisTemplate.execute(INIT, List.of(key), Long.toString(toCents(state.balance())),
+                Long.toString(state.appliedSeq()));
+        log.info("Initialised hot account ledger for IBAN: {}", iban);
+    }
+
+    // Balances are DECIMAL(19, 2); amounts with more decimals are rejected rather than rounded
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+
+    private static long toLongOrZero(Object value) {
+        return value != null ? toLong(value) : 0;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional local tier for the cached account lists, kept off-heap in a memory-mapped file so it adds no GC pressure
+ * and is still warm after a restart.
+ * <p>
+ * A local entry is only served while Redis holds the same version of the list: each read fetches the short ETag key
+ * from Redis and compares it with the ETag stored next to the local bytes. Evictions, generation bumps and TTL
+ * expiry of the Redis entry, made by any instance, therefore apply to the local copy too, and the list body itself
+ * crosses the network only when it changed. Without an ETag in Redis the read is a miss.
+ * <p>
+ * The file holds a header, a hash index of {@code slots} by customer ID, and a data area written as a ring: new
+ * entries are appended and overwrite the oldest ones once the area wraps around, so an index slot is valid only
+ * while its entry has not been overwritten.
+ */
+@Service
+@Slf4j
+public class LocalAccountsCache {
+
+    private static final int MAGIC = 0x4C414331; // "LAC1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    // Slots probed from the home slot of a customer before the home slot is overwritten
+    private static final int PROBES = 4;
+
+    // Header: magic, slot count, data capacity, next absolute write position
+    private static final int SLOTS_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITE_POSITION_OFFSET = 16;
+
+    private final RedisService redisService;
+    private final boolean enabled;
+    private final Duration maxAge;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int capacity;
+    private final int dataStart;
+    // Readers share the mapping; a write may overwrite entries at the tail of the ring
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${app.cache.local.max-entry-bytes:1048576}")
+    int maxEntryBytes = 1 << 20;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    // Entry layout: customer ID length (short), customer ID, ETag length (byte), ETag, expiry (long),
+    // body length (int), body
+    record Entry(String etag, long expiresAtMillis, byte[] json) {}
+
+    public LocalAccountsCache(RedisService redisService,
+                              @Value("${app.cache.local.enabled:false}") boolean enabled,
+                              @Value("${app.cache.local.path:${java.io.tmpdir}/accounts-local.cache}") Path path,
+                              @Value("${app.cache.local.data-bytes:67108864}") int dataBytes,
+                              @Value("${app.cache.local.slots:65536}") int slots,
+                              @Value("${app.cache.local.max-age:15m}") Duration maxAge,
+                              MeterRegistry meterRegistry) throws IOException {
+        this.redisService = redisService;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.hits = meterRegistry.counter("accounts.cache.local.requests", "result", "hit");
+        this.misses = meterRegistry.counter("accounts.cache.local.requests", "result", "miss");
+        this.slots = slots;
+        this.capacity = dataBytes;
+        this.dataStart = HEADER_BYTES + slots * SLOT_BYTES;
+        if (!enabled) {
+            this.channel = null;
+            this.buffer = null;
+            return;
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) dataStart + dataBytes);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(SLOTS_OFFSET) != slots || buffer.getInt(CAPACITY_OFFSET) != dataBytes) {
+            reset();
+            log.info("Initialized local accounts cache at {} with {} slots and {} data bytes", path, slots, dataBytes);
+        } else {
+            log.info("Reopened local accounts cache at {}", path);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the list from the local tier if it is the version cached in Redis, and otherwise reads it from Redis
+     * and keeps it locally. {@code null} if Redis has no entry for the customer.
+     */
+    public CachedAccounts getCachedAccounts(String customerId) {
+        String etag = redisService.getAccountsEtag(customerId);
+        if (etag == null) {
+            misses.increment();
+            return null;
+        }
+        Entry local = read(customerId);
+        if (local != null && local.etag().equals(etag) && local.expiresAtMillis() > System.currentTimeMillis()) {
+            hits.increment();
+            return new CachedAccounts(local.json(), etag);
+        }
+        misses.increment();
+        CachedAccounts cached = redisService.getCachedAccounts(customerId);
+        put(customerId, cached);
+        return cached;
+    }
+
+    /**
+     * Keeps a list that was just cached in Redis. Lists that are not in Redis, or served from their stale copy,
+     * are not kept, since no ETag in Redis could validate them.
+     */
+    public void put(String customerId, CachedAccounts accounts) {
+        if (!enabled || accounts == null || accounts.etag() == null || accounts.stale()
+                || accounts.json().length > maxEntryBytes) {
+            return;
+        }
+        write(customerId, new Entry(accounts.etag(), System.currentTimeMillis() + maxAge.toMillis(), accounts.json()));
+    }
+
+    Entry read(String customerId) {
+        if (!enabled) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int hash = customerId.hashCode();
+            int home = homeSlot(hash);
+            for (int i = 0; i < PROBES; i++) {
+                int slot = slotOffset((home + i) % slots);
+                if (buffer.getInt(slot + 8) == hash && isLive(slot)) {
+                    Entry entry = readEntry(buffer.getLong(slot) - 1, buffer.getInt(slot + 12), customerId);
+                    if (entry != null) {
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void write(String customerId, Entry entry) {
+        byte[] id = customerId.getBytes(StandardCharsets.UTF_8);
+        byte[] etag = entry.etag().getBytes(StandardCharsets.US_ASCII);
+        int length = 2 + id.length + 1 + etag.length + 8 + 4 + entry.json().length;
+        if (length > capacity || id.length > Short.MAX_VALUE || etag.length > Byte.MAX_VALUE) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long position = buffer.getLong(WRITE_POSITION_OFFSET);
+            // Entries never wrap around the end of the data area
+            if (position % capacity + length > capacity) {
+                position += capacity - position % capacity;
+            }
+            int offset = dataStart + (int) (position % capacity);
+            buffer.putShort(offset, (short) id.length);
+            buffer.put(offset + 2, id);
+            int next = offset + 2 + id.length;
+            buffer.put(next, (byte) etag.length);
+            buffer.put(next + 1, etag);
+            next += 1 + etag.length;
+            buffer.putLong(next, entry.expiresAtMillis());
+            buffer.putInt(next + 8, entry.json().length);
+            buffer.put(next + 12, entry.json());
+
+            // The write position moves last; an index slot beyond it after a crash is ignored
+            int slot = slotOffset(chooseSlot(customerId));
+            buffer.putLong(slot, position + 1);
+            buffer.putInt(slot + 8, customerId.hashCode());
+            buffer.putInt(slot + 12, length);
+            buffer.putLong(WRITE_POSITION_OFFSET, position + length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The slot already holding the customer, else a free or overwritten one, else the home slot
+    private int chooseSlot(String customerId) {
+        int hash = customerId.hashCode();
+        int home = homeSlot(hash);
+        int free = -1;
+        for (int i = 0; i < PROBES; i++) {
+            int index = (home + i) % slots;
+            int slot = slotOffset(index);
+            if (!isLive(slot)) {
+                free = free < 0 ? index : free;
+            } else if (buffer.getInt(slot + 8) == hash
+                    && readEntry(buffer.getLong(slot) - 1, buffer.getInt(slot + 12), customerId) != null) {
+                return index;
+            }
+        }
+        return free >= 0 ? free : home;
+    }
+
+    private boolean isLive(int slot) {
+        long position = buffer.getLong(slot) - 1;
+        long end = position + buffer.getInt(slot + 12);
+        long writePosition = buffer.getLong(WRITE_POSITION_OFFSET);
+        return position >= 0 && end <= writePosition && position >= writePosition - capacity;
+    }
+
+    /**
+     * Reads the entry of {@code length} bytes at {@code position}, or {@code null} if it belongs to another customer.
+     * A crash in the middle of a write can leave a live slot pointing at partly overwritten bytes, so the lengths
+     * stored in the entry are checked against the slot's entry length, and an entry that does not add up is a miss.
+     */
+    private Entry readEntry(long position, int length, String customerId) {
+        int start = (int) (position % capacity);
+        if (length < 2 + 1 + 8 + 4 || start + length > capacity) {
+            return null;
+        }
+        int offset = dataStart + start;
+        int end = offset + length;
+        int idLength = buffer.getShort(offset);
+        if (idLength < 0 || offset + 2 + idLength + 1 > end) {
+            return null;
+        }
+        byte[] id = new byte[idLength];
+        buffer.get(offset + 2, id);
+        if (!Arrays.equals(id, customerId.getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        int next = offset + 2 + id.length;
+        int etagLength = buffer.get(next);
+        if (etagLength < 0 || next + 1 + etagLength + 12 > end) {
+            return null;
+        }
+        byte[] etag = new byte[etagLength];
+        buffer.get(next + 1, etag);
+        next += 1 + etag.length;
+        long expiresAtMillis = buffer.getLong(next);
+        int jsonLength = buffer.getInt(next + 8);
+        if (jsonLength != end - (next + 12)) {
+            return null;
+        }
+        byte[] json = new byte[jsonLength];
+        buffer.get(next + 12, json);
+        return new Entry(new String(etag, StandardCharsets.US_ASCII), expiresAtMillis, json);
+    }
+
+    private int homeSlot(int hash) {
+        // Spread the high bits, as String hashes of similar IDs differ mostly in the low ones
+        return Math.floorMod(hash ^ (hash >>> 16), slots);
+    }
+
+    private int slotOffset(int index) {
+        return HEADER_BYTES + index * SLOT_BYTES;
+    }
+
+    private void reset() {
+        for (int offset = 0; offset < dataStart; offset += 8) {
+            buffer.putLong(offset, 0);
+        }
+        buffer.putInt(SLOTS_OFFSET, slots);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(WRITE_POSITION_OFFSET, 0);
+        buffer.putInt(0, MAGIC);
+    }
+
+    @PreDestroy
+    void close() {
+        if (!enabled) {
+            return;
+        }
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.mstemplateredis.v1.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket admission control shared by all instances through Redis.
+ * <p>
+ * All buckets of a request are checked and charged by one script call: a token is taken from each bucket only if
+ * every bucket has one. When Redis rejects a request, the bucket is remembered locally until it has refilled, so a
+ * throttled client that keeps retrying is turned away without further Redis calls. If Redis is unavailable,
+ * requests are admitted; rate limiting must not take the API down with it.
+ */
+@Service
+@Slf4j
+public class RateLimiter {
+
+    // Returns {1, 0, 0} when admitted, or {0, retry-after millis, 1-based index of the empty bucket}.
+    // Time comes from the Redis server, so instances with skewed clocks share one view of each bucket.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET = new DefaultRedisScript<>("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local tokens = {}
+            for i, key in ipairs(KEYS) do
+                local capacity = tonumber(ARGV[2 * i - 1])
+                local rate = tonumber(ARGV[2 * i])
+                local bucket = redis.call('HMGET', key, 'tokens', 'ts')
+                local available = tonumber(bucket[1]) or capacity
+                local ts = tonumber(bucket[2]) or now
+                available = math.min(capacity, available + math.max(0, now - ts) * rate / 1000)
+                if available < 1 then
+                    return {0, math.ceil((1 - available) * 1000 / rate), i}
+                end
+                tokens[i] = available
+            end
+            for i, key in ipairs(KEYS) do
+                local capacity = tonumber(ARGV[2 * i - 1])
+                local rate = tonumber(ARGV[2 * i])
+                redis.call('HSET', key, 'tokens', tokens[i] - 1, 'ts', now)
+                redis.call('PEXPIRE', key, math.ceil(capacity * 1000 / rate) + 1000)
+            end
+            return {1, 0, 0}
+            """, List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Bucket key -> epoch millis until which the bucket is known to be empty
+    private final ConcurrentHashMap<String, Long> blockedUntil = new ConcurrentHashMap<>();
+
+    private final Counter admitted;
+    private final Counter rejected;
+    private final Counter rejectedLocally;
+    private final Counter failedOpen;
+
+    public record Bucket(String key, int capacity, double refillPerSecond) {}
+
+    public record Decision(boolean allowed, long retryAfterMillis) {
+        static final Decision ALLOWED = new Decision(true, 0);
+
+        public long retryAfterSeconds() {
+            return Math.max(1, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    public RateLimiter(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.admitted = meterRegistry.counter("accounts.ratelimit.decisions", "result", "admitted");
+        this.rejected = meterRegistry.counter("accounts.ratelimit.decisions", "result", "rejected");
+        this.rejectedLocally = meterRegistry.counter("accounts.ratelimit.decisions", "result", "rejected_local");
+        this.failedOpen = meterRegistry.counter("accounts.ratelimit.decisions", "result", "failed_open");
+    }
+
+    public Decision tryAcquire(List<Bucket> buckets) {
+        if (buckets.isEmpty()) {
+            return Decision.ALLOWED;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Bucket bucket : buckets) {
+            Long until = blockedUntil.get(bucket.key());
+            if (until != null && until > now) {
+                rejectedLocally.increment();
+                return new Decision(false, until - now);
+            }
+        }
+
+        List<String> keys = new ArrayList<>(buckets.size());
+        Object[] args = new Object[buckets.size() * 2];
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            keys.add(bucket.key());
+            args[2 * i] = Integer.toString(bucket.capacity());
+            args[2 * i + 1] = Double.toString(bucket.refillPerSecond());
+        }
+
+        List<?> result;
+        try {
+            result = stringRedisTemplate.execute(TOKEN_BUCKET, keys, args);
+        } catch (Exception e) {
+            failedOpen.increment();
+            log.warn("Rate limit check failed, admitting request: {}", e.getMessage());
+            return Decision.ALLOWED;
+        }
+
+        if (result == null || ((Number) result.get(0)).longValue() == 1) {
+            admitted.increment();
+            return Decision.ALLOWED;
+        }
+
+        long retryAfterMillis = ((Number) result.get(1)).longValue();
+        Bucket empty = buckets.get(((Number) result.get(2)).intValue() - 1);
+        blockedUntil.put(empty.key(), now + retryAfterMillis);
+        rejected.increment();
+        log.debug("Rate limit bucket {} is empty, retry after {} ms", empty.key(), retryAfterMillis);
+        return new Decision(false, retryAfterMillis);
+    }
+
+    /**
+     * Drops local blocks that have run out.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval-ms:10000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        blockedUntil.values().removeIf(until -> until <= now);
+    }
+}
@@ -1,131 +1,741 @@
 package com.example.mstemplateredis.v1.service;
 
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.DeadlineExceededException;
 import com.example.mstemplateredis.utils.Constants;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class RedisService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    // Writes the account list and its ETag together, so a reader never sees one without the other.
+    // The stale copy gets the same bytes and outlives the fresh entry by the stale-if-error window.
+    // With an expected ETag (ARGV[5]) the write is a compare-and-set: if the list changed since it was read,
+    // the entry is removed instead, so concurrent read-modify-writes cannot overwrite each other's changes.
+    private static final RedisScript<Long> WRITE_WITH_ETAG = new DefaultRedisScript<>("""
+            if ARGV[5] ~= '' and redis.call('GET', KEYS[2]) ~= ARGV[5] then
+                redis.call('UNLINK', KEYS[1], KEYS[2], KEYS[3])
+                return 0
+            end
+            local ttl = tonumber(ARGV[3])
+            local staleTtl = tonumber(ARGV[4])
+            if ttl > 0 then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ttl)
+                redis.call('SET', KEYS[2], ARGV[2], 'PX', ttl)
+            else
+                redis.call('SET', KEYS[1], ARGV[1])
+                redis.call('SET', KEYS[2], ARGV[2])
+            end
+            if staleTtl > 0 then
+                redis.call('SET', KEYS[3], ARGV[1], 'PX', staleTtl)
+            else
+                redis.call('UNLINK', KEYS[3])
+            end
+            return 1
+            """, Long.class);
+
+    // Returns {value, remaining millis} of the stale copy, or an empty list if there is none
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_STALE = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if not value then
+                return {}
+            end
+            return {value, redis.call('PTTL', KEYS[1])}
+            """, List.class);
+
+    // Per-customer account count and total balance in cents. Changes are applied only to an existing aggregate,
+    // so an increment never creates a partial one; a missing aggregate is loaded from the database on the next read.
+    private static final RedisScript<Long> AGGREGATE_ADJUST = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            redis.call('HINCRBY', KEYS[1], 'count', ARGV[1])
+            redis.call('HINCRBY', KEYS[1], 'cents', ARGV[2])
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<Long> AGGREGATE_WRITE = new DefaultRedisScript<>("""
+            redis.call('HSET', KEYS[1], 'count', ARGV[1], 'cents', ARGV[2])
+            if tonumber(ARGV[3]) > 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            end
+            return 1
+            """, Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> AGGREGATE_READ = new DefaultRedisScript<>(
+            "return redis.call('HMGET', KEYS[1], 'count', 'cents')", List.class);
+
+    private static final byte[] NO_EXPECTED_ETAG = new byte[0];
+    // Marks an invalidated IBAN index entry; it is a miss, and keeps a concurrent load from writing back an older row
+    private static final byte[] IBAN_TOMBSTONE = new byte[0];
+
+    // Redis calls that must return before the request deadline; one cheap thread per call, nothing to shut down
+    private final ExecutorService deadlineCalls = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final RedisTemplate<String, byte[]> rawRedisTemplate;
+    private final CacheSizeBudget cacheSizeBudget;
+    private final CacheGenerations cacheGenerations;
+    private final CacheMutationJournal cacheMutationJournal;
+    private final ObjectWriter accountsWriter;
+    private final ObjectReader accountsReader;
+    private final ObjectWriter accountWriter;
+    private final ObjectReader accountReader;
     @Value("${spring.data.redis.time-to-live}")
     String ttl;
+    @Value("${spring.data.redis.timeout:2000ms}")
+    Duration redisTimeout = Duration.ofMillis(2000);
+    @Value("${app.cache.stale.while-revalidate:30s}")
+    Duration staleWhileRevalidate = Duration.ofSeconds(30);
+    @Value("${app.cache.stale.if-error:1h}")
+    Duration staleIfError = Duration.ofHours(1);
+    @Value("${app.cache.iban-index.ttl:5m}")
+    Duration ibanIndexTtl = Duration.ofMinutes(5);
+    @Value("${app.cache.iban-index.tombstone-ttl:10s}")
+    Duration ibanTombstoneTtl = Duration.ofSeconds(10);
 
 
-    public RedisService(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public RedisService(RedisTemplate<String, byte[]> rawRedisTemplate, CacheSizeBudget cacheSizeBudget,
+                        CacheGenerations cacheGenerations, CacheMutationJournal cacheMutationJournal,
+                        ObjectMapper objectMapper) {
+        this.rawRedisTemplate = rawRedisTemplate;
+        this.cacheSizeBudget = cacheSizeBudget;
+        this.cacheGenerations = cacheGenerations;
+        this.cacheMutationJournal = cacheMutationJournal;
+        JavaType accountList = objectMapper.getTypeFactory().constructCollectionType(List.class, Account.class);
+        this.accountsWriter = objectMapper.writerFor(accountList);
+        this.accountsReader = objectMapper.readerFor(accountList);
+        this.accountWriter = objectMapper.writerFor(Account.class);
+        this.accountReader = objectMapper.readerFor(Account.class);
     }
 
-    public List<Account> getAccountsFromCache(String customerId) {
-        String cacheKey = Constants.cacheAcccountKey + customerId;
-
+    /**
+     * Reads the cached response body and its ETag in one MGET, so the ETag always describes the returned bytes.
+     * The bytes are handed to the controller as they are; no Account objects are built on this path.
+     */
+    public CachedAccounts getCachedAccounts(String customerId) {
         try {
-            @SuppressWarnings("unchecked")
-            List<Account> cachedAccounts = (List<Account>) redisTemplate.opsForValue().get(cacheKey);
+            List<byte[]> values = withinDeadline(() -> rawRedisTemplate.opsForValue().multiGet(
+                    List.of(accountsKey(customerId), etagKey(customerId))));
 
-            if (cachedAccounts != null) {
-                log.info("****************** Retrieved {} accounts from cache for customer: {}", cachedAccounts.size(), customerId);
-                return cachedAccounts;
+            if (values != null && isResponseJson(values.get(0))) {
+                String etag = values.get(1) != null ? new String(values.get(1), StandardCharsets.US_ASCII) : null;
+                log.info("****************** Retrieved {} cached bytes for customer: {}", values.get(0).length, customerId);
+                return new CachedAccounts(values.get(0), etag);
             } else {
                 log.info("****************** Cache miss for customer: {}", customerId);
             }
         } catch (Exception e) {
-            logRedisError("getAccountsByCustomerId - read", e);
+            logRedisError("getAccountsJson - read", e);
         }
         return null; // Cache miss
     }
 
-    public void setAccountsToCache(String customerId, List<Account> accounts) {
-        String cacheKey = Constants.cacheAcccountKey + customerId;
+    /**
+     * Returns the ETag of the cached list without reading the list itself, or {@code null} if there is none.
+     */
+    public String getAccountsEtag(String customerId) {
+        try {
+            byte[] etag = withinDeadline(() -> rawRedisTemplate.opsForValue().get(etagKey(customerId)));
+            return etag != null ? new String(etag, StandardCharsets.US_ASCII) : null;
+        } catch (Exception e) {
+            logRedisError("getAccountsEtag - read", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stale copy of the list if the fresh entry expired at most the stale-while-revalidate window ago,
+     * so it can be served while the list is reloaded in the background; {@code null} otherwise.
+     */
+    public CachedAccounts getRevalidatableAccounts(String customerId) {
+        return readStale(customerId, staleWhileRevalidate);
+    }
+
+    /**
+     * Returns the stale copy of the list if the fresh entry expired at most the stale-if-error window ago,
+     * for answering when the database cannot; {@code null} otherwise.
+     */
+    public CachedAccounts getStaleAccounts(String customerId) {
+        return readStale(customerId, staleIfError);
+    }
+
+    /**
+     * Returns a copy of the response body with the balances of the given IBANs replaced. The result is not cached;
+     * its ETag describes the rewritten bytes.
+     */
+    public CachedAccounts withBalances(CachedAccounts accounts, Map<String, BigDecimal> balanceByIban) {
+        try {
+            List<Account> list = accountsReader.readValue(accounts.json());
+            list.forEach(account -> {
+                BigDecimal balance = balanceByIban.get(account.getIban());
+                if (balance != null) {
+                    account.setBalance(balance);
+                }
+            });
+            byte[] json = toJson(list);
+            return new CachedAccounts(json, etagOf(json), accounts.stale());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the accounts back from a response body, for callers that want the list in another format than JSON.
+     */
+    public List<Account> decodeAccounts(CachedAccounts accounts) {
+        try {
+            return accountsReader.readValue(accounts.json());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Serializes the list to the response body, caches it, and returns the body with the ETag it was stored under.
+     * The ETag is {@code null} if the body could not be cached; the body is returned either way.
+     */
+    public CachedAccounts setAccountsToCache(String customerId, List<Account> accounts) {
+        String cacheKey = accountsKey(customerId);
+        byte[] json = toJson(accounts);
         // Try writing to cache
         try {
-            redisTemplate.opsForValue().set(cacheKey, accounts,parseTtl(ttl));
+            String etag = writeAccounts(customerId, cacheKey, json, null);
             log.info("****************** Cached accounts for customer: {}", customerId);
+            return new CachedAccounts(json, etag);
         } catch (Exception e) {
-            logRedisError("getAccountsByCustomerId - write", e);
+            logRedisError("getAccountsJson - write", e);
+            return new CachedAccounts(json, null);
         }
-
     }
 
+    /**
+     * The mutations below leave the cached list and IBAN index entry out of date when Redis cannot be reached; the
+     * account is then journaled so {@link CacheJournalReplayer} invalidates both once Redis is back.
+     */
     public void createAccountToCache(String customerId, Account account) {
-        String cacheKey = Constants.cacheAcccountKey + customerId;
-
         try {
-            @SuppressWarnings("unchecked")
-            List<Account> accounts = (List<Account>) redisTemplate.opsForValue().get(cacheKey);
+            evictOtherGenerations(customerId);
+            String cacheKey = accountsKey(customerId);
+            invalidateIbanIndex(List.of(account.getIban()));
+            Snapshot cached = readSnapshot(cacheKey);
 
-            if (accounts != null) {
+            if (cached != null) {
+                List<Account> accounts = cached.accounts();
                 accounts.add(account);
-                redisTemplate.opsForValue().set(cacheKey, accounts,parseTtl(ttl));
+                writeAccounts(customerId, cacheKey, toJson(accounts), cached.etag());
                 log.info("Appended new account to cache for customer: {}", customerId);
             } else {
                 log.info("Cache miss while appending account. No cache exists yet for customer: {}", customerId);
             }
+            adjustAggregate(customerId, 1, account.getBalance());
         } catch (Exception e) {
             logRedisError("createAccount", e);
+            cacheMutationJournal.record(customerId, account.getIban());
         }
     }
 
     public void updateAccountsInCache(String iban, BigDecimal balance, String customerId) {
-        String cacheKey = Constants.cacheAcccountKey + customerId;
-
         try {
-            @SuppressWarnings("unchecked")
-            List<Account> accounts = (List<Account>) redisTemplate.opsForValue().get(cacheKey);
+            evictOtherGenerations(customerId);
+            String cacheKey = accountsKey(customerId);
+            invalidateIbanIndex(List.of(iban));
+            Snapshot cached = readSnapshot(cacheKey);
 
-            if (accounts != null) {
-                boolean updated = false;
+            if (cached != null) {
+                List<Account> accounts = cached.accounts();
+                BigDecimal previous = null;
                 for (Account acc : accounts) {
                     if (acc.getIban().equals(iban)) {
+                        previous = acc.getBalance();
                         acc.setBalance(balance);
-                        updated = true;
                         break;
                     }
                 }
 
-                if (updated) {
-                    redisTemplate.opsForValue().set(cacheKey, accounts,parseTtl(ttl));
+                if (previous != null) {
+                    String etag = writeAccounts(customerId, cacheKey, toJson(accounts), cached.etag());
                     log.info("Updated account in cache for IBAN: {}", iban);
-                } else {
-                    log.warn("Account with IBAN {} not found in cache for customer {}", iban, customerId);
+                    adjustAggregateIfWritten(customerId, etag, 0, balance.subtract(previous));
+                    return;
                 }
+                log.warn("Account with IBAN {} not found in cache for customer {}", iban, customerId);
             } else {
                 log.info("Cache miss while updating cache for IBAN: {}", iban);
             }
+            evictAggregate(customerId);
         } catch (Exception e) {
             logRedisError("updateAccount", e);
+            cacheMutationJournal.record(customerId, iban);
         }
     }
 
     public void deleteAccountFromCache(String customerId, String iban) {
-        String cacheKey = Constants.cacheAcccountKey + customerId;
-
         try {
-            @SuppressWarnings("unchecked")
-            List<Account> accounts = (List<Account>) redisTemplate.opsForValue().get(cacheKey);
+            evictOtherGenerations(customerId);
+            String cacheKey = accountsKey(customerId);
+            invalidateIbanIndex(List.of(iban));
+            Snapshot cached = readSnapshot(cacheKey);
 
-            if (accounts != null) {
-                boolean removed = accounts.removeIf(acc -> acc.getIban().equals(iban));
+            if (cached != null) {
+                List<Account> accounts = cached.accounts();
+                Account removed = accounts.stream().filter(acc -> acc.getIban().equals(iban)).findFirst().orElse(null);
 
-                if (removed) {
-                    redisTemplate.opsForValue().set(cacheKey, accounts,parseTtl(ttl));
+                if (removed != null) {
+                    accounts.remove(removed);
+                    String etag = writeAccounts(customerId, cacheKey, toJson(accounts), cached.etag());
                     log.info("Removed account from cache for IBAN: {}", iban);
-                } else {
-                    log.warn("Account with IBAN {} not found in cache for customer {}", iban, customerId);
+                    adjustAggregateIfWritten(customerId, etag, -1, removed.getBalance().negate());
+                    return;
                 }
+                log.warn("Account with IBAN {} not found in cache for customer {}", iban, customerId);
             } else {
                 log.info("Cache miss while deleting account from cache for IBAN: {}", iban);
             }
+            evictAggregate(customerId);
         } catch (Exception e) {
             logRedisError("deleteAccount", e);
+            cacheMutationJournal.record(customerId, iban);
+        }
+    }
+
+    /**
+     * Removes the cached account lists of the given customers with a single non-blocking UNLINK, under the cache
+     * generations now in Redis as well as the ones cached here (see {@link CacheGenerations#scopedForEviction}).
+     * The stale copies go as well: the list has changed, and a stale response must not predate the change.
+     * Unlike the other cache operations, failures are propagated so callers relaying
+     * guaranteed invalidations (the cache outbox) can retry them.
+     */
+    public void evictAccountsFromCache(Collection<String> customerIds) {
+        evictAccountsFromCache(customerIds, List.of());
+    }
+
+    /**
+     * Same as {@link #evictAccountsFromCache(Collection)}, and invalidates the IBAN index entries of the changed
+     * accounts.
+     */
+    public void evictAccountsFromCache(Collection<String> customerIds, Collection<String> ibans) {
+        if (!customerIds.isEmpty()) {
+            List<String> cacheKeys = cacheGenerations.scopedForEviction(customerIds).stream()
+                    .flatMap(RedisService::listKeys)
+                    .toList();
+            Long removed = rawRedisTemplate.unlink(cacheKeys);
+            customerIds.forEach(cacheSizeBudget::release);
+            log.info("Evicted {} keys for {} cached account lists", removed, customerIds.size());
+        }
+        if (!ibans.isEmpty()) {
+            invalidateIbanIndex(ibans);
+        }
+    }
+
+    // Another instance may have bumped a generation since this one last refreshed them, and cached the list under
+    // the new one already. The change is applied under the generation now current, and the lists under the one
+    // cached here, still read by instances yet to refresh, are removed.
+    private void evictOtherGenerations(String customerId) {
+        List<String> scoped = withinDeadline(() -> cacheGenerations.scopedForEviction(List.of(customerId)));
+        if (scoped.size() > 1) {
+            String current = cacheGenerations.scoped(customerId);
+            withinDeadline(() -> rawRedisTemplate.unlink(scoped.stream()
+                    .filter(other -> !other.equals(current))
+                    .flatMap(RedisService::listKeys)
+                    .toList()));
+        }
+    }
+
+    /**
+     * Looks the IBANs up in the reverse index with one MGET and returns the accounts found, by IBAN.
+     * On a Redis failure every IBAN counts as a miss.
+     */
+    public Map<String, Account> getAccountsByIban(List<String> ibans) {
+        Map<String, Account> found = new HashMap<>();
+        try {
+            List<byte[]> values = withinDeadline(() -> rawRedisTemplate.opsForValue().multiGet(
+                    ibans.stream().map(this::ibanKey).toList()));
+            if (values == null) {
+                return found;
+            }
+            for (int i = 0; i < ibans.size(); i++) {
+                byte[] value = values.get(i);
+                if (value != null && value.length > 0) {
+                    found.put(ibans.get(i), accountReader.readValue(value));
+                }
+            }
+            log.info("****************** Retrieved {} of {} accounts from the IBAN index", found.size(), ibans.size());
+        } catch (Exception e) {
+            logRedisError("getAccountsByIban - read", e);
+        }
+        return found;
+    }
+
+    /**
+     * Adds the accounts loaded from the database to the IBAN index, in one pipeline. Entries are only written where
+     * there is none, so a tombstone left by an invalidation since the load wins over the older row.
+     */
+    public void setAccountsByIban(Collection<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        try {
+            List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                entries.add(Map.entry(ibanKey(account.getIban()).getBytes(StandardCharsets.UTF_8),
+                        accountWriter.writeValueAsBytes(account)));
+            }
+            Expiration expiration = Expiration.from(ibanIndexTtl);
+            withinDeadline(() -> rawRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                entries.forEach(entry -> connection.stringCommands()
+                        .set(entry.getKey(), entry.getValue(), expiration, SetOption.ifAbsent()));
+                return null;
+            }));
+        } catch (Exception e) {
+            logRedisError("getAccountsByIban - write", e);
+        }
+    }
+
+    /**
+     * Writes the freshly loaded lists of many customers, with their ETags and stale copies, in one pipeline, e.g.
+     * after a bulk import. Lists over the size budget are left uncached. Writes are unconditional, so the lists must
+     * have been read after the change they reflect committed.
+     */
+    public void primeAccounts(Map<String, List<Account>> accountsByCustomer) {
+        if (accountsByCustomer.isEmpty()) {
+            return;
+        }
+        List<byte[][]> entries = new ArrayList<>(accountsByCustomer.size());
+        List<Duration> ttls = new ArrayList<>(accountsByCustomer.size());
+        accountsByCustomer.forEach((customerId, accounts) -> {
+            byte[] json = toJson(accounts);
+            Duration entryTtl = cacheSizeBudget.admit(customerId, json.length, parseTtl(ttl));
+            if (entryTtl != null) {
+                entries.add(new byte[][]{accountsKey(customerId).getBytes(StandardCharsets.UTF_8),
+                        etagKey(customerId).getBytes(StandardCharsets.UTF_8),
+                        staleKey(customerId).getBytes(StandardCharsets.UTF_8),
+                        json, etagOf(json).getBytes(StandardCharsets.US_ASCII)});
+                ttls.add(entryTtl);
+            }
+        });
+        withinDeadline(() -> rawRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < entries.size(); i++) {
+                byte[][] entry = entries.get(i);
+                Duration entryTtl = ttls.get(i);
+                Expiration expiration = entryTtl.isZero() ? Expiration.persistent() : Expiration.from(entryTtl);
+                connection.stringCommands().set(entry[0], entry[3], expiration, SetOption.upsert());
+                connection.stringCommands().set(entry[1], entry[4], expiration, SetOption.upsert());
+                // Same rule as writeAccounts: entries without expiry never go stale, so they get no stale copy
+                if (!entryTtl.isZero() && !staleIfError.isZero()) {
+                    connection.stringCommands().set(entry[2], entry[3], Expiration.from(entryTtl.plus(staleIfError)),
+                            SetOption.upsert());
+                }
+            }
+            return null;
+        }));
+        log.info("Primed cached accounts of {} customers", entries.size());
+    }
+
+    /**
+     * Reads the cached lists of the customers and their ETags in one MGET, for comparing them with the database.
+     * Customers without a cached list are left out. Unlike the request path, failures are propagated.
+     */
+    public Map<String, CachedAccounts> getCachedAccountLists(List<String> customerIds) {
+        List<String> keys = new ArrayList<>(customerIds.size() * 2);
+        customerIds.forEach(customerId -> {
+            keys.add(accountsKey(customerId));
+            keys.add(etagKey(customerId));
+        });
+        List<byte[]> values = withinDeadline(() -> rawRedisTemplate.opsForValue().multiGet(keys));
+        Map<String, CachedAccounts> cached = new HashMap<>();
+        for (int i = 0; values != null && i < customerIds.size(); i++) {
+            byte[] json = values.get(2 * i);
+            byte[] etag = values.get(2 * i + 1);
+            if (isResponseJson(json)) {
+                cached.put(customerIds.get(i), new CachedAccounts(json,
+                        etag != null ? new String(etag, StandardCharsets.US_ASCII) : etagOf(json)));
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Replaces the cached list of the customer if it is still the version with {@code expectedEtag}; otherwise the
+     * entry is removed, as it changed since it was read. The aggregate is evicted either way, since it was derived
+     * from the replaced list. Failures are propagated.
+     *
+     * @return whether the list was written
+     */
+    public boolean replaceAccountsInCache(String customerId, List<Account> accounts, String expectedEtag) {
+        String etag = writeAccounts(customerId, accountsKey(customerId), toJson(accounts), expectedEtag);
+        evictAggregate(customerId);
+        return etag != null;
+    }
+
+    // Overwrites the entries with tombstones in one pipeline; they expire once no load started before can still finish
+    private void invalidateIbanIndex(Collection<String> ibans) {
+        Expiration expiration = Expiration.from(ibanTombstoneTtl);
+        withinDeadline(() -> rawRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            ibans.forEach(iban -> connection.stringCommands().set(ibanKey(iban).getBytes(StandardCharsets.UTF_8),
+                    IBAN_TOMBSTONE, expiration, SetOption.upsert()));
+            return null;
+        }));
+    }
+
+    /**
+     * Returns the cached balance aggregate of the customer, or {@code null} if it is not cached or Redis fails.
+     */
+    public AccountAggregate getAggregate(String customerId) {
+        try {
+            List<?> values = withinDeadline(() -> rawRedisTemplate.execute(AGGREGATE_READ, List.of(aggregateKey(customerId))));
+            if (values == null || values.size() < 2 || !(values.get(0) instanceof byte[] count)
+                    || !(values.get(1) instanceof byte[] cents)) {
+                return null;
+            }
+            return new AccountAggregate(customerId, parseLong(count), BigDecimal.valueOf(parseLong(cents), 2));
+        } catch (Exception e) {
+            logRedisError("getAggregate - read", e);
+            return null;
+        }
+    }
+
+    public void setAggregate(AccountAggregate aggregate) {
+        try {
+            withinDeadline(() -> rawRedisTemplate.execute(AGGREGATE_WRITE, List.of(aggregateKey(aggregate.customerId())),
+                    ascii(Long.toString(aggregate.accountCount())),
+                    ascii(Long.toString(toCents(aggregate.totalBalance()))),
+                    ascii(Long.toString(parseTtl(ttl).toMillis()))));
+        } catch (Exception e) {
+            logRedisError("setAggregate", e);
+        }
+    }
+
+    /**
+     * Removes the cached aggregates of the customers, so the next read loads them from the database.
+     */
+    public void evictAggregates(Collection<String> customerIds) {
+        if (!customerIds.isEmpty()) {
+            rawRedisTemplate.unlink(customerIds.stream().map(this::aggregateKey).toList());
+        }
+    }
+
+    // Applies the change to the cached aggregate when the list write confirmed the previous balance it was based on
+    private void adjustAggregateIfWritten(String customerId, String etag, int accounts, BigDecimal balance) {
+        if (etag != null) {
+            adjustAggregate(customerId, accounts, balance);
+        } else {
+            evictAggregate(customerId);
+        }
+    }
+
+    private void adjustAggregate(String customerId, int accounts, BigDecimal balance) {
+        withinDeadline(() -> rawRedisTemplate.execute(AGGREGATE_ADJUST, List.of(aggregateKey(customerId)),
+                ascii(Integer.toString(accounts)), ascii(Long.toString(toCents(balance)))));
+    }
+
+    private void evictAggregate(String customerId) {
+        withinDeadline(() -> rawRedisTemplate.unlink(aggregateKey(customerId)));
+    }
+
+    // Balances are DECIMAL(19, 2), and MySQL rounds half up on insert
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long parseLong(byte[] value) {
+        return Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Lets the size budget pick the TTL and writes the serialized list together with its ETag and stale copy.
+     * Entries over the hard limit are removed instead, so an older smaller copy cannot linger as stale data.
+     * <p>
+     * The stale copy is not counted against the budget: it is only read once the fresh entry is gone, so under
+     * {@code allkeys-lru} Redis drops it before the entries that are actually served.
+     *
+     * @param expectedEtag for read-modify-writes, the ETag of the list that was modified; the entry is removed
+     *                     rather than written if the cached list has changed since. {@code null} writes unconditionally.
+     * @return the ETag of the written entry, or {@code null} if it was not cached
+     */
+    private String writeAccounts(String customerId, String cacheKey, byte[] json, String expectedEtag) {
+        String etagKey = etagKey(customerId);
+        String staleKey = staleKey(customerId);
+
+        Duration entryTtl = cacheSizeBudget.admit(customerId, json.length, parseTtl(ttl));
+        if (entryTtl == null) {
+            withinDeadline(() -> rawRedisTemplate.unlink(List.of(cacheKey, etagKey, staleKey)));
+            return null;
+        }
+        // Entries without expiry never go stale, so they get no stale copy
+        long staleTtlMillis = entryTtl.isZero() || staleIfError.isZero() ? 0 : entryTtl.plus(staleIfError).toMillis();
+        String etag = etagOf(json);
+        Long written = withinDeadline(() -> rawRedisTemplate.execute(WRITE_WITH_ETAG, List.of(cacheKey, etagKey, staleKey),
+                json, etag.getBytes(StandardCharsets.US_ASCII),
+                Long.toString(entryTtl.toMillis()).getBytes(StandardCharsets.US_ASCII),
+                Long.toString(staleTtlMillis).getBytes(StandardCharsets.US_ASCII),
+                expectedEtag != null ? expectedEtag.getBytes(StandardCharsets.US_ASCII) : NO_EXPECTED_ETAG));
+        if (written != null && written == 0) {
+            cacheSizeBudget.release(customerId);
+            log.info("Cached accounts for customer {} changed concurrently; entry removed instead of overwritten", customerId);
+            return null;
+        }
+        return etag;
+    }
+
+    /**
+     * Runs a Redis call within the request deadline. Calls whose deadline has passed are not sent; when less time is
+     * left than the connection timeout, the call runs on a virtual thread and is given up on once the deadline
+     * passes, whichever Redis client is in use. Without a request deadline the call runs as is.
+     * <p>
+     * A call given up on is not interrupted, as that could close a pooled connection mid-command; it finishes in the
+     * background within the connection timeout.
+     */
+    private <T> T withinDeadline(Supplier<T> call) {
+        long remainingMillis = RequestDeadlineHolder.remainingMillis();
+        if (remainingMillis >= redisTimeout.toMillis()) {
+            return call.get();
+        }
+        RequestDeadlineHolder.checkNotExpired("Redis call");
+
+        Future<T> result = deadlineCalls.submit(call::get);
+        try {
+            return result.get(remainingMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded during Redis call");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Redis call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted while waiting for Redis call", e);
+        }
+    }
+
+    private CachedAccounts readStale(String customerId, Duration maxStaleness) {
+        if (staleIfError.isZero()) {
+            return null;
+        }
+        try {
+            List<?> result = withinDeadline(() -> rawRedisTemplate.execute(READ_STALE,
+                    List.of(staleKey(customerId))));
+            if (result == null || result.size() < 2 || !(result.get(0) instanceof byte[] json) || !isResponseJson(json)) {
+                return null;
+            }
+            // The copy outlives the fresh entry by stale-if-error, so the time it has left tells how long it has been stale
+            long remainingMillis = ((Number) result.get(1)).longValue();
+            long staleMillis = staleIfError.toMillis() - remainingMillis;
+            if (remainingMillis < 0 || staleMillis > maxStaleness.toMillis()) {
+                return null;
+            }
+            log.info("****************** Retrieved stale accounts for customer: {}, stale for {} ms", customerId, Math.max(0, staleMillis));
+            return new CachedAccounts(json, etagOf(json), true);
+        } catch (Exception e) {
+            logRedisError("getStaleAccounts - read", e);
+            return null;
+        }
+    }
+
+    // The keys of a customer's list, by the customer ID scoped to some generations
+    private static Stream<String> listKeys(String scoped) {
+        return Stream.of(Constants.cacheAcccountKey + scoped, Constants.cacheAccountEtagKey + scoped,
+                Constants.cacheAccountStaleKey + scoped, Constants.cacheAccountAggregateKey + scoped);
+    }
+
+    // All keys of a customer's list are scoped to the cache generations current when they are built
+    private String accountsKey(String customerId) {
+        return Constants.cacheAcccountKey + cacheGenerations.scoped(customerId);
+    }
+
+    private String etagKey(String customerId) {
+        return Constants.cacheAccountEtagKey + cacheGenerations.scoped(customerId);
+    }
+
+    private String staleKey(String customerId) {
+        return Constants.cacheAccountStaleKey + cacheGenerations.scoped(customerId);
+    }
+
+    private String aggregateKey(String customerId) {
+        return Constants.cacheAccountAggregateKey + cacheGenerations.scoped(customerId);
+    }
+
+    // Not tied to a customer segment, so only global generation bumps reach the IBAN index
+    private String ibanKey(String iban) {
+        return Constants.cacheAccountIbanKey + cacheGenerations.scopedGlobal(iban);
+    }
+
+
+    // A cached list together with the ETag of the bytes it was read from, for compare-and-set writes
+    private record Snapshot(List<Account> accounts, String etag) {}
+
+    private Snapshot readSnapshot(String cacheKey) throws IOException {
+        byte[] json = withinDeadline(() -> rawRedisTemplate.opsForValue().get(cacheKey));
+        return isResponseJson(json) ? new Snapshot(accountsReader.readValue(json), etagOf(json)) : null;
+    }
+
+    // The cached value is exactly the GET response body, written with the same ObjectMapper as Spring MVC uses
+    private byte[] toJson(List<Account> accounts) {
+        try {
+            return accountsWriter.writeValueAsBytes(accounts);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Entries written before the passthrough format carry Jackson type information (["java.util.ArrayList",...])
+    // and must not reach clients; a response body is always an array of objects
+    private static boolean isResponseJson(byte[] value) {
+        return value != null && value.length >= 2 && value[0] == '[' && (value[1] == '{' || value[1] == ']');
+    }
+
+    // The ETag is a hash of the stored bytes, so identical lists get identical ETags across instances and rewrites
+    static String etagOf(byte[] value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
         }
     }
 
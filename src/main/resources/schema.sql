@@ -0,0 +1,83 @@
+-- Schema for the account service (MySQL 8.0.29 or later).
+-- Spring Boot only applies this file automatically for embedded databases;
+-- for MySQL it is mounted by loadtest/docker-compose.yml or applied manually.
+
+CREATE TABLE IF NOT EXISTS account_db (
+    iban        VARCHAR(34)    NOT NULL,
+    customerId  VARCHAR(64)    NOT NULL,
+    balance     DECIMAL(19, 2) NOT NULL,
+    created_at  TIMESTAMP(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    updated_at  TIMESTAMP(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (iban),
+    INDEX idx_account_customer (customerId)
+);
+
+-- Cache invalidations written in the same transaction as the account_db change and relayed to Redis
+-- by CacheOutboxRelay (at-least-once; rows are deleted once the eviction has been applied).
+CREATE TABLE IF NOT EXISTS account_cache_outbox (
+    id          BIGINT         NOT NULL AUTO_INCREMENT,
+    customerId  VARCHAR(64)    NOT NULL,
+    iban        VARCHAR(34)    NOT NULL,
+    operation   VARCHAR(16)    NOT NULL,
+    created_at  TIMESTAMP(3)   NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Last coalesced balance flush applied per hot account (HotAccountLedger). A flush carries a sequence number
+-- and only advances last_seq once, so retrying a flush after a crash cannot apply its delta twice.
+CREATE TABLE IF NOT EXISTS account_hot_flush (
+    iban        VARCHAR(34)    NOT NULL,
+    last_seq    BIGINT         NOT NULL,
+    PRIMARY KEY (iban)
+);
+
+-- Account count and total balance per customer, for O(1) aggregate reads. Kept up to date by the triggers below
+-- in the same transaction as every account_db change, whichever code path makes it; AccountAggregateService
+-- periodically rebuilds the rows that drifted from account_db, and fills in customers that predate the triggers.
+--
+-- Trade-off: the summary row is locked until the account change commits, so concurrent writes to different
+-- accounts of the same customer serialize on it. Multi-row writes (AccountUpdateBatcher, bulk imports) touch
+-- their rows in (customerId, iban) order, so two of them take summary locks in the same order and cannot
+-- deadlock on them; a single-row write to the same customer can still deadlock with a batch, which InnoDB
+-- resolves by rolling one back (a failed batch is retried one update at a time).
+--
+-- CREATE TRIGGER IF NOT EXISTS requires MySQL 8.0.29 or later.
+CREATE TABLE IF NOT EXISTS account_balance_summary (
+    customerId     VARCHAR(64)    NOT NULL,
+    account_count  BIGINT         NOT NULL,
+    total_balance  DECIMAL(30, 2) NOT NULL,
+    PRIMARY KEY (customerId)
+);
+
+CREATE TRIGGER IF NOT EXISTS account_db_summary_insert AFTER INSERT ON account_db FOR EACH ROW
+    INSERT INTO account_balance_summary (customerId, account_count, total_balance)
+    VALUES (NEW.customerId, 1, NEW.balance)
+    ON DUPLICATE KEY UPDATE account_count = account_count + 1, total_balance = total_balance + NEW.balance;
+
+-- An account never changes customer, so only the balance difference is applied
+CREATE TRIGGER IF NOT EXISTS account_db_summary_update AFTER UPDATE ON account_db FOR EACH ROW
+    UPDATE account_balance_summary SET total_balance = total_balance + NEW.balance - OLD.balance
+    WHERE customerId = NEW.customerId;
+
+CREATE TRIGGER IF NOT EXISTS account_db_summary_delete AFTER DELETE ON account_db FOR EACH ROW
+    UPDATE account_balance_summary SET account_count = account_count - 1, total_balance = total_balance - OLD.balance
+    WHERE customerId = OLD.customerId;
+
+-- Progress of bulk imports, by a client-chosen ID. Each chunk of lines commits together with the advance of
+-- lines_committed, so an interrupted upload resumes after the last committed line.
+CREATE TABLE IF NOT EXISTS account_import (
+    import_id        VARCHAR(64)  NOT NULL,
+    lines_committed  BIGINT       NOT NULL DEFAULT 0,
+    imported         BIGINT       NOT NULL DEFAULT 0,
+    rejected         BIGINT       NOT NULL DEFAULT 0,
+    created_at       TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    updated_at       TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (import_id)
+);
+
+CREATE TABLE IF NOT EXISTS account_import_error (
+    import_id    VARCHAR(64)  NOT NULL,
+    line_number  BIGINT       NOT NULL,
+    message      VARCHAR(512) NOT NULL,
+    PRIMARY KEY (import_id, line_number)
+);
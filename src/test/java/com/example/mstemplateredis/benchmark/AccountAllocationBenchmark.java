@@ -0,0 +1,106 @@
+package com.example.mstemplateredis.benchmark;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountRowMapper;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per request for the Account model, comparing the previous eager representation
+ * ({@link LegacyAccount}) with the current one. Run with the GC profiler and compare {@code gc.alloc.rate.norm}:
+ * <pre>./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="AccountAllocation -prof gc"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountAllocationBenchmark {
+
+    @Param({"8", "64"})
+    int accountsPerCustomer;
+
+    private ObjectMapper cacheMapper;
+    private byte[] cachedLegacyList;
+    private byte[] cachedLeanList;
+    private Timestamp rowTimestamp;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Same default typing as the Redis value serializer in RedisConfig
+        cacheMapper = new ObjectMapper();
+        cacheMapper.activateDefaultTyping(cacheMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        rowTimestamp = Timestamp.from(Instant.parse("2024-05-01T10:15:30.123Z"));
+        List<LegacyAccount> legacy = new ArrayList<>();
+        List<Account> lean = new ArrayList<>();
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            String iban = "RO49AAAA1B3100759384" + String.format("%04d", i);
+            legacy.add(new LegacyAccount(iban, "cust1", new BigDecimal("1250.75"),
+                    "2024-05-01T10:15:30.123Z", "2024-05-02T08:00:00.456Z"));
+            lean.add(new Account(iban, "cust1", new BigDecimal("1250.75"),
+                    "2024-05-01T10:15:30.123Z", "2024-05-02T08:00:00.456Z"));
+        }
+        cachedLegacyList = cacheMapper.writeValueAsBytes(legacy);
+        cachedLeanList = cacheMapper.writeValueAsBytes(lean);
+    }
+
+    @Benchmark
+    public Object cacheReadLegacy() throws Exception {
+        return cacheMapper.readValue(cachedLegacyList, Object.class);
+    }
+
+    @Benchmark
+    public Object cacheReadLean() throws Exception {
+        return cacheMapper.readValue(cachedLeanList, Object.class);
+    }
+
+    /** What the reflective row mapper did per row: no-arg constructor plus setters. */
+    @Benchmark
+    public void rowMappingLegacy(Blackhole bh) {
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            LegacyAccount account = new LegacyAccount();
+            account.setIban("RO49AAAA1B31007593840000");
+            account.setCustomerId("cust1");
+            account.setBalance(new BigDecimal("1250.75"));
+            account.setCreatedAt(rowTimestamp.toString());
+            account.setUpdatedAt(rowTimestamp.toString());
+            bh.consume(account);
+        }
+    }
+
+    /** What {@link AccountRowMapper} does per row, with the balance the driver allocates. */
+    @Benchmark
+    public void rowMappingLean(Blackhole bh) {
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            bh.consume(Account.of("RO49AAAA1B31007593840000", "cust1", new BigDecimal("1250.75"),
+                    rowTimestamp.getTime(), rowTimestamp.getTime()));
+        }
+    }
+
+    /** The Account model before the allocation-lean representation, kept here as the baseline. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LegacyAccount {
+        private String iban;
+        private String customerId;
+        private BigDecimal balance;
+        private String createdAt = Instant.now().toString();
+        private String updatedAt = Instant.now().toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mstemplateredis.benchmark;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload size and encode/decode cost of an account list in each negotiable format of
+ * {@code GET /accounts/{customerId}}. {@code encode} writes the list as a response body, {@code decode} reads it back
+ * as a caller would. Each trial prints the payload size of its format:
+ * <pre>./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="AccountListFormat -prof gc"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountListFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"8", "64", "512"})
+    int accountsPerCustomer;
+
+    private List<Account> accounts;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private byte[] payload;
+
+    @State(Scope.Thread)
+    public static class ResponseBuffer {
+        // Stands in for the servlet output stream; reused so only the encoding itself allocates
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = switch (format) {
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            default -> new ObjectMapper();
+        };
+        accounts = new ArrayList<>();
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            accounts.add(new Account("RO49AAAA1B3100759384" + String.format("%04d", i), "cust1",
+                    new BigDecimal("1250.75"), "2024-05-01T10:15:30.123Z", "2024-05-02T08:00:00.456Z"));
+        }
+        writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Account.class));
+        reader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, Account.class));
+        payload = writer.writeValueAsBytes(accounts);
+        System.out.printf("%n%s payload for %d accounts: %d bytes%n", format, accountsPerCustomer, payload.length);
+    }
+
+    @Benchmark
+    public int encode(ResponseBuffer buffer) throws Exception {
+        buffer.out.reset();
+        writer.writeValue(buffer.out, accounts);
+        return buffer.out.size();
+    }
+
+    @Benchmark
+    public List<Account> decode() throws Exception {
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mstemplateredis.benchmark;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountRowMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.mstemplateredis.utils.Constants.SqlConstants.retriveAccountsSql;
+
+/**
+ * Rows per second for {@code AccountRepository.getAccounts}: reflective {@code query(Account.class)} versus
+ * {@link AccountRowMapper}, against an in-memory H2 table so the JDBC driver cost is real but constant.
+ * The {@code rows} secondary metric is the mapped-rows throughput.
+ * <pre>./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="AccountRowMapper"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountRowMapperBenchmark {
+
+    @Param({"5", "50", "500"})
+    int accountsPerCustomer;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcClient jdbcClient;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RowCounter {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:rowmapper;MODE=MySQL;DATABASE_TO_LOWER=TRUE", true);
+        jdbcClient = JdbcClient.create(dataSource);
+        jdbcClient.sql("""
+                CREATE TABLE account_db (
+                    iban VARCHAR(34) PRIMARY KEY,
+                    customerId VARCHAR(64) NOT NULL,
+                    balance DECIMAL(19, 2) NOT NULL,
+                    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+                    updated_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3))
+                """).update();
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            jdbcClient.sql("INSERT INTO account_db (iban, customerId, balance) VALUES (?, ?, ?)")
+                    .params("RO49AAAA1B3100" + String.format("%010d", i), "cust1", new BigDecimal("1250.75"))
+                    .update();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Account> reflectiveMapping(RowCounter counter) {
+        List<Account> accounts = jdbcClient.sql(retriveAccountsSql)
+                .param("customerId", "cust1")
+                .query(Account.class)
+                .list();
+        counter.rows += accounts.size();
+        return accounts;
+    }
+
+    @Benchmark
+    public List<Account> positionalRowMapper(RowCounter counter) {
+        List<Account> accounts = jdbcClient.sql(retriveAccountsSql)
+                .param("customerId", "cust1")
+                .query(AccountRowMapper.INSTANCE)
+                .list();
+        counter.rows += accounts.size();
+        return accounts;
+    }
+}
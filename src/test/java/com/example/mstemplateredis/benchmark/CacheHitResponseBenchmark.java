@@ -0,0 +1,74 @@
+package com.example.mstemplateredis.benchmark;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU and allocation per cache hit on {@code GET /accounts/{customerId}}, from the bytes returned by Redis to the
+ * bytes written to the response. {@code typedRoundTrip} is the previous path (default-typed cache value
+ * deserialized into Accounts, then serialized again by Spring MVC); {@code passthrough} is the current one, which
+ * copies the cached response body. Compare {@code gc.alloc.rate.norm}:
+ * <pre>./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="CacheHitResponse -prof gc"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheHitResponseBenchmark {
+
+    @Param({"8", "64", "512"})
+    int accountsPerCustomer;
+
+    private ObjectMapper cacheMapper;
+    private ObjectMapper responseMapper;
+    private byte[] typedCacheValue;
+    private byte[] responseCacheValue;
+
+    @State(Scope.Thread)
+    public static class ResponseBuffer {
+        // Stands in for the servlet output stream; reused so only the response path itself allocates
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        // Same default typing as the Redis value serializer in RedisConfig
+        cacheMapper = new ObjectMapper();
+        cacheMapper.activateDefaultTyping(cacheMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        responseMapper = new ObjectMapper();
+
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            accounts.add(new Account("RO49AAAA1B3100759384" + String.format("%04d", i), "cust1",
+                    new BigDecimal("1250.75"), "2024-05-01T10:15:30.123Z", "2024-05-02T08:00:00.456Z"));
+        }
+        typedCacheValue = cacheMapper.writeValueAsBytes(accounts);
+        responseCacheValue = responseMapper.writeValueAsBytes(accounts);
+    }
+
+    @Benchmark
+    public int typedRoundTrip(ResponseBuffer buffer) throws Exception {
+        buffer.out.reset();
+        Object accounts = cacheMapper.readValue(typedCacheValue, Object.class);
+        responseMapper.writeValue(buffer.out, accounts);
+        return buffer.out.size();
+    }
+
+    @Benchmark
+    public int passthrough(ResponseBuffer buffer) {
+        buffer.out.reset();
+        buffer.out.write(responseCacheValue, 0, responseCacheValue.length);
+        return buffer.out.size();
+    }
+}
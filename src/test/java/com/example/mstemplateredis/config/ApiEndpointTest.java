@@ -0,0 +1,47 @@
+package com.example.mstemplateredis.config;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiEndpointTest {
+
+    private static final String ACCOUNTS = ApiEndpoint.ACCOUNTS_PATH;
+
+    static Stream<Arguments> endpointScenarios() {
+        return Stream.of(
+                Arguments.of("GET", ACCOUNTS + "cust1", ApiEndpoint.GET_ACCOUNTS, "cust1"),
+                Arguments.of("POST", ACCOUNTS + "cust1", ApiEndpoint.CREATE_ACCOUNT, "cust1"),
+                Arguments.of("PUT", ACCOUNTS + "cust1/update", ApiEndpoint.UPDATE_ACCOUNT, "cust1"),
+                Arguments.of("POST", ACCOUNTS + "cust1/adjust", ApiEndpoint.ADJUST_BALANCE, "cust1"),
+                Arguments.of("DELETE", ACCOUNTS + "cust1/delete/RO1", ApiEndpoint.DELETE_ACCOUNT, "cust1"),
+                Arguments.of("GET", ACCOUNTS + "cust1/summary", ApiEndpoint.GET_ACCOUNT_SUMMARY, "cust1"),
+                Arguments.of("POST", ACCOUNTS + "cust1/summary", ApiEndpoint.OTHER, null),
+                // The IBAN lookups are not scoped to a customer, even though by-iban sits where a customer ID would
+                Arguments.of("GET", ACCOUNTS + "by-iban", ApiEndpoint.GET_ACCOUNTS_BY_IBAN, null),
+                Arguments.of("GET", ACCOUNTS + "by-iban/RO49AAAA1B31007593840000", ApiEndpoint.GET_ACCOUNT_BY_IBAN, null),
+                Arguments.of("POST", ACCOUNTS + "by-iban", ApiEndpoint.OTHER, null),
+                Arguments.of("GET", ACCOUNTS + "by-iban/RO1/more", ApiEndpoint.OTHER, null),
+                Arguments.of("PUT", ACCOUNTS + "cust1", ApiEndpoint.OTHER, null),
+                Arguments.of("GET", ACCOUNTS + "cust1/unknown", ApiEndpoint.OTHER, null),
+                Arguments.of("GET", ACCOUNTS, ApiEndpoint.OTHER, null),
+                Arguments.of("POST", ApiEndpoint.IMPORTS_PATH + "imp-1", ApiEndpoint.IMPORT_ACCOUNTS, null),
+                Arguments.of("GET", ApiEndpoint.IMPORTS_PATH + "imp-1", ApiEndpoint.OTHER, null),
+                Arguments.of("POST", ApiEndpoint.IMPORTS_PATH, ApiEndpoint.OTHER, null),
+                Arguments.of("GET", "/actuator/health", ApiEndpoint.OTHER, null)
+        );
+    }
+
+    @ParameterizedTest(name = "{0} {1} -> {2}")
+    @MethodSource("endpointScenarios")
+    void shouldResolveEndpointAndCustomer(String method, String path, ApiEndpoint endpoint, String customerId) {
+        ApiEndpoint.Resolved resolved = ApiEndpoint.resolve(method, path);
+
+        assertEquals(endpoint, resolved.endpoint());
+        assertEquals(customerId, resolved.customerId());
+    }
+}
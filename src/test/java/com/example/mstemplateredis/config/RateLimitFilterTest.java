@@ -0,0 +1,75 @@
+package com.example.mstemplateredis.config;
+
+import com.example.mstemplateredis.v1.service.RateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+    private final List<RateLimiter.Bucket> requested = new ArrayList<>();
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiter rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.tryAcquire(anyList())).thenAnswer(invocation -> {
+            requested.addAll(invocation.getArgument(0));
+            return new RateLimiter.Decision(true, 0);
+        });
+        RateLimitProperties.EndpointLimits limits = new RateLimitProperties.EndpointLimits(
+                new RateLimitProperties.Limit(20, 10), new RateLimitProperties.Limit(200, 100));
+        filter = new RateLimitFilter(rateLimiter,
+                new RateLimitProperties(true, "X-Client-Id", Map.of(RateLimitProperties.DEFAULT_ENDPOINT, limits)),
+                mock(HandlerExceptionResolver.class));
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, ApiEndpoint.ACCOUNTS_PATH + path);
+        request.setRemoteAddr("10.0.0.7");
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+
+    private List<String> bucketKeysFor(MockHttpServletRequest request) throws Exception {
+        requested.clear();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return requested.stream().map(RateLimiter.Bucket::key).toList();
+    }
+
+    @Test
+    void shouldLimitCustomerAndClient() throws Exception {
+        assertEquals(List.of("ratelimit::get-accounts::customer::cust1", "ratelimit::get-accounts::client::addr::10.0.0.7"),
+                bucketKeysFor(request("GET", "cust1", "client1")));
+    }
+
+    @Test
+    void shouldLimitIbanLookupsPerClientOnly() throws Exception {
+        assertEquals(List.of("ratelimit::get-accounts-by-iban::client::addr::10.0.0.7"),
+                bucketKeysFor(request("GET", "by-iban", "client1")));
+    }
+
+    @Test
+    void shouldKeepTheClientBucketWhenTheClientHeaderChanges() throws Exception {
+        assertEquals(bucketKeysFor(request("GET", "cust1", "client1")), bucketKeysFor(request("GET", "cust1", "client2")));
+    }
+
+    @Test
+    void shouldKeyClientBucketOnAuthenticatedPrincipal() throws Exception {
+        MockHttpServletRequest request = request("GET", "by-iban", "client1");
+        request.setUserPrincipal(() -> "integrator-a");
+
+        assertEquals(List.of("ratelimit::get-accounts-by-iban::client::user::integrator-a"), bucketKeysFor(request));
+    }
+}
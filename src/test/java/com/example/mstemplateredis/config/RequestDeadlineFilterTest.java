@@ -0,0 +1,64 @@
+package com.example.mstemplateredis.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestDeadlineFilterTest {
+
+    private final RequestDeadlineFilter filter = new RequestDeadlineFilter(new DeadlineProperties(true,
+            "X-Request-Timeout-Ms", Duration.ofSeconds(2), Duration.ofSeconds(10),
+            Map.of("get-accounts", Duration.ofMillis(1500))));
+
+    static Stream<Arguments> timeoutScenarios() {
+        return Stream.of(
+                Arguments.of("GET", "cust1", null, 1500),
+                Arguments.of("POST", "cust1", null, 2000),
+                Arguments.of("GET", "cust1", "500", 500),
+                Arguments.of("GET", "cust1", "60000", 10_000),
+                Arguments.of("GET", "cust1", "0", 1500),
+                Arguments.of("GET", "cust1", "-5", 1500),
+                Arguments.of("GET", "cust1", "soon", 1500)
+        );
+    }
+
+    @ParameterizedTest(name = "{0} with header {2} gets {3} ms")
+    @MethodSource("timeoutScenarios")
+    void shouldEstablishDeadline(String method, String customerId, String header, long expectedMillis) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, ApiEndpoint.ACCOUNTS_PATH + customerId);
+        if (header != null) {
+            request.addHeader("X-Request-Timeout-Ms", header);
+        }
+        AtomicLong remaining = new AtomicLong();
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> remaining.set(RequestDeadlineHolder.remainingMillis()));
+
+        assertTrue(remaining.get() <= expectedMillis && remaining.get() > expectedMillis - 200,
+                "remaining " + remaining.get() + " ms");
+        assertFalse(RequestDeadlineHolder.hasDeadline());
+    }
+
+    @Test
+    void shouldRunImportsWithoutDeadline() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", ApiEndpoint.IMPORTS_PATH + "imp-1");
+        request.addHeader("X-Request-Timeout-Ms", "500");
+        AtomicBoolean deadline = new AtomicBoolean(true);
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> deadline.set(RequestDeadlineHolder.hasDeadline()));
+
+        assertFalse(deadline.get());
+    }
+}
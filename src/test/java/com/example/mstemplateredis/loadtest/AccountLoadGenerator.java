@@ -0,0 +1,224 @@
+package com.example.mstemplateredis.loadtest;
+
+import com.example.mstemplateredis.loadtest.LatencyReport.Endpoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator reproducing the production traffic mix against a running instance of the service
+ * (see {@code loadtest/docker-compose.yml} for local Redis and MySQL stand-ins).
+ * <p>
+ * Requests are dispatched on a fixed schedule derived from the target rate, independently of how fast the
+ * service answers, and latency is measured from the scheduled start. Customer keys are drawn from a Zipfian
+ * distribution so the hot-key behaviour of the cache is exercised the way real traffic does.
+ * <p>
+ * Run with: {@code ./mvnw -Ploadtest test-compile exec:java -Dloadtest.rate=1000 -Dloadtest.zipfExponent=0.99}
+ * <p>
+ * Start the service with {@code --app.rate-limit.enabled=false}; otherwise the hottest customers are throttled
+ * and their 429s are counted as errors.
+ */
+public class AccountLoadGenerator {
+
+    private static final String IBAN_PREFIX = "RO00LT";
+
+    private final LoadProfile profile;
+    private final HttpClient httpClient;
+    private final ZipfianGenerator customerKeys;
+    private final LatencyReport report = new LatencyReport();
+    private final List<String>[] seededIbans;
+    private final ConcurrentLinkedDeque<String>[] createdIbans;
+    // Seeded from the clock so accounts created by successive runs never collide on the IBAN primary key
+    private final AtomicLong ibanSequence = new AtomicLong(System.currentTimeMillis() * 1_000);
+
+    @SuppressWarnings("unchecked")
+    public AccountLoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.customerKeys = new ZipfianGenerator(profile.customers(), profile.zipfExponent());
+        this.seededIbans = new List[profile.customers()];
+        this.createdIbans = new ConcurrentLinkedDeque[profile.customers()];
+        for (int i = 0; i < profile.customers(); i++) {
+            createdIbans[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        AccountLoadGenerator generator = new AccountLoadGenerator(profile);
+        generator.seed();
+        double elapsed = generator.run();
+
+        generator.report.print(System.out, profile, elapsed);
+        if (profile.reportFile() != null) {
+            generator.report.writeCsv(Path.of(profile.reportFile()), elapsed);
+            System.out.println("Report written to " + profile.reportFile());
+        }
+    }
+
+    /**
+     * Creates the account lists for every customer, sized uniformly between the configured bounds.
+     * A fixed seed keeps list sizes identical across runs so results stay comparable. Accounts the service failed
+     * to create are left out of the update mix; if none could be created, the run is aborted.
+     */
+    void seed() throws InterruptedException {
+        Random sizes = new Random(42);
+        AtomicLong seeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(profile.threads());
+        CountDownLatch done = new CountDownLatch(profile.customers());
+        for (int customer = 0; customer < profile.customers(); customer++) {
+            int count = profile.minAccountsPerCustomer()
+                    + sizes.nextInt(profile.maxAccountsPerCustomer() - profile.minAccountsPerCustomer() + 1);
+            int c = customer;
+            pool.execute(() -> {
+                List<String> ibans = new ArrayList<>(count);
+                try {
+                    for (int i = 0; i < count; i++) {
+                        String iban = iban(c, i);
+                        if (send(post(c, iban)) < 400) {
+                            ibans.add(iban);
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    failed.addAndGet(count - ibans.size());
+                } finally {
+                    seededIbans[c] = ibans;
+                    seeded.addAndGet(ibans.size());
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+        if (seeded.get() == 0) {
+            throw new IllegalStateException("Seeding failed: none of " + failed.get() + " accounts could be created");
+        }
+        System.out.printf("Seeded %d accounts of %d customers, %d failed and are left out of updates%n",
+                seeded.get(), profile.customers(), failed.get());
+    }
+
+    /**
+     * Runs warm-up plus measurement and returns the measured wall-clock seconds.
+     */
+    double run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(profile.threads());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / profile.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + profile.warmup().toNanos();
+        long end = measureFrom + profile.duration().toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended >= measureFrom;
+            workers.execute(() -> execute(intended, measured));
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        return (System.nanoTime() - measureFrom) / 1e9;
+    }
+
+    private void execute(long intendedStart, boolean measured) {
+        int customer = (int) customerKeys.next();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Endpoint endpoint;
+        HttpRequest request;
+        String createdIban = null;
+
+        if (random.nextDouble() < profile.readRatio()) {
+            endpoint = Endpoint.GET_ACCOUNTS;
+            request = HttpRequest.newBuilder(uri("/" + customerId(customer))).GET().build();
+        } else if (random.nextDouble() < profile.updateShare() && !seededIbans[customer].isEmpty()) {
+            List<String> ibans = seededIbans[customer];
+            String iban = ibans.get(random.nextInt(ibans.size()));
+            endpoint = Endpoint.UPDATE_ACCOUNT;
+            request = HttpRequest.newBuilder(uri("/" + customerId(customer) + "/update?iban=" + iban + "&balance=" + randomBalance()))
+                    .PUT(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        } else {
+            String created = random.nextBoolean() ? createdIbans[customer].pollFirst() : null;
+            if (created != null) {
+                endpoint = Endpoint.DELETE_ACCOUNT;
+                request = HttpRequest.newBuilder(uri("/" + customerId(customer) + "/delete/" + created)).DELETE().build();
+            } else {
+                createdIban = IBAN_PREFIX + "X" + ibanSequence.incrementAndGet();
+                endpoint = Endpoint.CREATE_ACCOUNT;
+                request = post(customer, createdIban);
+            }
+        }
+
+        long actualStart = System.nanoTime();
+        boolean success;
+        try {
+            success = send(request) < 400;
+        } catch (Exception e) {
+            success = false;
+        }
+        if (success && createdIban != null) {
+            // Only accounts that really exist become candidates for a later delete
+            createdIbans[customer].addLast(createdIban);
+        }
+        if (measured) {
+            report.record(endpoint, intendedStart, actualStart, System.nanoTime(), success);
+        }
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest post(int customer, String iban) {
+        String body = String.format(Locale.ROOT, "{\"iban\":\"%s\",\"customerId\":\"%s\",\"balance\":%s}",
+                iban, customerId(customer), randomBalance());
+        return HttpRequest.newBuilder(uri("/" + customerId(customer)))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(profile.baseUrl() + path);
+    }
+
+    private static String customerId(int customer) {
+        return "lt" + customer;
+    }
+
+    private static String iban(int customer, int index) {
+        return String.format(Locale.ROOT, "%s%08d%04d", IBAN_PREFIX, customer, index);
+    }
+
+    private static String randomBalance() {
+        return String.format(Locale.ROOT, "%.2f", ThreadLocalRandom.current().nextDouble(1, 10_000));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.mstemplateredis.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency recorder. Each request is recorded twice:
+ * <ul>
+ *     <li><b>response time</b> - measured from the moment the open-loop schedule intended to send it.
+ *     This is the coordinated-omission corrected figure: when the service stalls, queued requests
+ *     are charged for the time they waited instead of silently disappearing from the tail.</li>
+ *     <li><b>service time</b> - measured from the moment it actually left the client.</li>
+ * </ul>
+ */
+public class LatencyReport {
+
+    public enum Endpoint { GET_ACCOUNTS, CREATE_ACCOUNT, UPDATE_ACCOUNT, DELETE_ACCOUNT }
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+
+    public LatencyReport() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new Stats());
+        }
+    }
+
+    public void record(Endpoint endpoint, long intendedStartNanos, long actualStartNanos, long endNanos, boolean success) {
+        Stats s = stats.get(endpoint);
+        s.responseTime.recordValue(toMicros(endNanos - intendedStartNanos));
+        s.serviceTime.recordValue(toMicros(endNanos - actualStartNanos));
+        if (!success) {
+            s.errors.increment();
+        }
+    }
+
+    public void print(PrintStream out, LoadProfile profile, double elapsedSeconds) {
+        out.printf("%nLoad profile: rate=%d/s, customers=%d, zipf=%.2f, reads=%.0f%%, accounts/customer=%d-%d, threads=%d%n",
+                profile.rate(), profile.customers(), profile.zipfExponent(), profile.readRatio() * 100,
+                profile.minAccountsPerCustomer(), profile.maxAccountsPerCustomer(), profile.threads());
+        out.printf("%-16s %10s %10s %8s | %10s %10s %10s %10s | %10s %10s%n",
+                "endpoint", "requests", "req/s", "errors",
+                "p50 ms", "p99 ms", "p999 ms", "max ms", "svc p50", "svc p99");
+        for (String[] row : rows(elapsedSeconds)) {
+            out.printf("%-16s %10s %10s %8s | %10s %10s %10s %10s | %10s %10s%n", (Object[]) row);
+        }
+        out.println("(response time includes schedule delay - coordinated-omission corrected; svc = service time only)");
+    }
+
+    public void writeCsv(Path file, double elapsedSeconds) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoint,requests,throughput,errors,p50_ms,p99_ms,p999_ms,max_ms,service_p50_ms,service_p99_ms");
+        for (String[] row : rows(elapsedSeconds)) {
+            lines.add(String.join(",", row));
+        }
+        Files.write(file, lines);
+    }
+
+    private List<String[]> rows(double elapsedSeconds) {
+        List<String[]> rows = new ArrayList<>();
+        stats.forEach((endpoint, s) -> {
+            Histogram rt = s.responseTime;
+            Histogram st = s.serviceTime;
+            long count = rt.getTotalCount();
+            if (count == 0) {
+                return;
+            }
+            rows.add(new String[]{
+                    endpoint.name(),
+                    Long.toString(count),
+                    format(count / elapsedSeconds),
+                    Long.toString(s.errors.sum()),
+                    millis(rt.getValueAtPercentile(50)),
+                    millis(rt.getValueAtPercentile(99)),
+                    millis(rt.getValueAtPercentile(99.9)),
+                    millis(rt.getMaxValue()),
+                    millis(st.getValueAtPercentile(50)),
+                    millis(st.getValueAtPercentile(99))
+            });
+        });
+        return rows;
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(Math.max(nanos / 1_000, 1), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    private static String millis(long micros) {
+        return format(micros / 1_000.0);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static final class Stats {
+        final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder errors = new LongAdder();
+    }
+}
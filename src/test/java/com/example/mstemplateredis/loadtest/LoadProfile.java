@@ -0,0 +1,57 @@
+package com.example.mstemplateredis.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Traffic mix for {@link AccountLoadGenerator}. Every value can be overridden with a
+ * {@code -Dloadtest.<name>=<value>} system property, e.g. {@code -Dloadtest.rate=2000}.
+ */
+public record LoadProfile(
+        String baseUrl,
+        int rate,                  // target requests per second (open loop)
+        Duration warmup,
+        Duration duration,
+        int threads,
+        int customers,
+        double zipfExponent,       // customer-key skew, 0 = uniform, 0.99 = YCSB default
+        double readRatio,          // share of GET requests
+        double updateShare,        // share of writes that are balance updates; rest is create/delete
+        int minAccountsPerCustomer,
+        int maxAccountsPerCustomer,
+        String reportFile          // optional CSV output for comparing runs
+) {
+
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                property("baseUrl", "http://localhost:8080/brd-api/ms-template-redis/v1/accounts"),
+                Integer.parseInt(property("rate", "500")),
+                Duration.ofSeconds(Long.parseLong(property("warmupSeconds", "10"))),
+                Duration.ofSeconds(Long.parseLong(property("durationSeconds", "60"))),
+                Integer.parseInt(property("threads", "64")),
+                Integer.parseInt(property("customers", "10000")),
+                Double.parseDouble(property("zipfExponent", "0.99")),
+                Double.parseDouble(property("readRatio", "0.9")),
+                Double.parseDouble(property("updateShare", "0.8")),
+                Integer.parseInt(property("minAccountsPerCustomer", "1")),
+                Integer.parseInt(property("maxAccountsPerCustomer", "8")),
+                property("reportFile", null)
+        ).validate();
+    }
+
+    private LoadProfile validate() {
+        if (rate <= 0 || threads <= 0 || customers < 2) {
+            throw new IllegalArgumentException("rate and threads must be positive and customers at least 2");
+        }
+        if (readRatio < 0 || readRatio > 1 || updateShare < 0 || updateShare > 1) {
+            throw new IllegalArgumentException("readRatio and updateShare must be between 0 and 1");
+        }
+        if (minAccountsPerCustomer < 1 || maxAccountsPerCustomer < minAccountsPerCustomer) {
+            throw new IllegalArgumentException("Invalid account-list size range");
+        }
+        return this;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.mstemplateredis.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares how fast a new instance becomes useful in each startup mode: plain JIT, Spring AOT, and Spring AOT
+ * with the AppCDS archive built by the {@code fast-startup} profile.
+ * <p>
+ * Each mode is started {@code runs} times as a child process. Time to ready is measured from process launch to
+ * the first answer of the health endpoint, whatever its status; first-request latency is the first account list
+ * read after that, which still pays for class loading and interpretation on the request path. Needs the jar from
+ * {@code ./mvnw -Pfast-startup -DskipTests package} and Redis and MySQL from {@code loadtest/docker-compose.yml}.
+ * <p>
+ * Run with: {@code ./mvnw -Pfast-startup test-compile exec:java -Dstartup.runs=5}
+ */
+public class StartupComparison {
+
+    private static final Duration READY_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private final Path jar;
+    private final Path archive;
+    private final int port;
+    private final String customerId;
+
+    record Mode(String name, List<String> jvmArguments) {}
+
+    record Measurement(double readyMillis, double firstRequestMillis) {}
+
+    public StartupComparison(Path jar, Path archive, int port, String customerId) {
+        this.jar = jar;
+        this.archive = archive;
+        this.port = port;
+        this.customerId = customerId;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path jar = Path.of(property("jar", "target/ms-template-redis-0.0.1-SNAPSHOT.jar"));
+        Path archive = Path.of(property("archive", "target/app.jsa"));
+        int runs = Integer.parseInt(property("runs", "3"));
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException(jar + " not found; build it with ./mvnw -Pfast-startup -DskipTests package");
+        }
+
+        StartupComparison comparison = new StartupComparison(jar, archive,
+                Integer.parseInt(property("port", "8080")), property("customerId", "LT0"));
+        List<Mode> modes = new ArrayList<>(List.of(
+                new Mode("jit", List.of()),
+                new Mode("aot", List.of("-Dspring.aot.enabled=true"))));
+        if (Files.exists(archive)) {
+            modes.add(new Mode("aot+cds", List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive)));
+        } else {
+            System.out.println("No CDS archive at " + archive + ", skipping aot+cds");
+        }
+
+        System.out.printf("%-10s %6s %14s %14s%n", "mode", "runs", "ready ms", "first req ms");
+        for (Mode mode : modes) {
+            double ready = 0;
+            double firstRequest = 0;
+            for (int i = 0; i < runs; i++) {
+                Measurement measurement = comparison.measure(mode);
+                ready += measurement.readyMillis();
+                firstRequest += measurement.firstRequestMillis();
+            }
+            System.out.printf(Locale.ROOT, "%-10s %6d %14.0f %14.1f%n", mode.name(), runs, ready / runs, firstRequest / runs);
+        }
+    }
+
+    Measurement measure(Mode mode) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmArguments());
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        command.add("--app.rate-limit.enabled=false");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            awaitReady(process, start);
+            double readyMillis = (System.nanoTime() - start) / 1e6;
+
+            long requestStart = System.nanoTime();
+            get("/brd-api/ms-template-redis/v1/accounts/" + customerId);
+            double firstRequestMillis = (System.nanoTime() - requestStart) / 1e6;
+            return new Measurement(readyMillis, firstRequestMillis);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private void awaitReady(Process process, long start) throws InterruptedException {
+        while (System.nanoTime() - start < READY_TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Service exited with status " + process.exitValue() + " during startup");
+            }
+            try {
+                get("/actuator/health");
+                return;
+            } catch (IOException e) {
+                Thread.sleep(10);
+            }
+        }
+        throw new IllegalStateException("Service not ready within " + READY_TIMEOUT);
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("startup." + name, defaultValue);
+    }
+}
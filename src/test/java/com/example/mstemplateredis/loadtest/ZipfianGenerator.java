@@ -0,0 +1,63 @@
+package com.example.mstemplateredis.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws item ranks in {@code [0, items)} following a Zipfian distribution
+ * (Gray et al., "Quickly Generating Billion-Record Synthetic Databases").
+ * Rank 0 is the hottest item. An exponent of 0 degenerates to a uniform distribution.
+ */
+public class ZipfianGenerator {
+
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    private final double halfPowTheta;
+
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 2) {
+            throw new IllegalArgumentException("Zipfian generator needs at least 2 items");
+        }
+        if (theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian exponent must be in [0, 1): " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    public long next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return 1;
+        }
+        long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    public long items() {
+        return items;
+    }
+
+    public double theta() {
+        return theta;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.mstemplateredis.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfianGeneratorTest {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.0, 0.5, 0.99})
+    void shouldStayWithinBounds(double theta) {
+        ZipfianGenerator generator = new ZipfianGenerator(100, theta);
+
+        for (int i = 0; i < 10_000; i++) {
+            long rank = generator.next();
+            assertTrue(rank >= 0 && rank < 100, "rank out of range: " + rank);
+        }
+    }
+
+    @Test
+    void shouldFavourLowRanksWhenSkewed() {
+        ZipfianGenerator generator = new ZipfianGenerator(1_000, 0.99);
+        int hottest = 0;
+        int samples = 100_000;
+
+        for (int i = 0; i < samples; i++) {
+            if (generator.next() < 10) {
+                hottest++;
+            }
+        }
+
+        // With theta=0.99 the top 1% of keys receives roughly 40% of the traffic; uniform would give 1%
+        assertTrue(hottest > samples / 5, "expected heavy skew, got " + hottest);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {-0.1, 1.0, 1.5})
+    void shouldRejectUnsupportedExponent(double theta) {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(100, theta));
+    }
+}
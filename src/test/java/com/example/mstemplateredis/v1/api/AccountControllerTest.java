@@ -1,20 +1,33 @@
 package com.example.mstemplateredis.v1.api;
+import com.example.mstemplateredis.config.BinaryFormatConfig;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.InsufficientBalanceException;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.service.AccountAggregateService;
 import com.example.mstemplateredis.v1.service.AccountService;
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -22,6 +35,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AccountController.class)
+@Import(BinaryFormatConfig.class)
 class AccountControllerTest {
 
     @Autowired
@@ -30,6 +44,12 @@ class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private AccountAggregateService accountAggregateService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private static final String BASE_URL = "/brd-api/ms-template-redis/v1/accounts";
 
     // --- GET /{customerId} ---
@@ -48,18 +68,151 @@ class AccountControllerTest {
         @MethodSource("customerIdProvider")
         void shouldHandleVariousGetScenarios(String customerId, List<Account> result, int expectedStatus) throws Exception {
             if (expectedStatus == 500) {
-                when(accountService.getAccountsByCustomerId(customerId))
+                when(accountService.getAccountsJson(customerId))
                         .thenThrow(new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR));
             } else {
-                when(accountService.getAccountsByCustomerId(customerId)).thenReturn(result);
+                when(accountService.getAccountsJson(customerId)).thenReturn(new CachedAccounts(objectMapper.writeValueAsBytes(result), "abc"));
             }
 
             mockMvc.perform(get(BASE_URL + "/" + customerId))
                     .andExpect(status().is(expectedStatus));
         }
+
+        @Test
+        void shouldWriteCachedBodyAsIs() throws Exception {
+            String body = "[{\"iban\":\"RO00AAA123456789\",\"customerId\":\"cust1\",\"balance\":200}]";
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts(body.getBytes(), "abc"));
+
+            mockMvc.perform(get(BASE_URL + "/cust1"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(content().string(body))
+                    .andExpect(jsonPath("$[0].balance").value(200));
+        }
+
+        @Test
+        void shouldReturnEtagWithBody() throws Exception {
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts("[]".getBytes(), "abc"));
+
+            mockMvc.perform(get(BASE_URL + "/cust1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        }
+
+        @Test
+        void shouldOmitEtagWhenListIsNotCached() throws Exception {
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts("[]".getBytes(), null));
+
+            mockMvc.perform(get(BASE_URL + "/cust1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        }
+
+        @Test
+        void shouldMarkStaleResponses() throws Exception {
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts("[]".getBytes(), "abc", true));
+
+            mockMvc.perform(get(BASE_URL + "/cust1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(AccountController.CACHE_STALE_HEADER, "true"));
+        }
+
+        @Test
+        void shouldNotMarkFreshResponses() throws Exception {
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts("[]".getBytes(), "abc"));
+
+            mockMvc.perform(get(BASE_URL + "/cust1"))
+                    .andExpect(header().doesNotExist(AccountController.CACHE_STALE_HEADER));
+        }
+
+        static Stream<Arguments> ifNoneMatchProvider() {
+            return Stream.of(
+                    Arguments.of("\"abc\"", 304),
+                    Arguments.of("W/\"abc\"", 304),
+                    Arguments.of("\"old\", \"abc\"", 304),
+                    Arguments.of("*", 304),
+                    Arguments.of("\"old\"", 200)
+            );
+        }
+
+        @ParameterizedTest(name = "If-None-Match: {0}, expected status: {1}")
+        @MethodSource("ifNoneMatchProvider")
+        void shouldAnswerConditionalRequestsFromEtagAlone(String ifNoneMatch, int expectedStatus) throws Exception {
+            when(accountService.getAccountsEtag("cust1")).thenReturn("abc");
+            when(accountService.getAccountsJson("cust1")).thenReturn(new CachedAccounts("[]".getBytes(), "abc"));
+
+            mockMvc.perform(get(BASE_URL + "/cust1").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                    .andExpect(status().is(expectedStatus))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""));
+
+            verify(accountService, times(expectedStatus == 304 ? 0 : 1)).getAccountsJson("cust1");
+        }
     }
 
     // --- POST /{customerId} ---
+    // --- GET /{customerId}/summary ---
+    @Nested
+    class GetAccountSummary {
+
+        @Test
+        void shouldReturnAggregate() throws Exception {
+            when(accountAggregateService.getAggregate("cust1"))
+                    .thenReturn(new AccountAggregate("cust1", 3, new BigDecimal("150.25")));
+
+            mockMvc.perform(get(BASE_URL + "/cust1/summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.customerId").value("cust1"))
+                    .andExpect(jsonPath("$.accountCount").value(3))
+                    .andExpect(jsonPath("$.totalBalance").value(150.25));
+        }
+    }
+
+    // --- GET /by-iban ---
+    @Nested
+    class GetAccountsByIban {
+
+        @Test
+        void shouldReturnSingleAccount() throws Exception {
+            when(accountService.getAccountByIban("RO1")).thenReturn(new Account("RO1", "cust1", BigDecimal.TEN, null, null));
+
+            mockMvc.perform(get(BASE_URL + "/by-iban/RO1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.customerId").value("cust1"))
+                    .andExpect(jsonPath("$.balance").value(10));
+        }
+
+        @Test
+        void shouldReturnNotFoundForUnknownIban() throws Exception {
+            when(accountService.getAccountByIban("RO9")).thenThrow(new AccountNotFoundException("No account found for IBAN: RO9"));
+
+            mockMvc.perform(get(BASE_URL + "/by-iban/RO9"))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void shouldResolveSeveralIbansInOneCall() throws Exception {
+            when(accountService.getAccountsByIban(List.of("RO1", "RO2"))).thenReturn(List.of(
+                    new Account("RO1", "cust1", BigDecimal.ONE, null, null),
+                    new Account("RO2", "cust2", BigDecimal.TEN, null, null)));
+
+            mockMvc.perform(get(BASE_URL + "/by-iban").param("iban", "RO1", "RO2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[1].iban").value("RO2"));
+        }
+
+        @Test
+        void shouldRejectTooManyIbans() throws Exception {
+            String[] ibans = new String[AccountController.MAX_IBANS_PER_LOOKUP + 1];
+            Arrays.setAll(ibans, i -> "RO" + i);
+
+            mockMvc.perform(get(BASE_URL + "/by-iban").param("iban", ibans))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(accountService);
+        }
+    }
+
     @Nested
     class CreateAccount {
 
@@ -93,6 +246,14 @@ class AccountControllerTest {
                             }
                             """, 400),
                     Arguments.of("{}", 400),
+                    Arguments.of("""
+                            {
+                                "iban": "RO49AAAA1B31007593840000",
+                                "customerId": "cust123",
+                                "balance": 100,
+                                "createdAt": "2024-02-31T00:00:00Z"
+                            }
+                            """, 400),
 
                     // Valid case
                     Arguments.of("""
@@ -160,6 +321,43 @@ class AccountControllerTest {
         }
     }
 
+    // --- POST /{customerId}/adjust ---
+    @Nested
+    class AdjustBalance {
+
+        @Test
+        void shouldReturnNewBalance() throws Exception {
+            when(accountService.adjustBalance("RO49AAAA1B31007593840000", new BigDecimal("-25.50"), "cust1"))
+                    .thenReturn(new BigDecimal("74.50"));
+
+            mockMvc.perform(post(BASE_URL + "/cust1/adjust")
+                            .param("iban", "RO49AAAA1B31007593840000")
+                            .param("delta", "-25.50"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.iban").value("RO49AAAA1B31007593840000"))
+                    .andExpect(jsonPath("$.balance").value(74.50));
+        }
+
+        @Test
+        void shouldRejectDebitBelowZeroWithConflict() throws Exception {
+            when(accountService.adjustBalance(any(), any(), eq("cust1")))
+                    .thenThrow(new InsufficientBalanceException("too low"));
+
+            mockMvc.perform(post(BASE_URL + "/cust1/adjust")
+                            .param("iban", "RO49AAAA1B31007593840000")
+                            .param("delta", "-1000"))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.title").value("INSUFFICIENT_BALANCE"));
+        }
+
+        @Test
+        void shouldRequireDelta() throws Exception {
+            mockMvc.perform(post(BASE_URL + "/cust1/adjust")
+                            .param("iban", "RO49AAAA1B31007593840000"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
     // --- DELETE /{customerId}/delete/{iban} ---
     @Nested
     class DeleteAccount {
@@ -185,4 +383,118 @@ class AccountControllerTest {
             }
         }
     }
+
+    @Nested
+    class BinaryFormats {
+
+        private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+        private final ObjectMapper cborMapper = new ObjectMapper(new com.fasterxml.jackson.dataformat.cbor.CBORFactory());
+        private final ObjectMapper smileMapper = new ObjectMapper(new com.fasterxml.jackson.dataformat.smile.SmileFactory());
+
+        private final List<Account> accounts = List.of(new Account("RO00AAA123456789", "cust1", new BigDecimal("200.50"), null, null));
+
+        private void givenAccounts() throws Exception {
+            CachedAccounts cached = new CachedAccounts(objectMapper.writeValueAsBytes(accounts), "abc");
+            when(accountService.getAccountsJson("cust1")).thenReturn(cached);
+            when(accountService.decodeAccounts(cached)).thenReturn(accounts);
+        }
+
+        @Test
+        void shouldServeAccountsAsCborWithWeakEtag() throws Exception {
+            givenAccounts();
+
+            byte[] body = mockMvc.perform(get(BASE_URL + "/cust1").accept(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"abc\""))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            Account[] decoded = cborMapper.readValue(body, Account[].class);
+            assertEquals(accounts, List.of(decoded));
+        }
+
+        @Test
+        void shouldServeAccountsAsSmile() throws Exception {
+            givenAccounts();
+
+            byte[] body = mockMvc.perform(get(BASE_URL + "/cust1").accept(SMILE))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(SMILE))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            assertEquals(accounts, List.of(smileMapper.readValue(body, Account[].class)));
+        }
+
+        @ParameterizedTest(name = "Accept: {0}")
+        @ValueSource(strings = {"", "*/*", "application/json", "application/json, application/cbor;q=0.5"})
+        void shouldKeepJsonForOtherCallers(String accept) throws Exception {
+            givenAccounts();
+
+            mockMvc.perform(get(BASE_URL + "/cust1").headers(headers(accept)))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""));
+            verify(accountService, never()).decodeAccounts(any());
+        }
+
+        @Test
+        void shouldRejectUnsupportedAccept() throws Exception {
+            mockMvc.perform(get(BASE_URL + "/cust1").accept(MediaType.APPLICATION_XML))
+                    .andExpect(status().isNotAcceptable());
+            verifyNoInteractions(accountService);
+        }
+
+        private HttpHeaders headers(String accept) {
+            HttpHeaders headers = new HttpHeaders();
+            if (!accept.isEmpty()) {
+                headers.set(HttpHeaders.ACCEPT, accept);
+            }
+            return headers;
+        }
+
+        @Test
+        void shouldAnswerConditionalBinaryRequestsFromEtagAlone() throws Exception {
+            when(accountService.getAccountsEtag("cust1")).thenReturn("abc");
+
+            mockMvc.perform(get(BASE_URL + "/cust1").accept(MediaType.APPLICATION_CBOR)
+                            .header(HttpHeaders.IF_NONE_MATCH, "W/\"abc\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"abc\""));
+            verify(accountService, never()).getAccountsJson(any());
+        }
+
+        @Test
+        void shouldCreateAccountFromCbor() throws Exception {
+            Account account = new Account("RO00AAA123456789", "cust1", new BigDecimal("10.25"), null, null);
+            when(accountService.createAccount(any(Account.class), eq("cust1"))).thenReturn(account);
+
+            byte[] body = mockMvc.perform(post(BASE_URL + "/cust1")
+                            .contentType(MediaType.APPLICATION_CBOR)
+                            .accept(MediaType.APPLICATION_CBOR)
+                            .content(cborMapper.writeValueAsBytes(account)))
+                    .andExpect(status().isCreated())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            assertEquals(account, cborMapper.readValue(body, Account.class));
+            verify(accountService).createAccount(eq(account), eq("cust1"));
+        }
+
+        @Test
+        void shouldEncodeProblemDetailsInRequestedFormat() throws Exception {
+            when(accountService.getAccountsJson("cust1")).thenThrow(new AccountNotFoundException("No accounts found"));
+
+            byte[] body = mockMvc.perform(get(BASE_URL + "/cust1").accept(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isNotFound())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            Map<?, ?> problem = cborMapper.readValue(body, Map.class);
+            assertEquals(404, problem.get("status"));
+            assertNotNull(problem.get("title"));
+            assertEquals("databaseAction", problem.get("operation"));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import com.example.mstemplateredis.v1.service.AccountExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AccountExportController.class)
+class AccountExportControllerTest {
+
+    private static final String EXPORT_URL = "/brd-api/ms-template-redis/v1/exports/accounts";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AccountExportService accountExportService;
+
+    @Test
+    void shouldStreamExportAsNdjson() throws Exception {
+        AccountExportService.Export export = mock(AccountExportService.Export.class);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"iban\":\"RO1\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(export).writeTo(any());
+        when(accountExportService.start(any(), any())).thenReturn(export);
+
+        MvcResult result = mockMvc.perform(get(EXPORT_URL)
+                        .param("updatedFrom", "2024-01-01T00:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"iban\":\"RO1\"}\n"));
+        verify(accountExportService).start(eq(Instant.parse("2024-01-01T00:00:00Z")), isNull());
+        verify(export).release();
+    }
+
+    @Test
+    void shouldAnswer503WhenTooManyExportsRun() throws Exception {
+        when(accountExportService.start(any(), any()))
+                .thenThrow(new AccountLoadRejectedException("Too many account exports running", 60));
+
+        mockMvc.perform(get(EXPORT_URL))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "60"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.exception.AccountImportConflictException;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import com.example.mstemplateredis.v1.service.AccountImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AccountImportController.class)
+class AccountImportControllerTest {
+
+    private static final String IMPORT_URL = "/brd-api/ms-template-redis/v1/imports/accounts/";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AccountImportService accountImportService;
+
+    @Test
+    void shouldImportCsvUpload() throws Exception {
+        when(accountImportService.importAccounts(eq("imp-1"), eq(AccountImportService.Format.CSV), any()))
+                .thenReturn(new AccountImport("imp-1", 2, 1, 1, List.of(new AccountImport.LineError(2, "Invalid IBAN format"))));
+
+        mockMvc.perform(post(IMPORT_URL + "imp-1")
+                        .contentType("text/csv")
+                        .content("iban,customerId,balance\nRO12BANK0001,cust1,1\nbad,cust1,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.linesCommitted").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+    }
+
+    @Test
+    void shouldImportNdjsonUpload() throws Exception {
+        when(accountImportService.importAccounts(eq("imp-1"), eq(AccountImportService.Format.NDJSON), any()))
+                .thenReturn(new AccountImport("imp-1", 1, 1, 0, List.of()));
+
+        mockMvc.perform(post(IMPORT_URL + "imp-1")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"iban\":\"RO12BANK0001\",\"customerId\":\"cust1\",\"balance\":1}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+    }
+
+    @Test
+    void shouldRejectOtherFormats() throws Exception {
+        mockMvc.perform(post(IMPORT_URL + "imp-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("INVALID_IMPORT"));
+
+        verifyNoInteractions(accountImportService);
+    }
+
+    @Test
+    void shouldRejectInvalidImportId() throws Exception {
+        mockMvc.perform(post(IMPORT_URL + "imp 1")
+                        .contentType("text/csv")
+                        .content("iban,customerId,balance\n"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(accountImportService);
+    }
+
+    @Test
+    void shouldAnswer409ForConcurrentUpload() throws Exception {
+        when(accountImportService.importAccounts(any(), any(), any()))
+                .thenThrow(new AccountImportConflictException("Import imp-1 is being uploaded concurrently"));
+
+        mockMvc.perform(post(IMPORT_URL + "imp-1")
+                        .contentType("text/csv")
+                        .content("iban,customerId,balance\n"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.title").value("IMPORT_CONFLICT"));
+    }
+
+    @Test
+    void shouldReturnImportProgress() throws Exception {
+        when(accountImportService.getImport("imp-1")).thenReturn(new AccountImport("imp-1", 1000, 990, 10, List.of()));
+
+        mockMvc.perform(get(IMPORT_URL + "imp-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(10));
+    }
+
+    @Test
+    void shouldAnswer404ForUnknownImport() throws Exception {
+        when(accountImportService.getImport("imp-1")).thenThrow(new AccountNotFoundException("No import found with ID: imp-1"));
+
+        mockMvc.perform(get(IMPORT_URL + "imp-1"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.mstemplateredis.v1.api;
+
+import com.example.mstemplateredis.exception.CacheAdminException;
+import com.example.mstemplateredis.v1.model.CacheEviction;
+import com.example.mstemplateredis.v1.model.CacheGeneration;
+import com.example.mstemplateredis.v1.model.CacheKeyPage;
+import com.example.mstemplateredis.v1.service.CacheAdminService;
+import com.example.mstemplateredis.v1.service.CacheGenerations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.*;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CacheAdminController.class)
+class CacheAdminControllerTest {
+
+    private static final String BASE_URL = "/brd-api/ms-template-redis/v1/admin/cache";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CacheGenerations cacheGenerations;
+
+    @MockBean
+    private CacheAdminService cacheAdminService;
+
+    @Test
+    void shouldBumpGlobalGeneration() throws Exception {
+        when(cacheGenerations.bump()).thenReturn(new CacheGeneration(null, 4));
+
+        mockMvc.perform(post(BASE_URL + "/generation"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.generation").value(4));
+        verify(cacheGenerations, never()).bumpSegment(anyInt());
+    }
+
+    @Test
+    void shouldBumpSegmentGeneration() throws Exception {
+        when(cacheGenerations.bumpSegment(3)).thenReturn(new CacheGeneration(3, 2));
+
+        mockMvc.perform(post(BASE_URL + "/generation").param("segment", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.segment").value(3))
+                .andExpect(jsonPath("$.generation").value(2));
+    }
+
+    @Test
+    void shouldRejectUnknownSegment() throws Exception {
+        when(cacheGenerations.bumpSegment(99)).thenThrow(new CacheAdminException("Segment must be between 0 and 15"));
+
+        mockMvc.perform(post(BASE_URL + "/generation").param("segment", "99"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("INVALID_CACHE_REQUEST"));
+    }
+
+    @Test
+    void shouldListOnePageOfKeys() throws Exception {
+        when(cacheAdminService.listKeys("*::cust1", "0", 100)).thenReturn(new CacheKeyPage("42",
+                List.of(new CacheKeyPage.KeyInfo("accounts::v0.3.0::cust1", 60_000, 512L))));
+
+        mockMvc.perform(get(BASE_URL + "/keys").param("match", "*::cust1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value("42"))
+                .andExpect(jsonPath("$.keys[0].key").value("accounts::v0.3.0::cust1"))
+                .andExpect(jsonPath("$.keys[0].memoryBytes").value(512));
+    }
+
+    @Test
+    void shouldRejectPageSizeAboveLimit() throws Exception {
+        mockMvc.perform(get(BASE_URL + "/keys").param("count", "5000"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(cacheAdminService);
+    }
+
+    @Test
+    void shouldEvictCustomer() throws Exception {
+        mockMvc.perform(delete(BASE_URL + "/customers/cust1"))
+                .andExpect(status().isNoContent());
+        verify(cacheAdminService).evictCustomer("cust1");
+    }
+
+    @Test
+    void shouldEvictByPatternFromCursor() throws Exception {
+        when(cacheAdminService.evictMatching("v2.*", "77")).thenReturn(new CacheEviction("0", 12));
+
+        mockMvc.perform(delete(BASE_URL + "/keys").param("match", "v2.*").param("cursor", "77"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value("0"))
+                .andExpect(jsonPath("$.unlinked").value(12));
+    }
+
+    @Test
+    void shouldRequirePatternForEviction() throws Exception {
+        mockMvc.perform(delete(BASE_URL + "/keys"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(cacheAdminService);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mstemplateredis.v1.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldKeepJsonContract() throws Exception {
+        Account account = new Account("RO49AAAA1B31007593840000", "cust1", new BigDecimal("100.50"),
+                "2024-05-01T10:15:30.123Z", null);
+
+        String json = objectMapper.writeValueAsString(account);
+
+        assertEquals("{\"iban\":\"RO49AAAA1B31007593840000\",\"customerId\":\"cust1\",\"balance\":100.50,"
+                + "\"createdAt\":\"2024-05-01T10:15:30.123Z\",\"updatedAt\":null}", json);
+        assertEquals(account, objectMapper.readValue(json, Account.class));
+    }
+
+    static Stream<Arguments> balanceScenarios() {
+        return Stream.of(
+                Arguments.of(new BigDecimal("0")),
+                Arguments.of(new BigDecimal("1250.75")),
+                Arguments.of(new BigDecimal("1E+3")),
+                Arguments.of(new BigDecimal("123456789012345678901234567890.12")), // does not fit in a long
+                Arguments.of((BigDecimal) null)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("balanceScenarios")
+    void shouldRoundTripBalanceExactly(BigDecimal balance) {
+        Account account = Account.builder().iban("RO123").balance(balance).build();
+
+        assertEquals(balance, account.getBalance());
+    }
+
+    static Stream<Arguments> timestampScenarios() {
+        return Stream.of(
+                Arguments.of("2024-05-01T10:15:30.123Z", "2024-05-01T10:15:30.123Z"),
+                Arguments.of("2024-05-01T10:15:30Z", "2024-05-01T10:15:30Z"),
+                Arguments.of("2024-02-29T00:00:00Z", "2024-02-29T00:00:00Z"),
+                Arguments.of("2024-05-01T10:15:30+02:00", "2024-05-01T08:15:30Z"),
+                Arguments.of(null, null)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not-a-timestamp", "2024-02-31T00:00:00Z", "2023-02-29T00:00:00Z", "2024-04-31 10:15:30.0"})
+    void shouldRejectInvalidTimestamps(String input) {
+        Account account = new Account();
+
+        assertThrows(IllegalArgumentException.class, () -> account.setCreatedAt(input));
+    }
+
+    @Test
+    void shouldParseJdbcTimestamps() {
+        Timestamp timestamp = Timestamp.valueOf("2024-05-01 10:15:30.123");
+        Account account = new Account();
+        account.setCreatedAt(timestamp.toString());
+
+        assertEquals(timestamp.getTime(), account.createdAtEpochMillis());
+    }
+
+    @ParameterizedTest
+    @MethodSource("timestampScenarios")
+    void shouldParseTimestamps(String input, String expected) {
+        Account account = new Account();
+        account.setCreatedAt(input);
+
+        assertEquals(expected, account.getCreatedAt());
+    }
+
+    @Test
+    void shouldDefaultTimestampsToConstructionTime() {
+        long before = System.currentTimeMillis();
+        Account account = new Account();
+
+        assertTrue(account.createdAtEpochMillis() >= before);
+        assertNotNull(account.getUpdatedAt());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {AccountAggregateRepository.class, JdbcClient.class})
+@ExtendWith(SpringExtension.class)
+class AccountAggregateRepositoryTest {
+
+    @Autowired
+    private AccountAggregateRepository accountAggregateRepository;
+
+    @MockBean
+    private JdbcClient jdbcClient;
+
+    @SuppressWarnings("unchecked")
+    private JdbcClient.MappedQuerySpec<AccountAggregate> query(String sql) {
+        var spec = mock(JdbcClient.StatementSpec.class);
+        when(spec.param(anyString(), any())).thenReturn(spec);
+        var mapped = mock(JdbcClient.MappedQuerySpec.class);
+        when(spec.query(any(RowMapper.class))).thenReturn(mapped);
+        when(jdbcClient.sql(contains(sql))).thenReturn(spec);
+        return mapped;
+    }
+
+    private AccountAggregate aggregate(String customerId, long count, String total) {
+        return new AccountAggregate(customerId, count, new BigDecimal(total));
+    }
+
+    @Test
+    void shouldReadAggregateFromSummaryRow() {
+        var summary = query("FROM account_balance_summary WHERE customerId = :customerId");
+        var computed = query("FROM account_db WHERE customerId = :customerId");
+        when(summary.optional()).thenReturn(Optional.of(aggregate("cust1", 2, "30.00")));
+
+        assertEquals(aggregate("cust1", 2, "30.00"), accountAggregateRepository.findAggregate("cust1"));
+        verify(computed, never()).single();
+    }
+
+    @Test
+    void shouldComputeAggregateWithoutSummaryRow() {
+        var summary = query("FROM account_balance_summary WHERE customerId = :customerId");
+        var computed = query("FROM account_db WHERE customerId = :customerId");
+        when(summary.optional()).thenReturn(Optional.empty());
+        when(computed.single()).thenReturn(aggregate("cust1", 0, "0"));
+
+        assertEquals(aggregate("cust1", 0, "0"), accountAggregateRepository.findAggregate("cust1"));
+    }
+
+    @Test
+    void shouldWrapReadErrors() {
+        var summary = query("FROM account_balance_summary WHERE customerId = :customerId");
+        when(summary.optional()).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThrows(AccountRetrievalException.class, () -> accountAggregateRepository.findAggregate("cust1"));
+    }
+
+    @Test
+    void shouldReportMissingAndDifferingSummaries() {
+        var summaries = query("FROM account_balance_summary\n");
+        var actual = query("GROUP BY customerId");
+        when(summaries.list()).thenReturn(List.of(aggregate("cust1", 2, "30.00"), aggregate("cust2", 1, "5.00")));
+        when(actual.list()).thenReturn(List.of(aggregate("cust1", 2, "30"), aggregate("cust2", 1, "6.00"),
+                aggregate("cust3", 1, "1.00")));
+
+        assertEquals(List.of("cust2", "cust3"), accountAggregateRepository.findDrifted(List.of("cust1", "cust2", "cust3")));
+    }
+
+    @Test
+    void shouldSkipDatabaseForEmptyInput() {
+        assertEquals(List.of(), accountAggregateRepository.findDrifted(List.of()));
+        accountAggregateRepository.rebuildSummaries(List.of());
+
+        verifyNoInteractions(jdbcClient);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountExportRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AccountExportRepository repository;
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new AccountExportRepository(jdbcTemplate);
+        repository.fetchSize = 500;
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+    }
+
+    private PreparedStatementCreator capturedCreator() {
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(creator.capture(), any(RowCallbackHandler.class));
+        return creator.getValue();
+    }
+
+    @Test
+    void shouldReadWholeTableOnForwardOnlyCursorWithFetchSize() throws Exception {
+        repository.streamAccounts(null, null, account -> {});
+
+        capturedCreator().createPreparedStatement(connection);
+
+        verify(connection).prepareStatement(
+                "SELECT iban, customerId, balance, created_at, updated_at FROM account_db",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(statement).setFetchSize(500);
+        verify(statement, never()).setTimestamp(anyInt(), any());
+    }
+
+    @Test
+    void shouldFilterByUpdatedRange() throws Exception {
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        Instant before = Instant.parse("2024-01-02T00:00:00Z");
+
+        repository.streamAccounts(from, before, account -> {});
+        capturedCreator().createPreparedStatement(connection);
+
+        verify(connection).prepareStatement(endsWith(" WHERE updated_at >= ? AND updated_at < ?"), anyInt(), anyInt());
+        verify(statement).setTimestamp(1, Timestamp.from(from));
+        verify(statement).setTimestamp(2, Timestamp.from(before));
+    }
+
+    @Test
+    void shouldPassEachRowToConsumerAndCountThem() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(AccountRowMapper.IBAN)).thenReturn("RO1", "RO2");
+        when(rs.getString(AccountRowMapper.CUSTOMER_ID)).thenReturn("cust1");
+        when(rs.getBigDecimal(AccountRowMapper.BALANCE)).thenReturn(BigDecimal.TEN);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        List<Account> accounts = new ArrayList<>();
+        long rows = repository.streamAccounts(null, null, accounts::add);
+
+        assertEquals(2, rows);
+        assertEquals(List.of("RO1", "RO2"), accounts.stream().map(Account::getIban).toList());
+    }
+
+    @Test
+    void shouldWrapDatabaseErrors() {
+        doThrow(new QueryTimeoutException("timeout"))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        assertThrows(AccountRetrievalException.class, () -> repository.streamAccounts(null, null, account -> {}));
+    }
+}
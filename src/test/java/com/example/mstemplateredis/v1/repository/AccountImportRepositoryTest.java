@@ -0,0 +1,142 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountCreationException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {AccountImportRepository.class, JdbcClient.class})
+@ExtendWith(SpringExtension.class)
+class AccountImportRepositoryTest {
+
+    @Autowired
+    private AccountImportRepository accountImportRepository;
+
+    @MockBean
+    private JdbcClient jdbcClient;
+
+    @MockBean
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private JdbcClient.StatementSpec insertSpec;
+    private JdbcClient.StatementSpec advanceSpec;
+
+    private JdbcClient.StatementSpec statement(String sql) {
+        var spec = mock(JdbcClient.StatementSpec.class);
+        when(spec.param(anyString(), any())).thenReturn(spec);
+        when(jdbcClient.sql(contains(sql))).thenReturn(spec);
+        return spec;
+    }
+
+    @BeforeEach
+    void setUp() {
+        insertSpec = statement("INSERT INTO account_db");
+        advanceSpec = statement("UPDATE account_import");
+        accountImportRepository.rowsPerInsert = 2;
+    }
+
+    private static List<Account> accounts(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Account.builder().iban("RO" + i).customerId("cust1").balance(BigDecimal.ONE).build())
+                .toList();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldInsertAccountsWithMultiRowStatements() {
+        when(insertSpec.update()).thenReturn(2, 1);
+
+        assertEquals(3, accountImportRepository.insertAccounts(accounts(3)));
+
+        ArgumentCaptor<Object> rows = ArgumentCaptor.forClass(Object.class);
+        verify(insertSpec, times(2)).param(eq("rows"), rows.capture());
+        assertEquals(2, ((List<Object[]>) rows.getAllValues().get(0)).size());
+        List<Object[]> last = (List<Object[]>) rows.getAllValues().get(1);
+        assertArrayEquals(new Object[]{"RO2", "cust1", BigDecimal.ONE}, last.get(0));
+    }
+
+    @Test
+    void shouldNotQueryWithoutAccounts() {
+        assertEquals(0, accountImportRepository.insertAccounts(List.of()));
+
+        verify(insertSpec, never()).update();
+    }
+
+    @Test
+    void shouldStopAtExistingIbanAndReturnTheRowsInsertedBefore() {
+        when(insertSpec.update()).thenReturn(2).thenThrow(new DuplicateKeyException("Duplicate entry 'RO2'"));
+
+        assertEquals(2, accountImportRepository.insertAccounts(accounts(5)));
+
+        verify(insertSpec, times(2)).update();
+    }
+
+    @Test
+    void shouldFailOnValuesTheColumnsReject() {
+        when(insertSpec.update()).thenThrow(new DataIntegrityViolationException("Data too long for column 'customerId'"));
+
+        assertThrows(AccountCreationException.class, () -> accountImportRepository.insertAccounts(accounts(1)));
+    }
+
+    @Test
+    void shouldWrapInsertErrors() {
+        when(insertSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThrows(AccountCreationException.class, () -> accountImportRepository.insertAccounts(accounts(1)));
+    }
+
+    @Test
+    void shouldAdvanceOnlyFromTheExpectedLine() {
+        when(advanceSpec.update()).thenReturn(1, 0);
+
+        assertTrue(accountImportRepository.advance("imp1", 0, 1000, 990, 10));
+        assertFalse(accountImportRepository.advance("imp1", 0, 1000, 990, 10));
+
+        verify(advanceSpec, times(2)).param("fromLine", 0L);
+        verify(advanceSpec, times(2)).param("toLine", 1000L);
+    }
+
+    @Test
+    void shouldRecordErrorsInOneBatch() {
+        accountImportRepository.recordErrors("imp1", List.of(new AccountImport.LineError(3, "bad"),
+                new AccountImport.LineError(7, "worse")));
+
+        ArgumentCaptor<SqlParameterSource[]> batch = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(namedParameterJdbcTemplate).batchUpdate(contains("account_import_error"), batch.capture());
+        assertEquals(2, batch.getValue().length);
+        assertEquals(7L, batch.getValue()[1].getValue("line"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReturnNullForUnknownImport() {
+        var selectSpec = statement("SELECT import_id");
+        var mappedQuerySpec = mock(JdbcClient.MappedQuerySpec.class);
+        when(mappedQuerySpec.optional()).thenReturn(Optional.empty());
+        when(selectSpec.query(any(org.springframework.jdbc.core.RowMapper.class))).thenReturn(mappedQuerySpec);
+
+        assertNull(accountImportRepository.findWithErrors("imp1", 100));
+    }
+}
@@ -2,8 +2,10 @@ package com.example.mstemplateredis.v1.repository;
 
 
 
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
 import com.example.mstemplateredis.exception.*;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.BalanceUpdate;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -11,11 +13,15 @@ import org.junit.jupiter.params.provider.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -34,18 +40,21 @@ class AccountRepositoryTest {
     @MockBean
     private JdbcClient jdbcClient;
 
+    @MockBean
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     // --- getAccounts() ---
     @Nested
     class GetAccounts {
 
         @Test
         void shouldThrowAccountRetrievalExceptionWhenQueryFails() {
-            var mappedQuerySpec = mock(JdbcClient.MappedQuerySpec.class);
+            JdbcClient.MappedQuerySpec<Account> mappedQuerySpec = mock();
             when(mappedQuerySpec.list()).thenThrow(new EmptyResultDataAccessException(1));
 
             var statementSpec = mock(JdbcClient.StatementSpec.class);
             when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
-            when(statementSpec.query(Account.class)).thenReturn(mappedQuerySpec);
+            when(statementSpec.query(AccountRowMapper.INSTANCE)).thenReturn(mappedQuerySpec);
             when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
 
             assertThrows(AccountRetrievalException.class, () -> accountRepository.getAccounts("42"));
@@ -56,12 +65,12 @@ class AccountRepositoryTest {
 
         @Test
         void shouldReturnEmptyListWhenNoResults() {
-            var mappedQuerySpec = mock(JdbcClient.MappedQuerySpec.class);
+            JdbcClient.MappedQuerySpec<Account> mappedQuerySpec = mock();
             when(mappedQuerySpec.list()).thenReturn(new ArrayList<>());
 
             var statementSpec = mock(JdbcClient.StatementSpec.class);
             when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
-            when(statementSpec.query(Account.class)).thenReturn(mappedQuerySpec);
+            when(statementSpec.query(AccountRowMapper.INSTANCE)).thenReturn(mappedQuerySpec);
             when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
 
             List<Account> result = accountRepository.getAccounts("42");
@@ -192,4 +201,167 @@ class AccountRepositoryTest {
             verify(statementSpec).update();
         }
     }
+
+    // --- adjustBalance() ---
+    @Nested
+    class AdjustBalance {
+
+        @SuppressWarnings("unchecked")
+        private void givenAdjustment(int updatedRows, List<BigDecimal> balanceAfter) {
+            var updateSpec = mock(JdbcClient.StatementSpec.class);
+            when(updateSpec.param(anyString(), any())).thenReturn(updateSpec);
+            when(updateSpec.update()).thenReturn(updatedRows);
+            when(jdbcClient.sql(contains("SET balance = balance + :delta"))).thenReturn(updateSpec);
+
+            var mappedQuerySpec = mock(JdbcClient.MappedQuerySpec.class);
+            when(mappedQuerySpec.list()).thenReturn(balanceAfter);
+            var selectSpec = mock(JdbcClient.StatementSpec.class);
+            when(selectSpec.param(anyString(), any())).thenReturn(selectSpec);
+            when(selectSpec.query(BigDecimal.class)).thenReturn(mappedQuerySpec);
+            when(jdbcClient.sql(contains("SELECT balance"))).thenReturn(selectSpec);
+        }
+
+        @Test
+        void shouldReturnBalanceAfterAdjustment() {
+            givenAdjustment(1, List.of(new BigDecimal("110.00")));
+
+            assertEquals(new BigDecimal("110.00"), accountRepository.adjustBalance("RO123", BigDecimal.TEN, "42"));
+        }
+
+        @Test
+        void shouldRejectDebitBelowZero() {
+            givenAdjustment(0, List.of(new BigDecimal("5.00")));
+
+            assertThrows(InsufficientBalanceException.class,
+                    () -> accountRepository.adjustBalance("RO123", new BigDecimal("-10"), "42"));
+        }
+
+        @Test
+        void shouldReportUnknownIban() {
+            givenAdjustment(0, List.of());
+
+            assertThrows(AccountNotFoundException.class,
+                    () -> accountRepository.adjustBalance("RO404", BigDecimal.TEN, "42"));
+        }
+    }
+
+    // --- request deadline ---
+    @Nested
+    class RequestDeadline {
+
+        @AfterEach
+        void clearDeadline() {
+            RequestDeadlineHolder.clear();
+        }
+
+        @Test
+        void shouldNotQueryWhenDeadlineHasPassed() {
+            RequestDeadlineHolder.setTimeout(Duration.ofMillis(-1));
+
+            assertThrows(DeadlineExceededException.class, () -> accountRepository.getAccounts("42"));
+
+            verifyNoInteractions(jdbcClient);
+        }
+
+        @Test
+        void shouldMapQueryTimeoutToDeadlineExceeded() {
+            RequestDeadlineHolder.setTimeout(Duration.ofSeconds(1));
+
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertThrows(DeadlineExceededException.class, () -> accountRepository.deleteAccount("RO123", "42"));
+        }
+
+        @Test
+        void shouldKeepQueryTimeoutAsDatabaseErrorWithoutDeadline() {
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertThrows(AccountDeletionException.class, () -> accountRepository.deleteAccount("RO123", "42"));
+        }
+    }
+
+    // --- updateAccounts() ---
+    @Nested
+    class UpdateAccounts {
+
+        @Test
+        void shouldSendAllUpdatesAsOneBatch() {
+            when(namedParameterJdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[]{1, 0});
+
+            int[] rows = accountRepository.updateAccounts(List.of(
+                    new BalanceUpdate("RO1", BigDecimal.ONE, "cust1"),
+                    new BalanceUpdate("RO2", BigDecimal.TEN, "cust2")));
+
+            assertArrayEquals(new int[]{1, 0}, rows);
+            verify(namedParameterJdbcTemplate).batchUpdate(contains("UPDATE account_db"),
+                    argThat((SqlParameterSource[] batch) -> batch.length == 2 && "RO2".equals(batch[1].getValue("iban"))));
+        }
+
+        @Test
+        void shouldThrowAccountUpdateExceptionWhenBatchFails() {
+            when(namedParameterJdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                    .thenThrow(new QueryTimeoutException("timeout"));
+
+            assertThrows(AccountUpdateException.class,
+                    () -> accountRepository.updateAccounts(List.of(new BalanceUpdate("RO1", BigDecimal.ONE, "cust1"))));
+        }
+    }
+
+    @Nested
+    class GetAccountsByIban {
+
+        @Test
+        void shouldLoadAllIbansWithOnePrimaryKeyQuery() {
+            List<Account> accounts = List.of(new Account("RO1", "cust1", BigDecimal.ONE, null, null));
+            JdbcClient.MappedQuerySpec<Account> mappedQuerySpec = mock();
+            when(mappedQuerySpec.list()).thenReturn(accounts);
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.query(AccountRowMapper.INSTANCE)).thenReturn(mappedQuerySpec);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertEquals(accounts, accountRepository.getAccountsByIban(List.of("RO1", "RO2")));
+
+            verify(jdbcClient).sql(contains("WHERE iban IN (:iban)"));
+            verify(statementSpec).param("iban", List.of("RO1", "RO2"));
+        }
+
+        @Test
+        void shouldThrowAccountRetrievalExceptionWhenQueryFails() {
+            JdbcClient.MappedQuerySpec<Account> mappedQuerySpec = mock();
+            when(mappedQuerySpec.list()).thenThrow(new EmptyResultDataAccessException(1));
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.query(AccountRowMapper.INSTANCE)).thenReturn(mappedQuerySpec);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertThrows(AccountRetrievalException.class, () -> accountRepository.getAccountsByIban(List.of("RO1")));
+        }
+    }
+
+    @Nested
+    class GetAccountsOfCustomers {
+
+        @Test
+        void shouldLoadAllCustomersWithOneQuery() {
+            List<Account> accounts = List.of(new Account("RO1", "cust1", BigDecimal.ONE, null, null));
+            JdbcClient.MappedQuerySpec<Account> mappedQuerySpec = mock();
+            when(mappedQuerySpec.list()).thenReturn(accounts);
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.query(AccountRowMapper.INSTANCE)).thenReturn(mappedQuerySpec);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertEquals(accounts, accountRepository.getAccountsOfCustomers(List.of("cust1", "cust2")));
+
+            verify(jdbcClient).sql(contains("WHERE customerId IN (:customerId)"));
+            verify(statementSpec).param("customerId", List.of("cust1", "cust2"));
+        }
+    }
 }
\ No newline at end of file
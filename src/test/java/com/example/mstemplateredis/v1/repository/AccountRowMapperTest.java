@@ -0,0 +1,36 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.v1.model.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AccountRowMapperTest {
+
+    @Test
+    void shouldMapColumnsByPosition() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn("RO49AAAA1B31007593840000");
+        when(rs.getString(2)).thenReturn("cust1");
+        when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("1250.75"));
+        when(rs.getTimestamp(4)).thenReturn(Timestamp.from(Instant.parse("2024-05-01T10:15:30.123Z")));
+        when(rs.getTimestamp(5)).thenReturn(null);
+
+        Account account = AccountRowMapper.INSTANCE.mapRow(rs, 0);
+
+        assertEquals("RO49AAAA1B31007593840000", account.getIban());
+        assertEquals("cust1", account.getCustomerId());
+        assertEquals(new BigDecimal("1250.75"), account.getBalance());
+        assertEquals("2024-05-01T10:15:30.123Z", account.getCreatedAt());
+        assertNull(account.getUpdatedAt());
+        verify(rs, never()).getString(anyString());
+        verify(rs, never()).getMetaData();
+    }
+}
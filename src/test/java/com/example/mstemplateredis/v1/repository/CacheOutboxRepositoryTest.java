@@ -0,0 +1,123 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.CacheOutboxException;
+import com.example.mstemplateredis.exception.DeadlineExceededException;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {CacheOutboxRepository.class, JdbcClient.class})
+@ExtendWith(SpringExtension.class)
+class CacheOutboxRepositoryTest {
+
+    @Autowired
+    private CacheOutboxRepository cacheOutboxRepository;
+
+    @MockBean
+    private JdbcClient jdbcClient;
+
+    @Nested
+    class Append {
+
+        @Test
+        void shouldInsertOutboxRow() {
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenReturn(1);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            cacheOutboxRepository.append("42", "RO123", CacheOutboxEntry.Operation.UPDATE);
+
+            verify(jdbcClient).sql(contains("INSERT INTO account_cache_outbox"));
+            verify(statementSpec).param("operation", "UPDATE");
+            verify(statementSpec, times(4)).param(anyString(), any());
+        }
+
+        @Test
+        void shouldWrapDatabaseErrors() {
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertThrows(CacheOutboxException.class,
+                    () -> cacheOutboxRepository.append("42", "RO123", CacheOutboxEntry.Operation.DELETE));
+        }
+
+        @Test
+        void shouldMapQueryTimeoutUnderDeadlineToDeadlineExceeded() {
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            RequestDeadlineHolder.setTimeout(Duration.ofSeconds(1));
+            try {
+                assertThrows(DeadlineExceededException.class,
+                        () -> cacheOutboxRepository.append("42", "RO123", CacheOutboxEntry.Operation.UPDATE));
+            } finally {
+                RequestDeadlineHolder.clear();
+            }
+        }
+    }
+
+    @Nested
+    class LockBatch {
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldLockOldestEntriesSkippingLockedRows() {
+            var mappedQuerySpec = mock(JdbcClient.MappedQuerySpec.class);
+            when(mappedQuerySpec.list()).thenReturn(List.of());
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.query(any(RowMapper.class))).thenReturn(mappedQuerySpec);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            assertTrue(cacheOutboxRepository.lockBatch(100).isEmpty());
+
+            verify(jdbcClient).sql(contains("FOR UPDATE SKIP LOCKED"));
+            verify(statementSpec).param("limit", 100);
+        }
+    }
+
+    @Nested
+    class Delete {
+
+        @Test
+        void shouldDeleteByIds() {
+            var statementSpec = mock(JdbcClient.StatementSpec.class);
+            when(statementSpec.param(anyString(), any())).thenReturn(statementSpec);
+            when(statementSpec.update()).thenReturn(2);
+            when(jdbcClient.sql(anyString())).thenReturn(statementSpec);
+
+            cacheOutboxRepository.delete(List.of(1L, 2L));
+
+            verify(jdbcClient).sql(contains("DELETE FROM account_cache_outbox"));
+            verify(statementSpec).param("ids", List.of(1L, 2L));
+        }
+
+        @Test
+        void shouldSkipEmptyBatch() {
+            cacheOutboxRepository.delete(List.of());
+
+            verifyNoInteractions(jdbcClient);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.mstemplateredis.v1.repository;
+
+import com.example.mstemplateredis.exception.AccountUpdateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {HotAccountRepository.class, JdbcClient.class})
+@ExtendWith(SpringExtension.class)
+class HotAccountRepositoryTest {
+
+    @Autowired
+    private HotAccountRepository hotAccountRepository;
+
+    @MockBean
+    private JdbcClient jdbcClient;
+
+    private JdbcClient.StatementSpec insertSpec;
+    private JdbcClient.StatementSpec advanceSpec;
+    private JdbcClient.StatementSpec balanceSpec;
+
+    private JdbcClient.StatementSpec statement(String sql) {
+        var spec = mock(JdbcClient.StatementSpec.class);
+        when(spec.param(anyString(), any())).thenReturn(spec);
+        when(jdbcClient.sql(contains(sql))).thenReturn(spec);
+        return spec;
+    }
+
+    @BeforeEach
+    void setUp() {
+        insertSpec = statement("INSERT IGNORE INTO account_hot_flush");
+        advanceSpec = statement("UPDATE account_hot_flush");
+        balanceSpec = statement("UPDATE account_db");
+    }
+
+    @Test
+    void shouldApplyDeltaWhenSequenceAdvances() {
+        when(advanceSpec.update()).thenReturn(1);
+        when(balanceSpec.update()).thenReturn(1);
+
+        assertTrue(hotAccountRepository.applyFlush("RO123", new BigDecimal("-12.50"), 8));
+
+        verify(insertSpec).update();
+        verify(advanceSpec).param("seq", 8L);
+        verify(balanceSpec).param("delta", new BigDecimal("-12.50"));
+    }
+
+    @Test
+    void shouldSkipFlushAppliedBefore() {
+        when(advanceSpec.update()).thenReturn(0);
+
+        assertFalse(hotAccountRepository.applyFlush("RO123", BigDecimal.ONE, 8));
+
+        verify(balanceSpec, never()).update();
+    }
+
+    @Test
+    void shouldWrapDatabaseErrors() {
+        when(advanceSpec.update()).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThrows(AccountUpdateException.class, () -> hotAccountRepository.applyFlush("RO123", BigDecimal.ONE, 8));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.repository.AccountAggregateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountAggregateServiceTest {
+
+    private AccountAggregateRepository repository;
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private AccountAggregateService service;
+
+    private final AccountAggregate aggregate = new AccountAggregate("cust1", 2, new BigDecimal("30.00"));
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AccountAggregateRepository.class);
+        redisService = mock(RedisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new AccountAggregateService(repository, redisService,
+                new CacheMissBulkhead(4, 4, Duration.ofMillis(100), new SimpleMeterRegistry()), meterRegistry);
+        service.pageSize = 2;
+    }
+
+    @Test
+    void shouldServeCachedAggregateWithoutDatabase() {
+        when(redisService.getAggregate("cust1")).thenReturn(aggregate);
+
+        assertEquals(aggregate, service.getAggregate("cust1"));
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void shouldLoadAndCacheAggregateOnMiss() {
+        when(repository.findAggregate("cust1")).thenReturn(aggregate);
+
+        assertEquals(aggregate, service.getAggregate("cust1"));
+
+        verify(redisService).setAggregate(aggregate);
+    }
+
+    @Test
+    void shouldRebuildDriftedSummariesPageByPage() {
+        when(repository.customersAfter("", 2)).thenReturn(List.of("cust1", "cust2"));
+        when(repository.customersAfter("cust2", 2)).thenReturn(List.of("cust3"));
+        when(repository.findDrifted(List.of("cust1", "cust2"))).thenReturn(List.of("cust2"));
+        when(repository.findDrifted(List.of("cust3"))).thenReturn(List.of());
+        when(repository.clearOrphanSummaries()).thenReturn(1);
+
+        service.reconcile();
+
+        verify(repository).rebuildSummaries(List.of("cust2"));
+        verify(redisService).evictAggregates(List.of("cust2"));
+        verify(repository, times(1)).rebuildSummaries(anyCollection());
+        assertEquals(2, meterRegistry.counter("accounts.aggregates.drifted").count());
+    }
+
+    @Test
+    void shouldStopReconciliationOnDatabaseError() {
+        when(repository.customersAfter("", 2)).thenReturn(List.of("cust1", "cust2"));
+        when(repository.findDrifted(anyCollection())).thenThrow(new AccountRetrievalException("down", null));
+
+        service.reconcile();
+
+        verify(repository, never()).rebuildSummaries(anyCollection());
+        verify(repository, never()).clearOrphanSummaries();
+    }
+
+    @Test
+    void shouldSkipReconciliationWhenDisabled() {
+        service.reconcileEnabled = false;
+
+        service.reconcile();
+
+        verifyNoInteractions(repository);
+    }
+}
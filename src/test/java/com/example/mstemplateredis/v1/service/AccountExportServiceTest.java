@@ -0,0 +1,128 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class AccountExportServiceTest {
+
+    private AccountExportRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private AccountExportService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AccountExportRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new AccountExportService(repository, new ObjectMapper(), 1, meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenAccounts(Account... accounts) {
+        doAnswer(invocation -> {
+            Consumer<Account> consumer = invocation.getArgument(2);
+            for (Account account : accounts) {
+                consumer.accept(account);
+            }
+            return (long) accounts.length;
+        }).when(repository).streamAccounts(any(), any(), any());
+    }
+
+    @Test
+    void shouldWriteOneJsonObjectPerLine() throws Exception {
+        givenAccounts(Account.builder().iban("RO1").customerId("cust1").balance(BigDecimal.TEN).build(),
+                Account.builder().iban("RO2").customerId("cust2").balance(BigDecimal.ONE).build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.start(null, null).writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{\"iban\":\"RO1\",\"customerId\":\"cust1\",\"balance\":10"));
+        assertTrue(lines[1].startsWith("{\"iban\":\"RO2\""));
+        assertEquals("", lines[2]);
+        assertEquals(2, meterRegistry.counter("accounts.export.rows").count());
+    }
+
+    @Test
+    void shouldWriteNothingWithoutAccounts() throws Exception {
+        givenAccounts();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.start(null, null).writeTo(out);
+
+        assertEquals(0, out.size());
+        verify(repository).streamAccounts(isNull(), isNull(), any());
+    }
+
+    @Test
+    void shouldStopQuietlyWhenClientGoesAway() throws Exception {
+        givenAccounts(Account.builder().iban("RO1").customerId("cust1").balance(BigDecimal.TEN).build());
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertDoesNotThrow(() -> service.start(null, null).writeTo(broken));
+        // The permit is released, so the next export runs
+        givenAccounts();
+        assertDoesNotThrow(() -> service.start(null, null).writeTo(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void shouldReleaseSlotOfExportThatIsNeverWritten() {
+        AccountExportService.Export export = service.start(null, null);
+
+        export.release();
+        export.release();
+
+        // Released once: the limit of one export is back, not raised to two
+        service.start(null, null);
+        assertThrows(AccountLoadRejectedException.class, () -> service.start(null, null));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void shouldRejectExportsBeyondLimit() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.streamAccounts(any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 0L;
+        });
+        Thread running = new Thread(() -> service.start(null, null).writeTo(new ByteArrayOutputStream()));
+        running.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(AccountLoadRejectedException.class, () -> service.start(null, null));
+
+        release.countDown();
+        running.join();
+    }
+}
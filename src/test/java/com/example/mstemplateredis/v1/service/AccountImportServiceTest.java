@@ -0,0 +1,256 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountImportConflictException;
+import com.example.mstemplateredis.exception.AccountImportException;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountImport;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.AccountImportRepository;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountImportServiceTest {
+
+    private AccountImportRepository accountImportRepository;
+    private AccountRepository accountRepository;
+    private RedisService redisService;
+    private TransactionStatus transactionStatus;
+    private CacheMutationJournal cacheMutationJournal;
+    private CacheOutboxRepository cacheOutboxRepository;
+    private TransactionTemplate transactionTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private AccountImportService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        accountImportRepository = mock(AccountImportRepository.class);
+        accountRepository = mock(AccountRepository.class);
+        redisService = mock(RedisService.class);
+        cacheMutationJournal = mock(CacheMutationJournal.class);
+        cacheOutboxRepository = mock(CacheOutboxRepository.class);
+        transactionStatus = mock(TransactionStatus.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(transactionStatus));
+        meterRegistry = new SimpleMeterRegistry();
+        service = service(false);
+
+        when(accountImportRepository.start("imp1")).thenReturn(new AccountImport("imp1", 0, 0, 0, List.of()));
+        when(accountImportRepository.findWithErrors(eq("imp1"), anyInt()))
+                .thenReturn(new AccountImport("imp1", 3, 2, 1, List.of()));
+        when(accountImportRepository.insertAccounts(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        when(accountImportRepository.advance(anyString(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+    }
+
+    private AccountImportService service(boolean outboxEnabled) {
+        AccountImportService service = new AccountImportService(accountImportRepository, accountRepository,
+                cacheOutboxRepository, redisService, cacheMutationJournal, transactionTemplate, outboxEnabled,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), meterRegistry);
+        service.chunkSize = 2;
+        return service;
+    }
+
+    private static InputStream upload(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldCommitCsvInChunksAndReportRejectedLines() {
+        AccountImport result = service.importAccounts("imp1", AccountImportService.Format.CSV, upload("""
+                iban,customerId,balance
+                RO12BANK0001,cust1,10.50
+                RO12BANK0002,cust2,-1
+                RO12BANK0003,cust1,7
+                """));
+
+        assertEquals(3, result.linesCommitted());
+        verify(accountImportRepository).advance("imp1", 0, 2, 1, 1);
+        verify(accountImportRepository).advance("imp1", 2, 3, 1, 0);
+        verify(accountImportRepository).recordErrors(eq("imp1"), argThat(errors -> errors.size() == 1
+                && errors.get(0).line() == 2 && errors.get(0).message().contains("Balance cannot be negative")));
+        verify(redisService, times(2)).evictAccountsFromCache(eq(java.util.Set.of("cust1")));
+        assertEquals(2, meterRegistry.counter("accounts.import.lines", "result", "imported").count());
+        assertEquals(1, meterRegistry.counter("accounts.import.lines", "result", "rejected").count());
+    }
+
+    @Test
+    void shouldRejectAccountsCreatedConcurrentlyInsteadOfCountingThem() {
+        // RO12BANK0002 is created by someone else between the existence check and the insert
+        when(accountImportRepository.insertAccounts(anyList())).thenAnswer(invocation -> {
+            List<Account> accounts = invocation.getArgument(0);
+            return (int) accounts.stream().filter(account -> !account.getIban().equals("RO12BANK0002")).count();
+        });
+        Object savepoint = new Object();
+        when(transactionStatus.createSavepoint()).thenReturn(savepoint);
+
+        service.importAccounts("imp1", AccountImportService.Format.CSV, upload("""
+                iban,customerId,balance
+                RO12BANK0001,cust1,1
+                RO12BANK0002,cust2,2
+                """));
+
+        verify(transactionStatus).rollbackToSavepoint(savepoint);
+        verify(accountImportRepository).advance("imp1", 0, 2, 1, 1);
+        verify(accountImportRepository).recordErrors(eq("imp1"), argThat(errors -> errors.size() == 1
+                && errors.get(0).line() == 2 && errors.get(0).message().equals("IBAN already exists: RO12BANK0002")));
+        verify(redisService).evictAccountsFromCache(java.util.Set.of("cust1"));
+        assertEquals(1, meterRegistry.counter("accounts.import.lines", "result", "imported").count());
+        assertEquals(1, meterRegistry.counter("accounts.import.lines", "result", "rejected").count());
+    }
+
+    @Test
+    void shouldRejectMissingCsvHeader() {
+        assertThrows(AccountImportException.class, () -> service.importAccounts("imp1", AccountImportService.Format.CSV,
+                upload("RO12BANK0001,cust1,10\n")));
+
+        verify(accountImportRepository, never()).insertAccounts(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSkipLinesCommittedByAnEarlierUpload() {
+        when(accountImportRepository.start("imp1")).thenReturn(new AccountImport("imp1", 2, 2, 0, List.of()));
+
+        service.importAccounts("imp1", AccountImportService.Format.NDJSON, upload("""
+                {"iban":"RO12BANK0001","customerId":"cust1","balance":1}
+                {"iban":"RO12BANK0002","customerId":"cust1","balance":2}
+                {"iban":"RO12BANK0003","customerId":"cust2","balance":3}
+                """));
+
+        ArgumentCaptor<List<Account>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(accountImportRepository).insertAccounts(inserted.capture());
+        assertEquals(List.of("RO12BANK0003"), inserted.getValue().stream().map(Account::getIban).toList());
+        verify(accountImportRepository).advance("imp1", 2, 3, 1, 0);
+    }
+
+    @Test
+    void shouldRejectDuplicateAndExistingIbans() {
+        when(accountRepository.getAccountsByIban(anyCollection())).thenReturn(List.of(
+                Account.builder().iban("RO12BANK0002").customerId("cust9").balance(BigDecimal.ONE).build()));
+
+        service.importAccounts("imp1", AccountImportService.Format.CSV, upload("""
+                iban,customerId,balance
+                RO12BANK0001,cust1,1
+                RO12BANK0001,cust1,2
+                RO12BANK0002,cust1,3
+                not json,,
+                """));
+
+        verify(accountImportRepository).advance("imp1", 0, 2, 1, 1);
+        verify(accountImportRepository).advance("imp1", 2, 4, 0, 2);
+        verify(accountImportRepository).recordErrors(eq("imp1"), argThat(errors -> errors.stream()
+                .anyMatch(error -> error.line() == 3 && error.message().startsWith("IBAN already exists"))));
+    }
+
+    @Test
+    void shouldRejectValuesTheAccountColumnsCannotHold() {
+        service.importAccounts("imp1", AccountImportService.Format.CSV, upload("""
+                iban,customerId,balance
+                RO12BANK0001,%s,1
+                RO12BANK0002,cust1,1.005
+                """.formatted("c".repeat(65))));
+
+        verify(accountImportRepository).advance("imp1", 0, 2, 0, 2);
+        verify(accountImportRepository).recordErrors(eq("imp1"), argThat(errors -> errors.size() == 2
+                && errors.get(0).message().contains("Customer ID must be at most 64 characters")
+                && errors.get(1).message().contains("Balance must have at most 2 decimals")));
+        verify(accountImportRepository, never()).insertAccounts(argThat(accounts -> !accounts.isEmpty()));
+    }
+
+    @Test
+    void shouldFailWhenAnotherUploadAdvancedTheImport() {
+        when(accountImportRepository.advance(anyString(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(false);
+
+        assertThrows(AccountImportConflictException.class, () -> service.importAccounts("imp1",
+                AccountImportService.Format.NDJSON, upload("{\"iban\":\"RO12BANK0001\",\"customerId\":\"cust1\",\"balance\":1}\n")));
+
+        verify(redisService, never()).evictAccountsFromCache(anyCollection());
+    }
+
+    @Test
+    void shouldReportInvalidJsonLines() {
+        service.importAccounts("imp1", AccountImportService.Format.NDJSON, upload("{\"iban\":\n"));
+
+        verify(accountImportRepository).recordErrors(eq("imp1"), argThat(errors -> errors.size() == 1
+                && errors.get(0).message().startsWith("Invalid JSON")));
+    }
+
+    @Test
+    void shouldJournalAccountsWhenEvictionFails() {
+        doThrow(new IllegalStateException("Redis down")).when(redisService).evictAccountsFromCache(anyCollection());
+
+        service.importAccounts("imp1", AccountImportService.Format.NDJSON,
+                upload("{\"iban\":\"RO12BANK0001\",\"customerId\":\"cust1\",\"balance\":1}\n"));
+
+        verify(cacheMutationJournal).record("cust1", "RO12BANK0001");
+    }
+
+    @Test
+    void shouldRecordOutboxEntriesInTheChunkTransactionInsteadOfEvicting() {
+        service = service(true);
+        InOrder order = inOrder(accountImportRepository, cacheOutboxRepository);
+
+        service.importAccounts("imp1", AccountImportService.Format.NDJSON,
+                upload("{\"iban\":\"RO12BANK0001\",\"customerId\":\"cust1\",\"balance\":1}\n"));
+
+        order.verify(accountImportRepository).insertAccounts(anyList());
+        order.verify(cacheOutboxRepository).append("cust1", "RO12BANK0001", Operation.CREATE);
+        order.verify(accountImportRepository).advance("imp1", 0, 1, 1, 0);
+        verify(redisService, never()).evictAccountsFromCache(anyCollection());
+        verifyNoInteractions(cacheMutationJournal);
+    }
+
+    @Test
+    void shouldPrimeCacheWithReloadedListsWhenEnabled() {
+        service.primeCache = true;
+        Account account = Account.builder().iban("RO12BANK0001").customerId("cust1").balance(BigDecimal.ONE).build();
+        when(accountRepository.getAccountsOfCustomers(anyCollection())).thenReturn(List.of(account));
+
+        service.importAccounts("imp1", AccountImportService.Format.NDJSON,
+                upload("{\"iban\":\"RO12BANK0001\",\"customerId\":\"cust1\",\"balance\":1}\n"));
+
+        verify(redisService).primeAccounts(Map.of("cust1", List.of(account)));
+    }
+
+    @Test
+    void shouldAskToResumeWhenUploadIsInterrupted() {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        assertThrows(AccountImportException.class,
+                () -> service.importAccounts("imp1", AccountImportService.Format.NDJSON, broken));
+    }
+
+    @Test
+    void shouldThrowNotFoundForUnknownImport() {
+        assertThrows(AccountNotFoundException.class, () -> service.getImport("unknown"));
+    }
+}
@@ -1,18 +1,33 @@
 package com.example.mstemplateredis.v1.service;
 
+import com.example.mstemplateredis.exception.AccountDeletionException;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
 import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -20,17 +35,33 @@ class AccountServiceTest {
 
     private AccountRepository accountRepository;
     private RedisService redisService;
+    private CacheOutboxRepository cacheOutboxRepository;
+    private CacheMissBulkhead cacheMissBulkhead;
+    private AccountsRevalidator accountsRevalidator;
+    private HotAccountLedger hotAccountLedger;
+    private AccountUpdateBatcher accountUpdateBatcher;
+    private LocalAccountsCache localAccountsCache;
+    private PlatformTransactionManager transactionManager;
     private AccountService accountService;
 
     @BeforeEach
     void setUp() {
         accountRepository = mock(AccountRepository.class);
         redisService = mock(RedisService.class);
-        accountService = new AccountService(accountRepository, redisService);
+        cacheOutboxRepository = mock(CacheOutboxRepository.class);
+        cacheMissBulkhead = new CacheMissBulkhead(4, 4, Duration.ofMillis(100), new SimpleMeterRegistry());
+        accountsRevalidator = mock(AccountsRevalidator.class);
+        hotAccountLedger = mock(HotAccountLedger.class);
+        accountUpdateBatcher = mock(AccountUpdateBatcher.class);
+        localAccountsCache = mock(LocalAccountsCache.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        accountService = new AccountService(accountRepository, redisService, cacheOutboxRepository, cacheMissBulkhead,
+                accountsRevalidator, hotAccountLedger, accountUpdateBatcher,
+                new TransactionTemplate(transactionManager), localAccountsCache);
     }
 
     @Nested
-    class GetAccountsByCustomerId {
+    class GetAccountsJson {
 
         static Stream<Arguments> accountRetrievalScenarios() {
             return Stream.of(
@@ -43,24 +74,144 @@ class AccountServiceTest {
         @ParameterizedTest(name = "customerId={0}, expect status {2}")
         @MethodSource("accountRetrievalScenarios")
         void shouldHandleVariousRetrievalScenarios(String customerId, List<Account> mockResult, int expectedStatus) {
-            when(redisService.getAccountsFromCache(customerId)).thenReturn(null);
+            when(redisService.getCachedAccounts(customerId)).thenReturn(null);
 
             if (expectedStatus == 500) {
                 when(accountRepository.getAccounts(customerId))
                         .thenThrow(new RuntimeException("DB failure"));
 
-                assertThrows(RuntimeException.class, () -> accountService.getAccountsByCustomerId(customerId));
+                assertThrows(RuntimeException.class, () -> accountService.getAccountsJson(customerId));
             } else {
+                CachedAccounts written = new CachedAccounts("[]".getBytes(), "abc");
                 when(accountRepository.getAccounts(customerId)).thenReturn(mockResult);
+                when(redisService.setAccountsToCache(customerId, mockResult)).thenReturn(written);
 
-                List<Account> result = accountService.getAccountsByCustomerId(customerId);
+                CachedAccounts result = accountService.getAccountsJson(customerId);
 
-                assertEquals(mockResult, result);
-                verify(redisService).getAccountsFromCache(customerId);
+                assertSame(written, result);
+                verify(redisService).getCachedAccounts(customerId);
                 verify(accountRepository).getAccounts(customerId);
                 verify(redisService).setAccountsToCache(customerId, mockResult);
             }
         }
+
+        @Test
+        void shouldPassCachedBodyThroughWithoutTouchingDatabase() {
+            CachedAccounts cached = new CachedAccounts("[]".getBytes(), "abc");
+            when(redisService.getCachedAccounts("cust1")).thenReturn(cached);
+
+            assertSame(cached, accountService.getAccountsJson("cust1"));
+            verifyNoInteractions(accountRepository);
+        }
+
+        @Test
+        void shouldLoadFromDatabaseAndReturnSerializedBody() {
+            List<Account> accounts = List.of(new Account("RO00AAA123456789", "cust1", BigDecimal.ONE, null, null));
+            CachedAccounts written = new CachedAccounts("[{}]".getBytes(), "abc");
+            when(redisService.getCachedAccounts("cust1")).thenReturn(null);
+            when(accountRepository.getAccounts("cust1")).thenReturn(accounts);
+            when(redisService.setAccountsToCache("cust1", accounts)).thenReturn(written);
+
+            assertSame(written, accountService.getAccountsJson("cust1"));
+        }
+
+        @Test
+        void shouldServeRecentlyExpiredCopyAndRevalidateInBackground() {
+            CachedAccounts stale = new CachedAccounts("[]".getBytes(), "abc", true);
+            when(redisService.getRevalidatableAccounts("cust1")).thenReturn(stale);
+
+            assertSame(stale, accountService.getAccountsJson("cust1"));
+            verify(accountsRevalidator).revalidate("cust1");
+            verifyNoInteractions(accountRepository);
+        }
+
+        @Test
+        void shouldServeStaleCopyWhenDatabaseFails() {
+            CachedAccounts stale = new CachedAccounts("[]".getBytes(), "abc", true);
+            when(accountRepository.getAccounts("cust1")).thenThrow(new AccountRetrievalException("DB down", new RuntimeException()));
+            when(redisService.getStaleAccounts("cust1")).thenReturn(stale);
+
+            assertSame(stale, accountService.getAccountsJson("cust1"));
+            verify(redisService, never()).setAccountsToCache(anyString(), anyList());
+        }
+
+        @Test
+        void shouldRethrowDatabaseFailureWithoutStaleCopy() {
+            when(accountRepository.getAccounts("cust1")).thenThrow(new AccountRetrievalException("DB down", new RuntimeException()));
+
+            assertThrows(AccountRetrievalException.class, () -> accountService.getAccountsJson("cust1"));
+        }
+
+        @Test
+        void shouldReadThroughLocalTierWhenEnabled() {
+            CachedAccounts cached = new CachedAccounts("[]".getBytes(), "abc");
+            when(localAccountsCache.isEnabled()).thenReturn(true);
+            when(localAccountsCache.getCachedAccounts("cust1")).thenReturn(cached);
+
+            assertSame(cached, accountService.getAccountsJson("cust1"));
+            verify(redisService, never()).getCachedAccounts(anyString());
+        }
+
+        @Test
+        void shouldKeepListLoadedFromDatabaseInLocalTier() {
+            List<Account> accounts = List.of(new Account("RO00AAA123456789", "cust1", BigDecimal.ONE, null, null));
+            CachedAccounts written = new CachedAccounts("[{}]".getBytes(), "abc");
+            when(accountRepository.getAccounts("cust1")).thenReturn(accounts);
+            when(redisService.setAccountsToCache("cust1", accounts)).thenReturn(written);
+
+            accountService.getAccountsJson("cust1");
+
+            verify(localAccountsCache).put("cust1", written);
+        }
+
+        @Test
+        void shouldReadEtagFromRedisOnly() {
+            when(redisService.getAccountsEtag("cust1")).thenReturn("abc");
+
+            assertEquals("abc", accountService.getAccountsEtag("cust1"));
+            verifyNoInteractions(accountRepository);
+        }
+    }
+
+    @Nested
+    class GetAccountsByIban {
+
+        private final Account ro1 = new Account("RO1", "cust1", BigDecimal.ONE, null, null);
+        private final Account ro2 = new Account("RO2", "cust2", BigDecimal.TEN, null, null);
+
+        @Test
+        void shouldServeIndexHitsWithoutTouchingDatabase() {
+            when(redisService.getAccountsByIban(List.of("RO1"))).thenReturn(Map.of("RO1", ro1));
+
+            assertSame(ro1, accountService.getAccountByIban("RO1"));
+            verifyNoInteractions(accountRepository);
+        }
+
+        @Test
+        void shouldLoadOnlyMissesAndIndexThemInRequestOrder() {
+            when(redisService.getAccountsByIban(List.of("RO2", "RO1", "RO3"))).thenReturn(Map.of("RO1", ro1));
+            when(accountRepository.getAccountsByIban(List.of("RO2", "RO3"))).thenReturn(List.of(ro2));
+
+            assertEquals(List.of(ro2, ro1), accountService.getAccountsByIban(List.of("RO2", "RO1", "RO3", "RO1")));
+            verify(redisService).setAccountsByIban(List.of(ro2));
+        }
+
+        @Test
+        void shouldThrowNotFoundForUnknownIban() {
+            when(redisService.getAccountsByIban(anyList())).thenReturn(Map.of());
+            when(accountRepository.getAccountsByIban(List.of("RO9"))).thenReturn(List.of());
+
+            assertThrows(AccountNotFoundException.class, () -> accountService.getAccountByIban("RO9"));
+        }
+
+        @Test
+        void shouldIncludePendingAdjustmentsOfHotAccounts() {
+            when(redisService.getAccountsByIban(List.of("RO1"))).thenReturn(Map.of("RO1", ro1));
+            when(hotAccountLedger.isHot("RO1")).thenReturn(true);
+            when(hotAccountLedger.balances("cust1")).thenReturn(Map.of("RO1", BigDecimal.valueOf(7)));
+
+            assertEquals(BigDecimal.valueOf(7), accountService.getAccountByIban("RO1").getBalance());
+        }
     }
 
     @Nested
@@ -121,6 +272,20 @@ class AccountServiceTest {
         }
     }
 
+    @Nested
+    class BatchedUpdate {
+
+        @Test
+        void shouldHandUpdateToBatcherWhenEnabled() {
+            when(accountUpdateBatcher.isEnabled()).thenReturn(true);
+
+            accountService.updateAccount("RO4", BigDecimal.ONE, "cust123");
+
+            verify(accountUpdateBatcher).update("RO4", BigDecimal.ONE, "cust123");
+            verifyNoInteractions(accountRepository, redisService, cacheOutboxRepository);
+        }
+    }
+
     @Nested
     class DeleteAccount {
 
@@ -147,4 +312,118 @@ class AccountServiceTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class AdjustBalance {
+
+        @Test
+        void shouldWriteResultingBalanceToCache() {
+            when(accountRepository.adjustBalance("RO4", BigDecimal.ONE, "cust123")).thenReturn(BigDecimal.TEN);
+
+            assertEquals(BigDecimal.TEN, accountService.adjustBalance("RO4", BigDecimal.ONE, "cust123"));
+            verify(redisService).updateAccountsInCache("RO4", BigDecimal.TEN, "cust123");
+            verify(transactionManager).commit(any());
+        }
+
+        @Test
+        void shouldRecordOutboxEntryInOutboxMode() {
+            accountService.outboxEnabled = true;
+            when(accountRepository.adjustBalance("RO4", BigDecimal.ONE.negate(), "cust123")).thenReturn(BigDecimal.TEN);
+
+            accountService.adjustBalance("RO4", BigDecimal.ONE.negate(), "cust123");
+
+            verify(cacheOutboxRepository).append("cust123", "RO4", Operation.UPDATE);
+            verifyNoInteractions(redisService);
+        }
+    }
+
+    @Nested
+    class HotAccounts {
+
+        @BeforeEach
+        void designateHotAccount() {
+            when(hotAccountLedger.isHot("RO7")).thenReturn(true);
+            when(hotAccountLedger.isHotCustomer("settlement")).thenReturn(true);
+        }
+
+        @Test
+        void shouldCoalesceAdjustmentsInLedger() {
+            when(hotAccountLedger.adjust("settlement", "RO7", BigDecimal.ONE)).thenReturn(BigDecimal.TEN);
+
+            assertEquals(BigDecimal.TEN, accountService.adjustBalance("RO7", BigDecimal.ONE, "settlement"));
+            // Not even a transaction is opened
+            verifyNoInteractions(accountRepository, redisService, cacheOutboxRepository, transactionManager);
+        }
+
+        @Test
+        void shouldRejectAbsoluteUpdateAndDelete() {
+            assertThrows(AccountUpdateException.class, () -> accountService.updateAccount("RO7", BigDecimal.ONE, "settlement"));
+            assertThrows(AccountDeletionException.class, () -> accountService.deleteAccount("RO7", "settlement"));
+            verifyNoInteractions(accountRepository);
+        }
+
+        @Test
+        void shouldOverlayPendingBalancesOnResponse() {
+            CachedAccounts cached = new CachedAccounts("[]".getBytes(), "abc");
+            CachedAccounts overlaid = new CachedAccounts("[{}]".getBytes(), "def");
+            when(redisService.getCachedAccounts("settlement")).thenReturn(cached);
+            when(hotAccountLedger.balances("settlement")).thenReturn(Map.of("RO7", BigDecimal.TEN));
+            when(redisService.withBalances(cached, Map.of("RO7", BigDecimal.TEN))).thenReturn(overlaid);
+
+            assertSame(overlaid, accountService.getAccountsJson("settlement"));
+        }
+
+        @Test
+        void shouldNotAnswerConditionalRequestsFromCachedEtag() {
+            assertNull(accountService.getAccountsEtag("settlement"));
+            verifyNoInteractions(redisService);
+        }
+    }
+
+    @Nested
+    class OutboxMode {
+
+        @BeforeEach
+        void enableOutbox() {
+            accountService.outboxEnabled = true;
+        }
+
+        @Test
+        void shouldRecordOutboxEntryInsteadOfCallingRedisOnCreate() {
+            Account account = new Account("RO3", "cust123", BigDecimal.TEN, null, null);
+
+            accountService.createAccount(account, "cust123");
+
+            verify(accountRepository).insertAccount(account, "cust123");
+            verify(cacheOutboxRepository).append("cust123", "RO3", Operation.CREATE);
+            verifyNoInteractions(redisService);
+        }
+
+        @Test
+        void shouldRecordOutboxEntryInsteadOfCallingRedisOnUpdate() {
+            accountService.updateAccount("RO4", BigDecimal.ONE, "cust123");
+
+            verify(accountRepository).updateAccount("RO4", BigDecimal.ONE, "cust123");
+            verify(cacheOutboxRepository).append("cust123", "RO4", Operation.UPDATE);
+            verifyNoInteractions(redisService);
+        }
+
+        @Test
+        void shouldRecordOutboxEntryInsteadOfCallingRedisOnDelete() {
+            accountService.deleteAccount("RO6", "cust123");
+
+            verify(accountRepository).deleteAccount("RO6", "cust123");
+            verify(cacheOutboxRepository).append("cust123", "RO6", Operation.DELETE);
+            verifyNoInteractions(redisService);
+        }
+
+        @Test
+        void shouldNotRecordOutboxEntryWhenDatabaseMutationFails() {
+            doThrow(new RuntimeException("DB failure")).when(accountRepository).deleteAccount("RO6", "cust123");
+
+            assertThrows(RuntimeException.class, () -> accountService.deleteAccount("RO6", "cust123"));
+
+            verifyNoInteractions(cacheOutboxRepository, redisService);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.AccountUpdateException;
+import com.example.mstemplateredis.exception.DeadlineExceededException;
+import com.example.mstemplateredis.v1.model.BalanceUpdate;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import com.example.mstemplateredis.v1.service.AccountUpdateBatcher.PendingUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountUpdateBatcherTest {
+
+    private AccountRepository accountRepository;
+    private CacheOutboxRepository cacheOutboxRepository;
+    private RedisService redisService;
+    private AccountUpdateBatcher batcher;
+
+    private AccountUpdateBatcher batcher(boolean enabled, Duration window, int maxSize, boolean outboxEnabled) {
+        AccountUpdateBatcher batcher = new AccountUpdateBatcher(accountRepository, cacheOutboxRepository, redisService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), enabled, window, maxSize, 10,
+                outboxEnabled, new SimpleMeterRegistry());
+        batcher.start();
+        return batcher;
+    }
+
+    private static PendingUpdate pending(String iban, long deadlineMillis) {
+        return new PendingUpdate(new BalanceUpdate(iban, BigDecimal.TEN, "cust123"), deadlineMillis, new CompletableFuture<>());
+    }
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        cacheOutboxRepository = mock(CacheOutboxRepository.class);
+        redisService = mock(RedisService.class);
+        batcher = batcher(false, Duration.ofMillis(2), 100, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void shouldCommitConcurrentUpdatesAsOneBatch() throws Exception {
+        batcher = batcher(true, Duration.ofSeconds(5), 3, false);
+        when(accountRepository.updateAccounts(anyList())).thenReturn(new int[]{1, 1, 1});
+        List<String> cacheThreads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> cacheThreads.add(Thread.currentThread().getName()))
+                .when(redisService).updateAccountsInCache(anyString(), any(), anyString());
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (String iban : List.of("RO1", "RO2", "RO3")) {
+                results.add(callers.submit(() -> batcher.update(iban, BigDecimal.ONE, "cust123")));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(accountRepository, times(1)).updateAccounts(argThat(updates -> updates.size() == 3));
+        verify(redisService, times(3)).updateAccountsInCache(anyString(), eq(BigDecimal.ONE), eq("cust123"));
+        // Each caller refreshes its own entry; the writer only commits
+        assertEquals(3, cacheThreads.size());
+        assertFalse(cacheThreads.contains("account-update-batcher"));
+    }
+
+    @Test
+    void shouldFailUpdatesCollectedInWindowOnShutdown() throws Exception {
+        batcher = batcher(true, Duration.ofSeconds(30), 10, false);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> result = caller.submit(() -> batcher.update("RO1", BigDecimal.ONE, "cust123"));
+            // Let the writer take the update off the queue and wait for more
+            Thread.sleep(200);
+
+            batcher.shutdown();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AccountUpdateException.class, failure.getCause());
+            verifyNoInteractions(accountRepository);
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldFailOnlyTheUpdateWhoseAccountIsMissing() {
+        when(accountRepository.updateAccounts(anyList())).thenReturn(new int[]{1, 0, Statement.SUCCESS_NO_INFO});
+        List<PendingUpdate> batch = List.of(pending("RO1", Long.MAX_VALUE), pending("RO2", Long.MAX_VALUE),
+                pending("RO3", Long.MAX_VALUE));
+
+        batcher.flush(batch);
+
+        assertTrue(batch.get(0).result().isDone() && !batch.get(0).result().isCompletedExceptionally());
+        assertInstanceOf(AccountNotFoundException.class, batch.get(1).result().exceptionNow());
+        assertFalse(batch.get(2).result().isCompletedExceptionally());
+        verify(redisService, never()).updateAccountsInCache(eq("RO2"), any(), any());
+    }
+
+    @Test
+    void shouldCommitUpdatesInCustomerAndIbanOrder() {
+        when(accountRepository.updateAccounts(anyList())).thenReturn(new int[]{1, 1, 0});
+        PendingUpdate second = new PendingUpdate(new BalanceUpdate("RO1", BigDecimal.TEN, "cust2"), Long.MAX_VALUE,
+                new CompletableFuture<>());
+        PendingUpdate missing = pending("RO9", Long.MAX_VALUE);
+        PendingUpdate first = pending("RO2", Long.MAX_VALUE);
+
+        batcher.flush(List.of(second, missing, first));
+
+        verify(accountRepository).updateAccounts(List.of(first.update(), missing.update(), second.update()));
+        assertInstanceOf(AccountNotFoundException.class, second.result().exceptionNow());
+        assertFalse(missing.result().isCompletedExceptionally());
+    }
+
+    @Test
+    void shouldRecordOutboxEntriesInTheBatchTransaction() {
+        batcher = batcher(false, Duration.ofMillis(2), 100, true);
+        when(accountRepository.updateAccounts(anyList())).thenReturn(new int[]{1, 0});
+
+        batcher.flush(List.of(pending("RO1", Long.MAX_VALUE), pending("RO2", Long.MAX_VALUE)));
+
+        verify(cacheOutboxRepository).append("cust123", "RO1", Operation.UPDATE);
+        verify(cacheOutboxRepository, never()).append("cust123", "RO2", Operation.UPDATE);
+        verifyNoInteractions(redisService);
+    }
+
+    @Test
+    void shouldRetryUpdatesOneByOneWhenTheBatchFails() {
+        when(accountRepository.updateAccounts(anyList())).thenAnswer(invocation -> {
+            List<BalanceUpdate> updates = invocation.getArgument(0);
+            if (updates.size() > 1 || updates.get(0).iban().equals("BAD")) {
+                throw new AccountUpdateException("Database batch update failed", null);
+            }
+            return new int[]{1};
+        });
+        List<PendingUpdate> batch = List.of(pending("RO1", Long.MAX_VALUE), pending("BAD", Long.MAX_VALUE));
+
+        batcher.flush(batch);
+
+        assertFalse(batch.get(0).result().isCompletedExceptionally());
+        assertInstanceOf(AccountUpdateException.class, batch.get(1).result().exceptionNow());
+    }
+
+    @Test
+    void shouldSkipUpdatesWhoseDeadlinePassedWhileQueued() {
+        PendingUpdate expired = pending("RO1", System.currentTimeMillis() - 1);
+
+        batcher.flush(List.of(expired));
+
+        assertInstanceOf(DeadlineExceededException.class, expired.result().exceptionNow());
+        verifyNoInteractions(accountRepository);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.AccountRetrievalException;
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class AccountsRevalidatorTest {
+
+    private AccountRepository accountRepository;
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private AccountsRevalidator revalidator;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        redisService = mock(RedisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        CacheMissBulkhead bulkhead = new CacheMissBulkhead(4, 4, Duration.ofMillis(100), meterRegistry);
+        revalidator = new AccountsRevalidator(accountRepository, redisService, bulkhead, 1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        revalidator.shutdown();
+    }
+
+    private double revalidations(String result) {
+        return meterRegistry.get("accounts.cache.revalidations").tag("result", result).counter().count();
+    }
+
+    @Test
+    void shouldReloadAndCacheList() {
+        List<Account> accounts = List.of(new Account("RO00AAA123456789", "cust1", BigDecimal.ONE, null, null));
+        when(accountRepository.getAccounts("cust1")).thenReturn(accounts);
+
+        revalidator.revalidate("cust1");
+
+        verify(redisService, timeout(5_000)).setAccountsToCache("cust1", accounts);
+    }
+
+    @Test
+    void shouldRunOneReloadPerCustomerAtATime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountRepository.getAccounts("cust1")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        revalidator.revalidate("cust1");
+        revalidator.revalidate("cust1");
+        release.countDown();
+
+        verify(redisService, timeout(5_000)).setAccountsToCache("cust1", List.of());
+        verify(accountRepository, times(1)).getAccounts("cust1");
+    }
+
+    @Test
+    void shouldKeepStaleCopyWhenReloadFails() {
+        when(accountRepository.getAccounts("cust1")).thenThrow(new AccountRetrievalException("DB down", new RuntimeException()));
+
+        revalidator.revalidate("cust1");
+
+        verify(accountRepository, timeout(5_000)).getAccounts("cust1");
+        verify(redisService, after(100).never()).setAccountsToCache(anyString(), anyList());
+    }
+
+    @Test
+    void shouldDropReloadsWhenQueueIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountRepository.getAccounts(anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        // One thread busy, one queued, the third is dropped
+        revalidator.revalidate("cust1");
+        verify(accountRepository, timeout(5_000)).getAccounts("cust1");
+        revalidator.revalidate("cust2");
+        revalidator.revalidate("cust3");
+        release.countDown();
+
+        assertEquals(1.0, revalidations("dropped"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.CacheEviction;
+import com.example.mstemplateredis.v1.model.CacheKeyPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheAdminServiceTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisService redisService;
+    private CacheGenerations cacheGenerations;
+    private CacheSizeBudget cacheSizeBudget;
+    private CacheAdminService cacheAdminService;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        redisService = mock(RedisService.class);
+        cacheGenerations = mock(CacheGenerations.class);
+        cacheSizeBudget = mock(CacheSizeBudget.class);
+        cacheAdminService = new CacheAdminService(stringRedisTemplate, redisService, cacheGenerations, cacheSizeBudget,
+                new SimpleMeterRegistry());
+        cacheAdminService.batchPause = Duration.ZERO;
+    }
+
+    @SafeVarargs
+    private void givenScanPages(List<Object>... pages) {
+        var stubbing = when(stringRedisTemplate.execute(eq(CacheAdminService.SCAN_PAGE), eq(List.of()), any(), any(), any()));
+        for (List<Object> page : pages) {
+            stubbing = stubbing.thenReturn(page);
+        }
+    }
+
+    private static List<Object> page(String cursor, String... keys) {
+        return List.of(cursor, List.of(keys));
+    }
+
+    @Test
+    void shouldListPageWithTtlAndMemoryUsage() {
+        givenScanPages(page("17", "accounts::v0.1.0::a", "accounts::v0.2.0::b", "accounts::v0.3.0::c"));
+        when(stringRedisTemplate.execute(eq(CacheAdminService.KEY_STATS), anyList()))
+                .thenReturn(List.of(60_000L, 512L, -2L, -1L, -1L, 96L));
+
+        CacheKeyPage page = cacheAdminService.listKeys("*", "0", 100);
+
+        assertEquals("17", page.cursor());
+        assertEquals(List.of(
+                new CacheKeyPage.KeyInfo("accounts::v0.1.0::a", 60_000L, 512L),
+                new CacheKeyPage.KeyInfo("accounts::v0.3.0::c", -1L, 96L)), page.keys());
+    }
+
+    @Test
+    void shouldNotRunStatsScriptForEmptyPage() {
+        givenScanPages(page("5"));
+
+        CacheKeyPage page = cacheAdminService.listKeys("*::cust1", "0", 100);
+
+        verify(stringRedisTemplate).execute(CacheAdminService.SCAN_PAGE, List.of(), "0", "accounts::*::cust1", "100");
+        assertEquals("5", page.cursor());
+        assertTrue(page.keys().isEmpty());
+        verify(stringRedisTemplate, never()).execute(eq(CacheAdminService.KEY_STATS), anyList());
+    }
+
+    @Test
+    void shouldUnlinkEachPageWithEtagAndStaleCopyUntilScanCompletes() {
+        givenScanPages(page("9", "accounts::v1.0.0::a"), page("0", "accounts::v0.0.0::b"));
+        when(cacheGenerations.scoped("a")).thenReturn("v1.0.0::a");
+        when(cacheGenerations.scoped("b")).thenReturn("v1.0.0::b");
+        when(stringRedisTemplate.unlink(anyCollection())).thenReturn(3L, 2L);
+
+        CacheEviction eviction = cacheAdminService.evictMatching("*", "0");
+
+        assertEquals(new CacheEviction("0", 5), eviction);
+        verify(stringRedisTemplate).unlink(List.of("accounts::v1.0.0::a", "accounts-etag::v1.0.0::a", "accounts-stale::v1.0.0::a",
+                "accounts-agg::v1.0.0::a"));
+        verify(cacheSizeBudget).release("a");
+        // An entry of an old generation is not tracked by the budget
+        verify(cacheSizeBudget, never()).release("b");
+    }
+
+    @Test
+    void shouldReturnCursorOnceCallLimitIsReached() {
+        cacheAdminService.maxKeysPerCall = 3;
+        givenScanPages(page("9", "accounts::v0.0.0::a"), page("12", "accounts::v0.0.0::b"));
+        when(cacheGenerations.scoped(anyString())).thenReturn("");
+        when(stringRedisTemplate.unlink(anyCollection())).thenReturn(3L);
+
+        CacheEviction eviction = cacheAdminService.evictMatching("*", "0");
+
+        assertEquals(new CacheEviction("9", 3), eviction);
+        verify(stringRedisTemplate, times(1)).unlink(anyCollection());
+    }
+
+    @Test
+    void shouldEvictCustomerThroughRedisService() {
+        cacheAdminService.evictCustomer("cust1");
+
+        verify(redisService).evictAccountsFromCache(List.of("cust1"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.example.mstemplateredis.v1.repository.AccountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheDriftReconcilerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisService redisService;
+    private AccountRepository accountRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheDriftReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        redisService = mock(RedisService.class);
+        accountRepository = mock(AccountRepository.class);
+        CacheGenerations cacheGenerations = mock(CacheGenerations.class);
+        when(cacheGenerations.scoped(anyString())).thenAnswer(invocation -> "v1.0.0::" + invocation.getArgument(0));
+        meterRegistry = new SimpleMeterRegistry();
+        reconciler = new CacheDriftReconciler(stringRedisTemplate, redisService, accountRepository, cacheGenerations,
+                objectMapper, 2, meterRegistry);
+        reconciler.correctionsPerSecond = 1_000_000;
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenKeys(String... keys) {
+        Cursor<String> cursor = mock(Cursor.class);
+        Iterator<String> iterator = List.of(keys).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        when(stringRedisTemplate.scan(any())).thenReturn(cursor);
+    }
+
+    private static Account account(String iban, String customerId, String balance) {
+        return Account.builder().iban(iban).customerId(customerId).balance(new BigDecimal(balance)).build();
+    }
+
+    private CachedAccounts cached(Account... accounts) throws Exception {
+        return new CachedAccounts(objectMapper.writeValueAsBytes(List.of(accounts)), "etag");
+    }
+
+    @Test
+    void shouldEvictOnlyDriftedListsOfCurrentGeneration() throws Exception {
+        givenKeys("accounts::v1.0.0::cust1", "accounts::v1.0.0::cust2", "accounts::v0.0.0::cust3");
+        when(redisService.getCachedAccountLists(List.of("cust1", "cust2"))).thenReturn(Map.of(
+                "cust1", cached(account("RO1", "cust1", "10.5"), account("RO2", "cust1", "1")),
+                "cust2", cached(account("RO3", "cust2", "5"))));
+        when(accountRepository.getAccountsOfCustomers(anyCollection())).thenReturn(List.of(
+                account("RO2", "cust1", "1.00"), account("RO1", "cust1", "10.50"), account("RO3", "cust2", "7")));
+
+        reconciler.reconcile();
+
+        verify(redisService).evictAccountsFromCache(List.of("cust2"));
+        verify(redisService, never()).evictAccountsFromCache(List.of("cust1"));
+        assertEquals(2, meterRegistry.counter("accounts.cache.drift.checked").count());
+        assertEquals(1, meterRegistry.counter("accounts.cache.drift.corrected", "action", "evicted").count());
+    }
+
+    @Test
+    void shouldTreatListOfDeletedAccountsAsDrifted() throws Exception {
+        givenKeys("accounts::v1.0.0::cust1");
+        when(redisService.getCachedAccountLists(List.of("cust1")))
+                .thenReturn(Map.of("cust1", cached(account("RO1", "cust1", "1"))));
+        when(accountRepository.getAccountsOfCustomers(anyCollection())).thenReturn(List.of());
+
+        reconciler.reconcile();
+
+        verify(redisService).evictAccountsFromCache(List.of("cust1"));
+    }
+
+    @Test
+    void shouldRepairFromDatabaseWhenEnabled() throws Exception {
+        reconciler.repair = true;
+        givenKeys("accounts::v1.0.0::cust1");
+        when(redisService.getCachedAccountLists(List.of("cust1")))
+                .thenReturn(Map.of("cust1", cached(account("RO1", "cust1", "1"))));
+        List<Account> loaded = List.of(account("RO1", "cust1", "2"));
+        when(accountRepository.getAccountsOfCustomers(anyCollection())).thenReturn(loaded);
+        when(redisService.replaceAccountsInCache("cust1", loaded, "etag")).thenReturn(true);
+
+        reconciler.reconcile();
+
+        verify(redisService).replaceAccountsInCache("cust1", loaded, "etag");
+        verify(redisService, never()).evictAccountsFromCache(anyCollection());
+        assertEquals(1, meterRegistry.counter("accounts.cache.drift.corrected", "action", "repaired").count());
+    }
+
+    @Test
+    void shouldCompareInBatches() {
+        reconciler.batchSize = 2;
+        givenKeys("accounts::v1.0.0::cust1", "accounts::v1.0.0::cust2", "accounts::v1.0.0::cust3");
+        when(redisService.getCachedAccountLists(anyList())).thenReturn(Map.of());
+
+        reconciler.reconcile();
+
+        verify(redisService).getCachedAccountLists(List.of("cust1", "cust2"));
+        verify(redisService).getCachedAccountLists(List.of("cust3"));
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    void shouldStopRunWhenRedisFails() {
+        givenKeys("accounts::v1.0.0::cust1");
+        when(redisService.getCachedAccountLists(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertDoesNotThrow(reconciler::reconcile);
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    void shouldNotBeCreatedWhenDisabled() {
+        new ApplicationContextRunner()
+                .withPropertyValues("app.cache.drift.enabled=false")
+                .withUserConfiguration(CacheDriftReconciler.class)
+                .run(context -> assertTrue(context.getBeansOfType(CacheDriftReconciler.class).isEmpty()));
+    }
+}
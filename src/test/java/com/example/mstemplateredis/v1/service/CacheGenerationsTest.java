@@ -0,0 +1,137 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.exception.CacheAdminException;
+import com.example.mstemplateredis.v1.model.CacheGeneration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheGenerationsTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private CacheGenerations cacheGenerations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        cacheGenerations = new CacheGenerations(stringRedisTemplate, 2, new SimpleMeterRegistry());
+    }
+
+    private void givenGenerations(String global, String segment0, String segment1) {
+        when(valueOperations.multiGet(List.of("accounts-gen::global", "accounts-gen::segment::0", "accounts-gen::segment::1")))
+                .thenReturn(Arrays.asList(global, segment0, segment1));
+        cacheGenerations.refresh();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenKeys(String pattern, String... keys) {
+        Cursor<String> cursor = mock(Cursor.class);
+        Iterator<String> iterator = List.of(keys).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        when(stringRedisTemplate.scan(argThat((ScanOptions options) -> options != null && pattern.equals(options.getPattern()))))
+                .thenReturn(cursor);
+    }
+
+    @Test
+    void shouldScopeCustomerToGlobalAndSegmentGeneration() {
+        givenGenerations("3", null, "7");
+        int segment = cacheGenerations.segmentOf("cust1");
+
+        assertEquals("v3." + segment + "." + (segment == 1 ? 7 : 0) + "::cust1", cacheGenerations.scoped("cust1"));
+    }
+
+    @Test
+    void shouldStartAtGenerationZeroAndKeepLastKnownWhenRedisFails() {
+        assertTrue(cacheGenerations.scoped("cust1").startsWith("v0."));
+
+        givenGenerations("4", "1", "1");
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+        cacheGenerations.refresh();
+
+        assertTrue(cacheGenerations.scoped("cust1").startsWith("v4."));
+    }
+
+    @Test
+    void shouldBumpGlobalGenerationAndReload() {
+        when(valueOperations.increment("accounts-gen::global")).thenReturn(5L);
+        givenGenerations("5", null, null);
+
+        CacheGeneration bumped = cacheGenerations.bump();
+
+        assertEquals(new CacheGeneration(null, 5), bumped);
+        assertTrue(cacheGenerations.scoped("cust1").startsWith("v5."));
+    }
+
+    @Test
+    void shouldScopeEvictionsToCachedAndCurrentGenerations() {
+        givenGenerations("3", "1", "1");
+        // Bumped by another instance since the last refresh
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("4", "1", "1"));
+        int segment = cacheGenerations.segmentOf("cust1");
+
+        assertEquals(List.of("v3." + segment + ".1::cust1", "v4." + segment + ".1::cust1"),
+                cacheGenerations.scopedForEviction(List.of("cust1")));
+        assertEquals(List.of("v4." + segment + ".1::cust1"), cacheGenerations.scopedForEviction(List.of("cust1")));
+    }
+
+    @Test
+    void shouldPropagateRedisFailureWhenScopingEvictions() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThrows(RedisConnectionFailureException.class, () -> cacheGenerations.scopedForEviction(List.of("cust1")));
+    }
+
+    @Test
+    void shouldRejectUnknownSegment() {
+        assertThrows(CacheAdminException.class, () -> cacheGenerations.bumpSegment(2));
+        verify(valueOperations, never()).increment(anyString());
+    }
+
+    @Test
+    void shouldSweepOutdatedKeysOnlyAfterBump() {
+        cacheGenerations.sweep();
+        verify(stringRedisTemplate, never()).scan(any());
+
+        when(valueOperations.increment("accounts-gen::segment::1")).thenReturn(2L);
+        givenGenerations("1", null, "2");
+        givenKeys("accounts::v*", "accounts::v0.0.0::a", "accounts::v1.0.0::b", "accounts::v1.1.1::c", "accounts::v1.1.2::d");
+        givenKeys("accounts-etag::v*", "accounts-etag::v1.1.1::c");
+        givenKeys("accounts-stale::v*");
+        cacheGenerations.bumpSegment(1);
+
+        cacheGenerations.sweep();
+
+        verify(stringRedisTemplate).unlink(List.of("accounts::v0.0.0::a", "accounts::v1.1.1::c"));
+        verify(stringRedisTemplate).unlink(List.of("accounts-etag::v1.1.1::c"));
+        verify(stringRedisTemplate, times(2)).unlink(anyList());
+    }
+
+    @Test
+    void shouldRecognizeOutdatedKeys() {
+        long[] generations = {2, 0, 3};
+
+        assertTrue(CacheGenerations.isOutdated("accounts::v1.0.0::cust", "accounts::", generations));
+        assertTrue(CacheGenerations.isOutdated("accounts::v2.1.2::cust", "accounts::", generations));
+        assertFalse(CacheGenerations.isOutdated("accounts::v2.1.3::cust", "accounts::", generations));
+        assertFalse(CacheGenerations.isOutdated("accounts::v2.9.0::cust", "accounts::", generations));
+        assertFalse(CacheGenerations.isOutdated("accounts::vip::cust", "accounts::", generations));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.service.CacheMutationJournal.Mutation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheJournalReplayerTest {
+
+    private CacheMutationJournal journal;
+    private RedisService redisService;
+    private CacheGenerations cacheGenerations;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheJournalReplayer replayer;
+
+    private static final Mutation CUST1 = new Mutation("cust1", "RO1");
+    private static final Mutation CUST3 = new Mutation("cust3", "RO3");
+
+    @BeforeEach
+    void setUp() {
+        journal = mock(CacheMutationJournal.class);
+        redisService = mock(RedisService.class);
+        cacheGenerations = mock(CacheGenerations.class);
+        meterRegistry = new SimpleMeterRegistry();
+        replayer = new CacheJournalReplayer(journal, redisService, cacheGenerations, meterRegistry);
+        replayer.batchSize = 2;
+    }
+
+    @Test
+    void shouldDoNothingWithEmptyJournal() {
+        when(journal.pending()).thenReturn(new CacheMutationJournal.Pending(List.of(), false, 0));
+
+        replayer.replay();
+
+        verifyNoInteractions(redisService, cacheGenerations);
+        verify(journal, never()).acknowledge(anyCollection(), anyBoolean(), anyLong());
+    }
+
+    @Test
+    void shouldEvictListsAndIbanIndexOfJournaledAccountsInBatchesAndAcknowledgeEach() {
+        Mutation otherAccount = new Mutation("cust1", "RO9");
+        when(journal.pending()).thenReturn(new CacheMutationJournal.Pending(List.of(CUST1, otherAccount, CUST3), false, 3));
+
+        replayer.replay();
+
+        verify(redisService).evictAccountsFromCache(List.of("cust1"), List.of("RO1", "RO9"));
+        verify(journal).acknowledge(List.of(CUST1, otherAccount), false, 3);
+        verify(redisService).evictAccountsFromCache(List.of("cust3"), List.of("RO3"));
+        verify(journal).acknowledge(List.of(CUST3), false, 3);
+        assertEquals(3, meterRegistry.counter("accounts.cache.journal.replayed").count());
+    }
+
+    @Test
+    void shouldKeepJournalWhileRedisIsDown() {
+        when(journal.pending()).thenReturn(new CacheMutationJournal.Pending(List.of(CUST1), false, 1));
+        doThrow(new IllegalStateException("Redis down")).when(redisService).evictAccountsFromCache(anyCollection(), anyCollection());
+
+        replayer.replay();
+
+        verify(journal, never()).acknowledge(anyCollection(), anyBoolean(), anyLong());
+    }
+
+    @Test
+    void shouldInvalidateListAndIbanIndexChangedDuringOutageOnceRedisIsBack(@TempDir Path directory) throws IOException {
+        CacheMutationJournal fileJournal = new CacheMutationJournal(true, directory.resolve("cache.journal"), 1024, meterRegistry);
+        replayer = new CacheJournalReplayer(fileJournal, redisService, cacheGenerations, meterRegistry);
+        try {
+            // What RedisService journals when an update cannot reach Redis
+            fileJournal.record("cust1", "RO1");
+            doThrow(new IllegalStateException("Redis down")).doNothing()
+                    .when(redisService).evictAccountsFromCache(anyCollection(), anyCollection());
+
+            replayer.replay();
+            assertEquals(List.of(CUST1), fileJournal.pending().mutations());
+
+            replayer.replay();
+            verify(redisService, times(2)).evictAccountsFromCache(List.of("cust1"), List.of("RO1"));
+            assertTrue(fileJournal.pending().isEmpty());
+        } finally {
+            fileJournal.close();
+        }
+    }
+
+    @Test
+    void shouldBumpGlobalGenerationWhenJournalOverflowed() {
+        when(journal.pending()).thenReturn(new CacheMutationJournal.Pending(List.of(CUST1), true, 2));
+
+        replayer.replay();
+
+        verify(cacheGenerations).bump();
+        verify(journal).acknowledge(List.of(CUST1), true, 2);
+        verifyNoInteractions(redisService);
+    }
+}
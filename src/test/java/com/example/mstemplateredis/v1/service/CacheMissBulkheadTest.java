@@ -0,0 +1,144 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.example.mstemplateredis.exception.AccountLoadRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMissBulkheadTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheMissBulkhead bulkhead;
+    private ExecutorService executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new CacheMissBulkhead(1, 1, Duration.ofSeconds(2), meterRegistry);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    // Occupies the only permit until the test releases it
+    private Future<String> holdPermit(CacheMissBulkhead bulkhead) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> bulkhead.execute(() -> {
+            started.countDown();
+            awaitRelease();
+            return "held";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return holder;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("accounts.cache.miss.bulkhead.rejected").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void shouldRunLoadAndReleasePermit() {
+        assertEquals("a", bulkhead.execute(() -> "a"));
+        assertEquals("b", bulkhead.execute(() -> "b"));
+    }
+
+    @Test
+    void shouldReleasePermitWhenLoadFails() {
+        assertThrows(IllegalStateException.class, () -> bulkhead.execute(() -> {
+            throw new IllegalStateException("DB down");
+        }));
+
+        assertEquals("a", bulkhead.execute(() -> "a"));
+    }
+
+    @Test
+    void shouldRejectWaiterAfterDeadline() throws Exception {
+        holdPermit(bulkhead);
+
+        long start = System.nanoTime();
+        assertThrows(AccountLoadRejectedException.class, () -> bulkhead.execute(Duration.ofMillis(100), () -> "late"));
+
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 90 && waitedMillis < 1_000, "waited " + waitedMillis + " ms");
+        assertEquals(1.0, rejected("timeout"));
+    }
+
+    @Test
+    void shouldCapCallerDeadlineAtMaxWait() throws Exception {
+        CacheMissBulkhead shortWait = new CacheMissBulkhead(1, 1, Duration.ofMillis(50), new SimpleMeterRegistry());
+        holdPermit(shortWait);
+
+        long start = System.nanoTime();
+        assertThrows(AccountLoadRejectedException.class, () -> shortWait.execute(Duration.ofSeconds(10), () -> "late"));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+    }
+
+    @Test
+    void shouldWaitNoLongerThanRequestDeadline() throws Exception {
+        holdPermit(bulkhead);
+        RequestDeadlineHolder.setTimeout(Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        try {
+            assertThrows(AccountLoadRejectedException.class, () -> bulkhead.execute(() -> "late"));
+        } finally {
+            RequestDeadlineHolder.clear();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_500);
+        assertEquals(1.0, rejected("timeout"));
+    }
+
+    @Test
+    void shouldRejectImmediatelyWhenQueueIsFull() throws Exception {
+        holdPermit(bulkhead);
+        CountDownLatch queued = new CountDownLatch(1);
+        executor.submit(() -> {
+            queued.countDown();
+            return bulkhead.execute(() -> "queued");
+        });
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        while (meterRegistry.get("accounts.cache.miss.bulkhead.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(AccountLoadRejectedException.class, () -> bulkhead.execute(() -> "rejected"));
+        assertEquals(1.0, rejected("queue_full"));
+    }
+
+    @Test
+    void shouldServeWaiterOncePermitIsReleased() throws Exception {
+        Future<String> holder = holdPermit(bulkhead);
+        Future<String> waiter = executor.submit(() -> bulkhead.execute(() -> "served"));
+
+        release.countDown();
+
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("served", waiter.get(5, TimeUnit.SECONDS));
+    }
+}
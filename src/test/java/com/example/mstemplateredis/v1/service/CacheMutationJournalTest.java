@@ -0,0 +1,166 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.service.CacheMutationJournal.Mutation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMutationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CacheMutationJournal journal;
+
+    private CacheMutationJournal open(int maxBytes) throws IOException {
+        journal = new CacheMutationJournal(true, directory.resolve("cache.journal"), maxBytes, meterRegistry);
+        return journal;
+    }
+
+    private static final Mutation CUST1 = new Mutation("cust1", "RO1");
+    private static final Mutation CUST2 = new Mutation("cust2", "RO2");
+    private static final Mutation CUST3 = new Mutation("cust3", "RO3");
+    // Room for the header and one record of 2 + 5 + 2 + 3 bytes
+    private static final int ONE_RECORD = CacheMutationJournal.RECORDS_START + 12;
+
+    @AfterEach
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void shouldJournalEachAccountOnceInOrder() throws IOException {
+        open(1024);
+
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        journal.record("cust1", "RO1");
+        journal.record("cust1", "RO9");
+
+        assertEquals(new CacheMutationJournal.Pending(List.of(CUST1, CUST2, new Mutation("cust1", "RO9")), false, 4),
+                journal.pending());
+        assertEquals(3, meterRegistry.get("accounts.cache.journal.pending").gauge().value());
+    }
+
+    @Test
+    void shouldRecoverJournalAfterRestart() throws IOException {
+        open(1024);
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        journal.close();
+
+        open(1024);
+
+        assertEquals(List.of(CUST1, CUST2), journal.pending().mutations());
+    }
+
+    @Test
+    void shouldCompactFileToAccountsNotYetReplayed() throws IOException {
+        open(1024);
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        journal.record("cust3", "RO3");
+
+        journal.acknowledge(List.of(CUST1, CUST3), false, journal.pending().sequence());
+        journal.close();
+        open(1024);
+
+        assertEquals(List.of(CUST2), journal.pending().mutations());
+        assertFalse(journal.pending().overflowed());
+    }
+
+    @Test
+    void shouldKeepAccountsRecordedAgainDuringReplay() throws IOException {
+        open(1024);
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        CacheMutationJournal.Pending replayed = journal.pending();
+
+        journal.record("cust1", "RO1");
+        journal.acknowledge(replayed.mutations(), false, replayed.sequence());
+
+        assertEquals(List.of(CUST1), journal.pending().mutations());
+        journal.close();
+        open(1024);
+        assertEquals(List.of(CUST1), journal.pending().mutations());
+    }
+
+    @Test
+    void shouldKeepOverflowRecordedDuringReplay() throws IOException {
+        open(ONE_RECORD);
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        CacheMutationJournal.Pending replayed = journal.pending();
+
+        journal.record("cust3", "RO3");
+        journal.acknowledge(replayed.mutations(), true, replayed.sequence());
+
+        assertTrue(journal.pending().overflowed());
+    }
+
+    @Test
+    void shouldMarkOverflowWhenFull() throws IOException {
+        open(ONE_RECORD);
+
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+
+        assertTrue(journal.pending().overflowed());
+        assertEquals(List.of(CUST1), journal.pending().mutations());
+        assertEquals(1, meterRegistry.counter("accounts.cache.journal.overflows").count());
+    }
+
+    @Test
+    void shouldKeepOverflowAcrossRestartUntilAcknowledged() throws IOException {
+        open(ONE_RECORD);
+        journal.record("cust1", "RO1");
+        journal.record("cust2", "RO2");
+        journal.close();
+
+        open(ONE_RECORD);
+        assertTrue(journal.pending().overflowed());
+
+        journal.acknowledge(List.of(CUST1), true, journal.pending().sequence());
+        assertTrue(journal.pending().isEmpty());
+    }
+
+    @Test
+    void shouldReplayJournalWithoutIbansAsOverflowed() throws IOException {
+        // A journal of the previous layout: magic "ACJ1", end offset, overflow flag, then one customer ID record
+        ByteBuffer legacy = ByteBuffer.allocate(CacheMutationJournal.RECORDS_START + 7);
+        legacy.putInt(0, 0x41434A31).putInt(4, CacheMutationJournal.RECORDS_START + 7)
+                .putShort(CacheMutationJournal.RECORDS_START, (short) 5)
+                .put(CacheMutationJournal.RECORDS_START + 2, "cust1".getBytes());
+        Files.write(directory.resolve("cache.journal"), legacy.array());
+
+        open(1024);
+
+        assertTrue(journal.pending().overflowed());
+        journal.acknowledge(List.of(), true, journal.pending().sequence());
+        journal.close();
+        open(1024);
+        assertTrue(journal.pending().isEmpty());
+    }
+
+    @Test
+    void shouldIgnoreMutationsWhenDisabled() throws IOException {
+        journal = new CacheMutationJournal(false, directory.resolve("cache.journal"), 1024, meterRegistry);
+
+        journal.record("cust1", "RO1");
+
+        assertTrue(journal.pending().isEmpty());
+        assertFalse(directory.resolve("cache.journal").toFile().exists());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheOutboxRelayTest {
+
+    private CacheOutboxRepository cacheOutboxRepository;
+    private RedisService redisService;
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        cacheOutboxRepository = mock(CacheOutboxRepository.class);
+        redisService = mock(RedisService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new CacheOutboxRelay(cacheOutboxRepository, redisService, new TransactionTemplate(transactionManager), meterRegistry);
+        relay.batchSize = 3;
+    }
+
+    private static CacheOutboxEntry entry(long id, String customerId) {
+        return new CacheOutboxEntry(id, customerId, "RO" + id, Operation.UPDATE, System.currentTimeMillis() - 50);
+    }
+
+    @Test
+    void shouldEvictDistinctCustomersAndDeleteRelayedEntries() {
+        when(cacheOutboxRepository.lockBatch(3)).thenReturn(List.of(entry(1, "cust1"), entry(2, "cust1"), entry(3, "cust2")), List.of());
+
+        relay.poll();
+
+        verify(redisService).evictAccountsFromCache(new LinkedHashSet<>(List.of("cust1", "cust2")),
+                new LinkedHashSet<>(List.of("RO1", "RO2", "RO3")));
+        verify(cacheOutboxRepository).delete(List.of(1L, 2L, 3L));
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(3, meterRegistry.counter("accounts.cache.outbox.relayed").count());
+        assertEquals(3, meterRegistry.timer("accounts.cache.outbox.delivery.lag").count());
+    }
+
+    @Test
+    void shouldKeepEntriesAndRollBackWhenRedisFails() {
+        when(cacheOutboxRepository.lockBatch(3)).thenReturn(List.of(entry(1, "cust1")));
+        doThrow(new IllegalStateException("Redis down")).when(redisService).evictAccountsFromCache(anyCollection(), anyCollection());
+
+        relay.poll();
+
+        verify(cacheOutboxRepository, never()).delete(anyCollection());
+        verify(transactionManager).rollback(any());
+        assertEquals(1, meterRegistry.counter("accounts.cache.outbox.failures").count());
+    }
+
+    @Test
+    void shouldNotTouchRedisWhenOutboxIsEmpty() {
+        when(cacheOutboxRepository.lockBatch(3)).thenReturn(List.of());
+
+        relay.poll();
+
+        verify(redisService, never()).evictAccountsFromCache(anyCollection(), anyCollection());
+        assertEquals(0.0, meterRegistry.get("accounts.cache.outbox.lag.seconds").gauge().value());
+    }
+
+    @Test
+    void shouldReportLagOfOldestPendingEntry() {
+        when(cacheOutboxRepository.lockBatch(3)).thenReturn(List.of(new CacheOutboxEntry(1, "cust1", "RO1", Operation.CREATE,
+                System.currentTimeMillis() - 5_000)));
+        doThrow(new IllegalStateException("Redis down")).when(redisService).evictAccountsFromCache(anyCollection(), anyCollection());
+
+        relay.poll();
+
+        double lag = meterRegistry.get("accounts.cache.outbox.lag.seconds").gauge().value();
+        assertEquals(5.0, lag, 1.0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.mstemplateredis.v1.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSizeBudgetTest {
+
+    private static final Duration BASE_TTL = Duration.ofMinutes(15);
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheSizeBudget cacheSizeBudget;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheSizeBudget = new CacheSizeBudget(meterRegistry);
+        cacheSizeBudget.maxEntryBytes = 1_000;
+        cacheSizeBudget.softEntryBytes = 100;
+        cacheSizeBudget.totalBytes = 500;
+        cacheSizeBudget.shortTtl = Duration.ofSeconds(30);
+    }
+
+    @Test
+    void shouldKeepBaseTtlForSmallEntries() {
+        assertEquals(BASE_TTL, cacheSizeBudget.admit("cust001", 50, BASE_TTL));
+        assertEquals(50, cacheSizeBudget.trackedBytes());
+    }
+
+    @Test
+    void shouldShortenTtlAboveSoftLimit() {
+        assertEquals(Duration.ofSeconds(30), cacheSizeBudget.admit("cust001", 200, BASE_TTL));
+        assertEquals(1.0, meterRegistry.get("accounts.cache.entry.budget").tag("decision", "shortened").counter().count());
+    }
+
+    @Test
+    void shouldRejectEntriesAboveHardLimitAndForgetPreviousSize() {
+        cacheSizeBudget.admit("cust001", 50, BASE_TTL);
+
+        assertNull(cacheSizeBudget.admit("cust001", 2_000, BASE_TTL));
+        assertEquals(0, cacheSizeBudget.trackedBytes());
+        assertEquals(1.0, meterRegistry.get("accounts.cache.entry.budget").tag("decision", "rejected").counter().count());
+    }
+
+    @Test
+    void shouldShortenTtlOnceTotalBudgetIsExceeded() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(BASE_TTL, cacheSizeBudget.admit("cust" + i, 100, BASE_TTL));
+        }
+
+        assertEquals(Duration.ofSeconds(30), cacheSizeBudget.admit("cust5", 100, BASE_TTL));
+    }
+
+    @Test
+    void shouldReplaceSizeWhenSameCustomerIsRewritten() {
+        cacheSizeBudget.admit("cust001", 80, BASE_TTL);
+        cacheSizeBudget.admit("cust001", 60, BASE_TTL);
+
+        assertEquals(60, cacheSizeBudget.trackedBytes());
+    }
+
+    @Test
+    void shouldTreatZeroBaseTtlAsNoExpiry() {
+        assertEquals(Duration.ofSeconds(30), cacheSizeBudget.admit("cust001", 200, Duration.ZERO));
+    }
+
+    @Test
+    void shouldDropExpiredEntriesOnSweep() {
+        cacheSizeBudget.shortTtl = Duration.ofMillis(-1);
+        cacheSizeBudget.admit("cust001", 200, BASE_TTL);
+        cacheSizeBudget.admit("cust002", 50, BASE_TTL);
+
+        cacheSizeBudget.sweepExpired();
+
+        assertEquals(50, cacheSizeBudget.trackedBytes());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.HotAccountProperties;
+import com.example.mstemplateredis.exception.AccountNotFoundException;
+import com.example.mstemplateredis.exception.InsufficientBalanceException;
+import com.example.mstemplateredis.v1.model.CacheOutboxEntry.Operation;
+import com.example.mstemplateredis.v1.repository.CacheOutboxRepository;
+import com.example.mstemplateredis.v1.repository.HotAccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HotAccountLedgerTest {
+
+    private static final String IBAN = "RO49AAAA1B31007593840000";
+    private static final String KEY = "hot-account::" + IBAN;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private HotAccountRepository hotAccountRepository;
+    private CacheOutboxRepository cacheOutboxRepository;
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private HotAccountLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        hotAccountRepository = mock(HotAccountRepository.class);
+        cacheOutboxRepository = mock(CacheOutboxRepository.class);
+        redisService = mock(RedisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        HotAccountProperties properties = new HotAccountProperties(true,
+                List.of(new HotAccountProperties.HotAccount("settlement", IBAN)));
+        ledger = new HotAccountLedger(stringRedisTemplate, hotAccountRepository, cacheOutboxRepository, redisService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), properties, meterRegistry);
+    }
+
+    @Nested
+    class Adjust {
+
+        @Test
+        void shouldAccumulateDeltaInCents() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.ADJUST), eq(List.of(KEY)), eq("-1250")))
+                    .thenReturn(List.of(1L, 8750L));
+
+            assertEquals(new BigDecimal("87.50"), ledger.adjust("settlement", IBAN, new BigDecimal("-12.50")));
+            verifyNoInteractions(hotAccountRepository);
+        }
+
+        @Test
+        void shouldInitialiseFromDatabaseOnFirstUse() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.ADJUST), eq(List.of(KEY)), eq("500")))
+                    .thenReturn(List.of(-1L, 0L), List.of(1L, 10500L));
+            when(hotAccountRepository.loadState(IBAN)).thenReturn(new HotAccountRepository.State(new BigDecimal("100.00"), 7));
+
+            assertEquals(new BigDecimal("105.00"), ledger.adjust("settlement", IBAN, new BigDecimal("5")));
+            verify(stringRedisTemplate).execute(HotAccountLedger.INIT, List.of(KEY), "10000", "7");
+        }
+
+        @Test
+        void shouldRejectDebitBelowZero() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.ADJUST), eq(List.of(KEY)), anyString()))
+                    .thenReturn(List.of(0L, 100L));
+
+            assertThrows(InsufficientBalanceException.class, () -> ledger.adjust("settlement", IBAN, new BigDecimal("-2")));
+        }
+
+        @Test
+        void shouldRejectAccountOfAnotherCustomer() {
+            assertThrows(AccountNotFoundException.class, () -> ledger.adjust("someone-else", IBAN, BigDecimal.ONE));
+            verifyNoInteractions(stringRedisTemplate);
+        }
+
+        @Test
+        void shouldReportBalanceIncludingPendingAndInflight() {
+            @SuppressWarnings("unchecked")
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+            when(hashOperations.multiGet(KEY, List.of("base", "pending", "inflight"))).thenReturn(Arrays.asList("10000", "-250", null));
+
+            assertEquals(Map.of(IBAN, new BigDecimal("97.50")), ledger.balances("settlement"));
+            assertTrue(ledger.balances("other").isEmpty());
+        }
+    }
+
+    @Nested
+    class Flush {
+
+        @Test
+        void shouldApplyPendingDeltaThenConfirmIt() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.FLUSH_BEGIN), eq(List.of(KEY)))).thenReturn(List.of("-1250", "8"));
+            when(hotAccountRepository.applyFlush(IBAN, new BigDecimal("-12.50"), 8)).thenReturn(true);
+
+            ledger.flush();
+
+            var order = inOrder(hotAccountRepository, stringRedisTemplate, redisService);
+            order.verify(hotAccountRepository).applyFlush(IBAN, new BigDecimal("-12.50"), 8);
+            order.verify(stringRedisTemplate).execute(HotAccountLedger.FLUSH_END, List.of(KEY), "8");
+            order.verify(redisService).evictAccountsFromCache(List.of("settlement"));
+        }
+
+        @Test
+        void shouldRecordOutboxEntryInOutboxMode() {
+            ledger.outboxEnabled = true;
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.FLUSH_BEGIN), eq(List.of(KEY)))).thenReturn(List.of("100", "1"));
+            when(hotAccountRepository.applyFlush(anyString(), any(), anyLong())).thenReturn(true);
+
+            ledger.flush();
+
+            verify(cacheOutboxRepository).append("settlement", IBAN, Operation.UPDATE);
+            verifyNoInteractions(redisService);
+        }
+
+        @Test
+        void shouldConfirmFlushAlreadyAppliedBeforeCrash() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.FLUSH_BEGIN), eq(List.of(KEY)))).thenReturn(List.of("100", "3"));
+            when(hotAccountRepository.applyFlush(anyString(), any(), anyLong())).thenReturn(false);
+
+            ledger.flush();
+
+            verify(stringRedisTemplate).execute(HotAccountLedger.FLUSH_END, List.of(KEY), "3");
+            verifyNoInteractions(redisService, cacheOutboxRepository);
+        }
+
+        @Test
+        void shouldLeaveFlushUnconfirmedWhenDatabaseFails() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.FLUSH_BEGIN), eq(List.of(KEY)))).thenReturn(List.of("100", "3"));
+            when(hotAccountRepository.applyFlush(anyString(), any(), anyLong())).thenThrow(new IllegalStateException("DB down"));
+
+            ledger.flush();
+
+            verify(stringRedisTemplate, never()).execute(eq(HotAccountLedger.FLUSH_END), anyList(), any(Object[].class));
+            assertEquals(1.0, meterRegistry.get("accounts.hot.flushes").tag("result", "failed").counter().count());
+        }
+
+        @Test
+        void shouldSkipDatabaseWhenNothingIsPending() {
+            when(stringRedisTemplate.execute(eq(HotAccountLedger.FLUSH_BEGIN), eq(List.of(KEY)))).thenReturn(List.of());
+
+            ledger.flush();
+
+            verifyNoInteractions(hotAccountRepository);
+        }
+    }
+}
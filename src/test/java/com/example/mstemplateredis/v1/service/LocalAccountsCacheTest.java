@@ -0,0 +1,171 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class LocalAccountsCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private LocalAccountsCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redisService = mock(RedisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = open(4096, 16);
+    }
+
+    @AfterEach
+    void close() {
+        cache.close();
+    }
+
+    private LocalAccountsCache open(int dataBytes, int slots) throws IOException {
+        return new LocalAccountsCache(redisService, true, directory.resolve("local.cache"), dataBytes, slots,
+                Duration.ofMinutes(15), meterRegistry);
+    }
+
+    private static CachedAccounts accounts(String json, String etag) {
+        return new CachedAccounts(json.getBytes(), etag);
+    }
+
+    @Nested
+    class Store {
+
+        @Test
+        void shouldReadBackWrittenEntry() {
+            cache.put("cust1", accounts("[{\"iban\":\"RO1\"}]", "abc"));
+
+            LocalAccountsCache.Entry entry = cache.read("cust1");
+
+            assertEquals("abc", entry.etag());
+            assertArrayEquals("[{\"iban\":\"RO1\"}]".getBytes(), entry.json());
+            assertNull(cache.read("cust2"));
+        }
+
+        @Test
+        void shouldReplaceEntryOfSameCustomer() {
+            cache.put("cust1", accounts("[]", "old"));
+            cache.put("cust1", accounts("[{}]", "new"));
+
+            assertEquals("new", cache.read("cust1").etag());
+        }
+
+        @Test
+        void shouldSurviveRestart() throws IOException {
+            cache.put("cust1", accounts("[]", "abc"));
+            cache.close();
+
+            cache = open(4096, 16);
+
+            assertEquals("abc", cache.read("cust1").etag());
+        }
+
+        @ParameterizedTest(name = "corrupt bytes at entry offset {0}")
+        @ValueSource(ints = {0, 7, 19})
+        void shouldMissOnPartlyOverwrittenEntry(int entryOffset) throws IOException {
+            cache.put("cust1", accounts("[]", "abc"));
+            cache.close();
+            // Header and 16 slots precede the data area; the lengths are at 0 (customer ID), 7 (ETag) and 19 (body)
+            try (FileChannel file = FileChannel.open(directory.resolve("local.cache"), StandardOpenOption.WRITE)) {
+                file.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF}), 64 + 16 * 16 + entryOffset);
+            }
+
+            cache = open(4096, 16);
+
+            assertNull(cache.read("cust1"));
+        }
+
+        @Test
+        void shouldStartEmptyWhenLayoutChanged() throws IOException {
+            cache.put("cust1", accounts("[]", "abc"));
+            cache.close();
+
+            cache = open(4096, 32);
+
+            assertNull(cache.read("cust1"));
+        }
+
+        @Test
+        void shouldDropOldestEntriesOnceRingWrapsAround() throws IOException {
+            cache.close();
+            cache = open(256, 16);
+            String body = "[" + "x".repeat(80) + "]";
+
+            cache.put("cust1", accounts(body, "a"));
+            cache.put("cust2", accounts(body, "b"));
+            cache.put("cust3", accounts(body, "c"));
+
+            assertNull(cache.read("cust1"));
+            assertEquals("b", cache.read("cust2").etag());
+            assertEquals("c", cache.read("cust3").etag());
+        }
+
+        @Test
+        void shouldNotKeepStaleOrUncachedLists() {
+            cache.put("cust1", new CachedAccounts("[]".getBytes(), "abc", true));
+            cache.put("cust2", accounts("[]", null));
+
+            assertNull(cache.read("cust1"));
+            assertNull(cache.read("cust2"));
+        }
+    }
+
+    @Nested
+    class ReadThrough {
+
+        @Test
+        void shouldServeLocalCopyWhileRedisHasSameEtag() {
+            cache.put("cust1", accounts("[]", "abc"));
+            when(redisService.getAccountsEtag("cust1")).thenReturn("abc");
+
+            CachedAccounts result = cache.getCachedAccounts("cust1");
+
+            assertArrayEquals("[]".getBytes(), result.json());
+            assertEquals("abc", result.etag());
+            verify(redisService, never()).getCachedAccounts(anyString());
+            assertEquals(1, meterRegistry.counter("accounts.cache.local.requests", "result", "hit").count());
+        }
+
+        @Test
+        void shouldFetchAndKeepChangedList() {
+            cache.put("cust1", accounts("[]", "old"));
+            CachedAccounts current = accounts("[{}]", "new");
+            when(redisService.getAccountsEtag("cust1")).thenReturn("new");
+            when(redisService.getCachedAccounts("cust1")).thenReturn(current);
+
+            assertSame(current, cache.getCachedAccounts("cust1"));
+            assertEquals("new", cache.read("cust1").etag());
+        }
+
+        @Test
+        void shouldMissWhenRedisHasNoEntry() {
+            cache.put("cust1", accounts("[]", "abc"));
+
+            assertNull(cache.getCachedAccounts("cust1"));
+            verify(redisService, never()).getCachedAccounts(anyString());
+        }
+    }
+}
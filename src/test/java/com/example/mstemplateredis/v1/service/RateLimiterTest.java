@@ -0,0 +1,110 @@
+package com.example.mstemplateredis.v1.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateLimiterTest {
+
+    private static final RateLimiter.Bucket CUSTOMER = new RateLimiter.Bucket("ratelimit::get-accounts::customer::cust1", 10, 5);
+    private static final RateLimiter.Bucket CLIENT = new RateLimiter.Bucket("ratelimit::get-accounts::client::app1", 100, 50);
+
+    private StringRedisTemplate stringRedisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter(stringRedisTemplate, meterRegistry);
+    }
+
+    private void givenScriptReturns(List<Long> result) {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(result);
+    }
+
+    private double decisions(String result) {
+        return meterRegistry.get("accounts.ratelimit.decisions").tag("result", result).counter().count();
+    }
+
+    @Test
+    void shouldCheckAllBucketsInOneScriptCall() {
+        givenScriptReturns(List.of(1L, 0L, 0L));
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(List.of(CUSTOMER, CLIENT));
+
+        assertTrue(decision.allowed());
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class),
+                eq(List.of(CUSTOMER.key(), CLIENT.key())), eq("10"), eq("5.0"), eq("100"), eq("50.0"));
+        assertEquals(1.0, decisions("admitted"));
+    }
+
+    @Test
+    void shouldRejectWithRetryAfterFromRedis() {
+        givenScriptReturns(List.of(0L, 1500L, 1L));
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(List.of(CUSTOMER, CLIENT));
+
+        assertFalse(decision.allowed());
+        assertEquals(1500, decision.retryAfterMillis());
+        assertEquals(2, decision.retryAfterSeconds());
+        assertEquals(1.0, decisions("rejected"));
+    }
+
+    @Test
+    void shouldRejectLocallyWhileBucketIsKnownToBeEmpty() {
+        givenScriptReturns(List.of(0L, 60_000L, 2L));
+        rateLimiter.tryAcquire(List.of(CUSTOMER, CLIENT));
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(List.of(CLIENT));
+
+        assertFalse(decision.allowed());
+        assertTrue(decision.retryAfterMillis() > 0);
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        assertEquals(1.0, decisions("rejected_local"));
+    }
+
+    @Test
+    void shouldNotBlockOtherBucketsLocally() {
+        givenScriptReturns(List.of(0L, 60_000L, 2L));
+        rateLimiter.tryAcquire(List.of(CUSTOMER, CLIENT));
+
+        givenScriptReturns(List.of(1L, 0L, 0L));
+        assertTrue(rateLimiter.tryAcquire(List.of(CUSTOMER)).allowed());
+    }
+
+    @Test
+    void shouldCallRedisAgainOnceLocalBlockHasExpired() {
+        givenScriptReturns(List.of(0L, 0L, 1L));
+        rateLimiter.tryAcquire(List.of(CUSTOMER));
+        rateLimiter.sweepExpired();
+
+        givenScriptReturns(List.of(1L, 0L, 0L));
+        assertTrue(rateLimiter.tryAcquire(List.of(CUSTOMER)).allowed());
+    }
+
+    @Test
+    void shouldAdmitWhenRedisIsUnavailable() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+
+        assertTrue(rateLimiter.tryAcquire(List.of(CUSTOMER)).allowed());
+        assertEquals(1.0, decisions("failed_open"));
+    }
+
+    @Test
+    void shouldAdmitWithoutRedisWhenNoBucketsApply() {
+        assertTrue(rateLimiter.tryAcquire(List.of()).allowed());
+        verifyNoInteractions(stringRedisTemplate);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.mstemplateredis.v1.service;
+
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the request deadline against the client the application is configured with, Lettuce, rather than a mock:
+ * the Redis stand-in here completes the connection handshake but never answers reads.
+ */
+class RedisServiceDeadlineTest {
+
+    private ServerSocket server;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisService redisService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(this::acceptConnections);
+
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getInetAddress().getHostAddress(), server.getLocalPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, byte[]> rawRedisTemplate = new RedisTemplate<>();
+        rawRedisTemplate.setConnectionFactory(connectionFactory);
+        rawRedisTemplate.setKeySerializer(new StringRedisSerializer());
+        rawRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        rawRedisTemplate.afterPropertiesSet();
+
+        CacheGenerations cacheGenerations = mock(CacheGenerations.class);
+        when(cacheGenerations.scoped(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        redisService = new RedisService(rawRedisTemplate, new CacheSizeBudget(new SimpleMeterRegistry()),
+                cacheGenerations, mock(CacheMutationJournal.class), new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        RequestDeadlineHolder.clear();
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    @Test
+    void shouldGiveUpOnUnansweredRedisCallAtDeadline() {
+        RequestDeadlineHolder.setTimeout(Duration.ofMillis(300));
+        long start = System.nanoTime();
+
+        assertNull(redisService.getAccountsEtag("cust001"));
+        assertNull(redisService.getCachedAccounts("cust001"));
+
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        // Both calls together stay within the deadline, far below the 2s Redis timeout, let alone Lettuce's 60s
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + " ms");
+    }
+
+    private void acceptConnections() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // Answers the connection handshake as an old Redis would, and leaves every other command unanswered
+    private static void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            String header;
+            while ((header = in.readLine()) != null) {
+                List<String> command = new ArrayList<>();
+                for (int i = Integer.parseInt(header.substring(1)); i > 0; i--) {
+                    in.readLine(); // $<length>
+                    command.add(in.readLine());
+                }
+                String reply = switch (command.get(0).toUpperCase(Locale.ROOT)) {
+                    case "HELLO" -> "-ERR unknown command 'HELLO'\r\n";
+                    case "PING" -> "+PONG\r\n";
+                    case "CLIENT", "SELECT" -> "+OK\r\n";
+                    default -> null;
+                };
+                if (reply != null) {
+                    out.write(reply.getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The client disconnected
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package com.example.mstemplateredis.v1.service;
+import com.example.mstemplateredis.config.RequestDeadlineHolder;
 import com.example.mstemplateredis.utils.Constants;
 import com.example.mstemplateredis.v1.model.Account;
+import com.example.mstemplateredis.v1.model.AccountAggregate;
+import com.example.mstemplateredis.v1.model.CachedAccounts;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.Arguments;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,44 +43,77 @@ import static org.mockito.Mockito.*;
 class RedisServiceTest {
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private RedisTemplate<String, byte[]> rawRedisTemplate;
 
     @Mock
-    private ValueOperations<String, Object> valueOperations;
+    private ValueOperations<String, byte[]> rawValueOperations;
+
+    @Mock
+    private CacheGenerations cacheGenerations;
+
+    @Mock
+    private CacheMutationJournal cacheMutationJournal;
+
+    private CacheSizeBudget cacheSizeBudget;
 
-    @InjectMocks
     private RedisService redisService;
 
     @BeforeEach
     void setup() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(rawRedisTemplate.opsForValue()).thenReturn(rawValueOperations);
+        cacheSizeBudget = new CacheSizeBudget(new SimpleMeterRegistry());
+        // Unscoped keys, so the tests can spell them out
+        when(cacheGenerations.scoped(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cacheGenerations.scopedGlobal(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cacheGenerations.scopedForEviction(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().map(cacheGenerations::scoped).toList());
+        redisService = new RedisService(rawRedisTemplate, cacheSizeBudget, cacheGenerations, cacheMutationJournal, objectMapper);
     }
 
-    @Nested
-    class GetAccountsFromCacheTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-        static Stream<Arguments> getAccountsScenarios() {
-            return Stream.of(
-                    Arguments.of("cust001", List.of(new Account("RO123", "cust001", BigDecimal.TEN, null, null)), 200),
-                    Arguments.of("cust002", null, 404)
-            );
-        }
+    private byte[] json(List<Account> accounts) throws Exception {
+        return objectMapper.writeValueAsBytes(accounts);
+    }
 
-        @ParameterizedTest
-        @MethodSource("getAccountsScenarios")
-        void shouldHandleCacheRetrievalScenarios(String customerId, List<Account> expectedAccounts, int expectedStatus) {
-            String cacheKey = Constants.cacheAcccountKey + customerId;
+    private void givenCached(String customerId, List<Account> accounts) throws Exception {
+        when(rawValueOperations.get(Constants.cacheAcccountKey + customerId)).thenReturn(json(accounts));
+    }
 
-            when(valueOperations.get(cacheKey)).thenReturn(expectedAccounts);
+    private List<Account> writtenAccounts() throws Exception {
+        ArgumentCaptor<Object> json = ArgumentCaptor.forClass(Object.class);
+        verify(rawRedisTemplate).execute(any(RedisScript.class), anyList(), json.capture(), any(), any(), any(), any());
+        return objectMapper.readValue((byte[]) json.getAllValues().get(0), new TypeReference<List<Account>>() {});
+    }
 
-            List<Account> result = redisService.getAccountsFromCache(customerId);
+    private void verifyCacheWrite(String customerId, long ttlMillis, long staleTtlMillis) {
+        verify(rawRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of(Constants.cacheAcccountKey + customerId, Constants.cacheAccountEtagKey + customerId,
+                        Constants.cacheAccountStaleKey + customerId)),
+                any(byte[].class), any(byte[].class), eq(Long.toString(ttlMillis).getBytes(StandardCharsets.US_ASCII)),
+                eq(Long.toString(staleTtlMillis).getBytes(StandardCharsets.US_ASCII)), any(byte[].class));
+    }
 
-            if (expectedStatus == 404) {
-                assertNull(result);
-            } else {
-                assertEquals(expectedAccounts, result);
-            }
-            verify(redisTemplate.opsForValue()).get(cacheKey);
+    private void givenStale(String customerId, byte[] json, long remainingMillis) {
+        when(rawRedisTemplate.execute(any(RedisScript.class), eq(List.of(Constants.cacheAccountStaleKey + customerId))))
+                .thenReturn(Arrays.asList(json, remainingMillis));
+    }
+
+    @Nested
+    class GetCachedAccountsTest {
+
+        @Test
+        void shouldMissWhenRedisFails() {
+            when(rawValueOperations.multiGet(anyList())).thenThrow(new IllegalStateException("Redis down"));
+
+            assertNull(redisService.getCachedAccounts("cust001"));
+        }
+
+        @Test
+        void shouldDecodeResponseBodyBackIntoAccounts() throws Exception {
+            List<Account> accounts = List.of(new Account("RO123", "cust001", new BigDecimal("10.50"), null, null));
+
+            assertEquals(accounts, redisService.decodeAccounts(new CachedAccounts(json(accounts), "abc")));
         }
     }
 
@@ -92,7 +139,7 @@ class RedisServiceTest {
                 });
             } else {
                 redisService.setAccountsToCache(customerId, accounts);
-                verify(valueOperations).set(eq(Constants.cacheAcccountKey + customerId), eq(accounts), eq(Duration.ofSeconds(0)));
+                verifyCacheWrite(customerId, 0, 0);
             }
         }
     }
@@ -109,24 +156,22 @@ class RedisServiceTest {
 
         @ParameterizedTest
         @MethodSource("createAccountScenarios")
-        void shouldHandleCreateAccountToCache(String customerId, int expectedStatus) {
+        void shouldHandleCreateAccountToCache(String customerId, int expectedStatus) throws Exception {
             Account account = Account.builder().iban("RO124").customerId(customerId).balance(BigDecimal.ONE).build();
 
             if (expectedStatus == 500) {
                 assertThrows(IllegalArgumentException.class, () -> {
                     if (customerId.equals("custError")) throw new IllegalArgumentException("Cache error");
-                    List<Account> existing = new ArrayList<>();
-                    when(valueOperations.get(Constants.cacheAcccountKey + customerId)).thenReturn(existing);
+                    givenCached(customerId, List.of());
                     redisService.createAccountToCache(customerId, account);
                 });
             } else {
-                List<Account> existing = new ArrayList<>();
-                when(valueOperations.get(Constants.cacheAcccountKey + customerId)).thenReturn(existing);
+                givenCached(customerId, List.of());
 
                 redisService.createAccountToCache(customerId, account);
 
-                assertTrue(existing.contains(account));
-                verify(valueOperations).set(eq(Constants.cacheAcccountKey + customerId), eq(existing), eq(Duration.ofSeconds(0)));
+                assertTrue(writtenAccounts().contains(account));
+                verifyCacheWrite(customerId, 0, 0);
             }
         }
     }
@@ -143,7 +188,7 @@ class RedisServiceTest {
 
         @ParameterizedTest
         @MethodSource("updateAccountScenarios")
-        void shouldHandleUpdateAccountsInCache(String iban, BigDecimal balance, String customerId, int expectedStatus) {
+        void shouldHandleUpdateAccountsInCache(String iban, BigDecimal balance, String customerId, int expectedStatus) throws Exception {
             if (expectedStatus == 500) {
                 assertThrows(IllegalArgumentException.class, () -> {
                     if (balance.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Invalid balance");
@@ -151,15 +196,70 @@ class RedisServiceTest {
                 });
             } else {
                 Account account = Account.builder().iban(iban).balance(BigDecimal.ZERO).customerId(customerId).build();
-                List<Account> accounts = new ArrayList<>(List.of(account));
-                when(valueOperations.get(Constants.cacheAcccountKey + customerId)).thenReturn(accounts);
+                givenCached(customerId, List.of(account));
 
                 redisService.updateAccountsInCache(iban, balance, customerId);
 
-                assertEquals(balance, accounts.get(0).getBalance());
-                verify(valueOperations).set(eq(Constants.cacheAcccountKey + customerId), eq(accounts), eq(Duration.ofSeconds(0)));
+                assertEquals(balance, writtenAccounts().get(0).getBalance());
+                verifyCacheWrite(customerId, 0, 0);
             }
         }
+
+        @Test
+        void shouldApplyChangeUnderCurrentGenerationAndEvictTheCachedOne() throws Exception {
+            // Bumped elsewhere: the change goes to the list under the new generation, and the old one is removed
+            doReturn(List.of("v1::cust001", "v2::cust001")).when(cacheGenerations).scopedForEviction(List.of("cust001"));
+            when(cacheGenerations.scoped("cust001")).thenReturn("v2::cust001");
+            givenCached("v2::cust001", List.of(Account.builder().iban("RO999").balance(BigDecimal.ZERO).customerId("cust001").build()));
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            verify(rawRedisTemplate).unlink(List.of("accounts::v1::cust001", "accounts-etag::v1::cust001",
+                    "accounts-stale::v1::cust001", "accounts-agg::v1::cust001"));
+            assertEquals(BigDecimal.TEN, writtenAccounts().get(0).getBalance());
+            verifyCacheWrite("v2::cust001", 0, 0);
+        }
+
+        @Test
+        void shouldWriteOnlyIfCachedListIsUnchanged() throws Exception {
+            List<Account> accounts = List.of(Account.builder().iban("RO999").balance(BigDecimal.ZERO).customerId("cust001").build());
+            givenCached("cust001", accounts);
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            ArgumentCaptor<Object> expectedEtag = ArgumentCaptor.forClass(Object.class);
+            verify(rawRedisTemplate).execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), expectedEtag.capture());
+            assertEquals(RedisService.etagOf(json(accounts)),
+                    new String((byte[]) expectedEtag.getValue(), StandardCharsets.US_ASCII));
+        }
+
+        @Test
+        void shouldReleaseBudgetWhenListChangedConcurrently() throws Exception {
+            givenCached("cust001", List.of(Account.builder().iban("RO999").balance(BigDecimal.ZERO).customerId("cust001").build()));
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any())).thenReturn(0L);
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            assertEquals(0, cacheSizeBudget.trackedBytes());
+        }
+
+        @Test
+        void shouldJournalAccountWhenRedisIsDown() {
+            when(rawValueOperations.get(anyString())).thenThrow(new IllegalStateException("Redis down"));
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            verify(cacheMutationJournal).record("cust001", "RO999");
+        }
+
+        @Test
+        void shouldNotJournalSuccessfulUpdates() throws Exception {
+            givenCached("cust001", List.of(Account.builder().iban("RO999").balance(BigDecimal.ZERO).customerId("cust001").build()));
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            verify(cacheMutationJournal, never()).record(anyString(), anyString());
+        }
     }
 
     @Nested
@@ -174,7 +274,7 @@ class RedisServiceTest {
 
         @ParameterizedTest
         @MethodSource("deleteAccountScenarios")
-        void shouldHandleDeleteAccountFromCache(String iban, String customerId, int expectedStatus) {
+        void shouldHandleDeleteAccountFromCache(String iban, String customerId, int expectedStatus) throws Exception {
             if (expectedStatus == 500) {
                 assertThrows(IllegalArgumentException.class, () -> {
                     if (iban == null) throw new IllegalArgumentException("IBAN required");
@@ -182,13 +282,12 @@ class RedisServiceTest {
                 });
             } else {
                 Account account = Account.builder().iban(iban).customerId(customerId).balance(BigDecimal.TEN).build();
-                List<Account> accounts = new ArrayList<>(List.of(account));
-                when(valueOperations.get(Constants.cacheAcccountKey + customerId)).thenReturn(accounts);
+                givenCached(customerId, List.of(account));
 
                 redisService.deleteAccountFromCache(customerId, iban);
 
-                assertFalse(accounts.contains(account));
-                verify(valueOperations).set(eq(Constants.cacheAcccountKey + customerId), eq(accounts), eq(Duration.ofSeconds(0)));
+                assertFalse(writtenAccounts().contains(account));
+                verifyCacheWrite(customerId, 0, 0);
             }
         }
     }
@@ -212,4 +311,431 @@ class RedisServiceTest {
             assertEquals(expectedMinutes * 60 * 1000, duration.toMillis(), 100);
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class EvictAccountsFromCacheTest {
+
+        @Test
+        void shouldUnlinkAllKeysInOneCall() {
+            redisService.evictAccountsFromCache(List.of("cust001", "cust002"));
+
+            verify(rawRedisTemplate).unlink(List.of(
+                    Constants.cacheAcccountKey + "cust001", Constants.cacheAccountEtagKey + "cust001", Constants.cacheAccountStaleKey + "cust001",
+                    Constants.cacheAccountAggregateKey + "cust001",
+                    Constants.cacheAcccountKey + "cust002", Constants.cacheAccountEtagKey + "cust002", Constants.cacheAccountStaleKey + "cust002",
+                    Constants.cacheAccountAggregateKey + "cust002"));
+        }
+
+        @Test
+        void shouldPropagateRedisFailures() {
+            when(rawRedisTemplate.unlink(anyCollection())).thenThrow(new IllegalStateException("Redis down"));
+
+            assertThrows(IllegalStateException.class, () -> redisService.evictAccountsFromCache(List.of("cust001")));
+        }
+
+        @Test
+        void shouldSkipRedisForEmptyInput() {
+            redisService.evictAccountsFromCache(List.of());
+
+            verify(rawRedisTemplate, never()).unlink(anyCollection());
+        }
+    }
+
+    @Nested
+    class AggregateTest {
+
+        private final String aggregateKey = Constants.cacheAccountAggregateKey + "cust001";
+
+        private byte[] ascii(long value) {
+            return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        private Account account(String iban, String balance) {
+            return Account.builder().iban(iban).balance(new BigDecimal(balance)).customerId("cust001").build();
+        }
+
+        @Test
+        void shouldReadCountAndCents() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), eq(List.of(aggregateKey))))
+                    .thenReturn(Arrays.asList(ascii(2), ascii(15025)));
+
+            assertEquals(new AccountAggregate("cust001", 2, new BigDecimal("150.25")), redisService.getAggregate("cust001"));
+        }
+
+        @Test
+        void shouldReturnNullForMissingAggregateOrRedisFailure() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), eq(List.of(aggregateKey)))).thenReturn(Arrays.asList(null, null));
+            assertNull(redisService.getAggregate("cust001"));
+
+            when(rawRedisTemplate.execute(any(RedisScript.class), eq(List.of(aggregateKey)))).thenThrow(new IllegalStateException("Redis down"));
+            assertNull(redisService.getAggregate("cust001"));
+        }
+
+        @Test
+        void shouldWriteAggregateInCents() {
+            redisService.setAggregate(new AccountAggregate("cust001", 3, new BigDecimal("10.5")));
+
+            verify(rawRedisTemplate).execute(any(RedisScript.class), eq(List.of(aggregateKey)),
+                    eq(ascii(3)), eq(ascii(1050)), any(byte[].class));
+        }
+
+        @Test
+        void shouldAddCreatedAccountToAggregate() throws Exception {
+            givenCached("cust001", List.of(account("RO1", "5.00")));
+
+            redisService.createAccountToCache("cust001", account("RO2", "7.25"));
+
+            verify(rawRedisTemplate).execute(any(RedisScript.class), eq(List.of(aggregateKey)), eq(ascii(1)), eq(ascii(725)));
+        }
+
+        @Test
+        void shouldAdjustAggregateByBalanceDifferenceOfWrittenUpdate() throws Exception {
+            givenCached("cust001", List.of(account("RO1", "5.00")));
+
+            redisService.updateAccountsInCache("RO1", new BigDecimal("3.50"), "cust001");
+
+            verify(rawRedisTemplate).execute(any(RedisScript.class), eq(List.of(aggregateKey)), eq(ascii(0)), eq(ascii(-150)));
+        }
+
+        @Test
+        void shouldEvictAggregateWhenPreviousBalanceIsUnknown() throws Exception {
+            redisService.updateAccountsInCache("RO1", new BigDecimal("3.50"), "cust001");
+
+            verify(rawRedisTemplate).unlink(aggregateKey);
+            verify(rawRedisTemplate, never()).execute(any(RedisScript.class), eq(List.of(aggregateKey)), any(), any());
+        }
+
+        @Test
+        void shouldEvictAggregateWhenListChangedConcurrently() throws Exception {
+            givenCached("cust001", List.of(account("RO1", "5.00")));
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any())).thenReturn(0L);
+
+            redisService.deleteAccountFromCache("cust001", "RO1");
+
+            verify(rawRedisTemplate).unlink(aggregateKey);
+        }
+
+        @Test
+        void shouldSubtractDeletedAccountFromAggregate() throws Exception {
+            givenCached("cust001", List.of(account("RO1", "5.00"), account("RO2", "2.00")));
+
+            redisService.deleteAccountFromCache("cust001", "RO1");
+
+            verify(rawRedisTemplate).execute(any(RedisScript.class), eq(List.of(aggregateKey)), eq(ascii(-1)), eq(ascii(-500)));
+        }
+    }
+
+    @Nested
+    class IbanIndexTest {
+
+        @Test
+        void shouldResolveIbansWithOneMultiGetAndSkipTombstones() throws Exception {
+            Account account = Account.builder().iban("RO1").customerId("cust001").balance(BigDecimal.TEN).build();
+            when(rawValueOperations.multiGet(List.of(Constants.cacheAccountIbanKey + "RO1",
+                    Constants.cacheAccountIbanKey + "RO2", Constants.cacheAccountIbanKey + "RO3")))
+                    .thenReturn(Arrays.asList(objectMapper.writeValueAsBytes(account), new byte[0], null));
+
+            Map<String, Account> found = redisService.getAccountsByIban(List.of("RO1", "RO2", "RO3"));
+
+            assertEquals(Map.of("RO1", account), found);
+        }
+
+        @Test
+        void shouldTreatRedisFailureAsMisses() {
+            when(rawValueOperations.multiGet(anyList())).thenThrow(new IllegalStateException("Redis down"));
+
+            assertTrue(redisService.getAccountsByIban(List.of("RO1")).isEmpty());
+        }
+
+        @Test
+        void shouldWriteLoadedAccountsInOnePipeline() {
+            redisService.setAccountsByIban(List.of(
+                    Account.builder().iban("RO1").customerId("cust001").balance(BigDecimal.ONE).build(),
+                    Account.builder().iban("RO2").customerId("cust001").balance(BigDecimal.TEN).build()));
+
+            verify(rawRedisTemplate).executePipelined(any(RedisCallback.class));
+        }
+
+        @Test
+        void shouldInvalidateIndexEntryWhenAccountChanges() throws Exception {
+            givenCached("cust001", List.of(Account.builder().iban("RO999").balance(BigDecimal.ZERO).customerId("cust001").build()));
+
+            redisService.updateAccountsInCache("RO999", BigDecimal.TEN, "cust001");
+
+            verify(rawRedisTemplate).executePipelined(any(RedisCallback.class));
+        }
+
+        @Test
+        void shouldInvalidateIndexEntriesWithListEviction() {
+            redisService.evictAccountsFromCache(List.of("cust001"), List.of("RO1", "RO2"));
+
+            verify(rawRedisTemplate).unlink(anyCollection());
+            verify(rawRedisTemplate).executePipelined(any(RedisCallback.class));
+        }
+    }
+
+    @Nested
+    class PrimeAccountsTest {
+
+        @Test
+        void shouldWriteAllListsInOnePipelineWithinTheBudget() {
+            redisService.primeAccounts(Map.of(
+                    "cust001", List.of(Account.builder().iban("RO1").customerId("cust001").balance(BigDecimal.ONE).build()),
+                    "cust002", List.of(Account.builder().iban("RO2").customerId("cust002").balance(BigDecimal.TEN).build())));
+
+            verify(rawRedisTemplate).executePipelined(any(RedisCallback.class));
+            assertTrue(cacheSizeBudget.trackedBytes() > 0);
+        }
+
+        @Test
+        void shouldNotCallRedisWithoutLists() {
+            redisService.primeAccounts(Map.of());
+
+            verify(rawRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+        }
+    }
+
+    @Nested
+    class DriftTest {
+
+        @Test
+        void shouldReadListsWithEtagsInOneMultiGet() throws Exception {
+            byte[] json = json(List.of(Account.builder().iban("RO1").customerId("cust001").balance(BigDecimal.ONE).build()));
+            when(rawValueOperations.multiGet(List.of(Constants.cacheAcccountKey + "cust001", Constants.cacheAccountEtagKey + "cust001",
+                    Constants.cacheAcccountKey + "cust002", Constants.cacheAccountEtagKey + "cust002")))
+                    .thenReturn(Arrays.asList(json, "abc".getBytes(StandardCharsets.US_ASCII), null, null));
+
+            Map<String, CachedAccounts> cached = redisService.getCachedAccountLists(List.of("cust001", "cust002"));
+
+            assertEquals(Set.of("cust001"), cached.keySet());
+            assertEquals("abc", cached.get("cust001").etag());
+        }
+
+        @Test
+        void shouldReplaceListOnlyIfUnchangedAndDropAggregate() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any())).thenReturn(0L);
+
+            assertFalse(redisService.replaceAccountsInCache("cust001", List.of(), "abc"));
+
+            verify(rawRedisTemplate).execute(any(RedisScript.class), anyList(), any(), any(), any(), any(),
+                    eq("abc".getBytes(StandardCharsets.US_ASCII)));
+            verify(rawRedisTemplate).unlink(Constants.cacheAccountAggregateKey + "cust001");
+        }
+    }
+
+    @Nested
+    class SizeBudgetTest {
+
+        @Test
+        void shouldTrackWrittenBytesAndReleaseThemOnEviction() {
+            List<Account> accounts = List.of(Account.builder().iban("RO123").customerId("cust001").balance(BigDecimal.TEN).build());
+
+            redisService.setAccountsToCache("cust001", accounts);
+            assertTrue(cacheSizeBudget.trackedBytes() > 0);
+
+            redisService.evictAccountsFromCache(List.of("cust001"));
+            assertEquals(0, cacheSizeBudget.trackedBytes());
+        }
+
+        @Test
+        void shouldUnlinkInsteadOfWritingOversizeEntries() {
+            cacheSizeBudget.maxEntryBytes = 16;
+            List<Account> accounts = List.of(Account.builder().iban("RO123").customerId("cust001").balance(BigDecimal.TEN).build());
+
+            redisService.setAccountsToCache("cust001", accounts);
+
+            verify(rawRedisTemplate).unlink(List.of(Constants.cacheAcccountKey + "cust001", Constants.cacheAccountEtagKey + "cust001",
+                    Constants.cacheAccountStaleKey + "cust001"));
+            verify(rawRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any());
+        }
+    }
+
+    @Nested
+    class EtagTest {
+
+        @Test
+        void shouldPassCachedBytesThroughWithEtagFromOneMultiGet() throws Exception {
+            byte[] cachedJson = json(List.of(new Account("RO123", "cust001", BigDecimal.TEN, null, null)));
+            when(rawValueOperations.multiGet(List.of(Constants.cacheAcccountKey + "cust001", Constants.cacheAccountEtagKey + "cust001")))
+                    .thenReturn(Arrays.asList(cachedJson, "abc".getBytes(StandardCharsets.US_ASCII)));
+
+            CachedAccounts cached = redisService.getCachedAccounts("cust001");
+
+            assertSame(cachedJson, cached.json());
+            assertEquals("abc", cached.etag());
+            verify(rawValueOperations, never()).get(anyString());
+        }
+
+        @Test
+        void shouldReturnNullOnMiss() {
+            when(rawValueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null));
+
+            assertNull(redisService.getCachedAccounts("cust001"));
+        }
+
+        @Test
+        void shouldTreatEntriesWithTypeInformationAsMiss() {
+            byte[] typed = "[\"java.util.ArrayList\",[]]".getBytes(StandardCharsets.UTF_8);
+            when(rawValueOperations.multiGet(anyList())).thenReturn(Arrays.asList(typed, null));
+
+            assertNull(redisService.getCachedAccounts("cust001"));
+        }
+
+        @Test
+        void shouldReturnWrittenBytesAndTheirEtag() throws Exception {
+            List<Account> accounts = List.of(new Account("RO123", "cust001", BigDecimal.TEN, null, null));
+
+            CachedAccounts written = redisService.setAccountsToCache("cust001", accounts);
+
+            assertArrayEquals(json(accounts), written.json());
+            assertEquals(RedisService.etagOf(written.json()), written.etag());
+            assertEquals(40, written.etag().length());
+        }
+
+        @Test
+        void shouldReturnBodyWithoutEtagWhenRedisWriteFails() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                    .thenThrow(new IllegalStateException("Redis down"));
+
+            CachedAccounts written = redisService.setAccountsToCache("cust001", List.of());
+
+            assertEquals("[]", new String(written.json(), StandardCharsets.UTF_8));
+            assertNull(written.etag());
+        }
+
+        @Test
+        void shouldReadEtagKeyOnly() {
+            when(rawValueOperations.get(Constants.cacheAccountEtagKey + "cust001")).thenReturn("abc".getBytes(StandardCharsets.US_ASCII));
+
+            assertEquals("abc", redisService.getAccountsEtag("cust001"));
+            verify(rawValueOperations, never()).multiGet(anyList());
+        }
+
+        @Test
+        void shouldScopeKeysToCurrentCacheGeneration() {
+            when(cacheGenerations.scoped("cust001")).thenReturn("v2.5.1::cust001");
+            when(rawValueOperations.get("accounts-etag::v2.5.1::cust001")).thenReturn("abc".getBytes(StandardCharsets.US_ASCII));
+
+            assertEquals("abc", redisService.getAccountsEtag("cust001"));
+            redisService.evictAccountsFromCache(List.of("cust001"));
+
+            verify(rawRedisTemplate).unlink(List.of("accounts::v2.5.1::cust001", "accounts-etag::v2.5.1::cust001",
+                    "accounts-stale::v2.5.1::cust001", "accounts-agg::v2.5.1::cust001"));
+        }
+
+        @Test
+        void shouldTreatRedisFailureAsMissingEtag() {
+            when(rawValueOperations.get(anyString())).thenThrow(new IllegalStateException("Redis down"));
+
+            assertNull(redisService.getAccountsEtag("cust001"));
+        }
+    }
+
+    @Nested
+    class DeadlineTest {
+
+        @AfterEach
+        void clearDeadline() {
+            RequestDeadlineHolder.clear();
+        }
+
+        @Test
+        void shouldSkipRedisWhenDeadlineHasPassed() {
+            RequestDeadlineHolder.setTimeout(Duration.ofMillis(-1));
+
+            assertNull(redisService.getAccountsEtag("cust001"));
+            assertNull(redisService.getCachedAccounts("cust001"));
+            verify(rawValueOperations, never()).get(anyString());
+            verify(rawValueOperations, never()).multiGet(anyList());
+        }
+
+        @Test
+        void shouldRunOnAnotherThreadWhenLessTimeLeftThanRedisTimeout() {
+            RequestDeadlineHolder.setTimeout(Duration.ofMillis(500));
+            Thread caller = Thread.currentThread();
+            when(rawValueOperations.get(Constants.cacheAccountEtagKey + "cust001")).thenAnswer(invocation ->
+                    Thread.currentThread() != caller ? "abc".getBytes(StandardCharsets.US_ASCII) : null);
+
+            assertEquals("abc", redisService.getAccountsEtag("cust001"));
+        }
+
+        @Test
+        void shouldGiveUpOnSlowCallAtDeadline() {
+            RequestDeadlineHolder.setTimeout(Duration.ofMillis(100));
+            when(rawValueOperations.get(anyString())).thenAnswer(invocation -> {
+                Thread.sleep(1000);
+                return "abc".getBytes(StandardCharsets.US_ASCII);
+            });
+
+            assertNull(redisService.getAccountsEtag("cust001"));
+        }
+
+        @Test
+        void shouldCallRedisDirectlyWithEnoughTimeLeft() {
+            RequestDeadlineHolder.setTimeout(Duration.ofSeconds(5));
+            Thread caller = Thread.currentThread();
+            when(rawValueOperations.get(Constants.cacheAccountEtagKey + "cust001")).thenAnswer(invocation ->
+                    Thread.currentThread() == caller ? "abc".getBytes(StandardCharsets.US_ASCII) : null);
+
+            assertEquals("abc", redisService.getAccountsEtag("cust001"));
+        }
+    }
+
+    @Nested
+    class StaleTest {
+
+        private final byte[] body = "[{\"iban\":\"RO123\"}]".getBytes(StandardCharsets.UTF_8);
+
+        @Test
+        void shouldKeepStaleCopyPastFreshTtl() {
+            redisService.ttl = "15m";
+
+            redisService.setAccountsToCache("cust001", List.of());
+
+            verifyCacheWrite("cust001", Duration.ofMinutes(15).toMillis(), Duration.ofMinutes(15).plusHours(1).toMillis());
+        }
+
+        @Test
+        void shouldServeRecentlyExpiredCopyForRevalidation() {
+            // Fresh entry expired 10 s ago: one hour of stale-if-error left minus those 10 s
+            givenStale("cust001", body, Duration.ofHours(1).minusSeconds(10).toMillis());
+
+            CachedAccounts stale = redisService.getRevalidatableAccounts("cust001");
+
+            assertArrayEquals(body, stale.json());
+            assertEquals(RedisService.etagOf(body), stale.etag());
+            assertTrue(stale.stale());
+        }
+
+        @Test
+        void shouldNotRevalidateCopyStaleForLongerThanWindow() {
+            givenStale("cust001", body, Duration.ofMinutes(10).toMillis());
+
+            assertNull(redisService.getRevalidatableAccounts("cust001"));
+            assertNotNull(redisService.getStaleAccounts("cust001"));
+        }
+
+        @Test
+        void shouldReturnNullWithoutStaleCopy() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList())).thenReturn(List.of());
+
+            assertNull(redisService.getStaleAccounts("cust001"));
+        }
+
+        @Test
+        void shouldTreatRedisFailureAsMissingStaleCopy() {
+            when(rawRedisTemplate.execute(any(RedisScript.class), anyList())).thenThrow(new IllegalStateException("Redis down"));
+
+            assertNull(redisService.getStaleAccounts("cust001"));
+        }
+
+        @Test
+        void shouldSkipStaleTierWhenDisabled() {
+            redisService.staleIfError = Duration.ZERO;
+            givenStale("cust001", body, 1000);
+
+            assertNull(redisService.getStaleAccounts("cust001"));
+            verify(rawRedisTemplate, never()).execute(any(RedisScript.class), anyList());
+        }
+    }
+}